@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.scanner;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Compares the hand-off of responses from the gRPC listener to the scanner thread through a
+ * {@link SpscRingBuffer}, which {@link ResponseQueueReader} uses, and through the
+ * {@link LinkedBlockingQueue} that it used before. In each group, one thread offers elements the
+ * way the listener does, and another thread polls them with a timeout the way the scanner does.
+ * The queues are bounded by the number of responses that the reader requests, which is what flow
+ * control does for the reader's queue.
+ * <p>
+ * Run with {@code mvn -P benchmarks -pl bigtable-client-core test-compile exec:exec}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ResponseHandOffBenchmark {
+
+  private static final Object RESPONSE = new Object();
+
+  /**
+   * The scanner's wait for the next response is much longer than this, but a short timeout lets
+   * the consumer notice the end of an iteration.
+   */
+  private static final long POLL_TIMEOUT_MS = 10;
+
+  /**
+   * The number of responses that a reader buffers.
+   */
+  @Param({ "16", "1024" })
+  public int capacity;
+
+  private SpscRingBuffer<Object> ringBuffer;
+  private BlockingQueue<Object> blockingQueue;
+
+  @Setup
+  public void setup() {
+    ringBuffer = new SpscRingBuffer<>(capacity);
+    blockingQueue = new LinkedBlockingQueue<>(capacity);
+  }
+
+  @Benchmark
+  @Group("ringBuffer")
+  @GroupThreads(1)
+  public void ringBufferOffer(Control control) {
+    while (!ringBuffer.offer(RESPONSE) && !control.stopMeasurement) {
+      // The consumer is behind; flow control would not have requested this response yet.
+    }
+  }
+
+  @Benchmark
+  @Group("ringBuffer")
+  @GroupThreads(1)
+  public Object ringBufferPoll(Control control) throws InterruptedException {
+    Object response;
+    do {
+      response = ringBuffer.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } while (response == null && !control.stopMeasurement);
+    return response;
+  }
+
+  @Benchmark
+  @Group("linkedBlockingQueue")
+  @GroupThreads(1)
+  public void linkedBlockingQueueOffer(Control control) {
+    while (!blockingQueue.offer(RESPONSE) && !control.stopMeasurement) {
+      // The consumer is behind; flow control would not have requested this response yet.
+    }
+  }
+
+  @Benchmark
+  @Group("linkedBlockingQueue")
+  @GroupThreads(1)
+  public Object linkedBlockingQueuePoll(Control control) throws InterruptedException {
+    Object response;
+    do {
+      response = blockingQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } while (response == null && !control.stopMeasurement);
+    return response;
+  }
+}
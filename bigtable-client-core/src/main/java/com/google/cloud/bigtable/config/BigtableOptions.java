@@ -76,6 +76,9 @@ public class BigtableOptions implements Serializable {
 
     // Performance tuning options.
     private RetryOptions retryOptions = new RetryOptions.Builder().build();
+    private BulkOptions bulkOptions = new BulkOptions.Builder().build();
+    private ReadOptions readOptions = new ReadOptions.Builder().build();
+    private ChannelOptions channelOptions = new ChannelOptions.Builder().build();
     private int timeoutMs = BIGTABLE_CHANNEL_TIMEOUT_MS_DEFAULT;
     private int dataChannelCount = BIGTABLE_DATA_CHANNEL_COUNT_DEFAULT;
     private int asyncMutatorCount = BIGTABLE_ASYNC_MUTATOR_COUNT_DEFAULT;
@@ -94,6 +97,9 @@ public class BigtableOptions implements Serializable {
       this.port = original.port;
       this.credentialOptions = original.credentialOptions;
       this.retryOptions = original.retryOptions;
+      this.bulkOptions = original.bulkOptions;
+      this.readOptions = original.readOptions;
+      this.channelOptions = original.channelOptions;
       this.timeoutMs = original.timeoutMs;
       this.dataChannelCount = original.dataChannelCount;
       this.asyncMutatorCount = original.asyncMutatorCount;
@@ -154,6 +160,21 @@ public class BigtableOptions implements Serializable {
       return this;
     }
 
+    public Builder setBulkOptions(BulkOptions bulkOptions) {
+      this.bulkOptions = bulkOptions;
+      return this;
+    }
+
+    public Builder setReadOptions(ReadOptions readOptions) {
+      this.readOptions = readOptions;
+      return this;
+    }
+
+    public Builder setChannelOptions(ChannelOptions channelOptions) {
+      this.channelOptions = channelOptions;
+      return this;
+    }
+
     public Builder setTimeoutMs(int timeoutMs) {
       this.timeoutMs = timeoutMs;
       return this;
@@ -178,6 +199,9 @@ public class BigtableOptions implements Serializable {
           credentialOptions,
           userAgent,
           retryOptions,
+          bulkOptions,
+          readOptions,
+          channelOptions,
           timeoutMs,
           dataChannelCount,
           asyncMutatorCount);
@@ -194,6 +218,9 @@ public class BigtableOptions implements Serializable {
   private final CredentialOptions credentialOptions;
   private final String userAgent;
   private final RetryOptions retryOptions;
+  private final BulkOptions bulkOptions;
+  private final ReadOptions readOptions;
+  private final ChannelOptions channelOptions;
   private final int timeoutMs;
   private final int dataChannelCount;
   private final BigtableClusterName clusterName;
@@ -211,6 +238,9 @@ public class BigtableOptions implements Serializable {
       credentialOptions = null;
       userAgent = null;
       retryOptions = null;
+      bulkOptions = null;
+      readOptions = null;
+      channelOptions = null;
       timeoutMs = 0;
       dataChannelCount = 1;
       clusterName = null;
@@ -228,6 +258,9 @@ public class BigtableOptions implements Serializable {
       CredentialOptions credentialOptions,
       String userAgent,
       RetryOptions retryOptions,
+      BulkOptions bulkOptions,
+      ReadOptions readOptions,
+      ChannelOptions channelOptions,
       int timeoutMs,
       int channelCount,
       int asyncMutatorCount) {
@@ -245,6 +278,9 @@ public class BigtableOptions implements Serializable {
     this.credentialOptions = credentialOptions;
     this.userAgent = userAgent;
     this.retryOptions = retryOptions;
+    this.bulkOptions = bulkOptions;
+    this.readOptions = readOptions;
+    this.channelOptions = channelOptions;
     this.timeoutMs = timeoutMs;
     this.dataChannelCount = channelCount;
     this.asyncMutatorCount = asyncMutatorCount;
@@ -317,7 +353,29 @@ public class BigtableOptions implements Serializable {
   public RetryOptions getRetryOptions() { return retryOptions; }
 
   /**
-   * The timeout for a channel.
+   * Options controlling how mutations are grouped into bulk MutateRows requests.
+   */
+  public BulkOptions getBulkOptions() {
+    return bulkOptions;
+  }
+
+  /**
+   * Options controlling how single row reads are coalesced and how scans are split.
+   */
+  public ReadOptions getReadOptions() {
+    return readOptions;
+  }
+
+  /**
+   * Options controlling the channels to Bigtable.
+   */
+  public ChannelOptions getChannelOptions() {
+    return channelOptions;
+  }
+
+  /**
+   * The maximum age of a channel, after which it is replaced by a new channel. 0 or less means
+   * that channels are not replaced.
    */
   public long getTimeoutMs() {
     return timeoutMs;
@@ -359,7 +417,10 @@ public class BigtableOptions implements Serializable {
         && Objects.equal(clusterId, other.clusterId)
         && Objects.equal(userAgent, other.userAgent)
         && Objects.equal(credentialOptions, other.credentialOptions)
-        && Objects.equal(retryOptions, other.retryOptions);
+        && Objects.equal(retryOptions, other.retryOptions)
+        && Objects.equal(bulkOptions, other.bulkOptions)
+        && Objects.equal(readOptions, other.readOptions)
+        && Objects.equal(channelOptions, other.channelOptions);
   }
 
   @Override
@@ -378,6 +439,9 @@ public class BigtableOptions implements Serializable {
         .add("timeoutMs", timeoutMs)
         .add("dataChannelCount", dataChannelCount)
         .add("asyncMutatorCount", asyncMutatorCount)
+        .add("bulkOptions", bulkOptions)
+        .add("readOptions", readOptions)
+        .add("channelOptions", channelOptions)
         .toString();
   }
 
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.config;
+
+import java.io.Serializable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for controlling how {@link com.google.bigtable.v1.MutateRowRequest}s are grouped into
+ * {@link com.google.bigtable.v1.MutateRowsRequest}s by a
+ * {@link com.google.cloud.bigtable.grpc.async.BulkMutation}.
+ */
+public class BulkOptions implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The maximum number of entries in a single MutateRowsRequest (default value: 125).
+   */
+  public static final int BIGTABLE_BULK_MAX_ROW_KEY_COUNT_DEFAULT = 125;
+
+  /**
+   * The maximum serialized size of a single MutateRowsRequest (default value: 1 MB).
+   */
+  public static final long BIGTABLE_BULK_MAX_REQUEST_SIZE_BYTES_DEFAULT = 1 << 20;
+
+  /**
+   * The maximum amount of time a batch that isn't full waits before being sent (default value:
+   * 10ms). 0 disables the automatic flush.
+   */
+  public static final long BIGTABLE_BULK_AUTOFLUSH_MS_DEFAULT = 10;
+
+  /**
+   * Whether buffered mutations are grouped into MutateRowsRequests (default value: false).
+   */
+  public static final boolean BIGTABLE_USE_BULK_API_DEFAULT = false;
+
+  /**
+   * A Builder for BulkOptions objects.
+   */
+  public static class Builder {
+    private int bulkMaxRowKeyCount = BIGTABLE_BULK_MAX_ROW_KEY_COUNT_DEFAULT;
+    private long bulkMaxRequestSize = BIGTABLE_BULK_MAX_REQUEST_SIZE_BYTES_DEFAULT;
+    private long autoflushMs = BIGTABLE_BULK_AUTOFLUSH_MS_DEFAULT;
+    private boolean useBulkApi = BIGTABLE_USE_BULK_API_DEFAULT;
+
+    public Builder() {
+    }
+
+    private Builder(BulkOptions original) {
+      this.bulkMaxRowKeyCount = original.bulkMaxRowKeyCount;
+      this.bulkMaxRequestSize = original.bulkMaxRequestSize;
+      this.autoflushMs = original.autoflushMs;
+      this.useBulkApi = original.useBulkApi;
+    }
+
+    /**
+     * The maximum number of row mutations to send in a single MutateRowsRequest.
+     */
+    public Builder setBulkMaxRowKeyCount(int bulkMaxRowKeyCount) {
+      Preconditions.checkArgument(bulkMaxRowKeyCount > 0,
+        "bulkMaxRowKeyCount must be greater than 0.");
+      this.bulkMaxRowKeyCount = bulkMaxRowKeyCount;
+      return this;
+    }
+
+    /**
+     * The maximum approximate size in bytes of a single MutateRowsRequest.
+     */
+    public Builder setBulkMaxRequestSize(long bulkMaxRequestSize) {
+      Preconditions.checkArgument(bulkMaxRequestSize > 0,
+        "bulkMaxRequestSize must be greater than 0.");
+      this.bulkMaxRequestSize = bulkMaxRequestSize;
+      return this;
+    }
+
+    /**
+     * The amount of time in milliseconds after which a partially filled batch will be sent. 0
+     * means that partial batches are only sent on flush.
+     */
+    public Builder setAutoflushMs(long autoflushMs) {
+      Preconditions.checkArgument(autoflushMs >= 0, "autoflushMs must be 0 or greater.");
+      this.autoflushMs = autoflushMs;
+      return this;
+    }
+
+    /**
+     * Whether buffered Puts and Deletes should be sent in MutateRowsRequests rather than one
+     * MutateRowRequest per mutation.
+     */
+    public Builder setUseBulkApi(boolean useBulkApi) {
+      this.useBulkApi = useBulkApi;
+      return this;
+    }
+
+    /**
+     * Construct a new BulkOptions object.
+     */
+    public BulkOptions build() {
+      return new BulkOptions(bulkMaxRowKeyCount, bulkMaxRequestSize, autoflushMs, useBulkApi);
+    }
+  }
+
+  private final int bulkMaxRowKeyCount;
+  private final long bulkMaxRequestSize;
+  private final long autoflushMs;
+  private final boolean useBulkApi;
+
+  private BulkOptions(int bulkMaxRowKeyCount, long bulkMaxRequestSize, long autoflushMs,
+      boolean useBulkApi) {
+    this.bulkMaxRowKeyCount = bulkMaxRowKeyCount;
+    this.bulkMaxRequestSize = bulkMaxRequestSize;
+    this.autoflushMs = autoflushMs;
+    this.useBulkApi = useBulkApi;
+  }
+
+  /**
+   * The maximum number of row mutations to send in a single MutateRowsRequest.
+   */
+  public int getBulkMaxRowKeyCount() {
+    return bulkMaxRowKeyCount;
+  }
+
+  /**
+   * The maximum approximate size in bytes of a single MutateRowsRequest.
+   */
+  public long getBulkMaxRequestSize() {
+    return bulkMaxRequestSize;
+  }
+
+  /**
+   * The amount of time in milliseconds after which a partially filled batch will be sent.
+   */
+  public long getAutoflushMs() {
+    return autoflushMs;
+  }
+
+  /**
+   * Whether buffered Puts and Deletes should be sent in MutateRowsRequests.
+   */
+  public boolean useBulkApi() {
+    return useBulkApi;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == null || obj.getClass() != BulkOptions.class) {
+      return false;
+    }
+    if (this == obj) {
+      return true;
+    }
+    BulkOptions other = (BulkOptions) obj;
+    return bulkMaxRowKeyCount == other.bulkMaxRowKeyCount
+        && bulkMaxRequestSize == other.bulkMaxRequestSize
+        && autoflushMs == other.autoflushMs
+        && useBulkApi == other.useBulkApi;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("bulkMaxRowKeyCount", bulkMaxRowKeyCount)
+        .add("bulkMaxRequestSize", bulkMaxRequestSize)
+        .add("autoflushMs", autoflushMs)
+        .add("useBulkApi", useBulkApi)
+        .toString();
+  }
+
+  public Builder toBuilder() {
+    return new Builder(this);
+  }
+}
@@ -0,0 +1,628 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.config;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for controlling the gRPC channels to Bigtable, and how calls are spread across a
+ * {@link com.google.cloud.bigtable.grpc.io.ChannelPool}.
+ */
+public class ChannelOptions implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * How a {@link com.google.cloud.bigtable.grpc.io.ChannelPool} picks the channel for a new call.
+   */
+  public enum SelectionStrategy {
+    /**
+     * Each call goes to the next channel in the pool.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Each call goes to the channel with the fewest active calls. Ties go to the next channel in
+     * round robin order.
+     */
+    LEAST_OUTSTANDING,
+
+    /**
+     * Each call goes to the channel with fewer active calls out of two randomly chosen channels.
+     */
+    POWER_OF_TWO_CHOICES
+  }
+
+  /**
+   * The netty transport that the channels use for I/O.
+   */
+  public enum Transport {
+    /**
+     * Java NIO, which works on all platforms.
+     */
+    NIO,
+
+    /**
+     * Netty's native epoll transport, which is only available on Linux, and requires
+     * netty-transport-native-epoll on the classpath. NIO is used if epoll is not available.
+     */
+    EPOLL
+  }
+
+  /**
+   * The default strategy for picking the channel for a new call (default value:
+   * {@link SelectionStrategy#LEAST_OUTSTANDING}).
+   */
+  public static final SelectionStrategy BIGTABLE_CHANNEL_SELECTION_STRATEGY_DEFAULT =
+      SelectionStrategy.LEAST_OUTSTANDING;
+
+  /**
+   * The average number of active calls per channel at which an elastic pool adds a channel
+   * (default value: 0, which disables elastic scaling and keeps the pool at its full size).
+   */
+  public static final int BIGTABLE_MAX_STREAMS_PER_CHANNEL_DEFAULT = 0;
+
+  /**
+   * The minimum number of channels in an elastic pool (default value: 1).
+   */
+  public static final int BIGTABLE_MIN_CHANNEL_COUNT_DEFAULT = 1;
+
+  /**
+   * The quiet period after which an elastic pool removes the channels that it no longer needs
+   * (default value: 1 minute).
+   */
+  public static final long BIGTABLE_CHANNEL_IDLE_TIMEOUT_MS_DEFAULT = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * The default netty transport (default value: {@link Transport#NIO}).
+   */
+  public static final Transport BIGTABLE_TRANSPORT_DEFAULT = Transport.NIO;
+
+  /**
+   * The number of event loop threads that perform the channels' I/O (default value: 0, which uses
+   * netty's default of twice the number of processors).
+   */
+  public static final int BIGTABLE_EVENT_LOOP_THREAD_COUNT_DEFAULT = 0;
+
+  /**
+   * The HTTP/2 flow control window of each channel, in bytes (default value: 1 MB).
+   */
+  public static final int BIGTABLE_FLOW_CONTROL_WINDOW_DEFAULT = 1 << 20;
+
+  /**
+   * Whether the flow control window of new channels is tuned based on the measured
+   * bandwidth-delay product (default value: false).
+   */
+  public static final boolean BIGTABLE_AUTO_TUNE_FLOW_CONTROL_WINDOW_DEFAULT = false;
+
+  /**
+   * The largest flow control window that auto-tuning will set, in bytes (default value: 16 MB).
+   */
+  public static final int BIGTABLE_MAX_FLOW_CONTROL_WINDOW_DEFAULT = 16 << 20;
+
+  /**
+   * The maximum size of a message that a channel will receive (default value: 256 MB, which is the
+   * server's limit).
+   */
+  public static final int BIGTABLE_MAX_MESSAGE_SIZE_DEFAULT = 256 << 20;
+
+  /**
+   * Whether a session creates and connects all of its data channels when it opens, instead of on
+   * the first call (default value: false).
+   */
+  public static final boolean BIGTABLE_WARM_UP_CHANNELS_DEFAULT = false;
+
+  /**
+   * The maximum amount of time that opening a session waits for its data channels to connect,
+   * when {@link #isWarmUpChannels()}, and that a replacement channel waits to connect before it
+   * gets calls (default value: 10 seconds).
+   */
+  public static final long BIGTABLE_WARM_UP_TIMEOUT_MS_DEFAULT = TimeUnit.SECONDS.toMillis(10);
+
+  /**
+   * How long a connection can go without receiving anything before a keepalive ping is sent, or 0
+   * to disable keepalive pings (default value: 0).
+   */
+  public static final long BIGTABLE_KEEP_ALIVE_TIME_MS_DEFAULT = 0;
+
+  /**
+   * How long to wait for the acknowledgement of a keepalive ping before closing the connection
+   * (default value: 20 seconds).
+   */
+  public static final long BIGTABLE_KEEP_ALIVE_TIMEOUT_MS_DEFAULT = TimeUnit.SECONDS.toMillis(20);
+
+  /**
+   * Whether keepalive pings are sent on connections that have no active calls (default value:
+   * false).
+   */
+  public static final boolean BIGTABLE_KEEP_ALIVE_WITHOUT_CALLS_DEFAULT = false;
+
+  /**
+   * Whether the channels of a pool are spread across all of the addresses that the host resolves
+   * to (default value: false).
+   */
+  public static final boolean BIGTABLE_SPREAD_ACROSS_ADDRESSES_DEFAULT = false;
+
+  /**
+   * How old the last resolution of a host's addresses can be before a new channel resolves the
+   * host again (default value: 5 minutes).
+   */
+  public static final long BIGTABLE_ADDRESS_RESOLUTION_INTERVAL_MS_DEFAULT =
+      TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * A Builder for ChannelOptions objects.
+   */
+  public static class Builder {
+    private SelectionStrategy selectionStrategy = BIGTABLE_CHANNEL_SELECTION_STRATEGY_DEFAULT;
+    private int maxStreamsPerChannel = BIGTABLE_MAX_STREAMS_PER_CHANNEL_DEFAULT;
+    private int minChannelCount = BIGTABLE_MIN_CHANNEL_COUNT_DEFAULT;
+    private long channelIdleTimeoutMs = BIGTABLE_CHANNEL_IDLE_TIMEOUT_MS_DEFAULT;
+    private Transport transport = BIGTABLE_TRANSPORT_DEFAULT;
+    private int eventLoopThreadCount = BIGTABLE_EVENT_LOOP_THREAD_COUNT_DEFAULT;
+    private int flowControlWindow = BIGTABLE_FLOW_CONTROL_WINDOW_DEFAULT;
+    private boolean autoTuneFlowControlWindow = BIGTABLE_AUTO_TUNE_FLOW_CONTROL_WINDOW_DEFAULT;
+    private int maxFlowControlWindow = BIGTABLE_MAX_FLOW_CONTROL_WINDOW_DEFAULT;
+    private int maxMessageSize = BIGTABLE_MAX_MESSAGE_SIZE_DEFAULT;
+    private boolean warmUpChannels = BIGTABLE_WARM_UP_CHANNELS_DEFAULT;
+    private long warmUpTimeoutMs = BIGTABLE_WARM_UP_TIMEOUT_MS_DEFAULT;
+    private long keepAliveTimeMs = BIGTABLE_KEEP_ALIVE_TIME_MS_DEFAULT;
+    private long keepAliveTimeoutMs = BIGTABLE_KEEP_ALIVE_TIMEOUT_MS_DEFAULT;
+    private boolean keepAliveWithoutCalls = BIGTABLE_KEEP_ALIVE_WITHOUT_CALLS_DEFAULT;
+    private boolean spreadAcrossAddresses = BIGTABLE_SPREAD_ACROSS_ADDRESSES_DEFAULT;
+    private long addressResolutionIntervalMs = BIGTABLE_ADDRESS_RESOLUTION_INTERVAL_MS_DEFAULT;
+
+    public Builder() {
+    }
+
+    private Builder(ChannelOptions original) {
+      this.selectionStrategy = original.selectionStrategy;
+      this.maxStreamsPerChannel = original.maxStreamsPerChannel;
+      this.minChannelCount = original.minChannelCount;
+      this.channelIdleTimeoutMs = original.channelIdleTimeoutMs;
+      this.transport = original.transport;
+      this.eventLoopThreadCount = original.eventLoopThreadCount;
+      this.flowControlWindow = original.flowControlWindow;
+      this.autoTuneFlowControlWindow = original.autoTuneFlowControlWindow;
+      this.maxFlowControlWindow = original.maxFlowControlWindow;
+      this.maxMessageSize = original.maxMessageSize;
+      this.warmUpChannels = original.warmUpChannels;
+      this.warmUpTimeoutMs = original.warmUpTimeoutMs;
+      this.keepAliveTimeMs = original.keepAliveTimeMs;
+      this.keepAliveTimeoutMs = original.keepAliveTimeoutMs;
+      this.keepAliveWithoutCalls = original.keepAliveWithoutCalls;
+      this.spreadAcrossAddresses = original.spreadAcrossAddresses;
+      this.addressResolutionIntervalMs = original.addressResolutionIntervalMs;
+    }
+
+    /**
+     * How the channel for a new call is picked out of the pool.
+     */
+    public Builder setSelectionStrategy(SelectionStrategy selectionStrategy) {
+      this.selectionStrategy =
+          Preconditions.checkNotNull(selectionStrategy, "selectionStrategy cannot be null.");
+      return this;
+    }
+
+    /**
+     * The average number of active calls per channel at which the pool adds a channel, up to
+     * {@link BigtableOptions#getChannelCount()} channels. This should stay below the server's
+     * HTTP/2 maximum number of concurrent streams. 0 disables elastic scaling.
+     */
+    public Builder setMaxStreamsPerChannel(int maxStreamsPerChannel) {
+      Preconditions.checkArgument(maxStreamsPerChannel >= 0,
+        "maxStreamsPerChannel must be 0 or greater.");
+      this.maxStreamsPerChannel = maxStreamsPerChannel;
+      return this;
+    }
+
+    /**
+     * The number of channels that an elastic pool keeps even when it is idle.
+     */
+    public Builder setMinChannelCount(int minChannelCount) {
+      Preconditions.checkArgument(minChannelCount > 0, "minChannelCount must be greater than 0.");
+      this.minChannelCount = minChannelCount;
+      return this;
+    }
+
+    /**
+     * The amount of time in milliseconds over which an elastic pool measures its peak number of
+     * active calls. At the end of each period, the channels that were not needed for the peak are
+     * shut down.
+     */
+    public Builder setChannelIdleTimeoutMs(long channelIdleTimeoutMs) {
+      Preconditions.checkArgument(channelIdleTimeoutMs > 0,
+        "channelIdleTimeoutMs must be greater than 0.");
+      this.channelIdleTimeoutMs = channelIdleTimeoutMs;
+      return this;
+    }
+
+    /**
+     * The netty transport that the channels use for I/O.
+     */
+    public Builder setTransport(Transport transport) {
+      this.transport = Preconditions.checkNotNull(transport, "transport cannot be null.");
+      return this;
+    }
+
+    /**
+     * The number of event loop threads that perform the channels' I/O. 0 uses netty's default.
+     */
+    public Builder setEventLoopThreadCount(int eventLoopThreadCount) {
+      Preconditions.checkArgument(eventLoopThreadCount >= 0,
+        "eventLoopThreadCount must be 0 or greater.");
+      this.eventLoopThreadCount = eventLoopThreadCount;
+      return this;
+    }
+
+    /**
+     * The HTTP/2 flow control window of each channel, in bytes. With auto-tuning, this is the
+     * window of the first channels.
+     */
+    public Builder setFlowControlWindow(int flowControlWindow) {
+      Preconditions.checkArgument(flowControlWindow > 0,
+        "flowControlWindow must be greater than 0.");
+      this.flowControlWindow = flowControlWindow;
+      return this;
+    }
+
+    /**
+     * Whether the flow control window of new channels is grown to match the measured
+     * bandwidth-delay product of the connections. Existing channels keep their window, so the
+     * tuned window only reaches all of the channels once they were replaced after
+     * {@link BigtableOptions#getTimeoutMs()}. Auto-tuning is ignored if that timeout is 0 and the
+     * pool isn't elastic.
+     */
+    public Builder setAutoTuneFlowControlWindow(boolean autoTuneFlowControlWindow) {
+      this.autoTuneFlowControlWindow = autoTuneFlowControlWindow;
+      return this;
+    }
+
+    /**
+     * The largest flow control window that auto-tuning will set, in bytes.
+     */
+    public Builder setMaxFlowControlWindow(int maxFlowControlWindow) {
+      Preconditions.checkArgument(maxFlowControlWindow > 0,
+        "maxFlowControlWindow must be greater than 0.");
+      this.maxFlowControlWindow = maxFlowControlWindow;
+      return this;
+    }
+
+    /**
+     * The maximum size of a message that a channel will receive, in bytes.
+     */
+    public Builder setMaxMessageSize(int maxMessageSize) {
+      Preconditions.checkArgument(maxMessageSize > 0, "maxMessageSize must be greater than 0.");
+      this.maxMessageSize = maxMessageSize;
+      return this;
+    }
+
+    /**
+     * Whether a session creates and connects all of its data channels in parallel when it opens,
+     * instead of on the first call.
+     */
+    public Builder setWarmUpChannels(boolean warmUpChannels) {
+      this.warmUpChannels = warmUpChannels;
+      return this;
+    }
+
+    /**
+     * The maximum amount of time that opening a session waits for its data channels to connect,
+     * and that a channel that replaces an old channel waits to connect before it gets calls.
+     */
+    public Builder setWarmUpTimeoutMs(long warmUpTimeoutMs) {
+      Preconditions.checkArgument(warmUpTimeoutMs > 0, "warmUpTimeoutMs must be greater than 0.");
+      this.warmUpTimeoutMs = warmUpTimeoutMs;
+      return this;
+    }
+
+    /**
+     * How long a connection can go without receiving anything before a keepalive ping is sent, or
+     * 0 to disable keepalive pings.
+     */
+    public Builder setKeepAliveTimeMs(long keepAliveTimeMs) {
+      Preconditions.checkArgument(keepAliveTimeMs >= 0, "keepAliveTimeMs must be 0 or greater.");
+      this.keepAliveTimeMs = keepAliveTimeMs;
+      return this;
+    }
+
+    /**
+     * How long to wait for the acknowledgement of a keepalive ping before closing the connection.
+     */
+    public Builder setKeepAliveTimeoutMs(long keepAliveTimeoutMs) {
+      Preconditions.checkArgument(keepAliveTimeoutMs > 0,
+        "keepAliveTimeoutMs must be greater than 0.");
+      this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+      return this;
+    }
+
+    /**
+     * Whether keepalive pings are sent on connections that have no active calls.
+     */
+    public Builder setKeepAliveWithoutCalls(boolean keepAliveWithoutCalls) {
+      this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+      return this;
+    }
+
+    /**
+     * Whether the channels of a pool are spread across all of the addresses that the host resolves
+     * to, instead of each channel resolving the host on its own.
+     */
+    public Builder setSpreadAcrossAddresses(boolean spreadAcrossAddresses) {
+      this.spreadAcrossAddresses = spreadAcrossAddresses;
+      return this;
+    }
+
+    /**
+     * How old the last resolution of a host's addresses can be before a new channel resolves the
+     * host again.
+     */
+    public Builder setAddressResolutionIntervalMs(long addressResolutionIntervalMs) {
+      Preconditions.checkArgument(addressResolutionIntervalMs >= 0,
+        "addressResolutionIntervalMs must be 0 or greater.");
+      this.addressResolutionIntervalMs = addressResolutionIntervalMs;
+      return this;
+    }
+
+    /**
+     * Construct a new ChannelOptions object.
+     */
+    public ChannelOptions build() {
+      return new ChannelOptions(selectionStrategy, maxStreamsPerChannel, minChannelCount,
+          channelIdleTimeoutMs, transport, eventLoopThreadCount, flowControlWindow,
+          autoTuneFlowControlWindow, Math.max(flowControlWindow, maxFlowControlWindow),
+          maxMessageSize, warmUpChannels, warmUpTimeoutMs, keepAliveTimeMs, keepAliveTimeoutMs,
+          keepAliveWithoutCalls, spreadAcrossAddresses, addressResolutionIntervalMs);
+    }
+  }
+
+  private final SelectionStrategy selectionStrategy;
+  private final int maxStreamsPerChannel;
+  private final int minChannelCount;
+  private final long channelIdleTimeoutMs;
+  private final Transport transport;
+  private final int eventLoopThreadCount;
+  private final int flowControlWindow;
+  private final boolean autoTuneFlowControlWindow;
+  private final int maxFlowControlWindow;
+  private final int maxMessageSize;
+  private final boolean warmUpChannels;
+  private final long warmUpTimeoutMs;
+  private final long keepAliveTimeMs;
+  private final long keepAliveTimeoutMs;
+  private final boolean keepAliveWithoutCalls;
+  private final boolean spreadAcrossAddresses;
+  private final long addressResolutionIntervalMs;
+
+  private ChannelOptions(SelectionStrategy selectionStrategy, int maxStreamsPerChannel,
+      int minChannelCount, long channelIdleTimeoutMs, Transport transport,
+      int eventLoopThreadCount, int flowControlWindow, boolean autoTuneFlowControlWindow,
+      int maxFlowControlWindow, int maxMessageSize, boolean warmUpChannels,
+      long warmUpTimeoutMs, long keepAliveTimeMs, long keepAliveTimeoutMs,
+      boolean keepAliveWithoutCalls, boolean spreadAcrossAddresses,
+      long addressResolutionIntervalMs) {
+    this.selectionStrategy = selectionStrategy;
+    this.maxStreamsPerChannel = maxStreamsPerChannel;
+    this.minChannelCount = minChannelCount;
+    this.channelIdleTimeoutMs = channelIdleTimeoutMs;
+    this.transport = transport;
+    this.eventLoopThreadCount = eventLoopThreadCount;
+    this.flowControlWindow = flowControlWindow;
+    this.autoTuneFlowControlWindow = autoTuneFlowControlWindow;
+    this.maxFlowControlWindow = maxFlowControlWindow;
+    this.maxMessageSize = maxMessageSize;
+    this.warmUpChannels = warmUpChannels;
+    this.warmUpTimeoutMs = warmUpTimeoutMs;
+    this.keepAliveTimeMs = keepAliveTimeMs;
+    this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+    this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+    this.spreadAcrossAddresses = spreadAcrossAddresses;
+    this.addressResolutionIntervalMs = addressResolutionIntervalMs;
+  }
+
+  /**
+   * How the channel for a new call is picked out of the pool.
+   */
+  public SelectionStrategy getSelectionStrategy() {
+    return selectionStrategy;
+  }
+
+  /**
+   * The average number of active calls per channel at which the pool adds a channel. 0 means that
+   * elastic scaling is disabled.
+   */
+  public int getMaxStreamsPerChannel() {
+    return maxStreamsPerChannel;
+  }
+
+  /**
+   * Whether the pool scales its number of channels with the number of active calls.
+   */
+  public boolean isElastic() {
+    return maxStreamsPerChannel > 0;
+  }
+
+  /**
+   * The number of channels that an elastic pool keeps even when it is idle.
+   */
+  public int getMinChannelCount() {
+    return minChannelCount;
+  }
+
+  /**
+   * The amount of time in milliseconds after which an elastic pool removes unneeded channels.
+   */
+  public long getChannelIdleTimeoutMs() {
+    return channelIdleTimeoutMs;
+  }
+
+  /**
+   * The netty transport that the channels use for I/O.
+   */
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * The number of event loop threads that perform the channels' I/O. 0 means netty's default.
+   */
+  public int getEventLoopThreadCount() {
+    return eventLoopThreadCount;
+  }
+
+  /**
+   * The HTTP/2 flow control window of each channel, in bytes. With auto-tuning, this is the window
+   * of the first channels.
+   */
+  public int getFlowControlWindow() {
+    return flowControlWindow;
+  }
+
+  /**
+   * Whether the flow control window of new channels is grown to match the measured
+   * bandwidth-delay product of the connections.
+   */
+  public boolean isAutoTuneFlowControlWindow() {
+    return autoTuneFlowControlWindow;
+  }
+
+  /**
+   * The largest flow control window that auto-tuning will set, in bytes.
+   */
+  public int getMaxFlowControlWindow() {
+    return maxFlowControlWindow;
+  }
+
+  /**
+   * The maximum size of a message that a channel will receive, in bytes.
+   */
+  public int getMaxMessageSize() {
+    return maxMessageSize;
+  }
+
+  /**
+   * Whether a session creates and connects all of its data channels in parallel when it opens,
+   * instead of on the first call.
+   */
+  public boolean isWarmUpChannels() {
+    return warmUpChannels;
+  }
+
+  /**
+   * The maximum amount of time that opening a session waits for its data channels to connect,
+   * and that a channel that replaces an old channel waits to connect before it gets calls.
+   */
+  public long getWarmUpTimeoutMs() {
+    return warmUpTimeoutMs;
+  }
+
+  /**
+   * How long a connection can go without receiving anything before a keepalive ping is sent, or 0
+   * if keepalive pings are disabled.
+   */
+  public long getKeepAliveTimeMs() {
+    return keepAliveTimeMs;
+  }
+
+  /**
+   * How long to wait for the acknowledgement of a keepalive ping before closing the connection.
+   */
+  public long getKeepAliveTimeoutMs() {
+    return keepAliveTimeoutMs;
+  }
+
+  /**
+   * Whether keepalive pings are sent on connections that have no active calls.
+   */
+  public boolean isKeepAliveWithoutCalls() {
+    return keepAliveWithoutCalls;
+  }
+
+  /**
+   * Whether the channels of a pool are spread across all of the addresses that the host resolves
+   * to, instead of each channel resolving the host on its own.
+   */
+  public boolean isSpreadAcrossAddresses() {
+    return spreadAcrossAddresses;
+  }
+
+  /**
+   * How old the last resolution of a host's addresses can be before a new channel resolves the
+   * host again.
+   */
+  public long getAddressResolutionIntervalMs() {
+    return addressResolutionIntervalMs;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == null || obj.getClass() != ChannelOptions.class) {
+      return false;
+    }
+    if (this == obj) {
+      return true;
+    }
+    ChannelOptions other = (ChannelOptions) obj;
+    return selectionStrategy == other.selectionStrategy
+        && maxStreamsPerChannel == other.maxStreamsPerChannel
+        && minChannelCount == other.minChannelCount
+        && channelIdleTimeoutMs == other.channelIdleTimeoutMs
+        && transport == other.transport
+        && eventLoopThreadCount == other.eventLoopThreadCount
+        && flowControlWindow == other.flowControlWindow
+        && autoTuneFlowControlWindow == other.autoTuneFlowControlWindow
+        && maxFlowControlWindow == other.maxFlowControlWindow
+        && maxMessageSize == other.maxMessageSize
+        && warmUpChannels == other.warmUpChannels
+        && warmUpTimeoutMs == other.warmUpTimeoutMs
+        && keepAliveTimeMs == other.keepAliveTimeMs
+        && keepAliveTimeoutMs == other.keepAliveTimeoutMs
+        && keepAliveWithoutCalls == other.keepAliveWithoutCalls
+        && spreadAcrossAddresses == other.spreadAcrossAddresses
+        && addressResolutionIntervalMs == other.addressResolutionIntervalMs;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("selectionStrategy", selectionStrategy)
+        .add("maxStreamsPerChannel", maxStreamsPerChannel)
+        .add("minChannelCount", minChannelCount)
+        .add("channelIdleTimeoutMs", channelIdleTimeoutMs)
+        .add("transport", transport)
+        .add("eventLoopThreadCount", eventLoopThreadCount)
+        .add("flowControlWindow", flowControlWindow)
+        .add("autoTuneFlowControlWindow", autoTuneFlowControlWindow)
+        .add("maxFlowControlWindow", maxFlowControlWindow)
+        .add("maxMessageSize", maxMessageSize)
+        .add("warmUpChannels", warmUpChannels)
+        .add("warmUpTimeoutMs", warmUpTimeoutMs)
+        .add("keepAliveTimeMs", keepAliveTimeMs)
+        .add("keepAliveTimeoutMs", keepAliveTimeoutMs)
+        .add("keepAliveWithoutCalls", keepAliveWithoutCalls)
+        .add("spreadAcrossAddresses", spreadAcrossAddresses)
+        .add("addressResolutionIntervalMs", addressResolutionIntervalMs)
+        .toString();
+  }
+
+  public Builder toBuilder() {
+    return new Builder(this);
+  }
+}
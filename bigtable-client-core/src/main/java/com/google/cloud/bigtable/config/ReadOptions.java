@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.config;
+
+import java.io.Serializable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for controlling how single row reads are grouped into multi-row reads by a
+ * {@link com.google.cloud.bigtable.grpc.async.ReadCoalescer}, and how scans are split into
+ * sub-scans by a {@link com.google.cloud.bigtable.grpc.scanner.ParallelResultScanner}.
+ */
+public class ReadOptions implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The amount of time a single row read waits for other reads to be grouped with (default value:
+   * 0, which disables read coalescing).
+   */
+  public static final long BIGTABLE_READ_COALESCING_WINDOW_MICROS_DEFAULT = 0;
+
+  /**
+   * The maximum number of row keys in a single coalesced read (default value: 100).
+   */
+  public static final int BIGTABLE_READ_COALESCING_MAX_ROW_KEY_COUNT_DEFAULT = 100;
+
+  /**
+   * The maximum number of concurrent sub-scans that a scan is split into (default value: 1, which
+   * disables parallel scans).
+   */
+  public static final int BIGTABLE_READ_PARALLEL_SCAN_COUNT_DEFAULT = 1;
+
+  /**
+   * Whether parallel scans return rows in key order (default value: true).
+   */
+  public static final boolean BIGTABLE_READ_PARALLEL_SCAN_ORDERED_DEFAULT = true;
+
+  /**
+   * A Builder for ReadOptions objects.
+   */
+  public static class Builder {
+    private long coalescingWindowMicros = BIGTABLE_READ_COALESCING_WINDOW_MICROS_DEFAULT;
+    private int coalescingMaxRowKeyCount = BIGTABLE_READ_COALESCING_MAX_ROW_KEY_COUNT_DEFAULT;
+    private int parallelScanCount = BIGTABLE_READ_PARALLEL_SCAN_COUNT_DEFAULT;
+    private boolean parallelScanOrdered = BIGTABLE_READ_PARALLEL_SCAN_ORDERED_DEFAULT;
+
+    public Builder() {
+    }
+
+    private Builder(ReadOptions original) {
+      this.coalescingWindowMicros = original.coalescingWindowMicros;
+      this.coalescingMaxRowKeyCount = original.coalescingMaxRowKeyCount;
+      this.parallelScanCount = original.parallelScanCount;
+      this.parallelScanOrdered = original.parallelScanOrdered;
+    }
+
+    /**
+     * The amount of time in microseconds that a single row read waits for other reads with the
+     * same table and filter, so that they can be sent as one multi-row read. 0 disables read
+     * coalescing.
+     */
+    public Builder setCoalescingWindowMicros(long coalescingWindowMicros) {
+      Preconditions.checkArgument(coalescingWindowMicros >= 0,
+        "coalescingWindowMicros must be 0 or greater.");
+      this.coalescingWindowMicros = coalescingWindowMicros;
+      return this;
+    }
+
+    /**
+     * The maximum number of row keys in a single coalesced read. A read is sent as soon as it
+     * reaches this number of keys.
+     */
+    public Builder setCoalescingMaxRowKeyCount(int coalescingMaxRowKeyCount) {
+      Preconditions.checkArgument(coalescingMaxRowKeyCount > 0,
+        "coalescingMaxRowKeyCount must be greater than 0.");
+      this.coalescingMaxRowKeyCount = coalescingMaxRowKeyCount;
+      return this;
+    }
+
+    /**
+     * The maximum number of concurrent sub-scans that a scan is split into at tablet boundaries. 1
+     * disables parallel scans.
+     */
+    public Builder setParallelScanCount(int parallelScanCount) {
+      Preconditions.checkArgument(parallelScanCount > 0,
+        "parallelScanCount must be greater than 0.");
+      this.parallelScanCount = parallelScanCount;
+      return this;
+    }
+
+    /**
+     * Whether parallel scans return rows in key order. Unordered scans return rows as soon as any
+     * sub-scan reads them.
+     */
+    public Builder setParallelScanOrdered(boolean parallelScanOrdered) {
+      this.parallelScanOrdered = parallelScanOrdered;
+      return this;
+    }
+
+    /**
+     * Construct a new ReadOptions object.
+     */
+    public ReadOptions build() {
+      return new ReadOptions(coalescingWindowMicros, coalescingMaxRowKeyCount, parallelScanCount,
+          parallelScanOrdered);
+    }
+  }
+
+  private final long coalescingWindowMicros;
+  private final int coalescingMaxRowKeyCount;
+  private final int parallelScanCount;
+  private final boolean parallelScanOrdered;
+
+  private ReadOptions(long coalescingWindowMicros, int coalescingMaxRowKeyCount,
+      int parallelScanCount, boolean parallelScanOrdered) {
+    this.coalescingWindowMicros = coalescingWindowMicros;
+    this.coalescingMaxRowKeyCount = coalescingMaxRowKeyCount;
+    this.parallelScanCount = parallelScanCount;
+    this.parallelScanOrdered = parallelScanOrdered;
+  }
+
+  /**
+   * The amount of time in microseconds that a single row read waits to be grouped with other
+   * reads. 0 means that read coalescing is disabled.
+   */
+  public long getCoalescingWindowMicros() {
+    return coalescingWindowMicros;
+  }
+
+  /**
+   * The maximum number of row keys in a single coalesced read.
+   */
+  public int getCoalescingMaxRowKeyCount() {
+    return coalescingMaxRowKeyCount;
+  }
+
+  /**
+   * The maximum number of concurrent sub-scans that a scan is split into. 1 means that parallel
+   * scans are disabled.
+   */
+  public int getParallelScanCount() {
+    return parallelScanCount;
+  }
+
+  /**
+   * Whether parallel scans return rows in key order.
+   */
+  public boolean isParallelScanOrdered() {
+    return parallelScanOrdered;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == null || obj.getClass() != ReadOptions.class) {
+      return false;
+    }
+    if (this == obj) {
+      return true;
+    }
+    ReadOptions other = (ReadOptions) obj;
+    return coalescingWindowMicros == other.coalescingWindowMicros
+        && coalescingMaxRowKeyCount == other.coalescingMaxRowKeyCount
+        && parallelScanCount == other.parallelScanCount
+        && parallelScanOrdered == other.parallelScanOrdered;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("coalescingWindowMicros", coalescingWindowMicros)
+        .add("coalescingMaxRowKeyCount", coalescingMaxRowKeyCount)
+        .add("parallelScanCount", parallelScanCount)
+        .add("parallelScanOrdered", parallelScanOrdered)
+        .toString();
+  }
+
+  public Builder toBuilder() {
+    return new Builder(this);
+  }
+}
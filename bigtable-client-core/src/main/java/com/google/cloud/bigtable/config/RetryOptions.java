@@ -23,6 +23,7 @@ import java.util.concurrent.TimeUnit;
 import com.google.api.client.util.BackOff;
 import com.google.api.client.util.ExponentialBackOff;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 
 /**
  * Options for retrying requests, including back off configuration.
@@ -34,6 +35,18 @@ public class RetryOptions implements Serializable {
   public static int DEFAULT_STREAMING_BUFFER_SIZE = 60;
   public static int DEFAULT_STREAMING_BATCH_SIZE = DEFAULT_STREAMING_BUFFER_SIZE / 2;
 
+  /**
+   * The maximum number of bytes of responses that a scanner buffers, or 0 to limit the buffer by
+   * {@link #DEFAULT_STREAMING_BUFFER_SIZE messages} instead (default value: 16 MB).
+   */
+  public static final long DEFAULT_STREAMING_BUFFER_BYTES = 16 * 1024 * 1024;
+
+  /**
+   * The maximum number of bytes of responses that all of the scanners in the JVM buffer, or 0 for
+   * no global limit (default value: 0).
+   */
+  public static final long DEFAULT_GLOBAL_STREAMING_BUFFER_BYTES = 0;
+
   /**
    * Flag indicating whether or not grpc retries should be enabled.
    * The default is to enable retries on failed idempotent operations.
@@ -67,6 +80,59 @@ public class RetryOptions implements Serializable {
   public static final int DEFAULT_MAX_ELAPSED_BACKOFF_MILLIS =
       (int) TimeUnit.MILLISECONDS.convert(60, TimeUnit.SECONDS);
 
+  /**
+   * The fraction by which each back off is randomly shortened or lengthened, so that clients that
+   * failed at the same time don't all retry at the same time.
+   */
+  public static final double BACKOFF_RANDOMIZATION_FACTOR = 0.5;
+
+  /**
+   * The deadline of each attempt of a unary RPC or a single row read, or 0 for no deadline
+   * (default value: 0).
+   */
+  public static final int DEFAULT_RPC_TIMEOUT_MS = 0;
+
+  /**
+   * The deadline of an operation across all of its attempts and the back offs between them, or 0
+   * to only limit retries by {@link #getMaxElaspedBackoffMillis()} (default value: 0).
+   */
+  public static final int DEFAULT_OPERATION_TIMEOUT_MS = 0;
+
+  /**
+   * The time to wait for a single row read before sending a hedged copy of it to another channel,
+   * or 0 to disable hedging (default value: 0).
+   */
+  public static final int DEFAULT_HEDGE_DELAY_MS = 0;
+
+  /**
+   * The percentile of recent single row read latencies to use as the hedging delay, or 0 to always
+   * use the fixed delay (default value: 0).
+   */
+  public static final double DEFAULT_HEDGE_LATENCY_PERCENTILE = 0;
+
+  /**
+   * The maximum number of hedged reads per single row read (default value: 0.05).
+   */
+  public static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+
+  /**
+   * The maximum number of retries per request across a session, or 0 for no limit (default value:
+   * 0).
+   */
+  public static final double DEFAULT_RETRY_BUDGET_RATIO = 0;
+
+  /**
+   * The fraction of failed calls at which the circuit breaker opens, or 0 to disable the circuit
+   * breaker (default value: 0).
+   */
+  public static final double DEFAULT_CIRCUIT_BREAKER_ERROR_THRESHOLD = 0;
+
+  /**
+   * The time that the circuit breaker stays open before it probes the service (default value: 5
+   * seconds).
+   */
+  public static final int DEFAULT_CIRCUIT_BREAKER_OPEN_MS = 5000;
+
   /**
    * A Builder for ChannelOptions objects.
    */
@@ -78,7 +144,20 @@ public class RetryOptions implements Serializable {
     private int maxElaspedBackoffMillis = DEFAULT_MAX_ELAPSED_BACKOFF_MILLIS;
     private int streamingBufferSize = DEFAULT_STREAMING_BUFFER_SIZE;
     private int streamingBatchSize = DEFAULT_STREAMING_BUFFER_SIZE;
+    private long streamingBufferBytes = DEFAULT_STREAMING_BUFFER_BYTES;
+    private long globalStreamingBufferBytes = DEFAULT_GLOBAL_STREAMING_BUFFER_BYTES;
     private int readPartialRowTimeoutMillis = DEFAULT_READ_PARTIAL_ROW_TIMEOUT_MS;
+    private int mutateRpcTimeoutMs = DEFAULT_RPC_TIMEOUT_MS;
+    private int checkAndMutateRpcTimeoutMs = DEFAULT_RPC_TIMEOUT_MS;
+    private int readModifyWriteRpcTimeoutMs = DEFAULT_RPC_TIMEOUT_MS;
+    private int readRowRpcTimeoutMs = DEFAULT_RPC_TIMEOUT_MS;
+    private int operationTimeoutMs = DEFAULT_OPERATION_TIMEOUT_MS;
+    private int hedgeDelayMs = DEFAULT_HEDGE_DELAY_MS;
+    private double hedgeLatencyPercentile = DEFAULT_HEDGE_LATENCY_PERCENTILE;
+    private double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+    private double retryBudgetRatio = DEFAULT_RETRY_BUDGET_RATIO;
+    private double circuitBreakerErrorThreshold = DEFAULT_CIRCUIT_BREAKER_ERROR_THRESHOLD;
+    private int circuitBreakerOpenMs = DEFAULT_CIRCUIT_BREAKER_OPEN_MS;
 
     /**
      * Enable or disable retries.
@@ -136,24 +215,161 @@ public class RetryOptions implements Serializable {
       return this;
     }
 
+    /**
+     * Set the maximum number of bytes of responses to buffer when scanning. 0 limits the buffer
+     * by {@link #setStreamingBufferSize(int) messages} instead.
+     */
+    public Builder setStreamingBufferBytes(long streamingBufferBytes) {
+      Preconditions.checkArgument(streamingBufferBytes >= 0,
+        "streamingBufferBytes must be at least 0.");
+      this.streamingBufferBytes = streamingBufferBytes;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of bytes of responses that all of the scanners in the JVM buffer. 0
+     * means no global limit. The first session to set a global limit decides it.
+     */
+    public Builder setGlobalStreamingBufferBytes(long globalStreamingBufferBytes) {
+      Preconditions.checkArgument(globalStreamingBufferBytes >= 0,
+        "globalStreamingBufferBytes must be at least 0.");
+      this.globalStreamingBufferBytes = globalStreamingBufferBytes;
+      return this;
+    }
+
     public Builder setReadPartialRowTimeoutMillis(int timeout) {
       this.readPartialRowTimeoutMillis = timeout;
       return this;
     }
 
+    /**
+     * Sets the deadline of each attempt of all unary RPCs and single row reads, in milliseconds.
+     * 0 means no deadline.
+     */
+    public Builder setRpcTimeoutMs(int rpcTimeoutMs) {
+      setMutateRpcTimeoutMs(rpcTimeoutMs);
+      setCheckAndMutateRpcTimeoutMs(rpcTimeoutMs);
+      setReadModifyWriteRpcTimeoutMs(rpcTimeoutMs);
+      setReadRowRpcTimeoutMs(rpcTimeoutMs);
+      return this;
+    }
+
+    /**
+     * The deadline of each attempt of a MutateRow or MutateRows RPC, in milliseconds. 0 means no
+     * deadline.
+     */
+    public Builder setMutateRpcTimeoutMs(int mutateRpcTimeoutMs) {
+      this.mutateRpcTimeoutMs = mutateRpcTimeoutMs;
+      return this;
+    }
+
+    /**
+     * The deadline of a CheckAndMutateRow RPC, in milliseconds. 0 means no deadline.
+     */
+    public Builder setCheckAndMutateRpcTimeoutMs(int checkAndMutateRpcTimeoutMs) {
+      this.checkAndMutateRpcTimeoutMs = checkAndMutateRpcTimeoutMs;
+      return this;
+    }
+
+    /**
+     * The deadline of a ReadModifyWriteRow RPC, in milliseconds. 0 means no deadline.
+     */
+    public Builder setReadModifyWriteRpcTimeoutMs(int readModifyWriteRpcTimeoutMs) {
+      this.readModifyWriteRpcTimeoutMs = readModifyWriteRpcTimeoutMs;
+      return this;
+    }
+
+    /**
+     * The deadline of each attempt of a single row read, in milliseconds. 0 means no deadline.
+     */
+    public Builder setReadRowRpcTimeoutMs(int readRowRpcTimeoutMs) {
+      this.readRowRpcTimeoutMs = readRowRpcTimeoutMs;
+      return this;
+    }
+
+    /**
+     * The deadline of an operation across all of its attempts and the back offs between them, in
+     * milliseconds. 0 means that retries are only limited by the maximum elapsed back off.
+     */
+    public Builder setOperationTimeoutMs(int operationTimeoutMs) {
+      this.operationTimeoutMs = operationTimeoutMs;
+      return this;
+    }
+
+    /**
+     * The time in milliseconds to wait for a single row read before sending a hedged copy of it on
+     * another channel. The first copy to respond wins, and the other is cancelled. 0 disables
+     * hedging.
+     */
+    public Builder setHedgeDelayMs(int hedgeDelayMs) {
+      Preconditions.checkArgument(hedgeDelayMs >= 0, "hedgeDelayMs must be at least 0.");
+      this.hedgeDelayMs = hedgeDelayMs;
+      return this;
+    }
+
+    /**
+     * If greater than 0, the hedging delay follows this percentile (e.g. 95) of recent single row
+     * read latencies, and {@link #setHedgeDelayMs(int)} is only used until there are enough
+     * samples.
+     */
+    public Builder setHedgeLatencyPercentile(double hedgeLatencyPercentile) {
+      Preconditions.checkArgument(hedgeLatencyPercentile >= 0 && hedgeLatencyPercentile < 100,
+        "hedgeLatencyPercentile must be between 0 and 100.");
+      this.hedgeLatencyPercentile = hedgeLatencyPercentile;
+      return this;
+    }
+
+    /**
+     * The maximum number of hedged reads per single row read, e.g. 0.05 for at most 5% extra
+     * load.
+     */
+    public Builder setMaxHedgeRatio(double maxHedgeRatio) {
+      Preconditions.checkArgument(maxHedgeRatio >= 0 && maxHedgeRatio <= 1,
+        "maxHedgeRatio must be between 0 and 1.");
+      this.maxHedgeRatio = maxHedgeRatio;
+      return this;
+    }
+
+    /**
+     * The maximum number of retries per request, shared by all of the operations of a session,
+     * e.g. 0.1 to cap retries at 10% of requests. 0 means that retries are only limited by the
+     * back off.
+     */
+    public Builder setRetryBudgetRatio(double retryBudgetRatio) {
+      Preconditions.checkArgument(retryBudgetRatio >= 0, "retryBudgetRatio must be at least 0.");
+      this.retryBudgetRatio = retryBudgetRatio;
+      return this;
+    }
+
+    /**
+     * The fraction of calls that fail with UNAVAILABLE, INTERNAL, DEADLINE_EXCEEDED or
+     * RESOURCE_EXHAUSTED at which a session's circuit breaker opens and fails calls fast. 0
+     * disables the circuit breaker.
+     */
+    public Builder setCircuitBreakerErrorThreshold(double circuitBreakerErrorThreshold) {
+      Preconditions.checkArgument(
+        circuitBreakerErrorThreshold >= 0 && circuitBreakerErrorThreshold <= 1,
+        "circuitBreakerErrorThreshold must be between 0 and 1.");
+      this.circuitBreakerErrorThreshold = circuitBreakerErrorThreshold;
+      return this;
+    }
+
+    /**
+     * The time in milliseconds that the circuit breaker stays open before it lets a probe call
+     * through.
+     */
+    public Builder setCircuitBreakerOpenMs(int circuitBreakerOpenMs) {
+      Preconditions.checkArgument(circuitBreakerOpenMs > 0,
+        "circuitBreakerOpenMs must be greater than 0.");
+      this.circuitBreakerOpenMs = circuitBreakerOpenMs;
+      return this;
+    }
+
     /**
      * Construct a new RetryOptions object.
      */
     public RetryOptions build() {
-      return new RetryOptions(
-          enableRetries,
-          retryOnDeadlineExceeded,
-          initialBackoffMillis,
-          backoffMultiplier,
-          maxElaspedBackoffMillis,
-          streamingBufferSize,
-          streamingBatchSize,
-          readPartialRowTimeoutMillis);
+      return new RetryOptions(this);
     }
   }
 
@@ -166,8 +382,20 @@ public class RetryOptions implements Serializable {
   private final double backoffMultiplier;
   private final int streamingBufferSize;
   private final int streamingBatchSize;
+  private final long streamingBufferBytes;
+  private final long globalStreamingBufferBytes;
   private final int readPartialRowTimeoutMillis;
-
+  private final int mutateRpcTimeoutMs;
+  private final int checkAndMutateRpcTimeoutMs;
+  private final int readModifyWriteRpcTimeoutMs;
+  private final int readRowRpcTimeoutMs;
+  private final int operationTimeoutMs;
+  private final int hedgeDelayMs;
+  private final double hedgeLatencyPercentile;
+  private final double maxHedgeRatio;
+  private final double retryBudgetRatio;
+  private final double circuitBreakerErrorThreshold;
+  private final int circuitBreakerOpenMs;
 
   public RetryOptions(
       boolean retriesEnabled,
@@ -178,14 +406,39 @@ public class RetryOptions implements Serializable {
       int streamingBufferSize,
       int streamingBatchSize,
       int readPartialRowTimeoutMillis) {
-    this.retriesEnabled = retriesEnabled;
-    this.retryOnDeadlineExceeded = retryOnDeadlineExceeded;
-    this.initialBackoffMillis = initialBackoffMillis;
-    this.maxElaspedBackoffMillis = maxElaspedBackoffMillis;
-    this.backoffMultiplier = backoffMultiplier;
-    this.streamingBufferSize = streamingBufferSize;
-    this.streamingBatchSize = streamingBatchSize;
-    this.readPartialRowTimeoutMillis = readPartialRowTimeoutMillis;
+    this(new Builder()
+        .setEnableRetries(retriesEnabled)
+        .setRetryOnDeadlineExceeded(retryOnDeadlineExceeded)
+        .setInitialBackoffMillis(initialBackoffMillis)
+        .setBackoffMultiplier(backoffMultiplier)
+        .setMaxElapsedBackoffMillis(maxElaspedBackoffMillis)
+        .setStreamingBufferSize(streamingBufferSize)
+        .setStreamingBatchSize(streamingBatchSize)
+        .setReadPartialRowTimeoutMillis(readPartialRowTimeoutMillis));
+  }
+
+  private RetryOptions(Builder builder) {
+    this.retriesEnabled = builder.enableRetries;
+    this.retryOnDeadlineExceeded = builder.retryOnDeadlineExceeded;
+    this.initialBackoffMillis = builder.initialBackoffMillis;
+    this.maxElaspedBackoffMillis = builder.maxElaspedBackoffMillis;
+    this.backoffMultiplier = builder.backoffMultiplier;
+    this.streamingBufferSize = builder.streamingBufferSize;
+    this.streamingBatchSize = builder.streamingBatchSize;
+    this.streamingBufferBytes = builder.streamingBufferBytes;
+    this.globalStreamingBufferBytes = builder.globalStreamingBufferBytes;
+    this.readPartialRowTimeoutMillis = builder.readPartialRowTimeoutMillis;
+    this.mutateRpcTimeoutMs = builder.mutateRpcTimeoutMs;
+    this.checkAndMutateRpcTimeoutMs = builder.checkAndMutateRpcTimeoutMs;
+    this.readModifyWriteRpcTimeoutMs = builder.readModifyWriteRpcTimeoutMs;
+    this.readRowRpcTimeoutMs = builder.readRowRpcTimeoutMs;
+    this.operationTimeoutMs = builder.operationTimeoutMs;
+    this.hedgeDelayMs = builder.hedgeDelayMs;
+    this.hedgeLatencyPercentile = builder.hedgeLatencyPercentile;
+    this.maxHedgeRatio = builder.maxHedgeRatio;
+    this.retryBudgetRatio = builder.retryBudgetRatio;
+    this.circuitBreakerErrorThreshold = builder.circuitBreakerErrorThreshold;
+    this.circuitBreakerOpenMs = builder.circuitBreakerOpenMs;
   }
 
   /**
@@ -237,6 +490,22 @@ public class RetryOptions implements Serializable {
     return streamingBatchSize;
   }
 
+  /**
+   * The maximum number of bytes of responses to buffer when scanning, or 0 if the buffer is limited
+   * by {@link #getStreamingBufferSize() messages}.
+   */
+  public long getStreamingBufferBytes() {
+    return streamingBufferBytes;
+  }
+
+  /**
+   * The maximum number of bytes of responses that all of the scanners in the JVM buffer, or 0 for
+   * no global limit.
+   */
+  public long getGlobalStreamingBufferBytes() {
+    return globalStreamingBufferBytes;
+  }
+
   /**
    * A timeout for reading individual ReadRowsResponse messages from a stream.
    */
@@ -244,6 +513,95 @@ public class RetryOptions implements Serializable {
     return readPartialRowTimeoutMillis;
   }
 
+  /**
+   * The deadline of each attempt of a MutateRow or MutateRows RPC, in milliseconds, or 0 for no
+   * deadline.
+   */
+  public int getMutateRpcTimeoutMs() {
+    return mutateRpcTimeoutMs;
+  }
+
+  /**
+   * The deadline of a CheckAndMutateRow RPC, in milliseconds, or 0 for no deadline.
+   */
+  public int getCheckAndMutateRpcTimeoutMs() {
+    return checkAndMutateRpcTimeoutMs;
+  }
+
+  /**
+   * The deadline of a ReadModifyWriteRow RPC, in milliseconds, or 0 for no deadline.
+   */
+  public int getReadModifyWriteRpcTimeoutMs() {
+    return readModifyWriteRpcTimeoutMs;
+  }
+
+  /**
+   * The deadline of each attempt of a single row read, in milliseconds, or 0 for no deadline.
+   */
+  public int getReadRowRpcTimeoutMs() {
+    return readRowRpcTimeoutMs;
+  }
+
+  /**
+   * The deadline of an operation across all of its attempts and the back offs between them, in
+   * milliseconds, or 0 if retries are only limited by the maximum elapsed back off.
+   */
+  public int getOperationTimeoutMs() {
+    return operationTimeoutMs;
+  }
+
+  /**
+   * Whether single row reads are hedged.
+   */
+  public boolean isHedgingEnabled() {
+    return hedgeDelayMs > 0;
+  }
+
+  /**
+   * The time in milliseconds to wait for a single row read before hedging it, or 0 if hedging is
+   * disabled.
+   */
+  public int getHedgeDelayMs() {
+    return hedgeDelayMs;
+  }
+
+  /**
+   * The percentile of recent single row read latencies to use as the hedging delay, or 0 to always
+   * use {@link #getHedgeDelayMs()}.
+   */
+  public double getHedgeLatencyPercentile() {
+    return hedgeLatencyPercentile;
+  }
+
+  /**
+   * The maximum number of hedged reads per single row read.
+   */
+  public double getMaxHedgeRatio() {
+    return maxHedgeRatio;
+  }
+
+  /**
+   * The maximum number of retries per request across a session, or 0 for no limit.
+   */
+  public double getRetryBudgetRatio() {
+    return retryBudgetRatio;
+  }
+
+  /**
+   * The fraction of failed calls at which the circuit breaker opens, or 0 if the circuit breaker
+   * is disabled.
+   */
+  public double getCircuitBreakerErrorThreshold() {
+    return circuitBreakerErrorThreshold;
+  }
+
+  /**
+   * The time in milliseconds that the circuit breaker stays open before it probes the service.
+   */
+  public int getCircuitBreakerOpenMs() {
+    return circuitBreakerOpenMs;
+  }
+
   /*
    * Determines if the read should be retried based on the input status {@code code}.
    */
@@ -254,6 +612,15 @@ public class RetryOptions implements Serializable {
         || (retryOnDeadlineExceeded && code == Status.DEADLINE_EXCEEDED.getCode());
   }
 
+  /*
+   * Determines if a failed entry of a batched mutation should be retried based on its status
+   * {@code code}. Only idempotent entries should be retried. The same codes are retried as for
+   * reads.
+   */
+  public boolean isRetryableMutation(Status.Code code) {
+    return isRetryableRead(code);
+  }
+
   public BackOff createBackoff() {
     return createBackoffBuilder().build();
   }
@@ -263,7 +630,8 @@ public class RetryOptions implements Serializable {
     return new ExponentialBackOff.Builder()
         .setInitialIntervalMillis(getInitialBackoffMillis())
         .setMaxElapsedTimeMillis(getMaxElaspedBackoffMillis())
-        .setMultiplier(getBackoffMultiplier());
+        .setMultiplier(getBackoffMultiplier())
+        .setRandomizationFactor(BACKOFF_RANDOMIZATION_FACTOR);
   }
   
   @Override
@@ -283,6 +651,19 @@ public class RetryOptions implements Serializable {
         && backoffMultiplier == other.backoffMultiplier
         && streamingBufferSize == other.streamingBufferSize
         && streamingBatchSize == other.streamingBatchSize
-        && readPartialRowTimeoutMillis == other.readPartialRowTimeoutMillis;
+        && streamingBufferBytes == other.streamingBufferBytes
+        && globalStreamingBufferBytes == other.globalStreamingBufferBytes
+        && readPartialRowTimeoutMillis == other.readPartialRowTimeoutMillis
+        && mutateRpcTimeoutMs == other.mutateRpcTimeoutMs
+        && checkAndMutateRpcTimeoutMs == other.checkAndMutateRpcTimeoutMs
+        && readModifyWriteRpcTimeoutMs == other.readModifyWriteRpcTimeoutMs
+        && readRowRpcTimeoutMs == other.readRowRpcTimeoutMs
+        && operationTimeoutMs == other.operationTimeoutMs
+        && hedgeDelayMs == other.hedgeDelayMs
+        && hedgeLatencyPercentile == other.hedgeLatencyPercentile
+        && maxHedgeRatio == other.maxHedgeRatio
+        && retryBudgetRatio == other.retryBudgetRatio
+        && circuitBreakerErrorThreshold == other.circuitBreakerErrorThreshold
+        && circuitBreakerOpenMs == other.circuitBreakerOpenMs;
   }
 }
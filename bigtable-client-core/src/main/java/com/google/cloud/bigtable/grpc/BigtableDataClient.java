@@ -20,6 +20,8 @@ import java.util.List;
 import com.google.bigtable.v1.CheckAndMutateRowRequest;
 import com.google.bigtable.v1.CheckAndMutateRowResponse;
 import com.google.bigtable.v1.MutateRowRequest;
+import com.google.bigtable.v1.MutateRowsRequest;
+import com.google.bigtable.v1.MutateRowsResponse;
 import com.google.bigtable.v1.ReadModifyWriteRowRequest;
 import com.google.bigtable.v1.ReadRowsRequest;
 import com.google.bigtable.v1.Row;
@@ -47,6 +49,18 @@ public interface BigtableDataClient {
    */
   ListenableFuture<Empty> mutateRowAsync(MutateRowRequest request);
 
+  /**
+   * Mutates multiple rows in a batch. Each individual row is mutated atomically, but the batch
+   * as a whole is not. The response contains a status for each entry of the request.
+   */
+  MutateRowsResponse mutateRows(MutateRowsRequest request) throws ServiceException;
+
+  /**
+   * Mutates multiple rows in a batch, returning a Future that will finish when the batch has
+   * completed. Each individual row is mutated atomically, but the batch as a whole is not.
+   */
+  ListenableFuture<MutateRowsResponse> mutateRowsAsync(MutateRowsRequest request);
+
   /**
    * Mutate a row atomically dependant on a precondition.
    */
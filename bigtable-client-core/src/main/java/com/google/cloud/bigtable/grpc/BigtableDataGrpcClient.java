@@ -16,6 +16,7 @@
 package com.google.cloud.bigtable.grpc;
 
 import io.grpc.CallOptions;
+import io.grpc.Channel;
 import io.grpc.ClientCall;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
@@ -25,6 +26,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -32,6 +34,8 @@ import com.google.bigtable.v1.BigtableServiceGrpc;
 import com.google.bigtable.v1.CheckAndMutateRowRequest;
 import com.google.bigtable.v1.CheckAndMutateRowResponse;
 import com.google.bigtable.v1.MutateRowRequest;
+import com.google.bigtable.v1.MutateRowsRequest;
+import com.google.bigtable.v1.MutateRowsResponse;
 import com.google.bigtable.v1.Mutation;
 import com.google.bigtable.v1.ReadModifyWriteRowRequest;
 import com.google.bigtable.v1.ReadRowsRequest;
@@ -46,14 +50,19 @@ import com.google.cloud.bigtable.grpc.async.BigtableAsyncUtilities;
 import com.google.cloud.bigtable.grpc.async.RetryableRpc;
 import com.google.cloud.bigtable.grpc.io.CancellationToken;
 import com.google.cloud.bigtable.grpc.io.ChannelPool;
+import com.google.cloud.bigtable.grpc.io.HedgingCall;
+import com.google.cloud.bigtable.grpc.io.HedgingPolicy;
+import com.google.cloud.bigtable.grpc.io.RetryBudget;
 import com.google.cloud.bigtable.grpc.io.ClientCallService;
 import com.google.cloud.bigtable.grpc.io.RetryingCall;
 import com.google.cloud.bigtable.grpc.scanner.BigtableResultScannerFactory;
 import com.google.cloud.bigtable.grpc.scanner.ResponseQueueReader;
 import com.google.cloud.bigtable.grpc.scanner.ResultScanner;
 import com.google.cloud.bigtable.grpc.scanner.ResumingStreamingResultScanner;
+import com.google.cloud.bigtable.grpc.scanner.ScanBufferBudget;
 import com.google.cloud.bigtable.grpc.scanner.StreamingBigtableResultScanner;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -77,6 +86,23 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
         }
       };
 
+  @VisibleForTesting
+  public static final Predicate<MutateRowsRequest> IS_RETRYABLE_MUTATIONS =
+      new Predicate<MutateRowsRequest>() {
+        @Override
+        public boolean apply(@Nullable MutateRowsRequest mutateRowsRequest) {
+          if (mutateRowsRequest == null) {
+            return false;
+          }
+          for (MutateRowsRequest.Entry entry : mutateRowsRequest.getEntriesList()) {
+            if (!allCellsHaveTimestamps(entry.getMutationsList())) {
+              return false;
+            }
+          }
+          return true;
+        }
+      };
+
   @VisibleForTesting
   public static final Predicate<CheckAndMutateRowRequest> IS_RETRYABLE_CHECK_AND_MUTATE =
       new Predicate<CheckAndMutateRowRequest>() {
@@ -88,6 +114,18 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
         }
       };
 
+  /**
+   * Matches ReadRowsRequests for a single row, which are the only requests that are hedged.
+   */
+  @VisibleForTesting
+  public static final Predicate<Object> IS_HEDGEABLE_READ = new Predicate<Object>() {
+    @Override
+    public boolean apply(@Nullable Object request) {
+      return request instanceof ReadRowsRequest
+          && ((ReadRowsRequest) request).getTargetCase() == ReadRowsRequest.TargetCase.ROW_KEY;
+    }
+  };
+
   private static final boolean allCellsHaveTimestamps(Iterable<Mutation> mutations) {
     for (Mutation mut : mutations) {
       if (mut.getSetCell().getTimestampMicros() == -1) {
@@ -98,10 +136,15 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
   }
 
   private final ChannelPool channelPool;
+  // The channelPool, or a Channel that hedges single row reads on the channelPool.
+  private final Channel readRowsChannel;
 
   private final ScheduledExecutorService retryExecutorService;
   private final ExecutorService executorService;
   private final RetryOptions retryOptions;
+  // Shared by the retries of all operations.
+  private final RetryBudget retryBudget;
+  private final ScanBufferBudget globalScanBufferBudget;
   private final BigtableOptions bigtableOptions;
 
   private final BigtableResultScannerFactory streamingScannerFactory =
@@ -136,13 +179,86 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
     this.executorService = executorService;
     this.bigtableOptions = bigtableOptions;
     this.retryOptions = bigtableOptions.getRetryOptions();
+    this.retryBudget = RetryBudget.create(retryOptions);
+    this.globalScanBufferBudget = retryOptions.getGlobalStreamingBufferBytes() > 0
+        ? ScanBufferBudget.getGlobal(retryOptions.getGlobalStreamingBufferBytes())
+        : null;
     this.clientCallService = clientCallService;
     this.retryExecutorService = retryExecutorService;
+    this.readRowsChannel = createReadRowsChannel();
 
     this.sampleRowKeysAsync =
         BigtableAsyncUtilities.createSampleRowKeyAsyncReader(this.channelPool, clientCallService);
-    this.readRowsAsync =
-        BigtableAsyncUtilities.createRowKeyAysncReader(this.channelPool, clientCallService);
+    this.readRowsAsync = BigtableAsyncUtilities.createRowKeyAysncReader(this.readRowsChannel,
+      clientCallService, new Function<ReadRowsRequest, CallOptions>() {
+        @Override
+        public CallOptions apply(ReadRowsRequest request) {
+          return createReadRowsCallOptions(request);
+        }
+      });
+  }
+
+  private Channel createReadRowsChannel() {
+    if (!retryOptions.isHedgingEnabled()) {
+      return channelPool;
+    }
+    final HedgingPolicy hedgingPolicy = HedgingPolicy.create(retryOptions);
+    return new Channel() {
+      @Override
+      public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+          CallOptions callOptions) {
+        return new HedgingCall<>(channelPool, method, callOptions, retryExecutorService,
+            hedgingPolicy, IS_HEDGEABLE_READ);
+      }
+
+      @Override
+      public String authority() {
+        return channelPool.authority();
+      }
+    };
+  }
+
+  /**
+   * Creates the {@link CallOptions} for a call with the given deadline. The deadline is capped by
+   * {@link RetryOptions#getOperationTimeoutMs()}, since a call that isn't retried is the whole
+   * operation.
+   *
+   * @param rpcTimeoutMs The deadline of the call, or 0 for no deadline.
+   */
+  @VisibleForTesting
+  CallOptions createCallOptions(int rpcTimeoutMs) {
+    int operationTimeoutMs = retryOptions.getOperationTimeoutMs();
+    int timeoutMs = rpcTimeoutMs;
+    if (timeoutMs <= 0 || (operationTimeoutMs > 0 && operationTimeoutMs < timeoutMs)) {
+      timeoutMs = operationTimeoutMs;
+    }
+    if (timeoutMs <= 0) {
+      return CallOptions.DEFAULT;
+    }
+    return CallOptions.DEFAULT.withDeadlineAfter(timeoutMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Single row reads, and reads of a set of row keys such as coalesced single row reads, get
+   * {@link RetryOptions#getReadRowRpcTimeoutMs()}. Scans only have the per-response timeout of the
+   * {@link ResponseQueueReader}, since they can legitimately run for a long time.
+   */
+  private CallOptions createReadRowsCallOptions(ReadRowsRequest request) {
+    if (isRowKeyRead(request)) {
+      return createCallOptions(retryOptions.getReadRowRpcTimeoutMs());
+    }
+    return CallOptions.DEFAULT;
+  }
+
+  private static boolean isRowKeyRead(ReadRowsRequest request) {
+    switch (request.getTargetCase()) {
+    case ROW_KEY:
+      return true;
+    case ROW_SET:
+      return request.getRowSet().getRowRangesCount() == 0;
+    default:
+      return false;
+    }
   }
 
   @Override
@@ -156,6 +272,17 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
     return clientCallService.listenableAsyncCall(createMutateRowCall(request), request);
   }
 
+  @Override
+  public MutateRowsResponse mutateRows(MutateRowsRequest request) throws ServiceException {
+    return clientCallService.blockingUnaryCall(createMutateRowsCall(request), request);
+  }
+
+  @Override
+  public ListenableFuture<MutateRowsResponse> mutateRowsAsync(MutateRowsRequest request) {
+    expandPoolIfNecessary(this.bigtableOptions.getChannelCount());
+    return clientCallService.listenableAsyncCall(createMutateRowsCall(request), request);
+  }
+
   @Override
   public CheckAndMutateRowResponse checkAndMutateRow(CheckAndMutateRowRequest request)
       throws ServiceException {
@@ -171,38 +298,46 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
 
   private ClientCall<MutateRowRequest, Empty> createMutateRowCall(MutateRowRequest request) {
     return createRetryableCall(BigtableServiceGrpc.METHOD_MUTATE_ROW,
-      IS_RETRYABLE_MUTATION, request);
+      IS_RETRYABLE_MUTATION, request, retryOptions.getMutateRpcTimeoutMs());
+  }
+
+  private ClientCall<MutateRowsRequest, MutateRowsResponse>
+      createMutateRowsCall(MutateRowsRequest request) {
+    return createRetryableCall(BigtableServiceGrpc.METHOD_MUTATE_ROWS,
+      IS_RETRYABLE_MUTATIONS, request, retryOptions.getMutateRpcTimeoutMs());
   }
 
   private ClientCall<CheckAndMutateRowRequest, CheckAndMutateRowResponse>
       createCheckAndMutateRowCall(CheckAndMutateRowRequest request) {
     return createRetryableCall(BigtableServiceGrpc.METHOD_CHECK_AND_MUTATE_ROW,
-      IS_RETRYABLE_CHECK_AND_MUTATE, request);
+      IS_RETRYABLE_CHECK_AND_MUTATE, request, retryOptions.getCheckAndMutateRpcTimeoutMs());
   }
 
   private <ReqT, RespT> ClientCall<ReqT, RespT> createRetryableCall(
-      MethodDescriptor<ReqT, RespT> method, Predicate<ReqT> isRetryable, ReqT request) {
+      MethodDescriptor<ReqT, RespT> method, Predicate<ReqT> isRetryable, ReqT request,
+      int rpcTimeoutMs) {
     if (retryOptions.enableRetries() && isRetryable.apply(request)) {
       return new RetryingCall<ReqT, RespT>(channelPool, method, CallOptions.DEFAULT,
-          retryExecutorService, retryOptions);
+          retryExecutorService, retryOptions, rpcTimeoutMs, retryBudget);
     } else {
-      return channelPool.newCall(method, CallOptions.DEFAULT);
+      return channelPool.newCall(method, createCallOptions(rpcTimeoutMs));
     }
   }
 
   @Override
   public Row readModifyWriteRow(ReadModifyWriteRowRequest request) {
-    return clientCallService.blockingUnaryCall(
-      channelPool.newCall(BigtableServiceGrpc.METHOD_READ_MODIFY_WRITE_ROW, CallOptions.DEFAULT),
-      request);
+    return clientCallService.blockingUnaryCall(createReadModifyWriteRowCall(), request);
   }
 
   @Override
   public ListenableFuture<Row> readModifyWriteRowAsync(ReadModifyWriteRowRequest request) {
     expandPoolIfNecessary(this.bigtableOptions.getChannelCount());
-    return clientCallService.listenableAsyncCall(
-      channelPool.newCall(BigtableServiceGrpc.METHOD_READ_MODIFY_WRITE_ROW, CallOptions.DEFAULT),
-      request);
+    return clientCallService.listenableAsyncCall(createReadModifyWriteRowCall(), request);
+  }
+
+  private ClientCall<ReadModifyWriteRowRequest, Row> createReadModifyWriteRowCall() {
+    return channelPool.newCall(BigtableServiceGrpc.METHOD_READ_MODIFY_WRITE_ROW,
+      createCallOptions(retryOptions.getReadModifyWriteRpcTimeoutMs()));
   }
 
   @Override
@@ -217,14 +352,14 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
   public ListenableFuture<List<SampleRowKeysResponse>> sampleRowKeysAsync(
       SampleRowKeysRequest request) {
     return BigtableAsyncUtilities.doReadAsync(retryOptions, request, sampleRowKeysAsync,
-      executorService);
+      retryExecutorService, retryBudget);
   }
 
   @Override
   public ListenableFuture<List<Row>> readRowsAsync(final ReadRowsRequest request) {
     expandPoolIfNecessary(this.bigtableOptions.getChannelCount());
     return BigtableAsyncUtilities
-        .doReadAsync(retryOptions, request, readRowsAsync, executorService);
+        .doReadAsync(retryOptions, request, readRowsAsync, retryExecutorService, retryBudget);
   }
 
   @Override
@@ -232,7 +367,8 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
     // Delegate all resumable operations to the scanner. It will request a non-resumable
     // scanner during operation.
     if (retryOptions.enableRetries()) {
-      return new ResumingStreamingResultScanner(retryOptions, request, streamingScannerFactory);
+      return new ResumingStreamingResultScanner(retryOptions, request, streamingScannerFactory,
+          retryBudget);
     } else {
       return streamRows(request);
     }
@@ -255,15 +391,23 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
     }
 
     ClientCall<ReadRowsRequest, ReadRowsResponse> readRowsCall =
-        channelPool.newCall(BigtableServiceGrpc.METHOD_READ_ROWS, CallOptions.DEFAULT);
+        readRowsChannel.newCall(BigtableServiceGrpc.METHOD_READ_ROWS,
+          createReadRowsCallOptions(request));
 
     CancellationToken cancellationToken = createCancellationToken(readRowsCall);
 
     int timeout = retryOptions.getReadPartialRowTimeoutMillis();
 
-    ResponseQueueReader responseQueueReader =
-        new ResponseQueueReader(timeout, streamingBufferSize, batchRequestSize,
-            batchRequestSize, readRowsCall);
+    ResponseQueueReader responseQueueReader;
+    if (!isGet && retryOptions.getStreamingBufferBytes() > 0) {
+      ScanBufferBudget scannerBudget =
+          new ScanBufferBudget(retryOptions.getStreamingBufferBytes());
+      responseQueueReader = new ResponseQueueReader(timeout, batchRequestSize, batchRequestSize,
+          scannerBudget, globalScanBufferBudget, readRowsCall);
+    } else {
+      responseQueueReader = new ResponseQueueReader(timeout, streamingBufferSize,
+          batchRequestSize, batchRequestSize, readRowsCall);
+    }
 
     StreamingBigtableResultScanner resultScanner =
         new StreamingBigtableResultScanner(responseQueueReader, cancellationToken);
@@ -312,6 +456,10 @@ public class BigtableDataGrpcClient implements BigtableDataClient {
   }
 
   private void expandPoolIfNecessary(int channelCount) {
+    if (channelPool.isElastic()) {
+      // An elastic pool grows on its own, based on the number of active calls.
+      return;
+    }
     try {
       this.channelPool.ensureChannelCount(channelCount);
     } catch (IOException e) {
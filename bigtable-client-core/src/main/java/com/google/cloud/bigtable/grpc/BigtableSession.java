@@ -17,10 +17,12 @@
 package com.google.cloud.bigtable.grpc;
 
 import io.grpc.Channel;
+import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.ManagedChannelImpl;
 import io.grpc.netty.GrpcSslContexts;
-import io.grpc.netty.NegotiationType;
 import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.ProtocolNegotiator;
+import io.grpc.netty.ProtocolNegotiators;
 import io.netty.channel.EventLoopGroup;
 import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslContext;
@@ -29,6 +31,7 @@ import io.netty.handler.ssl.SslContextBuilder;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
@@ -42,6 +45,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLException;
@@ -49,14 +53,27 @@ import javax.net.ssl.SSLException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.api.client.util.Strings;
+import com.google.bigtable.v1.BigtableServiceGrpc;
+import com.google.bigtable.v1.SampleRowKeysRequest;
 import com.google.cloud.bigtable.config.BigtableOptions;
+import com.google.cloud.bigtable.config.ChannelOptions;
+import com.google.cloud.bigtable.config.ChannelOptions.Transport;
 import com.google.cloud.bigtable.config.CredentialFactory;
 import com.google.cloud.bigtable.config.CredentialOptions;
 import com.google.cloud.bigtable.config.Logger;
+import com.google.cloud.bigtable.config.ReadOptions;
 import com.google.cloud.bigtable.config.RetryOptions;
+import com.google.cloud.bigtable.grpc.async.AsyncExecutor;
+import com.google.cloud.bigtable.grpc.async.BulkMutation;
+import com.google.cloud.bigtable.grpc.async.ReadCoalescer;
+import com.google.cloud.bigtable.grpc.io.AddressAwareChannelFactory;
 import com.google.cloud.bigtable.grpc.io.ChannelPool;
+import com.google.cloud.bigtable.grpc.io.CircuitBreaker;
+import com.google.cloud.bigtable.grpc.io.FlowControlWindowTuner;
 import com.google.cloud.bigtable.grpc.io.CredentialInterceptorCache;
 import com.google.cloud.bigtable.grpc.io.HeaderInterceptor;
+import com.google.cloud.bigtable.grpc.io.KeepAliveNegotiator;
+import com.google.cloud.bigtable.grpc.io.TlsHandshakeCounter;
 import com.google.cloud.bigtable.grpc.io.UserAgentInterceptor;
 import com.google.cloud.bigtable.util.ThreadPoolUtil;
 import com.google.common.collect.ImmutableList;
@@ -80,7 +97,19 @@ import com.google.common.util.concurrent.MoreExecutors;
 public class BigtableSession implements AutoCloseable {
 
   private static final Logger LOG = new Logger(BigtableSession.class);
-  private static SslContextBuilder sslBuilder;
+  private static SslContext sslContext;
+
+  /**
+   * The maximum number of TLS sessions that are cached for resumption by new channels.
+   */
+  private static final long SSL_SESSION_CACHE_SIZE = 1000;
+
+  /**
+   * How long a cached TLS session can be resumed, in seconds.
+   */
+  private static final long SSL_SESSION_TIMEOUT_SECS = TimeUnit.HOURS.toSeconds(1);
+
+  private static final TlsHandshakeCounter tlsHandshakeCounter = new TlsHandshakeCounter();
 
   @VisibleForTesting
   static final String PROJECT_ID_EMPTY_OR_NULL = "ProjectId must not be empty or null.";
@@ -95,9 +124,17 @@ public class BigtableSession implements AutoCloseable {
     performWarmup();
   }
 
+  /**
+   * Returns the {@link SslContext} that is shared by all of the channels in the JVM. Sharing the
+   * context shares its TLS session cache, so that new channels to a host that was already
+   * connected to can resume a session instead of doing a full handshake.
+   */
   private synchronized static SslContext createSslContext() throws SSLException {
-    if (sslBuilder == null) {
-      sslBuilder = GrpcSslContexts.forClient().ciphers(null);
+    if (sslContext == null) {
+      SslContextBuilder sslBuilder = GrpcSslContexts.forClient()
+          .ciphers(null)
+          .sessionCacheSize(SSL_SESSION_CACHE_SIZE)
+          .sessionTimeout(SSL_SESSION_TIMEOUT_SECS);
       // gRPC uses tcnative / OpenSsl by default, if it's available.  It defaults to alpn-boot
       // if tcnative is not in the classpath.
       if (OpenSsl.isAvailable()) {
@@ -111,8 +148,16 @@ public class BigtableSession implements AutoCloseable {
           LOG.info("gRPC cannot be configured.  Neither OpenSsl nor Alpn are available.");
         }
       }
+      sslContext = sslBuilder.build();
     }
-    return sslBuilder.build();
+    return sslContext;
+  }
+
+  /**
+   * Counts the full and resumed TLS handshakes of all of the channels in the JVM.
+   */
+  public static TlsHandshakeCounter getTlsHandshakeCounter() {
+    return tlsHandshakeCounter;
   }
 
   public static boolean isAlpnProviderEnabled() {
@@ -152,8 +197,7 @@ public class BigtableSession implements AutoCloseable {
         // BigtableConnection which uses SslContexts under the covers.
         if (isAlpnProviderEnabled()) {
           try {
-            // We create multiple channels via refreshing and pooling channel implementation.
-            // Each one needs its own SslContext.
+            // All of the channels share the SslContext, so that they share its session cache.
             createSslContext();
           } catch (SSLException e) {
             LOG.warn("Could not asynchronously create the ssl context", e);
@@ -193,6 +237,7 @@ public class BigtableSession implements AutoCloseable {
   }
 
   private BigtableDataClient dataClient;
+  private ReadCoalescer readCoalescer;
   private BigtableTableAdminClient tableAdminClient;
   private BigtableClusterAdminClient clusterAdminClient;
 
@@ -321,12 +366,46 @@ public class BigtableSession implements AutoCloseable {
   }
 
   private BigtableDataClient initializeDataClient() throws IOException {
-    ChannelPool dataChannel = createChannel(options.getDataHost());
+    ChannelPool dataChannel = createChannel(options.getDataHost(),
+      CircuitBreaker.create(options.getRetryOptions()));
+    if (getChannelOptions().isWarmUpChannels()) {
+      warmUp(dataChannel);
+    }
     BigtableSessionSharedThreadPools sharedPools = BigtableSessionSharedThreadPools.getInstance();
     return new BigtableDataGrpcClient(dataChannel, sharedPools.getBatchThreadPool(),
         sharedPools.getRetryExecutor(), options);
   }
 
+  /**
+   * Creates all of the channels of the data pool, and connects them in parallel so that the first
+   * calls don't wait for the connections and their TLS handshakes. An elastic pool is connected at
+   * its minimum size. The wait is bounded by {@link ChannelOptions#getWarmUpTimeoutMs()}; channels
+   * that aren't ready by then continue to connect in the background.
+   */
+  private void warmUp(ChannelPool dataChannel) throws IOException {
+    long startNanos = System.nanoTime();
+    if (!dataChannel.isElastic()) {
+      dataChannel.ensureChannelCount(options.getChannelCount());
+    }
+    // An empty request is rejected by the server without reading any data, which is enough to
+    // know that the channel is connected.
+    int readyCount;
+    try {
+      readyCount = dataChannel.warmUp(BigtableServiceGrpc.METHOD_SAMPLE_ROW_KEYS,
+        SampleRowKeysRequest.getDefaultInstance(), getChannelOptions().getWarmUpTimeoutMs());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while warming up the data channels", e);
+    }
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    if (readyCount < dataChannel.size()) {
+      LOG.warn("Only %d of %d data channels were ready after %d ms.", readyCount,
+        dataChannel.size(), elapsedMs);
+    } else {
+      LOG.info("%d data channels were ready after %d ms.", readyCount, elapsedMs);
+    }
+  }
+
   private BigtableTableAdminClient initializeAdminClient() throws IOException {
     Channel channel = createChannel(options.getTableAdminHost());
     return new BigtableTableAdminGrpcClient(channel);
@@ -354,6 +433,36 @@ public class BigtableSession implements AutoCloseable {
     return tableAdminClient;
   }
 
+  /**
+   * Creates a {@link BulkMutation} that groups mutations to the given table into MutateRows
+   * batches, based on this session's {@link BigtableOptions#getBulkOptions()}. Failed entries are
+   * retried based on this session's {@link BigtableOptions#getRetryOptions()}.
+   *
+   * @param tableName The table to which the mutations will be sent.
+   * @param asyncExecutor The {@link AsyncExecutor} that sends the batches and limits the number
+   *          of outstanding RPCs.
+   */
+  public BulkMutation createBulkMutation(BigtableTableName tableName, AsyncExecutor asyncExecutor) {
+    return new BulkMutation(tableName, dataClient, asyncExecutor, options.getRetryOptions(),
+        BigtableSessionSharedThreadPools.getInstance().getRetryExecutor(),
+        BigtableSessionSharedThreadPools.getInstance().getBatchThreadPool(),
+        options.getBulkOptions());
+  }
+
+  /**
+   * Returns a {@link ReadCoalescer} that groups concurrent single row reads from this session's
+   * data client, or null if {@link ReadOptions#getCoalescingWindowMicros()} is 0.
+   */
+  public synchronized ReadCoalescer getReadCoalescer() {
+    ReadOptions readOptions = options.getReadOptions();
+    if (readCoalescer == null && readOptions != null
+        && readOptions.getCoalescingWindowMicros() > 0) {
+      readCoalescer = new ReadCoalescer(dataClient,
+          BigtableSessionSharedThreadPools.getInstance().getRetryExecutor(), readOptions);
+    }
+    return readCoalescer;
+  }
+
   public synchronized BigtableClusterAdminClient getClusterAdminClient() throws IOException {
     if (this.clusterAdminClient == null) {
       Channel channel = createChannel(options.getClusterAdminHost());
@@ -365,35 +474,160 @@ public class BigtableSession implements AutoCloseable {
 
   /**
    * <p>
-   * Create a new Channel, with auth headers and user agent interceptors.
+   * Create a new Channel, with auth headers and user agent interceptors. The underlying channels
+   * are replaced once they are older than {@link BigtableOptions#getTimeoutMs()}. If
+   * {@link ChannelOptions#isElastic()}, the pool grows up to
+   * {@link BigtableOptions#getChannelCount()} channels based on the number of active calls.
    * </p>
    */
   protected ChannelPool createChannel(final String hostString) throws IOException {
-    return new ChannelPool(headerInterceptors, new ChannelPool.ChannelFactory() {
+    return createChannel(hostString, null);
+  }
+
+  /**
+   * Creates a new Channel as {@link #createChannel(String)} does, which reports the outcome of its
+   * calls to the given {@link CircuitBreaker}, if any.
+   */
+  protected ChannelPool createChannel(final String hostString,
+      @Nullable CircuitBreaker circuitBreaker) throws IOException {
+    ChannelOptions channelOptions = getChannelOptions();
+    final FlowControlWindowTuner windowTuner;
+    if (!channelOptions.isAutoTuneFlowControlWindow()) {
+      windowTuner = null;
+    } else if (options.getTimeoutMs() <= 0 && !channelOptions.isElastic()) {
+      // A tuned window only applies to new channels, and this pool never creates any.
+      LOG.warn("Ignoring autoTuneFlowControlWindow, since the channels are never replaced. Set a "
+          + "channel timeout or use an elastic pool to tune the flow control window.");
+      windowTuner = null;
+    } else {
+      windowTuner = new FlowControlWindowTuner(channelOptions.getFlowControlWindow(),
+          channelOptions.getMaxFlowControlWindow());
+    }
+    // A channel whose keepalive ping times out is replaced by the pool, which only exists once
+    // the first channel was created.
+    final AtomicReference<ChannelPool> poolReference = new AtomicReference<>();
+    ChannelPool.ChannelFactory channelFactory;
+    if (channelOptions.isSpreadAcrossAddresses()) {
+      channelFactory = new AddressAwareChannelFactory(hostString, options.getPort(),
+          AddressAwareChannelFactory.DEFAULT_RESOLVER,
+          new AddressAwareChannelFactory.AddressChannelFactory() {
+            @Override
+            public Channel create(InetSocketAddress address) throws IOException {
+              return createPooledNettyChannel(hostString, address,
+                getFlowControlWindow(windowTuner), poolReference);
+            }
+          }, channelOptions.getAddressResolutionIntervalMs());
+    } else {
+      channelFactory = new ChannelPool.ChannelFactory() {
+        @Override
+        public Channel create() throws IOException {
+          return createPooledNettyChannel(hostString, null, getFlowControlWindow(windowTuner),
+            poolReference);
+        }
+      };
+    }
+    BigtableSessionSharedThreadPools sharedPools = BigtableSessionSharedThreadPools.getInstance();
+    // Replacement and added channels are connected on the batch pool, so that slow connections
+    // don't delay the retries that are scheduled on the retry executor. They get the same probe
+    // as the session's warm up; any answer from the server, even UNIMPLEMENTED from an admin
+    // host, means that the connection is ready.
+    ChannelPool channelPool = new ChannelPool.Builder(channelFactory)
+        .setHeaderInterceptors(headerInterceptors)
+        .setChannelOptions(channelOptions)
+        .setMaxChannelCount(options.getChannelCount())
+        .setMaxChannelAgeMs(options.getTimeoutMs())
+        .setExecutor(sharedPools.getRetryExecutor())
+        .setChannelExecutor(sharedPools.getBatchThreadPool())
+        .setWarmUp(BigtableServiceGrpc.METHOD_SAMPLE_ROW_KEYS,
+          SampleRowKeysRequest.getDefaultInstance(), channelOptions.getWarmUpTimeoutMs())
+        .setFlowControlWindowTuner(windowTuner)
+        .setCircuitBreaker(circuitBreaker)
+        .build();
+    poolReference.set(channelPool);
+    // The pool closes its channels, including replaced channels that are still draining.
+    clientCloseHandlers.add(channelPool);
+    return channelPool;
+  }
+
+  private ChannelOptions getChannelOptions() {
+    ChannelOptions channelOptions = options.getChannelOptions();
+    return channelOptions == null ? new ChannelOptions.Builder().build() : channelOptions;
+  }
+
+  protected Channel createNettyChannel(final String host) throws IOException {
+    return createNettyChannel(host, getChannelOptions().getFlowControlWindow());
+  }
+
+  private int getFlowControlWindow(@Nullable FlowControlWindowTuner windowTuner) {
+    return windowTuner != null
+        ? windowTuner.getWindow() : getChannelOptions().getFlowControlWindow();
+  }
+
+  protected Channel createNettyChannel(final String host, int flowControlWindow)
+      throws IOException {
+    return createNettyChannel(host, null, flowControlWindow);
+  }
+
+  protected Channel createNettyChannel(final String host, @Nullable InetSocketAddress address,
+      int flowControlWindow) throws IOException {
+    return createNettyChannel(host, address, flowControlWindow, null);
+  }
+
+  /**
+   * Creates a channel for a {@link ChannelPool}, which replaces the channel if one of its
+   * keepalive pings times out.
+   */
+  private Channel createPooledNettyChannel(String host, @Nullable InetSocketAddress address,
+      int flowControlWindow, final AtomicReference<ChannelPool> poolReference)
+      throws IOException {
+    final AtomicReference<Channel> channelReference = new AtomicReference<>();
+    Channel channel = createNettyChannel(host, address, flowControlWindow, new Runnable() {
       @Override
-      public Channel create() throws IOException {
-        final Channel channel = createNettyChannel(hostString);
-        clientCloseHandlers.add(new Closeable() {
-          @Override
-          public void close() throws IOException {
-            BigtableSession.close(channel);
-          }
-        });
-        return channel;
+      public void run() {
+        ChannelPool channelPool = poolReference.get();
+        Channel timedOutChannel = channelReference.get();
+        if (channelPool != null && timedOutChannel != null) {
+          channelPool.replaceChannel(timedOutChannel);
+        }
       }
     });
+    channelReference.set(channel);
+    return channel;
   }
 
-  protected Channel createNettyChannel(final String host) throws IOException {
+  /**
+   * Creates a channel to the given host. If an address is given, the channel connects to that
+   * address rather than resolving the host, but still uses the host for TLS and as its authority.
+   * If a listener is given, it runs when a keepalive ping of the channel times out.
+   */
+  protected Channel createNettyChannel(final String host, @Nullable InetSocketAddress address,
+      int flowControlWindow, @Nullable Runnable pingTimeoutListener) throws IOException {
     BigtableSessionSharedThreadPools sharedPools = BigtableSessionSharedThreadPools.getInstance();
-    return NettyChannelBuilder
-        .forAddress(host, options.getPort())
-        .maxMessageSize(256 * 1024 * 1024) // 256 MB, server has 256 MB limit.
-        .sslContext(createSslContext())
-        .eventLoopGroup(sharedPools.getElg())
+    ChannelOptions channelOptions = getChannelOptions();
+    Transport transport =
+        BigtableSessionSharedThreadPools.resolveTransport(channelOptions.getTransport());
+    String authority = GrpcUtil.authorityFromHostAndPort(host, options.getPort());
+    ProtocolNegotiator negotiator =
+        tlsHandshakeCounter.wrap(ProtocolNegotiators.tls(createSslContext(), authority));
+    if (channelOptions.getKeepAliveTimeMs() > 0) {
+      negotiator = new KeepAliveNegotiator(negotiator, channelOptions.getKeepAliveTimeMs(),
+          channelOptions.getKeepAliveTimeoutMs(), channelOptions.isKeepAliveWithoutCalls(),
+          pingTimeoutListener);
+    }
+    NettyChannelBuilder builder;
+    if (address != null) {
+      builder = NettyChannelBuilder.forAddress(address).overrideAuthority(authority);
+    } else {
+      builder = NettyChannelBuilder.forAddress(host, options.getPort());
+    }
+    return builder
+        .maxMessageSize(channelOptions.getMaxMessageSize())
+        .protocolNegotiator(negotiator)
+        .eventLoopGroup(
+          sharedPools.getEventLoopGroup(transport, channelOptions.getEventLoopThreadCount()))
+        .channelType(BigtableSessionSharedThreadPools.getChannelType(transport))
         .executor(sharedPools.getBatchThreadPool())
-        .negotiationType(NegotiationType.TLS)
-        .flowControlWindow(1 << 20) // 1 MB -- TODO(sduskis): make this configurable
+        .flowControlWindow(flowControlWindow)
         .build();
   }
 
@@ -15,14 +15,22 @@
  */
 package com.google.cloud.bigtable.grpc;
 
+import com.google.cloud.bigtable.config.ChannelOptions.Transport;
+import com.google.cloud.bigtable.config.Logger;
 import com.google.cloud.bigtable.util.ThreadPoolUtil;
 
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class contains executors and other thread pool related resources that can be reused across a
@@ -36,6 +44,16 @@ public class BigtableSessionSharedThreadPools {
   /** Number of threads to use to initiate retry calls */
   public static final int RETRY_THREAD_COUNT = 4;
 
+  private static final Logger LOG = new Logger(BigtableSessionSharedThreadPools.class);
+
+  private static final AtomicBoolean loggedEpollFallback = new AtomicBoolean();
+
+  private static final String EPOLL_CLASS_NAME = "io.netty.channel.epoll.Epoll";
+  private static final String EPOLL_EVENT_LOOP_GROUP_CLASS_NAME =
+      "io.netty.channel.epoll.EpollEventLoopGroup";
+  private static final String EPOLL_SOCKET_CHANNEL_CLASS_NAME =
+      "io.netty.channel.epoll.EpollSocketChannel";
+
   private static BigtableSessionSharedThreadPools INSTANCE = new BigtableSessionSharedThreadPools();
 
   /**
@@ -57,6 +75,12 @@ public class BigtableSessionSharedThreadPools {
    */
   protected NioEventLoopGroup elg;
 
+  /**
+   * Event loop groups other than the default NIO {@link #elg}, keyed by transport and thread
+   * count.
+   */
+  private final Map<String, EventLoopGroup> eventLoopGroups = new HashMap<>();
+
   /**
    * Used for a few cases that benefit from retries, such as puts, gets and scans.
    */
@@ -85,6 +109,95 @@ public class BigtableSessionSharedThreadPools {
     return elg;
   }
 
+  /**
+   * Gets a shared event loop group for the given transport and thread count. The default NIO
+   * transport with netty's default thread count uses {@link #getElg()}. Other event loop groups
+   * are created on first use, and shared by all sessions that use the same settings.
+   *
+   * @param transport A transport returned by {@link #resolveTransport(Transport)}.
+   * @param threadCount The number of event loop threads, or 0 for netty's default.
+   */
+  public synchronized EventLoopGroup getEventLoopGroup(Transport transport, int threadCount) {
+    if (transport == Transport.NIO && threadCount == 0) {
+      return elg;
+    }
+    String key = transport + ":" + threadCount;
+    EventLoopGroup group = eventLoopGroups.get(key);
+    if (group == null) {
+      ThreadFactory threadFactory = createThreadFactory(GRPC_EVENTLOOP_GROUP_NAME);
+      if (transport == Transport.EPOLL) {
+        group = createEpollEventLoopGroup(threadCount, threadFactory);
+      } else {
+        group = new NioEventLoopGroup(threadCount, threadFactory);
+      }
+      eventLoopGroups.put(key, group);
+    }
+    return group;
+  }
+
+  /**
+   * Returns the transport to use for the requested transport. {@link Transport#EPOLL} falls back
+   * to {@link Transport#NIO} if netty's native epoll library isn't on the classpath, or can't be
+   * loaded on this platform.
+   */
+  public static Transport resolveTransport(Transport requested) {
+    if (requested == Transport.EPOLL && !EpollAvailability.AVAILABLE) {
+      if (loggedEpollFallback.compareAndSet(false, true)) {
+        LOG.warn("The epoll transport was requested, but is not available. Using NIO instead.");
+      }
+      return Transport.NIO;
+    }
+    return requested;
+  }
+
+  /**
+   * The netty {@link Channel} type to use with the event loop group of the given transport.
+   *
+   * @param transport A transport returned by {@link #resolveTransport(Transport)}.
+   */
+  public static Class<? extends Channel> getChannelType(Transport transport) {
+    if (transport == Transport.EPOLL) {
+      try {
+        return Class.forName(EPOLL_SOCKET_CHANNEL_CLASS_NAME).asSubclass(Channel.class);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("Could not load the epoll socket channel", e);
+      }
+    }
+    return NioSocketChannel.class;
+  }
+
+  /**
+   * Checks whether epoll is available once, the first time that it is requested.
+   */
+  private static class EpollAvailability {
+    static final boolean AVAILABLE = isEpollAvailable();
+  }
+
+  // The epoll classes are loaded reflectively, so that netty-transport-native-epoll is an optional
+  // runtime dependency.
+  private static boolean isEpollAvailable() {
+    try {
+      Class<?> epoll = Class.forName(EPOLL_CLASS_NAME);
+      return (Boolean) epoll.getMethod("isAvailable").invoke(null);
+    } catch (ClassNotFoundException e) {
+      return false;
+    } catch (Exception | LinkageError e) {
+      LOG.warn("Could not check whether epoll is available.", e);
+      return false;
+    }
+  }
+
+  private static EventLoopGroup createEpollEventLoopGroup(int threadCount,
+      ThreadFactory threadFactory) {
+    try {
+      return (EventLoopGroup) Class.forName(EPOLL_EVENT_LOOP_GROUP_CLASS_NAME)
+          .getConstructor(int.class, ThreadFactory.class)
+          .newInstance(threadCount, threadFactory);
+    } catch (Exception e) {
+      throw new IllegalStateException("Could not create an epoll event loop group", e);
+    }
+  }
+
   public ScheduledExecutorService getRetryExecutor() {
     return retryExecutor;
   }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.async;
+
+import com.google.cloud.bigtable.config.Logger;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import io.grpc.Status;
+
+/**
+ * An additive increase / multiplicative decrease (AIMD) limit on the number of in-flight RPCs,
+ * based on the observed RPC latency and errors. Completions are grouped into windows of about
+ * {@link #getLimit()} RPCs. At the end of each window:
+ * <ul>
+ * <li>If the average latency of the window is more than {@link #LATENCY_TOLERANCE} times the
+ * lowest latency seen so far, the limit is multiplied by {@link #LATENCY_BACKOFF_RATIO}.</li>
+ * <li>Otherwise, if the RPCs in the window used at least half of the limit, the limit is increased
+ * by one.</li>
+ * </ul>
+ * An RPC that fails with a status that indicates that the server is overloaded immediately
+ * multiplies the limit by {@link #OVERLOAD_BACKOFF_RATIO}, at most once per window.
+ */
+public class AdaptiveRpcLimit {
+
+  protected static final Logger LOG = new Logger(AdaptiveRpcLimit.class);
+
+  /**
+   * The ratio of a window's average latency to the lowest latency above which the limit is
+   * decreased.
+   */
+  public static final double LATENCY_TOLERANCE = 2.0;
+
+  /**
+   * The multiplier for the limit when latency goes over the tolerance.
+   */
+  public static final double LATENCY_BACKOFF_RATIO = 0.9;
+
+  /**
+   * The multiplier for the limit when the server reports that it is overloaded.
+   */
+  public static final double OVERLOAD_BACKOFF_RATIO = 0.5;
+
+  /**
+   * The number of windows after which the lowest latency is reset, so that the baseline follows
+   * lasting changes in latency.
+   */
+  private static final int WINDOWS_PER_BASELINE = 100;
+
+  /**
+   * Does the given failure indicate that the server is overloaded?
+   */
+  public static boolean isOverloaded(Throwable t) {
+    Status.Code code = Status.fromThrowable(t).getCode();
+    return code == Status.Code.UNAVAILABLE
+        || code == Status.Code.RESOURCE_EXHAUSTED
+        || code == Status.Code.DEADLINE_EXCEEDED;
+  }
+
+  private final int minLimit;
+  private final int maxLimit;
+
+  // All of the following are guarded by this.
+  private int limit;
+  private long baselineLatencyNanos = Long.MAX_VALUE;
+  private int windowCount = 0;
+  private int windowLatencyCount = 0;
+  private long windowLatencySumNanos = 0;
+  private int windowMaxInFlight = 0;
+  private boolean decreasedInWindow = false;
+  private int windowsSinceBaselineReset = 0;
+
+  /**
+   * @param initialLimit The limit before any RPCs complete.
+   * @param minLimit The lowest that the limit can go.
+   * @param maxLimit The highest that the limit can go.
+   */
+  public AdaptiveRpcLimit(int initialLimit, int minLimit, int maxLimit) {
+    Preconditions.checkArgument(minLimit > 0, "minLimit must be greater than 0.");
+    Preconditions.checkArgument(minLimit <= initialLimit && initialLimit <= maxLimit,
+      "initialLimit must be between minLimit and maxLimit.");
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+  }
+
+  /**
+   * The current maximum number of in-flight RPCs.
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Records a completed RPC.
+   *
+   * @param latencyNanos The time between the registration and the completion of the RPC.
+   * @param failure The failure of the RPC, or null if it succeeded.
+   * @param inFlight The number of RPCs that were in flight when the RPC completed, including the
+   *          RPC itself.
+   * @return The new limit.
+   */
+  public synchronized int onCompletion(long latencyNanos, Throwable failure, int inFlight) {
+    if (failure != null && isOverloaded(failure)) {
+      if (!decreasedInWindow) {
+        setLimit((int) (limit * OVERLOAD_BACKOFF_RATIO), "the server is overloaded");
+        decreasedInWindow = true;
+      }
+    } else {
+      windowLatencySumNanos += latencyNanos;
+      windowLatencyCount++;
+    }
+    windowCount++;
+    windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+    if (windowCount >= limit) {
+      endWindow();
+    }
+    return limit;
+  }
+
+  private void endWindow() {
+    if (windowLatencyCount > 0) {
+      updateLimitFromLatency(windowLatencySumNanos / windowLatencyCount);
+    }
+    windowCount = 0;
+    windowLatencyCount = 0;
+    windowLatencySumNanos = 0;
+    windowMaxInFlight = 0;
+    decreasedInWindow = false;
+  }
+
+  private void updateLimitFromLatency(long averageLatencyNanos) {
+    if (++windowsSinceBaselineReset >= WINDOWS_PER_BASELINE) {
+      baselineLatencyNanos = averageLatencyNanos;
+      windowsSinceBaselineReset = 0;
+    } else {
+      baselineLatencyNanos = Math.min(baselineLatencyNanos, averageLatencyNanos);
+    }
+    if (!decreasedInWindow) {
+      if (averageLatencyNanos > baselineLatencyNanos * LATENCY_TOLERANCE) {
+        setLimit((int) (limit * LATENCY_BACKOFF_RATIO), "latency increased");
+      } else if (windowMaxInFlight * 2 >= limit) {
+        setLimit(limit + 1, null);
+      }
+    }
+  }
+
+  private void setLimit(int newLimit, String reason) {
+    newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    if (reason != null && newLimit != limit) {
+      LOG.debug("Decreasing the in-flight RPC limit from %d to %d because %s.", limit, newLimit,
+        reason);
+    }
+    limit = newLimit;
+  }
+
+  @VisibleForTesting
+  synchronized long getBaselineLatencyNanos() {
+    return baselineLatencyNanos;
+  }
+}
@@ -21,6 +21,8 @@ import java.util.List;
 import com.google.bigtable.v1.CheckAndMutateRowRequest;
 import com.google.bigtable.v1.CheckAndMutateRowResponse;
 import com.google.bigtable.v1.MutateRowRequest;
+import com.google.bigtable.v1.MutateRowsRequest;
+import com.google.bigtable.v1.MutateRowsResponse;
 import com.google.bigtable.v1.ReadModifyWriteRowRequest;
 import com.google.bigtable.v1.ReadRowsRequest;
 import com.google.bigtable.v1.Row;
@@ -63,6 +65,18 @@ public class AsyncExecutor {
         }
       };
 
+  /**
+   * Calls {@link BigtableDataClient#mutateRowsAsync(MutateRowsRequest)}.
+   */
+  protected static AsyncCall<MutateRowsRequest, MutateRowsResponse> MUTATE_ROWS_ASYNC =
+      new AsyncCall<MutateRowsRequest, MutateRowsResponse>() {
+        @Override
+        public ListenableFuture<MutateRowsResponse> call(BigtableDataClient client,
+            MutateRowsRequest request) {
+          return client.mutateRowsAsync(request);
+        }
+      };
+
   /**
    * Calls {@link BigtableDataClient#readModifyWriteRowAsync(ReadModifyWriteRowRequest)}.
    */
@@ -122,6 +136,23 @@ public class AsyncExecutor {
     return call(MUTATE_ASYNC, request, operationId);
   }
 
+  /**
+   * Performs a {@link BigtableDataClient#mutateRowsAsync(MutateRowsRequest)} on the
+   * {@link MutateRowsRequest} given an operationId generated from
+   * {@link HeapSizeManager#registerOperationWithHeapSize(long)}.
+   *
+   * @param request The {@link MutateRowsRequest} to send.
+   * @param operationId The Id generated from
+   *          {@link HeapSizeManager#registerOperationWithHeapSize(long)} that will be released when
+   *          the mutate operation is completed.
+   *
+   * @return a {@link ListenableFuture} which can be listened to for completion events.
+   */
+  public ListenableFuture<MutateRowsResponse> mutateRowsAsync(MutateRowsRequest request,
+      long operationId) {
+    return call(MUTATE_ROWS_ASYNC, request, operationId);
+  }
+
   /**
    * Performs a {@link BigtableDataClient#checkAndMutateRowAsync(CheckAndMutateRowRequest)} on the
    * {@link CheckAndMutateRowRequest} given an operationId generated from
@@ -183,6 +214,20 @@ public class AsyncExecutor {
     return call(MUTATE_ASYNC, request);
   }
 
+  /**
+   * Performs a {@link BigtableDataClient#mutateRowsAsync(MutateRowsRequest)} on the
+   * {@link MutateRowsRequest}. This method may block if
+   * {@link HeapSizeManager#registerOperationWithHeapSize(long)} blocks.
+   *
+   * @param request The {@link MutateRowsRequest} to send.
+   *
+   * @return a {@link ListenableFuture} which can be listened to for completion events.
+   */
+  public ListenableFuture<MutateRowsResponse> mutateRowsAsync(MutateRowsRequest request)
+      throws InterruptedException {
+    return call(MUTATE_ROWS_ASYNC, request);
+  }
+
   /**
    * Performs a {@link BigtableDataClient#checkAndMutateRowAsync(CheckAndMutateRowRequest)} on the
    * {@link CheckAndMutateRowRequest}. This method may block if
@@ -225,6 +270,21 @@ public class AsyncExecutor {
     return call(READ_ROWS_ASYNC, request);
   }
 
+  /**
+   * Registers an operation that may span several RPCs, such as a batch of mutations that is
+   * partially retried, with the {@link HeapSizeManager}. This method may block if
+   * {@link HeapSizeManager#registerOperationWithHeapSize(long)} blocks. The operation is
+   * considered complete when {@code completionFuture} completes.
+   *
+   * @param completionFuture A {@link ListenableFuture} that completes when the operation is done.
+   * @param heapSize The approximate size of the operation.
+   */
+  public void registerOperation(ListenableFuture<?> completionFuture, long heapSize)
+      throws InterruptedException {
+    long id = sizeManager.registerOperationWithHeapSize(heapSize);
+    sizeManager.addCallback(completionFuture, id);
+  }
+
   private <RequestT extends GeneratedMessage, ResponseT> ListenableFuture<ResponseT> call(
       AsyncCall<RequestT, ResponseT> rpc, RequestT request) throws InterruptedException {
     // Wait until both the memory and rpc count maximum requirements are achieved before getting a
@@ -269,4 +329,11 @@ public class AsyncExecutor {
   public long getMaxHeapSize() {
     return sizeManager.getMaxHeapSize();
   }
+
+  /**
+   * The current maximum number of in-flight RPCs.
+   */
+  public int getMaxInFlightRpcs() {
+    return sizeManager.getMaxInFlightRpcs();
+  }
 }
\ No newline at end of file
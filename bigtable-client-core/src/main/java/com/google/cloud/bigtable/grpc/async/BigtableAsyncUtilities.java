@@ -18,7 +18,7 @@ package com.google.cloud.bigtable.grpc.async;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 import com.google.bigtable.v1.BigtableServiceGrpc;
 import com.google.bigtable.v1.ReadRowsRequest;
@@ -28,11 +28,14 @@ import com.google.bigtable.v1.SampleRowKeysRequest;
 import com.google.bigtable.v1.SampleRowKeysResponse;
 import com.google.cloud.bigtable.config.RetryOptions;
 import com.google.cloud.bigtable.grpc.io.ClientCallService;
+import com.google.cloud.bigtable.grpc.io.RetryBudget;
 import com.google.cloud.bigtable.grpc.scanner.RowMerger;
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import io.grpc.CallOptions;
 import io.grpc.Channel;
@@ -59,8 +62,9 @@ public final class BigtableAsyncUtilities {
         public List<Row> apply(List<ReadRowsResponse> responses) {
           List<Row> result = new ArrayList<>();
           Iterator<ReadRowsResponse> responseIterator = responses.iterator();
+          RowMerger rowMerger = new RowMerger();
           while (responseIterator.hasNext()) {
-            result.add(RowMerger.readNextRow(responseIterator));
+            result.add(RowMerger.readNextRow(responseIterator, rowMerger));
           }
           return result;
         }
@@ -69,13 +73,24 @@ public final class BigtableAsyncUtilities {
   public static RetryableRpc<SampleRowKeysRequest, List<SampleRowKeysResponse>>
       createSampleRowKeyAsyncReader(Channel channel, ClientCallService clientCallService) {
     return createStreamingAsync(channel, BigtableServiceGrpc.METHOD_SAMPLE_ROW_KEYS,
-      IMMUTABLE_LIST_TRANSFORMER, clientCallService);
+      IMMUTABLE_LIST_TRANSFORMER, clientCallService, Functions.constant(CallOptions.DEFAULT));
   }
 
   public static RetryableRpc<ReadRowsRequest, List<Row>> createRowKeyAysncReader(Channel channel,
       ClientCallService clientCallService) {
+    return createRowKeyAysncReader(channel, clientCallService,
+      Functions.constant(CallOptions.DEFAULT));
+  }
+
+  /**
+   * @param callOptionsFactory Creates the {@link CallOptions}, such as a deadline, of the call for
+   *          each request.
+   */
+  public static RetryableRpc<ReadRowsRequest, List<Row>> createRowKeyAysncReader(Channel channel,
+      ClientCallService clientCallService,
+      Function<? super ReadRowsRequest, CallOptions> callOptionsFactory) {
     return createStreamingAsync(channel, BigtableServiceGrpc.METHOD_READ_ROWS, ROW_TRANSFORMER,
-      clientCallService);
+      clientCallService, callOptionsFactory);
   }
 
   private static <RequestT, ResponseT, OutputT> RetryableRpc<RequestT, List<OutputT>>
@@ -83,11 +98,13 @@ public final class BigtableAsyncUtilities {
           final Channel channel,
           final MethodDescriptor<RequestT, ResponseT> method,
           final Function<List<ResponseT>, List<OutputT>> function,
-          final ClientCallService clientCallService) {
+          final ClientCallService clientCallService,
+          final Function<? super RequestT, CallOptions> callOptionsFactory) {
     return new RetryableRpc<RequestT, List<OutputT>>() {
       @Override
       public ListenableFuture<List<OutputT>> call(RequestT request) {
-        ClientCall<RequestT, ResponseT> readRowsCall = channel.newCall(method, CallOptions.DEFAULT);
+        ClientCall<RequestT, ResponseT> readRowsCall =
+            channel.newCall(method, callOptionsFactory.apply(request));
         CollectingStreamObserver<ResponseT> responseCollector = new CollectingStreamObserver<>();
         clientCallService.asyncServerStreamingCall(readRowsCall, request, responseCollector);
         return Futures.transform(responseCollector.getResponseCompleteFuture(), function);
@@ -101,19 +118,25 @@ public final class BigtableAsyncUtilities {
    * @param retryOptions Configures how to perform backoffs when failures occur.
    * @param request The request to send.
    * @param rpc The rpc to perform
-   * @param executorService The ExecutorService on which to run if there is a need for a retry.
+   * @param retryExecutorService The ScheduledExecutorService on which to schedule retries after
+   *          their back off.
+   * @param retryBudget Limits the retries that this rpc shares with other operations.
    * @return the ListenableFuture that can be used to track the RPC.
    */
   public static <RequestT, ResponseT> ListenableFuture<ResponseT> doReadAsync(
       RetryOptions retryOptions, final RequestT request,
-      RetryableRpc<RequestT, ResponseT> rpc, ExecutorService executorService) {
+      RetryableRpc<RequestT, ResponseT> rpc, ScheduledExecutorService retryExecutorService,
+      RetryBudget retryBudget) {
     ListenableFuture<ResponseT> listenableFuture = rpc.call(request);
     if (retryOptions.enableRetries()) {
+      retryBudget.onRequest();
+      // The retrying function only schedules the retry, so it doesn't need a thread of its own.
       return Futures.catchingAsync(
           listenableFuture,
           StatusRuntimeException.class,
-          RetryingRpcFunction.create(retryOptions, request, rpc),
-          executorService);
+          RetryingRpcFunction.create(retryOptions, request, rpc, retryExecutorService,
+            retryBudget),
+          MoreExecutors.directExecutor());
     }
     return listenableFuture;
   }
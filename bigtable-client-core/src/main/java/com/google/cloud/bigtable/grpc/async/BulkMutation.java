@@ -0,0 +1,406 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.async;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.api.client.util.BackOff;
+import com.google.bigtable.v1.MutateRowRequest;
+import com.google.bigtable.v1.MutateRowsRequest;
+import com.google.bigtable.v1.MutateRowsResponse;
+import com.google.cloud.bigtable.config.BulkOptions;
+import com.google.cloud.bigtable.config.Logger;
+import com.google.cloud.bigtable.config.RetryOptions;
+import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.cloud.bigtable.grpc.BigtableDataGrpcClient;
+import com.google.cloud.bigtable.grpc.BigtableTableName;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.Empty;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+/**
+ * This class groups {@link MutateRowRequest}s for a single table into
+ * {@link MutateRowsRequest}s, and sends them through a {@link BigtableDataClient}. A batch is
+ * sent when it reaches {@link BulkOptions#getBulkMaxRowKeyCount()} entries, when it reaches
+ * {@link BulkOptions#getBulkMaxRequestSize()} bytes, when it has been open for
+ * {@link BulkOptions#getAutoflushMs()} milliseconds or when {@link #flush()} is called. Each
+ * {@link MutateRowRequest} gets its own {@link ListenableFuture} which is resolved from the
+ * per-entry status in the {@link MutateRowsResponse}.
+ * <p>
+ * When a batch partially fails, only the failed entries that are retryable according to
+ * {@link RetryOptions#isRetryableMutation(Status.Code)} and that are idempotent according to
+ * {@link BigtableDataGrpcClient#IS_RETRYABLE_MUTATION} are sent again, after an exponential
+ * backoff. Other failed entries fail only their own futures.
+ * <p>
+ * Sending a batch can block while the {@link AsyncExecutor} is full, so batches are never sent
+ * while holding this object's lock, or on the retry executor: a blocked retry thread could keep
+ * the completions that free up capacity from ever being retried.
+ */
+public class BulkMutation {
+
+  protected static final Logger LOG = new Logger(BulkMutation.class);
+
+  private static final Empty EMPTY = Empty.getDefaultInstance();
+
+  /**
+   * Converts a per-entry {@link com.google.rpc.Status} into an exception that can be set on an
+   * entry's future.
+   */
+  @VisibleForTesting
+  static StatusRuntimeException toException(com.google.rpc.Status status) {
+    return Status.fromCodeValue(status.getCode())
+        .withDescription(status.getMessage())
+        .asRuntimeException();
+  }
+
+  /**
+   * A single row's mutations, along with the future that the caller is waiting on.
+   */
+  private static class MutationEntry {
+    private final MutateRowsRequest.Entry entry;
+    private final SettableFuture<Empty> future = SettableFuture.create();
+    private final boolean isIdempotent;
+    private Throwable lastFailure;
+
+    MutationEntry(MutateRowsRequest.Entry entry, boolean isIdempotent) {
+      this.entry = entry;
+      this.isIdempotent = isIdempotent;
+    }
+  }
+
+  /**
+   * A set of entries that will be sent in a single {@link MutateRowsRequest}. Once sent, the batch
+   * keeps track of the entries that still need to be retried until all of them are complete. The
+   * batch holds its {@link HeapSizeManager} capacity until then, so that
+   * {@link AsyncExecutor#flush()} waits for the retries.
+   */
+  @VisibleForTesting
+  class Batch implements FutureCallback<MutateRowsResponse>, Runnable {
+    private List<MutationEntry> entries = new ArrayList<>();
+    private long approximateByteSize;
+    private ScheduledFuture<?> autoflushFuture;
+    private BackOff currentBackoff;
+    private final SettableFuture<Void> completionFuture = SettableFuture.create();
+
+    Batch() {
+      this.approximateByteSize = tableName.length();
+    }
+
+    ListenableFuture<Empty> add(MutateRowsRequest.Entry entry, boolean isIdempotent) {
+      MutationEntry mutationEntry = new MutationEntry(entry, isIdempotent);
+      entries.add(mutationEntry);
+      approximateByteSize += entry.getSerializedSize();
+      return mutationEntry.future;
+    }
+
+    boolean isEmpty() {
+      return entries.isEmpty();
+    }
+
+    boolean isFull() {
+      return entries.size() >= maxRowKeyCount || approximateByteSize >= maxRequestSize;
+    }
+
+    /**
+     * Would the addition of an entry of the given size push this batch over the byte limit?
+     */
+    boolean wouldOverflow(long entrySize) {
+      return !isEmpty() && approximateByteSize + entrySize > maxRequestSize;
+    }
+
+    /**
+     * Sends the batch. This may block if the {@link AsyncExecutor}'s {@link HeapSizeManager} is
+     * full.
+     */
+    @Override
+    public void run() {
+      try {
+        asyncExecutor.registerOperation(completionFuture, approximateByteSize);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        for (MutationEntry entry : entries) {
+          entry.future.setException(e);
+        }
+        completionFuture.set(null);
+        return;
+      }
+      sendAttempt();
+    }
+
+    private void sendAttempt() {
+      MutateRowsRequest.Builder builder = MutateRowsRequest.newBuilder().setTableName(tableName);
+      for (MutationEntry entry : entries) {
+        builder.addEntries(entry.entry);
+      }
+      ListenableFuture<MutateRowsResponse> future;
+      try {
+        future = client.mutateRowsAsync(builder.build());
+      } catch (Exception e) {
+        future = Futures.immediateFailedFuture(e);
+      }
+      Futures.addCallback(future, this);
+    }
+
+    @Override
+    public void onSuccess(MutateRowsResponse response) {
+      List<com.google.rpc.Status> statuses = response.getStatusesList();
+      if (statuses.size() != entries.size()) {
+        LOG.warn("Expected %d statuses in the MutateRowsResponse, but got %d.", entries.size(),
+          statuses.size());
+      }
+      List<MutationEntry> toRetry = new ArrayList<>();
+      for (int i = 0; i < entries.size(); i++) {
+        MutationEntry entry = entries.get(i);
+        if (i >= statuses.size()) {
+          entry.future.setException(Status.INTERNAL
+              .withDescription("No status was returned for this mutation.").asRuntimeException());
+        } else if (statuses.get(i).getCode() == Status.Code.OK.value()) {
+          entry.future.set(EMPTY);
+        } else {
+          StatusRuntimeException exception = toException(statuses.get(i));
+          if (isRetryable(entry, exception.getStatus().getCode())) {
+            entry.lastFailure = exception;
+            toRetry.add(entry);
+          } else {
+            entry.future.setException(exception);
+          }
+        }
+      }
+      retry(toRetry);
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+      // When every entry is idempotent, the RPC itself was already retried by a RetryingCall. If
+      // not, retry the entries that can safely be retried.
+      boolean retriedByCall = retryOptions.enableRetries() && allEntriesAreIdempotent();
+      Status.Code code = Status.fromThrowable(t).getCode();
+      List<MutationEntry> toRetry = new ArrayList<>();
+      for (MutationEntry entry : entries) {
+        if (!retriedByCall && isRetryable(entry, code)) {
+          entry.lastFailure = t;
+          toRetry.add(entry);
+        } else {
+          entry.future.setException(t);
+        }
+      }
+      retry(toRetry);
+    }
+
+    private boolean isRetryable(MutationEntry entry, Status.Code code) {
+      return entry.isIdempotent
+          && retryOptions.enableRetries()
+          && retryOptions.isRetryableMutation(code);
+    }
+
+    private boolean allEntriesAreIdempotent() {
+      for (MutationEntry entry : entries) {
+        if (!entry.isIdempotent) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void retry(List<MutationEntry> toRetry) {
+      entries = toRetry;
+      if (toRetry.isEmpty()) {
+        completionFuture.set(null);
+        return;
+      }
+      long backOffMillis = nextBackOffMillis();
+      if (backOffMillis == BackOff.STOP) {
+        for (MutationEntry entry : toRetry) {
+          entry.future.setException(entry.lastFailure);
+        }
+        completionFuture.set(null);
+        return;
+      }
+      LOG.debug("Retrying %d failed mutations in %d ms.", toRetry.size(), backOffMillis);
+      retryExecutorService.schedule(new Runnable() {
+        @Override
+        public void run() {
+          sendAttempt();
+        }
+      }, backOffMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private long nextBackOffMillis() {
+      if (currentBackoff == null) {
+        currentBackoff = retryOptions.createBackoff();
+      }
+      try {
+        return currentBackoff.nextBackOffMillis();
+      } catch (IOException e) {
+        // Ignored, we will not retry and the last failure will be reported.
+        return BackOff.STOP;
+      }
+    }
+
+    @VisibleForTesting
+    int getEntryCount() {
+      return entries.size();
+    }
+  }
+
+  private final String tableName;
+  private final BigtableDataClient client;
+  private final AsyncExecutor asyncExecutor;
+  private final RetryOptions retryOptions;
+  private final ScheduledExecutorService retryExecutorService;
+  private final ExecutorService batchExecutorService;
+  private final int maxRowKeyCount;
+  private final long maxRequestSize;
+  private final long autoflushMs;
+
+  @VisibleForTesting
+  Batch currentBatch = null;
+
+  /**
+   * @param tableName The table to which all of the mutations will be sent.
+   * @param client The client that sends the {@link MutateRowsRequest}s.
+   * @param asyncExecutor Limits the number and size of outstanding batches.
+   * @param retryOptions Configures which failed entries are retried, and the backoff between
+   *          retries.
+   * @param retryExecutorService Schedules retries and the automatic sending of partially filled
+   *          batches.
+   * @param batchExecutorService Sends the partially filled batches, which may block until the
+   *          {@link AsyncExecutor} has room for them.
+   * @param bulkOptions Configures the size limits of a batch.
+   */
+  public BulkMutation(
+      BigtableTableName tableName,
+      BigtableDataClient client,
+      AsyncExecutor asyncExecutor,
+      RetryOptions retryOptions,
+      ScheduledExecutorService retryExecutorService,
+      ExecutorService batchExecutorService,
+      BulkOptions bulkOptions) {
+    this.tableName = tableName.toString();
+    this.client = client;
+    this.asyncExecutor = asyncExecutor;
+    this.retryOptions = retryOptions;
+    this.retryExecutorService = retryExecutorService;
+    this.batchExecutorService = batchExecutorService;
+    this.maxRowKeyCount = bulkOptions.getBulkMaxRowKeyCount();
+    this.maxRequestSize = bulkOptions.getBulkMaxRequestSize();
+    this.autoflushMs = bulkOptions.getAutoflushMs();
+  }
+
+  /**
+   * Adds a {@link MutateRowRequest} to the current batch. This method may block if a batch is
+   * sent and the {@link AsyncExecutor} has too many outstanding operations.
+   *
+   * @param request The {@link MutateRowRequest} to add to the batch.
+   * @return a {@link ListenableFuture} that will be resolved when the mutation completes, after
+   *         any retries.
+   */
+  public ListenableFuture<Empty> add(MutateRowRequest request) {
+    if (!request.getTableName().isEmpty() && !tableName.equals(request.getTableName())) {
+      return Futures.immediateFailedFuture(new IllegalArgumentException(String.format(
+        "The request's table '%s' does not match the BulkMutation's table '%s'.",
+        request.getTableName(), tableName)));
+    }
+    MutateRowsRequest.Entry entry = MutateRowsRequest.Entry.newBuilder()
+        .setRowKey(request.getRowKey())
+        .addAllMutations(request.getMutationsList())
+        .build();
+    boolean isIdempotent = BigtableDataGrpcClient.IS_RETRYABLE_MUTATION.apply(request);
+    ListenableFuture<Empty> future;
+    Batch overflowedBatch = null;
+    Batch fullBatch = null;
+    synchronized (this) {
+      if (currentBatch != null && currentBatch.wouldOverflow(entry.getSerializedSize())) {
+        overflowedBatch = takeCurrentBatch();
+      }
+      if (currentBatch == null) {
+        currentBatch = new Batch();
+        scheduleAutoflush(currentBatch);
+      }
+      future = currentBatch.add(entry, isIdempotent);
+      if (currentBatch.isFull()) {
+        fullBatch = takeCurrentBatch();
+      }
+    }
+    send(overflowedBatch);
+    send(fullBatch);
+    return future;
+  }
+
+  /**
+   * Sends any outstanding mutations. Use {@link AsyncExecutor#flush()} to wait for the
+   * outstanding batches, including their retries, to complete.
+   */
+  public void flush() {
+    Batch batch;
+    synchronized (this) {
+      batch = takeCurrentBatch();
+    }
+    send(batch);
+  }
+
+  /**
+   * Removes the current batch, so that it can be sent outside of the lock.
+   */
+  private Batch takeCurrentBatch() {
+    Batch batch = currentBatch;
+    currentBatch = null;
+    if (batch != null && batch.autoflushFuture != null) {
+      batch.autoflushFuture.cancel(false);
+      batch.autoflushFuture = null;
+    }
+    return batch;
+  }
+
+  private static void send(Batch batch) {
+    if (batch != null && !batch.isEmpty()) {
+      batch.run();
+    }
+  }
+
+  private void scheduleAutoflush(final Batch batch) {
+    if (autoflushMs <= 0 || retryExecutorService == null || batchExecutorService == null) {
+      return;
+    }
+    batch.autoflushFuture = retryExecutorService.schedule(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (BulkMutation.this) {
+          // The batch may already have been sent because it was full or because of a flush.
+          if (currentBatch != batch) {
+            return;
+          }
+          currentBatch = null;
+          batch.autoflushFuture = null;
+        }
+        // Sending may block, which must not hold up the retries on this executor.
+        batchExecutorService.execute(batch);
+      }
+    }, autoflushMs, TimeUnit.MILLISECONDS);
+  }
+}
@@ -15,13 +15,13 @@
  */
 package com.google.cloud.bigtable.grpc.async;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import com.google.cloud.bigtable.config.Logger;
 import com.google.common.util.concurrent.FutureCallback;
@@ -31,138 +31,211 @@ import com.google.common.util.concurrent.ListenableFuture;
 /**
  * This class ensures that operations meet heap size and max RPC counts.  A wait will occur
  * if RPCs are requested after heap and RPC count thresholds are exceeded.
+ * <p>
+ * The heap size and RPC count are tracked with atomic counters rather than a lock. Threads that
+ * have to wait for capacity, either in {@link #registerOperationWithHeapSize(long)} or in
+ * {@link #flush()}, are parked and are woken up as soon as an operation completes.
+ * <p>
+ * If an {@link AdaptiveRpcLimit} is given, the maximum number of in-flight RPCs follows its
+ * limit, which is updated from the latency and the failures of completed operations.
  */
 public class HeapSizeManager {
   protected static final Logger LOG = new Logger(HeapSizeManager.class);
 
-  // Flush is not properly synchronized with respect to waiting. It will never exit
-  // improperly, but it might wait more than it has to. Setting this to a low value ensures
-  // that improper waiting is minimal.
-  private static final long FINISH_WAIT_MILLIS = 250;
-  private static final long REGISTER_WAIT_MILLIS = 5;
-
   // In flush, wait up to this number of milliseconds without any operations completing.  If
   // this amount of time goes by without any updates, flush will log a warning.  Flush()
   // will still wait to complete.
   private static final long INTERVAL_NO_SUCCESS_WARNING = 300000;
+  /**
+   * The size and start time of an operation that has not completed yet.
+   */
+  private static class PendingOperation {
+    private final long heapSize;
+    private final long startNanos;
+
+    PendingOperation(long heapSize, long startNanos) {
+      this.heapSize = heapSize;
+      this.startNanos = startNanos;
+    }
+  }
+
   private final long maxHeapSize;
-  private final int maxInFlightRpcs;
-  private final Map<Long, Long> pendingOperationsWithSize = new HashMap<>();
-  private final LinkedBlockingDeque<Long> completedOperationIds = new LinkedBlockingDeque<>();
+  private volatile int maxInFlightRpcs;
+  private final AdaptiveRpcLimit adaptiveRpcLimit;
+  private final ConcurrentHashMap<Long, PendingOperation> pendingOperations =
+      new ConcurrentHashMap<>();
 
-  private long currentWriteBufferSize = 0;
-  private AtomicLong operationSequenceGenerator = new AtomicLong();
-  private long lastOperationChange = System.currentTimeMillis();
+  /**
+   * Threads waiting in {@link #registerOperationWithHeapSize(long)}. Only the head of the queue is
+   * woken up when capacity frees up; it wakes up the next waiter if there is capacity left after
+   * it registers.
+   */
+  private final Queue<Thread> registerWaiters = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Threads waiting in {@link #flush()}. All of them are woken up when the last operation
+   * completes.
+   */
+  private final Queue<Thread> flushWaiters = new ConcurrentLinkedQueue<>();
+
+  private final AtomicLong currentWriteBufferSize = new AtomicLong();
+  private final AtomicInteger inFlightRpcCount = new AtomicInteger();
+  private final AtomicLong operationSequenceGenerator = new AtomicLong();
+  private volatile long lastOperationChange = System.currentTimeMillis();
 
   public HeapSizeManager(long maxHeapSize, int maxInflightRpcs) {
     this.maxHeapSize = maxHeapSize;
     this.maxInFlightRpcs = maxInflightRpcs;
+    this.adaptiveRpcLimit = null;
+  }
+
+  /**
+   * @param maxHeapSize The maximum size of the pending operations.
+   * @param adaptiveRpcLimit Sets the maximum number of in-flight RPCs.
+   */
+  public HeapSizeManager(long maxHeapSize, AdaptiveRpcLimit adaptiveRpcLimit) {
+    this.maxHeapSize = maxHeapSize;
+    this.maxInFlightRpcs = adaptiveRpcLimit.getLimit();
+    this.adaptiveRpcLimit = adaptiveRpcLimit;
   }
 
   public long getMaxHeapSize() {
     return maxHeapSize;
   }
   
+  /**
+   * The current maximum number of in-flight RPCs. This changes over time if this manager has an
+   * {@link AdaptiveRpcLimit}.
+   */
   public int getMaxInFlightRpcs() {
     return maxInFlightRpcs;
   }
 
-  public synchronized void flush() throws InterruptedException {
+  /**
+   * Waits until all registered operations are complete.
+   */
+  public void flush() throws InterruptedException {
+    if (inFlightRpcCount.get() == 0) {
+      return;
+    }
     boolean performedWarning = false;
-    cleanupFinishedOperations();
-    while(!pendingOperationsWithSize.isEmpty()) {
-      if (!performedWarning
-          && lastOperationChange + INTERVAL_NO_SUCCESS_WARNING < System.currentTimeMillis()) {
-        long lastUpdated = (System.currentTimeMillis() - lastOperationChange) / 1000;
-        LOG.warn("No operations completed within the last %d seconds. "
-            + "There are still %d operations in progress.", lastUpdated,
-          pendingOperationsWithSize.size());
-        performedWarning = true;
+    Thread currentThread = Thread.currentThread();
+    flushWaiters.add(currentThread);
+    try {
+      while (inFlightRpcCount.get() > 0) {
+        long waitMillis =
+            lastOperationChange + INTERVAL_NO_SUCCESS_WARNING - System.currentTimeMillis();
+        if (!performedWarning && waitMillis <= 0) {
+          LOG.warn("No operations completed within the last %d seconds. "
+              + "There are still %d operations in progress.",
+            (System.currentTimeMillis() - lastOperationChange) / 1000, inFlightRpcCount.get());
+          performedWarning = true;
+        }
+        if (performedWarning) {
+          LockSupport.park(this);
+        } else {
+          LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        }
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
       }
-      waitForCompletions(FINISH_WAIT_MILLIS);
-      cleanupFinishedOperations();
+    } finally {
+      flushWaiters.remove(currentThread);
     }
     if (performedWarning) {
       LOG.info("flush() completed");
     }
   }
 
-
-  private void cleanupFinishedOperations() {
-    List<Long> toClean = new ArrayList<>();
-    completedOperationIds.drainTo(toClean);
-    if (!toClean.isEmpty()) {
-      markOperationsCompleted(toClean);
-    }
-  }
-  public synchronized long registerOperationWithHeapSize(long heapSize)
+  public long registerOperationWithHeapSize(long heapSize)
       throws InterruptedException {
     long operationId = operationSequenceGenerator.incrementAndGet();
-    while (unsynchronizedIsFull()) {
-      waitForCompletions(REGISTER_WAIT_MILLIS);
+    if (!tryAcquire(heapSize)) {
+      Thread currentThread = Thread.currentThread();
+      registerWaiters.add(currentThread);
+      try {
+        while (!tryAcquire(heapSize)) {
+          LockSupport.park(this);
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+      } finally {
+        registerWaiters.remove(currentThread);
+        // A wake up meant for this thread may need to go to the next waiter instead.
+        if (!isFull()) {
+          signalNextWaiter();
+        }
+      }
     }
 
     lastOperationChange = System.currentTimeMillis();
-    pendingOperationsWithSize.put(operationId, heapSize);
-    currentWriteBufferSize += heapSize;
+    pendingOperations.put(operationId, new PendingOperation(heapSize, System.nanoTime()));
+    // Pass on any remaining capacity to the next waiter.
+    if (!isFull()) {
+      signalNextWaiter();
+    }
     return operationId;
   }
 
   /**
-   * Waits for a completion and then marks it as complete.
-   * @throws InterruptedException
+   * Reserves an RPC and {@code heapSize} bytes if this manager is not full. Like the RPC count,
+   * the heap size is only checked before the operation is added, so a single operation may go
+   * over the heap size limit.
    */
-  private void waitForCompletions(long timeoutMs) throws InterruptedException {
-    Long completedOperation =
-        this.completedOperationIds.pollFirst(timeoutMs, TimeUnit.MILLISECONDS);
-    if (completedOperation != null) {
-      markOperationComplete(completedOperation);
+  private boolean tryAcquire(long heapSize) {
+    while (true) {
+      int rpcCount = inFlightRpcCount.get();
+      if (rpcCount >= maxInFlightRpcs || currentWriteBufferSize.get() >= maxHeapSize) {
+        return false;
+      }
+      if (inFlightRpcCount.compareAndSet(rpcCount, rpcCount + 1)) {
+        currentWriteBufferSize.addAndGet(heapSize);
+        return true;
+      }
     }
   }
 
-  public synchronized boolean isFull() {
-    return unsynchronizedIsFull();
-  }
-
-  private boolean unsynchronizedIsFull() {
-    if (!isFullInternal()) {
-      return false;
+  private void signalNextWaiter() {
+    Thread waiter = registerWaiters.peek();
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
     }
-    // If we're not full, don't worry about cleaning up just yet.
-    cleanupFinishedOperations();
-    return isFullInternal();
-  }
-
-  private boolean isFullInternal() {
-    return currentWriteBufferSize >= maxHeapSize
-        || pendingOperationsWithSize.size() >= maxInFlightRpcs;
   }
 
-  private synchronized void markOperationsCompleted(List<Long> operationSequenceIds) {
-    for (Long operationSequenceId : operationSequenceIds) {
-      markOperationComplete(operationSequenceId);
-    }
-    lastOperationChange = System.currentTimeMillis();
-    notifyAll();
+  public boolean isFull() {
+    return currentWriteBufferSize.get() >= maxHeapSize
+        || inFlightRpcCount.get() >= maxInFlightRpcs;
   }
 
-  private void markOperationComplete(Long operationSequenceId) {
-    Long heapSize = pendingOperationsWithSize.remove(operationSequenceId);
-    if (heapSize != null) {
-      currentWriteBufferSize -= heapSize;
-    } else {
+  private void markOperationComplete(Long operationSequenceId, Throwable failure) {
+    PendingOperation operation = pendingOperations.remove(operationSequenceId);
+    if (operation == null) {
       LOG.warn("An operation completion was recieved multiple times. Your operations completed."
           + " Please notify Google that this occurred.");
+      return;
     }
+    if (adaptiveRpcLimit != null) {
+      maxInFlightRpcs = adaptiveRpcLimit.onCompletion(System.nanoTime() - operation.startNanos,
+        failure, inFlightRpcCount.get());
+    }
+    currentWriteBufferSize.addAndGet(-operation.heapSize);
+    lastOperationChange = System.currentTimeMillis();
+    if (inFlightRpcCount.decrementAndGet() == 0) {
+      for (Thread waiter : flushWaiters) {
+        LockSupport.unpark(waiter);
+      }
+    }
+    signalNextWaiter();
   }
 
-  public synchronized boolean hasInflightRequests() {
-    cleanupFinishedOperations();
-    return !pendingOperationsWithSize.isEmpty();
+  public boolean hasInflightRequests() {
+    return inFlightRpcCount.get() > 0;
   }
 
-  synchronized long getHeapSize() {
-    return currentWriteBufferSize;
+  long getHeapSize() {
+    return currentWriteBufferSize.get();
   }
 
   public <T> FutureCallback<T> addCallback(ListenableFuture<T> future, final Long id) {
@@ -174,7 +247,7 @@ public class HeapSizeManager {
 
       @Override
       public void onFailure(Throwable t) {
-        markCanBeCompleted(id);
+        markOperationComplete(id, t);
       }
     };
     Futures.addCallback(future, callback);
@@ -182,6 +255,6 @@ public class HeapSizeManager {
   }
 
   public void markCanBeCompleted(Long id) {
-    completedOperationIds.offer(id);
+    markOperationComplete(id, null);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.async;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.bigtable.v1.ReadRowsRequest;
+import com.google.bigtable.v1.Row;
+import com.google.bigtable.v1.RowSet;
+import com.google.cloud.bigtable.config.ReadOptions;
+import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.ByteString;
+
+/**
+ * Groups concurrent single row {@link ReadRowsRequest}s that are identical other than their row
+ * key, i.e. reads of the same table with the same filter, into a single {@link RowSet} read. A
+ * read waits at most {@link ReadOptions#getCoalescingWindowMicros()} for other reads, and a
+ * group is sent as soon as it has {@link ReadOptions#getCoalescingMaxRowKeyCount()} distinct
+ * keys. Concurrent reads of the same key share a single entry in the {@link RowSet}. A group with
+ * only one key is sent as a single row read.
+ */
+public class ReadCoalescer {
+
+  /**
+   * A group of reads that will be sent as a single {@link ReadRowsRequest}.
+   */
+  @VisibleForTesting
+  class Batch implements FutureCallback<List<Row>>, Runnable {
+    private final ReadRowsRequest template;
+    private final Map<ByteString, List<SettableFuture<Row>>> rowFutures = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushFuture;
+
+    Batch(ReadRowsRequest template) {
+      this.template = template;
+    }
+
+    ListenableFuture<Row> add(ByteString rowKey) {
+      List<SettableFuture<Row>> futures = rowFutures.get(rowKey);
+      if (futures == null) {
+        futures = new ArrayList<>(1);
+        rowFutures.put(rowKey, futures);
+      }
+      SettableFuture<Row> future = SettableFuture.create();
+      futures.add(future);
+      return future;
+    }
+
+    @VisibleForTesting
+    int getRowKeyCount() {
+      return rowFutures.size();
+    }
+
+    /**
+     * Sends the batch if it was not already sent because it reached the maximum number of keys.
+     */
+    @Override
+    public void run() {
+      synchronized (ReadCoalescer.this) {
+        if (batches.get(template) != this) {
+          return;
+        }
+        batches.remove(template);
+      }
+      send();
+    }
+
+    private void send() {
+      if (flushFuture != null) {
+        flushFuture.cancel(false);
+      }
+      // A single key is sent as a single row read, which keeps the hedging and the deadline of
+      // single row reads.
+      ReadRowsRequest request;
+      if (rowFutures.size() == 1) {
+        request = template.toBuilder().setRowKey(rowFutures.keySet().iterator().next()).build();
+      } else {
+        RowSet.Builder rowSet = RowSet.newBuilder().addAllRowKeys(rowFutures.keySet());
+        request = template.toBuilder().setRowSet(rowSet).build();
+      }
+      ListenableFuture<List<Row>> future;
+      try {
+        future = client.readRowsAsync(request);
+      } catch (Exception e) {
+        future = Futures.immediateFailedFuture(e);
+      }
+      Futures.addCallback(future, this);
+    }
+
+    @Override
+    public void onSuccess(List<Row> rows) {
+      for (Row row : rows) {
+        List<SettableFuture<Row>> futures = rowFutures.remove(row.getKey());
+        if (futures != null) {
+          for (SettableFuture<Row> future : futures) {
+            future.set(row);
+          }
+        }
+      }
+      // Rows that were not returned do not exist.
+      for (List<SettableFuture<Row>> futures : rowFutures.values()) {
+        for (SettableFuture<Row> future : futures) {
+          future.set(null);
+        }
+      }
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+      for (List<SettableFuture<Row>> futures : rowFutures.values()) {
+        for (SettableFuture<Row> future : futures) {
+          future.setException(t);
+        }
+      }
+    }
+  }
+
+  private final BigtableDataClient client;
+  private final ScheduledExecutorService scheduledExecutorService;
+  private final long windowMicros;
+  private final int maxRowKeyCount;
+
+  /**
+   * The batches that are waiting to be sent, keyed by their request without the row key.
+   */
+  @VisibleForTesting
+  final Map<ReadRowsRequest, Batch> batches = new HashMap<>();
+
+  /**
+   * @param client The client that sends the coalesced {@link ReadRowsRequest}s.
+   * @param scheduledExecutorService Sends the batches at the end of the coalescing window.
+   * @param readOptions Configures the coalescing window and the maximum number of keys per read.
+   */
+  public ReadCoalescer(BigtableDataClient client,
+      ScheduledExecutorService scheduledExecutorService, ReadOptions readOptions) {
+    this.client = client;
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.windowMicros = readOptions.getCoalescingWindowMicros();
+    this.maxRowKeyCount = readOptions.getCoalescingMaxRowKeyCount();
+  }
+
+  /**
+   * Reads a single row, possibly along with other concurrent reads.
+   *
+   * @param request A {@link ReadRowsRequest} with a row key.
+   * @return A {@link ListenableFuture} that contains the {@link Row}, or null if the row does not
+   *         exist.
+   */
+  public ListenableFuture<Row> readRowAsync(ReadRowsRequest request) {
+    Preconditions.checkArgument(request.getTargetCase() == ReadRowsRequest.TargetCase.ROW_KEY,
+      "Only single row reads can be coalesced.");
+    ReadRowsRequest template = request.toBuilder().clearRowKey().build();
+    Batch toSend = null;
+    ListenableFuture<Row> future;
+    synchronized (this) {
+      Batch batch = batches.get(template);
+      if (batch == null) {
+        batch = new Batch(template);
+        batches.put(template, batch);
+        if (maxRowKeyCount > 1) {
+          batch.flushFuture =
+              scheduledExecutorService.schedule(batch, windowMicros, TimeUnit.MICROSECONDS);
+        }
+      }
+      future = batch.add(request.getRowKey());
+      if (batch.getRowKeyCount() >= maxRowKeyCount) {
+        batches.remove(template);
+        toSend = batch;
+      }
+    }
+    if (toSend != null) {
+      toSend.send();
+    }
+    return future;
+  }
+}
@@ -16,31 +16,39 @@
 package com.google.cloud.bigtable.grpc.async;
 
 import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.google.api.client.util.BackOff;
-import com.google.api.client.util.Sleeper;
 import com.google.cloud.bigtable.config.RetryOptions;
+import com.google.cloud.bigtable.grpc.io.RetryBudget;
 import com.google.cloud.bigtable.grpc.scanner.ScanRetriesExhaustedException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 
 /**
- * A {@link AsyncFunction} that retries a {@link RetryableRpc} request.
+ * A {@link AsyncFunction} that retries a {@link RetryableRpc} request. Retries are scheduled on a
+ * {@link ScheduledExecutorService} after the back off, so no thread waits for them, and each
+ * retry is itself retried until the back off stops.
  */
 public class RetryingRpcFunction<RequestT, ResponseT>
     implements AsyncFunction<StatusRuntimeException, ResponseT> {
 
   public static <RequestT, ResponseT> RetryingRpcFunction<RequestT, ResponseT> create(
-      RetryOptions retryOptions, RequestT request, RetryableRpc<RequestT, ResponseT> retryableRpc) {
-    return new RetryingRpcFunction<RequestT, ResponseT>(retryOptions, request, retryableRpc);
+      RetryOptions retryOptions, RequestT request, RetryableRpc<RequestT, ResponseT> retryableRpc,
+      ScheduledExecutorService retryExecutorService, RetryBudget retryBudget) {
+    return new RetryingRpcFunction<RequestT, ResponseT>(retryOptions, request, retryableRpc,
+        retryExecutorService, retryBudget);
   }
 
   protected final Log LOG = LogFactory.getLog(RetryingRpcFunction.class);
@@ -49,17 +57,21 @@ public class RetryingRpcFunction<RequestT, ResponseT>
 
   @VisibleForTesting
   BackOff currentBackoff;
-  @VisibleForTesting
-  Sleeper sleeper = Sleeper.DEFAULT;
 
   private final RetryableRpc<RequestT, ResponseT> retryableRpc;
+  private final ScheduledExecutorService retryExecutorService;
+  private final RetryBudget retryBudget;
   private final RetryOptions retryOptions;
+  private final long startNanos = System.nanoTime();
 
   private RetryingRpcFunction(RetryOptions retryOptions, RequestT request,
-      RetryableRpc<RequestT, ResponseT> retryableRpc) {
+      RetryableRpc<RequestT, ResponseT> retryableRpc,
+      ScheduledExecutorService retryExecutorService, RetryBudget retryBudget) {
     this.retryOptions = retryOptions;
+    this.retryBudget = retryBudget;
     this.request = request;
     this.retryableRpc = retryableRpc;
+    this.retryExecutorService = retryExecutorService;
   }
 
   @Override
@@ -81,17 +93,35 @@ public class RetryingRpcFunction<RequestT, ResponseT>
     if (nextBackOff == BackOff.STOP) {
       throw new ScanRetriesExhaustedException("Exhausted streaming retries.", cause);
     }
+    int operationTimeoutMs = retryOptions.getOperationTimeoutMs();
+    if (operationTimeoutMs > 0 && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+        + nextBackOff >= operationTimeoutMs) {
+      throw new ScanRetriesExhaustedException(
+          "Exceeded the operation timeout of " + operationTimeoutMs + " ms.", cause);
+    }
+    if (!retryBudget.tryAcquireRetry()) {
+      throw new ScanRetriesExhaustedException(
+          "The retry budget is exhausted because too many operations are retrying.", cause);
+    }
 
-    sleep(nextBackOff);
-    return retryableRpc.call(request);
+    final SettableFuture<ResponseT> retryFuture = SettableFuture.create();
+    retryExecutorService.schedule(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          retryFuture.setFuture(retry());
+        } catch (RuntimeException e) {
+          retryFuture.setException(e);
+        }
+      }
+    }, nextBackOff, TimeUnit.MILLISECONDS);
+    return retryFuture;
   }
 
-  private void sleep(long millis) throws IOException {
-    try {
-      sleeper.sleep(millis);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      throw new IOException("Interrupted while sleeping for resume", e);
-    }
+  private ListenableFuture<ResponseT> retry() {
+    // Neither the call nor this function blocks, so they can run on the thread that completes
+    // the future.
+    return Futures.catchingAsync(retryableRpc.call(request), StatusRuntimeException.class, this,
+      MoreExecutors.directExecutor());
   }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.cloud.bigtable.config.Logger;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import io.grpc.Channel;
+
+/**
+ * A {@link ChannelPool.ChannelFactory} that spreads the channels of a pool across all of the
+ * addresses that a host resolves to, rather than letting every channel resolve the host on its
+ * own and possibly pin to the same address. The channels are assigned to the addresses in round
+ * robin order.
+ * <p>
+ * The host is resolved again when a channel is created and the last resolution is older than the
+ * re-resolution interval. Since a pool with a maximum channel age replaces its channels
+ * regularly, the pool follows changes to the host's addresses over time. If a resolution fails,
+ * the previous addresses are kept.
+ */
+public class AddressAwareChannelFactory implements ChannelPool.ChannelFactory {
+
+  protected static final Logger LOG = new Logger(AddressAwareChannelFactory.class);
+
+  /**
+   * Resolves a host name to all of its addresses.
+   */
+  public interface AddressResolver {
+    List<InetAddress> resolve(String host) throws UnknownHostException;
+  }
+
+  /**
+   * Creates a channel that connects to a specific address.
+   */
+  public interface AddressChannelFactory {
+    Channel create(InetSocketAddress address) throws IOException;
+  }
+
+  /**
+   * Resolves host names with {@link InetAddress#getAllByName(String)}, which returns all of the
+   * A and AAAA records of the host.
+   */
+  public static final AddressResolver DEFAULT_RESOLVER = new AddressResolver() {
+    @Override
+    public List<InetAddress> resolve(String host) throws UnknownHostException {
+      return Arrays.asList(InetAddress.getAllByName(host));
+    }
+  };
+
+  private final String host;
+  private final int port;
+  private final AddressResolver resolver;
+  private final AddressChannelFactory channelFactory;
+  private final long reResolveIntervalNanos;
+
+  // Guarded by this.
+  private ImmutableList<InetSocketAddress> addresses = ImmutableList.of();
+  private long lastResolvedNanos;
+  private int nextIndex = 0;
+
+  /**
+   * @param host The host to resolve.
+   * @param port The port to connect to on each address.
+   * @param resolver Resolves the host's addresses.
+   * @param channelFactory Creates a channel for an address.
+   * @param reResolveIntervalMs How old the last resolution can be before a new channel triggers
+   *          another resolution.
+   */
+  public AddressAwareChannelFactory(String host, int port, AddressResolver resolver,
+      AddressChannelFactory channelFactory, long reResolveIntervalMs) {
+    this.host = host;
+    this.port = port;
+    this.resolver = resolver;
+    this.channelFactory = channelFactory;
+    this.reResolveIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reResolveIntervalMs);
+  }
+
+  @Override
+  public Channel create() throws IOException {
+    return channelFactory.create(nextAddress());
+  }
+
+  @VisibleForTesting
+  synchronized InetSocketAddress nextAddress() throws UnknownHostException {
+    if (addresses.isEmpty() || System.nanoTime() - lastResolvedNanos >= reResolveIntervalNanos) {
+      resolve();
+    }
+    InetSocketAddress address = addresses.get(nextIndex % addresses.size());
+    nextIndex = (nextIndex + 1) % addresses.size();
+    return address;
+  }
+
+  private void resolve() throws UnknownHostException {
+    List<InetAddress> resolved;
+    try {
+      resolved = resolver.resolve(host);
+    } catch (UnknownHostException e) {
+      if (addresses.isEmpty()) {
+        throw e;
+      }
+      LOG.warn("Could not resolve %s. Using the %d previously resolved addresses.", e, host,
+        addresses.size());
+      lastResolvedNanos = System.nanoTime();
+      return;
+    }
+    // Some resolvers return the same address more than once.
+    LinkedHashSet<InetSocketAddress> distinct = new LinkedHashSet<>();
+    for (InetAddress address : resolved) {
+      distinct.add(new InetSocketAddress(address, port));
+    }
+    if (distinct.isEmpty()) {
+      if (addresses.isEmpty()) {
+        throw new UnknownHostException("No addresses found for " + host);
+      }
+    } else if (!distinct.equals(new LinkedHashSet<>(addresses))) {
+      LOG.debug("Resolved %s to %s.", host, distinct);
+      addresses = ImmutableList.copyOf(distinct);
+    }
+    lastResolvedNanos = System.nanoTime();
+  }
+
+  @VisibleForTesting
+  synchronized List<InetSocketAddress> getAddresses() {
+    return addresses;
+  }
+}
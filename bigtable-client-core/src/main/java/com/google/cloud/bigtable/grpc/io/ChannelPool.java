@@ -15,52 +15,314 @@
  */
 package com.google.cloud.bigtable.grpc.io;
 
+import com.google.cloud.bigtable.config.ChannelOptions;
+import com.google.cloud.bigtable.config.ChannelOptions.SelectionStrategy;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.protobuf.MessageLite;
 
 import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
 import io.grpc.ClientInterceptors.CheckedForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
+import io.grpc.Status;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 /**
- * Manages a set of ClosableChannels and uses them in a round robin.
+ * Manages a set of ClosableChannels. The channel for each new call is picked based on a
+ * {@link SelectionStrategy}; by default, the channel with the fewest active calls is used.
+ * <p>
+ * If a maximum channel age is set, the channels are replaced one at a time, so that no channel
+ * gets older than the maximum age. If a warm up call is set, the new channel only gets calls once
+ * the server answers that call, or once its timeout passes. A replaced channel no longer gets new
+ * calls, and is shut down once its active calls complete. A channel can also be replaced early
+ * with {@link #replaceChannel(Channel)}, for example when its connection stopped responding.
+ * <p>
+ * If {@link ChannelOptions#isElastic()}, the pool starts with
+ * {@link ChannelOptions#getMinChannelCount()} channels, and adds a channel whenever the average
+ * number of active calls per channel reaches {@link ChannelOptions#getMaxStreamsPerChannel()}, up
+ * to a maximum number of channels. Channels that were not needed for the peak number of active
+ * calls in the last {@link ChannelOptions#getChannelIdleTimeoutMs()} are removed the same way that
+ * aged channels are replaced.
  */
-public class ChannelPool extends Channel {
+public class ChannelPool extends Channel implements Closeable {
 
   protected static final Logger log = Logger.getLogger(ChannelPool.class.getName());
 
+  /**
+   * How often a replaced channel is checked for active calls before it is shut down.
+   */
+  private static final long DRAIN_CHECK_INTERVAL_MS = 1000;
+
+  /**
+   * The maximum amount of time to wait for the active calls of a replaced channel to complete.
+   * Shutting down a channel is graceful, so calls that are still active after this time can still
+   * complete, but the channel's resources are released sooner.
+   */
+  private static final long MAX_DRAIN_MS = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * The maximum amount of time to wait for the channels to terminate in {@link #close()}.
+   */
+  private static final long CLOSE_TIMEOUT_MS = 10000;
+
   public interface ChannelFactory {
     Channel create() throws IOException;
   }
 
-  private final AtomicReference<ImmutableList<Channel>> channels = new AtomicReference<>();
+  /**
+   * A call that a new channel sends before it gets user calls, so that the user calls don't wait
+   * for its connection and handshakes.
+   */
+  private static class WarmUpProbe<ReqT, RespT> {
+    final MethodDescriptor<ReqT, RespT> method;
+    final ReqT request;
+    final long timeoutMs;
+
+    WarmUpProbe(MethodDescriptor<ReqT, RespT> method, ReqT request, long timeoutMs) {
+      this.method = Preconditions.checkNotNull(method);
+      this.request = Preconditions.checkNotNull(request);
+      this.timeoutMs = timeoutMs;
+    }
+  }
+
+  /**
+   * A {@link Channel} in the pool, along with the number of calls that were started on it and
+   * have not yet closed.
+   */
+  @VisibleForTesting
+  static class PooledChannel {
+    final Channel channel;
+    final AtomicInteger activeCalls = new AtomicInteger();
+    final long createdNanos = System.nanoTime();
+
+    PooledChannel(Channel channel) {
+      this.channel = channel;
+    }
+  }
+
+  private final AtomicReference<ImmutableList<PooledChannel>> channels = new AtomicReference<>();
   private final AtomicInteger requestCount = new AtomicInteger();
   private final ImmutableList<HeaderInterceptor> headerInterceptors;
   private final AtomicInteger totalSize;
   private final ChannelFactory factory;
   private final String authority;
+  private final SelectionStrategy selectionStrategy;
+  private final long maxChannelAgeMs;
+  private final ScheduledExecutorService executor;
+  private final Executor channelExecutor;
+  @Nullable
+  private final WarmUpProbe<?, ?> warmUpProbe;
+  private final Set<PooledChannel> replacedChannels =
+      Collections.newSetFromMap(new ConcurrentHashMap<PooledChannel, Boolean>());
+  private final Set<Channel> replacingChannels =
+      Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+
+  // Elastic scaling. maxStreamsPerChannel is 0 if the pool isn't elastic.
+  private final int maxStreamsPerChannel;
+  private final int minChannelCount;
+  private final int maxChannelCount;
+  private final AtomicInteger activeCallCount = new AtomicInteger();
+  private final AtomicInteger peakActiveCallCount = new AtomicInteger();
+  private final AtomicBoolean growing = new AtomicBoolean();
+
+  private final FlowControlWindowTuner windowTuner;
+  @Nullable
+  private final CircuitBreaker circuitBreaker;
+
+  // Guarded by this.
+  private boolean closed = false;
+  private ScheduledFuture<?> refreshFuture;
+  private ScheduledFuture<?> shrinkFuture;
+
+  /**
+   * Builds a {@link ChannelPool}. Only the {@link ChannelFactory} is required; by default, the pool
+   * has no header interceptors, uses the default {@link ChannelOptions}, and never replaces its
+   * channels.
+   */
+  public static class Builder {
+    private final ChannelFactory factory;
+    private List<HeaderInterceptor> headerInterceptors = ImmutableList.of();
+    private ChannelOptions channelOptions = new ChannelOptions.Builder().build();
+    private int maxChannelCount = Integer.MAX_VALUE;
+    private long maxChannelAgeMs = 0;
+    private ScheduledExecutorService executor;
+    private Executor channelExecutor;
+    private WarmUpProbe<?, ?> warmUpProbe;
+    private FlowControlWindowTuner windowTuner;
+    private CircuitBreaker circuitBreaker;
+
+    /**
+     * @param factory Creates the channels of the pool.
+     */
+    public Builder(ChannelFactory factory) {
+      this.factory = Preconditions.checkNotNull(factory);
+    }
+
+    /**
+     * Update the headers of each call.
+     */
+    public Builder setHeaderInterceptors(@Nullable List<HeaderInterceptor> headerInterceptors) {
+      this.headerInterceptors = headerInterceptors == null
+          ? ImmutableList.<HeaderInterceptor> of() : headerInterceptors;
+      return this;
+    }
+
+    /**
+     * How the channel for a new call is picked, and whether the pool scales with the number of
+     * active calls.
+     */
+    public Builder setChannelOptions(ChannelOptions channelOptions) {
+      this.channelOptions = Preconditions.checkNotNull(channelOptions);
+      return this;
+    }
+
+    /**
+     * The maximum number of channels in an elastic pool.
+     */
+    public Builder setMaxChannelCount(int maxChannelCount) {
+      this.maxChannelCount = maxChannelCount;
+      return this;
+    }
+
+    /**
+     * The age after which a channel is replaced, or 0 or less to keep channels until the pool is
+     * closed.
+     */
+    public Builder setMaxChannelAgeMs(long maxChannelAgeMs) {
+      this.maxChannelAgeMs = maxChannelAgeMs;
+      return this;
+    }
+
+    /**
+     * Replaces, adds and shuts down channels. Only required if the maximum channel age is set or
+     * if the pool is elastic.
+     */
+    public Builder setExecutor(ScheduledExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Creates and warms up the channels that replace old channels or that are added to an
+     * elastic pool. Connecting can be slow, so it shouldn't block the executor that schedules the
+     * pool's work. Defaults to the executor set by {@link #setExecutor(ScheduledExecutorService)}.
+     */
+    public Builder setChannelExecutor(@Nullable Executor channelExecutor) {
+      this.channelExecutor = channelExecutor;
+      return this;
+    }
+
+    /**
+     * If set, the channels that replace old channels or that are added to an elastic pool send
+     * this call, and only get user calls once the server answers it or once {@code timeoutMs}
+     * passes. See {@link ChannelPool#warmUp(MethodDescriptor, Object, long)}.
+     */
+    public <ReqT, RespT> Builder setWarmUp(MethodDescriptor<ReqT, RespT> method, ReqT request,
+        long timeoutMs) {
+      this.warmUpProbe = new WarmUpProbe<>(method, request, timeoutMs);
+      return this;
+    }
+
+    /**
+     * If set, is told about the round trip times and the sizes of the calls on the pool, so that
+     * the factory can use its window for new channels.
+     */
+    public Builder setFlowControlWindowTuner(@Nullable FlowControlWindowTuner windowTuner) {
+      this.windowTuner = windowTuner;
+      return this;
+    }
+
+    /**
+     * If set, is told about the outcome of each call, and fails calls with
+     * {@link CircuitBreaker#REJECTED_STATUS} without sending them while it is open.
+     */
+    public Builder setCircuitBreaker(@Nullable CircuitBreaker circuitBreaker) {
+      this.circuitBreaker = circuitBreaker;
+      return this;
+    }
+
+    /**
+     * Creates the pool, along with its first channel.
+     */
+    public ChannelPool build() throws IOException {
+      return new ChannelPool(this);
+    }
+  }
 
   public ChannelPool(List<HeaderInterceptor> headerInterceptors, ChannelFactory factory)
       throws IOException {
+    this(new Builder(factory).setHeaderInterceptors(headerInterceptors));
+  }
+
+  private ChannelPool(Builder builder) throws IOException {
+    ChannelOptions channelOptions = builder.channelOptions;
+    long maxChannelAgeMs = builder.maxChannelAgeMs;
+    ScheduledExecutorService executor = builder.executor;
+    ChannelFactory factory = builder.factory;
+    this.windowTuner = builder.windowTuner;
+    this.circuitBreaker = builder.circuitBreaker;
+    this.selectionStrategy = channelOptions.getSelectionStrategy();
+    Preconditions.checkArgument(
+      (maxChannelAgeMs <= 0 && !channelOptions.isElastic()) || executor != null,
+      "executor is required when maxChannelAgeMs is set or the pool is elastic.");
+    this.maxChannelAgeMs = maxChannelAgeMs;
+    this.executor = executor;
+    this.channelExecutor = builder.channelExecutor != null ? builder.channelExecutor : executor;
+    this.warmUpProbe = builder.warmUpProbe;
+    this.maxStreamsPerChannel = channelOptions.getMaxStreamsPerChannel();
+    this.minChannelCount = channelOptions.getMinChannelCount();
+    this.maxChannelCount = Math.max(minChannelCount, builder.maxChannelCount);
     Channel channel = factory.create();
-    this.channels.set(ImmutableList.of(channel));
+    this.channels.set(ImmutableList.of(new PooledChannel(channel)));
     authority = channel.authority();
     totalSize = new AtomicInteger(1);
     this.factory = factory;
-    if (headerInterceptors == null) {
-      this.headerInterceptors = ImmutableList.of();
-    } else {
-      this.headerInterceptors = ImmutableList.copyOf(headerInterceptors);
+    this.headerInterceptors = ImmutableList.copyOf(builder.headerInterceptors);
+    if (isElastic()) {
+      ensureChannelCount(minChannelCount);
+      long idleTimeoutMs = channelOptions.getChannelIdleTimeoutMs();
+      shrinkFuture = executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          removeUnneededChannels();
+        }
+      }, idleTimeoutMs, idleTimeoutMs, TimeUnit.MILLISECONDS);
     }
+    scheduleRefresh();
+  }
+
+  /**
+   * Whether the pool scales its number of channels with the number of active calls, in which
+   * case {@link #ensureChannelCount(int)} should not be used to force the pool to its full size.
+   */
+  public boolean isElastic() {
+    return maxStreamsPerChannel > 0;
   }
 
   /**
@@ -74,28 +336,406 @@ public class ChannelPool extends Channel {
     if (totalSize.get() < capacity) {
       synchronized(this){
         if (totalSize.get() < capacity) {
-          List<Channel> newChannelList = new ArrayList<>(channels.get());
+          List<PooledChannel> newChannelList = new ArrayList<>(channels.get());
           while(newChannelList.size() < capacity) {
-            newChannelList.add(factory.create());
+            newChannelList.add(new PooledChannel(factory.create()));
           }
           setChannels(newChannelList);
           totalSize.set(capacity);
+          // The new channels shorten the refresh interval.
+          scheduleRefresh();
+        }
+      }
+    }
+  }
+
+  /**
+   * Connects all of the channels in the pool in parallel, by starting a call on each channel and
+   * waiting for the calls to close. A channel is considered ready if its call got any response
+   * from the server, even an error, since that means that the connection and its handshakes are
+   * complete. The calls have a deadline of {@code timeoutMs}, so this method doesn't wait longer
+   * than that.
+   *
+   * @param method A method that the server can answer cheaply, without side effects.
+   * @param request The request to send on each channel.
+   * @param timeoutMs The maximum amount of time to wait for the channels to connect.
+   * @return The number of channels that are ready.
+   */
+  public <ReqT, RespT> int warmUp(MethodDescriptor<ReqT, RespT> method, ReqT request,
+      long timeoutMs) throws InterruptedException {
+    List<Channel> channelsList = new ArrayList<>();
+    for (PooledChannel pooledChannel : channels.get()) {
+      channelsList.add(pooledChannel.channel);
+    }
+    return warmUp(channelsList, method, request, timeoutMs);
+  }
+
+  private <ReqT, RespT> int warmUp(List<Channel> channelsList,
+      MethodDescriptor<ReqT, RespT> method, ReqT request, long timeoutMs)
+      throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(channelsList.size());
+    final AtomicInteger readyCount = new AtomicInteger();
+    CallOptions callOptions = CallOptions.DEFAULT.withDeadlineAfter(timeoutMs,
+      TimeUnit.MILLISECONDS);
+    for (Channel channel : channelsList) {
+      ClientCall<ReqT, RespT> call = channel.newCall(method, callOptions);
+      ClientCall.Listener<RespT> listener = new ClientCall.Listener<RespT>() {
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+          if (isServerResponse(status)) {
+            readyCount.incrementAndGet();
+          }
+          latch.countDown();
         }
+      };
+      try {
+        Metadata headers = new Metadata();
+        for (HeaderInterceptor interceptor : headerInterceptors) {
+          interceptor.updateHeaders(headers);
+        }
+        call.start(listener, headers);
+        call.request(1);
+        call.sendMessage(request);
+        call.halfClose();
+      } catch (Exception e) {
+        log.log(Level.WARNING, "Could not warm up a channel.", e);
+        call.cancel();
+        latch.countDown();
+      }
+    }
+    // The calls' deadlines close them, so the latch is normally released by then.
+    latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    return readyCount.get();
+  }
+
+  /**
+   * Creates a channel for the pool, and warms it up with the {@link WarmUpProbe}, if any. The
+   * channel is returned even if it isn't ready, since it continues to connect in the background.
+   */
+  private Channel createWarmChannel() throws IOException {
+    Channel channel = factory.create();
+    if (warmUpProbe != null) {
+      warmUp(channel, warmUpProbe);
+    }
+    return channel;
+  }
+
+  private <ReqT, RespT> void warmUp(Channel channel, WarmUpProbe<ReqT, RespT> probe)
+      throws IOException {
+    try {
+      if (warmUp(Collections.singletonList(channel), probe.method, probe.request,
+        probe.timeoutMs) == 0) {
+        log.fine("A new channel was not ready after " + probe.timeoutMs + " ms.");
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      shutdown(channel);
+      throw new IOException("Interrupted while warming up a channel", e);
     }
   }
 
   /**
-   * Performs a simple round robin on the list of {@link Channel}s in the {@code channels} list.
-   * This method should not be synchronized, if possible, to reduce bottlenecks.
-   * 
-   * @return A channel that can be used for a safe 
+   * Whether the status was sent by the server, rather than being caused by a connection failure,
+   * a cancellation or a deadline.
    */
-  private Channel getNextChannel() {
-    int currentRequestNum = requestCount.getAndIncrement();
-    ImmutableList<Channel> channelsList = channels.get();
-    int index = Math.abs(currentRequestNum % channelsList.size());
-    return channelsList.get(index);
+  private static boolean isServerResponse(Status status) {
+    switch (status.getCode()) {
+    case UNAVAILABLE:
+    case CANCELLED:
+    case DEADLINE_EXCEEDED:
+      return false;
+    default:
+      return true;
+    }
+  }
+
+  /**
+   * Schedules the replacement of the oldest channel. Channels are replaced one at a time, every
+   * {@code maxChannelAgeMs / size()}, so that each channel is replaced about once per
+   * {@code maxChannelAgeMs} and no two channels are replaced at once.
+   */
+  private synchronized void scheduleRefresh() {
+    if (closed || maxChannelAgeMs <= 0) {
+      return;
+    }
+    if (refreshFuture != null) {
+      refreshFuture.cancel(false);
+    }
+    long intervalMs = Math.max(1, maxChannelAgeMs / channels.get().size());
+    final Runnable refresh = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          refreshOldestChannel();
+        } catch (Exception e) {
+          log.log(Level.WARNING, "Could not refresh a channel.", e);
+        } finally {
+          scheduleRefresh();
+        }
+      }
+    };
+    refreshFuture = executor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        channelExecutor.execute(refresh);
+      }
+    }, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates and warms up a new channel, and swaps it in for the oldest channel in the pool. The
+   * old channel is shut down once its active calls complete.
+   */
+  @VisibleForTesting
+  void refreshOldestChannel() throws IOException {
+    swapInNewChannel(null);
+  }
+
+  /**
+   * Replaces a channel of the pool, for example because its connection stopped responding. A new
+   * channel is created and warmed up on the channel executor, and then swapped in for the given
+   * channel, which is shut down once its active calls complete. Does nothing if the channel is no
+   * longer in the pool or is already being replaced, so it is safe to call more than once for the
+   * same channel.
+   *
+   * @param channel A channel that was created by the pool's {@link ChannelFactory}.
+   */
+  public void replaceChannel(final Channel channel) {
+    Preconditions.checkState(channelExecutor != null,
+      "An executor is required to replace channels.");
+    if (indexOf(channels.get(), channel) < 0 || !replacingChannels.add(channel)) {
+      return;
+    }
+    channelExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          swapInNewChannel(channel);
+        } catch (Exception e) {
+          log.log(Level.WARNING, "Could not replace a channel.", e);
+        } finally {
+          replacingChannels.remove(channel);
+        }
+      }
+    });
+  }
+
+  /**
+   * Creates and warms up a new channel, and swaps it in for the given channel, or for the oldest
+   * channel in the pool if none is given. The old channel is shut down once its active calls
+   * complete. If the given channel was removed from the pool in the meantime, the new channel is
+   * shut down instead.
+   */
+  private void swapInNewChannel(@Nullable Channel channel) throws IOException {
+    Channel newChannel = createWarmChannel();
+    PooledChannel oldChannel;
+    synchronized (this) {
+      List<PooledChannel> newChannelList = new ArrayList<>(channels.get());
+      int index =
+          channel == null ? indexOfOldest(newChannelList) : indexOf(newChannelList, channel);
+      if (closed || index < 0) {
+        shutdown(newChannel);
+        return;
+      }
+      oldChannel = newChannelList.set(index, new PooledChannel(newChannel));
+      setChannels(newChannelList);
+      replacedChannels.add(oldChannel);
+    }
+    drain(oldChannel, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_DRAIN_MS));
+  }
+
+  private static int indexOfOldest(List<PooledChannel> channelsList) {
+    int oldestIndex = 0;
+    for (int i = 1; i < channelsList.size(); i++) {
+      if (channelsList.get(i).createdNanos < channelsList.get(oldestIndex).createdNanos) {
+        oldestIndex = i;
+      }
+    }
+    return oldestIndex;
+  }
+
+  private static int indexOf(List<PooledChannel> channelsList, Channel channel) {
+    for (int i = 0; i < channelsList.size(); i++) {
+      if (channelsList.get(i).channel == channel) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Records the start of a call, and adds a channel to an elastic pool if the average number of
+   * active calls per channel reached the limit. The channel is created and warmed up
+   * asynchronously, so that the call doesn't wait for it.
+   */
+  private void onCallStarted() {
+    int active = activeCallCount.incrementAndGet();
+    if (!isElastic()) {
+      return;
+    }
+    int peak = peakActiveCallCount.get();
+    while (active > peak && !peakActiveCallCount.compareAndSet(peak, active)) {
+      peak = peakActiveCallCount.get();
+    }
+    int size = channels.get().size();
+    if (active >= size * maxStreamsPerChannel && size < maxChannelCount
+        && growing.compareAndSet(false, true)) {
+      channelExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            addChannel();
+          } catch (Exception e) {
+            log.log(Level.WARNING, "Could not add a channel to the pool.", e);
+          } finally {
+            growing.set(false);
+          }
+        }
+      });
+    }
+  }
+
+  private void onCallClosed(PooledChannel pooledChannel, CircuitBreaker.Permit permit,
+      Status status) {
+    pooledChannel.activeCalls.decrementAndGet();
+    activeCallCount.decrementAndGet();
+    if (permit != null) {
+      circuitBreaker.onComplete(permit, status);
+    }
+  }
+
+  @VisibleForTesting
+  void addChannel() throws IOException {
+    Channel newChannel = createWarmChannel();
+    synchronized (this) {
+      List<PooledChannel> newChannelList = new ArrayList<>(channels.get());
+      if (closed || newChannelList.size() >= maxChannelCount) {
+        shutdown(newChannel);
+        return;
+      }
+      newChannelList.add(new PooledChannel(newChannel));
+      setChannels(newChannelList);
+      totalSize.set(newChannelList.size());
+    }
+  }
+
+  /**
+   * Removes the channels of an elastic pool that were not needed for the peak number of active
+   * calls since the last check. The channels with the fewest active calls are removed, and shut
+   * down once those calls complete.
+   */
+  @VisibleForTesting
+  void removeUnneededChannels() {
+    // Keep enough channels so that the peak would not have caused the pool to grow.
+    int peak = peakActiveCallCount.getAndSet(activeCallCount.get());
+    int neededCount = Math.max(minChannelCount, peak / maxStreamsPerChannel + 1);
+    List<PooledChannel> removed = new ArrayList<>();
+    synchronized (this) {
+      List<PooledChannel> newChannelList = new ArrayList<>(channels.get());
+      if (closed || newChannelList.size() <= neededCount) {
+        return;
+      }
+      while (newChannelList.size() > neededCount) {
+        int leastActiveIndex = 0;
+        for (int i = 1; i < newChannelList.size(); i++) {
+          if (newChannelList.get(i).activeCalls.get()
+              < newChannelList.get(leastActiveIndex).activeCalls.get()) {
+            leastActiveIndex = i;
+          }
+        }
+        removed.add(newChannelList.remove(leastActiveIndex));
+      }
+      setChannels(newChannelList);
+      totalSize.set(newChannelList.size());
+      replacedChannels.addAll(removed);
+    }
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_DRAIN_MS);
+    for (PooledChannel pooledChannel : removed) {
+      drain(pooledChannel, deadlineNanos);
+    }
+  }
+
+  /**
+   * Shuts down a replaced channel once it has no active calls, or once the deadline passes.
+   */
+  private void drain(final PooledChannel oldChannel, final long deadlineNanos) {
+    executor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        if (oldChannel.activeCalls.get() > 0 && System.nanoTime() < deadlineNanos) {
+          drain(oldChannel, deadlineNanos);
+        } else if (replacedChannels.remove(oldChannel)) {
+          shutdown(oldChannel.channel);
+        }
+      }
+    }, DRAIN_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private static void shutdown(Channel channel) {
+    if (channel instanceof ManagedChannel) {
+      ((ManagedChannel) channel).shutdown();
+    }
+  }
+
+  /**
+   * Picks a channel from the {@code channels} list based on the {@link SelectionStrategy}. This
+   * method should not be synchronized, if possible, to reduce bottlenecks. The active call counts
+   * are read without any locking, so the choice is a best effort under concurrent calls.
+   *
+   * @return A channel that can be used for a new call.
+   */
+  @VisibleForTesting
+  PooledChannel getNextChannel() {
+    ImmutableList<PooledChannel> channelsList = channels.get();
+    int size = channelsList.size();
+    if (size == 1) {
+      return channelsList.get(0);
+    }
+    switch (selectionStrategy) {
+    case POWER_OF_TWO_CHOICES:
+      return getBetterOfTwoRandomChannels(channelsList);
+    case LEAST_OUTSTANDING:
+      return getLeastOutstandingChannel(channelsList);
+    default:
+      return channelsList.get(getRoundRobinIndex(size));
+    }
+  }
+
+  private int getRoundRobinIndex(int size) {
+    return Math.abs(requestCount.getAndIncrement() % size);
+  }
+
+  /**
+   * Scans the channels starting at the next round robin position, so that idle or evenly loaded
+   * pools still spread calls across all of the channels.
+   */
+  private PooledChannel getLeastOutstandingChannel(ImmutableList<PooledChannel> channelsList) {
+    int size = channelsList.size();
+    int start = getRoundRobinIndex(size);
+    PooledChannel best = channelsList.get(start);
+    int bestCount = best.activeCalls.get();
+    for (int i = 1; i < size && bestCount > 0; i++) {
+      PooledChannel candidate = channelsList.get((start + i) % size);
+      int count = candidate.activeCalls.get();
+      if (count < bestCount) {
+        best = candidate;
+        bestCount = count;
+      }
+    }
+    return best;
+  }
+
+  private static PooledChannel
+      getBetterOfTwoRandomChannels(ImmutableList<PooledChannel> channelsList) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int size = channelsList.size();
+    int first = random.nextInt(size);
+    // Pick a second channel that is different from the first one.
+    int second = (first + 1 + random.nextInt(size - 1)) % size;
+    PooledChannel firstChannel = channelsList.get(first);
+    PooledChannel secondChannel = channelsList.get(second);
+    return secondChannel.activeCalls.get() < firstChannel.activeCalls.get()
+        ? secondChannel : firstChannel;
   }
 
   /**
@@ -107,11 +747,10 @@ public class ChannelPool extends Channel {
   }
 
   /**
-   * Create a {@link ClientCall} on a Channel from the pool chosen in a round-robin fashion to the
-   * remote operation specified by the given {@link MethodDescriptor}. The returned {@link
-   * ClientCall} does not trigger any remote behavior until {@link
-   * ClientCall#start(ClientCall.Listener, Metadata)} is
-   * invoked.
+   * Create a {@link ClientCall} on a Channel from the pool chosen by the
+   * {@link SelectionStrategy} to the remote operation specified by the given
+   * {@link MethodDescriptor}. The returned {@link ClientCall} does not trigger any remote behavior
+   * until {@link ClientCall#start(ClientCall.Listener, Metadata)} is invoked.
    *
    * @param methodDescriptor describes the name and parameter types of the operation to call.
    * @param callOptions runtime options to be applied to this call.
@@ -123,17 +762,115 @@ public class ChannelPool extends Channel {
     return createWrappedCall(methodDescriptor, callOptions, getNextChannel());
   }
 
+  /**
+   * Create {@link ClientCall}s on up to {@code count} different Channels from the pool, such as a
+   * call and its hedge. The first call's Channel is chosen by the {@link SelectionStrategy}, and
+   * the others are the Channels that follow it in the pool. Fewer calls are returned if the pool
+   * has fewer Channels.
+   *
+   * @param methodDescriptor describes the name and parameter types of the operation to call.
+   * @param callOptions runtime options to be applied to the calls.
+   * @param count the maximum number of calls to create.
+   * @return at least one {@link ClientCall}, each bound to a different Channel.
+   */
+  public <ReqT, RespT> List<ClientCall<ReqT, RespT>> newCalls(
+      MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions, int count) {
+    ImmutableList<PooledChannel> channelsList = channels.get();
+    PooledChannel first = getNextChannel();
+    List<ClientCall<ReqT, RespT>> calls = new ArrayList<>(count);
+    calls.add(createWrappedCall(methodDescriptor, callOptions, first));
+    int size = channelsList.size();
+    // If the channels were replaced concurrently, start is -1, which still visits every channel.
+    int start = channelsList.indexOf(first);
+    for (int i = 1; i <= size && calls.size() < count; i++) {
+      PooledChannel next = channelsList.get((start + i) % size);
+      if (next != first) {
+        calls.add(createWrappedCall(methodDescriptor, callOptions, next));
+      }
+    }
+    return calls;
+  }
+
   private <ReqT, RespT> ClientCall<ReqT, RespT> createWrappedCall(
-      MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions, Channel channel) {
-    ClientCall<ReqT, RespT> delegate = channel.newCall(methodDescriptor, callOptions);
+      MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions,
+      final PooledChannel pooledChannel) {
+    ClientCall<ReqT, RespT> delegate = pooledChannel.channel.newCall(methodDescriptor, callOptions);
     return new CheckedForwardingClientCall<ReqT, RespT>(delegate) {
       @Override
       protected void checkedStart(ClientCall.Listener<RespT> responseListener, Metadata headers)
           throws Exception {
+        // The interceptors can fail, so they run before the circuit breaker gives out a permit.
         for (HeaderInterceptor interceptor : headerInterceptors) {
           interceptor.updateHeaders(headers);
         }
-        delegate().start(responseListener, headers);
+        final CircuitBreaker.Permit permit;
+        if (circuitBreaker == null) {
+          permit = null;
+        } else {
+          permit = circuitBreaker.allowRequest();
+          if (permit == null) {
+            throw CircuitBreaker.REJECTED_STATUS.asRuntimeException();
+          }
+        }
+        final AtomicBoolean active = new AtomicBoolean(true);
+        pooledChannel.activeCalls.incrementAndGet();
+        try {
+          onCallStarted();
+          if (windowTuner != null) {
+            responseListener = createWindowTuningListener(responseListener);
+          }
+          ClientCall.Listener<RespT> countingListener =
+              new SimpleForwardingClientCallListener<RespT>(responseListener) {
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                  if (active.compareAndSet(true, false)) {
+                    onCallClosed(pooledChannel, permit, status);
+                  }
+                  super.onClose(status, trailers);
+                }
+              };
+          delegate().start(countingListener, headers);
+        } catch (Exception e) {
+          if (active.compareAndSet(true, false)) {
+            onCallClosed(pooledChannel, permit, Status.fromThrowable(e));
+          }
+          throw e;
+        }
+      }
+    };
+  }
+
+  /**
+   * Tells the {@link FlowControlWindowTuner} about the round trip time and the size of a call.
+   */
+  private <RespT> ClientCall.Listener<RespT>
+      createWindowTuningListener(ClientCall.Listener<RespT> responseListener) {
+    final long startNanos = System.nanoTime();
+    return new SimpleForwardingClientCallListener<RespT>(responseListener) {
+      private long headersNanos;
+      private long bytes;
+
+      @Override
+      public void onHeaders(Metadata headers) {
+        headersNanos = System.nanoTime();
+        windowTuner.onRttSample(headersNanos - startNanos);
+        super.onHeaders(headers);
+      }
+
+      @Override
+      public void onMessage(RespT message) {
+        if (message instanceof MessageLite) {
+          bytes += ((MessageLite) message).getSerializedSize();
+        }
+        super.onMessage(message);
+      }
+
+      @Override
+      public void onClose(Status status, Metadata trailers) {
+        if (status.isOk() && headersNanos != 0) {
+          windowTuner.onStreamComplete(bytes, System.nanoTime() - headersNanos);
+        }
+        super.onClose(status, trailers);
       }
     };
   }
@@ -142,12 +879,55 @@ public class ChannelPool extends Channel {
    * Sets the values in newChannelList to the {@code channels} AtomicReference.  The values are
    * copied into an {@link ImmutableList}.
    *
-   * @param newChannelList A {@link List} of {@link Channel}s to set to the {@code channels}
+   * @param newChannelList A {@link List} of {@link PooledChannel}s to set to the {@code channels}
    */
-  private void setChannels(List<Channel> newChannelList) {
+  private void setChannels(List<PooledChannel> newChannelList) {
     channels.set(ImmutableList.copyOf(newChannelList));
   }
 
+  /**
+   * Stops replacing channels, and shuts down all of the channels in the pool, including the
+   * replaced channels that are still draining. Waits a bounded amount of time for the channels to
+   * terminate.
+   */
+  @Override
+  public void close() throws IOException {
+    List<PooledChannel> toClose;
+    synchronized (this) {
+      closed = true;
+      if (refreshFuture != null) {
+        refreshFuture.cancel(false);
+      }
+      if (shrinkFuture != null) {
+        shrinkFuture.cancel(false);
+      }
+      toClose = new ArrayList<>(channels.get());
+      toClose.addAll(replacedChannels);
+      replacedChannels.clear();
+    }
+    for (PooledChannel pooledChannel : toClose) {
+      shutdown(pooledChannel.channel);
+    }
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MS);
+    for (PooledChannel pooledChannel : toClose) {
+      if (!(pooledChannel.channel instanceof ManagedChannel)) {
+        continue;
+      }
+      ManagedChannel channel = (ManagedChannel) pooledChannel.channel;
+      try {
+        channel.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()),
+          TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the channels to close", e);
+      }
+      if (!channel.isTerminated()) {
+        // Sometimes, gRPC channels don't close properly, but that doesn't cause problems.
+        log.fine("Could not close a channel after " + CLOSE_TIMEOUT_MS + " ms.");
+      }
+    }
+  }
+
   public int size() {
     return totalSize.get();
   }
@@ -155,4 +935,11 @@ public class ChannelPool extends Channel {
   public int availbleSize() {
     return channels.get().size();
   }
+
+  /**
+   * The total number of calls that were started on the pool's channels and have not yet closed.
+   */
+  public int getActiveCallCount() {
+    return activeCallCount.get();
+  }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.cloud.bigtable.config.Logger;
+import com.google.cloud.bigtable.config.RetryOptions;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import io.grpc.Status;
+
+/**
+ * Fails calls fast while the service is failing most of them.
+ * <p>
+ * The breaker starts {@link State#CLOSED} and counts the outcomes of calls over windows of
+ * {@link #WINDOW_MS}. Once a window has at least {@link #MIN_CALLS} calls and the fraction of them
+ * that failed with a status that indicates an unhealthy service (see {@link #isFailure(Status)})
+ * reaches the error threshold, the breaker becomes {@link State#OPEN} and rejects calls. After the
+ * open time, one probe call is let through ({@link State#HALF_OPEN}). If it succeeds the breaker
+ * closes, otherwise it opens again. Only the probe decides: calls that started before the breaker
+ * opened are ignored until it closes.
+ * <p>
+ * Rejected calls fail with {@link #REJECTED_STATUS}, which the retrying layers don't retry, so
+ * that callers fail fast instead of backing off until their retries time out.
+ */
+public class CircuitBreaker {
+
+  protected static final Logger LOG = new Logger(CircuitBreaker.class);
+
+  /**
+   * The length of the window over which the error rate is computed.
+   */
+  public static final long WINDOW_MS = 10000;
+
+  /**
+   * The minimum number of calls in a window before the breaker can open.
+   */
+  public static final int MIN_CALLS = 20;
+
+  /**
+   * The status of the calls that are rejected while the breaker is open.
+   */
+  public static final Status REJECTED_STATUS = Status.RESOURCE_EXHAUSTED
+      .withDescription("The circuit breaker is open because too many calls failed.");
+
+  /**
+   * Returned by {@link CircuitBreaker#allowRequest()} for each call that is allowed, and passed
+   * back to {@link CircuitBreaker#onComplete(Permit, Status)} with the call's outcome.
+   */
+  public static final class Permit {
+    private Permit() {
+    }
+  }
+
+  /**
+   * The states of a {@link CircuitBreaker}.
+   */
+  public enum State {
+    /** Calls are allowed, and their outcomes are counted. */
+    CLOSED,
+    /** Calls are rejected. */
+    OPEN,
+    /** A single probe call is allowed, which decides whether the breaker closes. */
+    HALF_OPEN
+  }
+
+  /**
+   * Creates a breaker from the settings of the given {@link RetryOptions}, or returns null if
+   * {@link RetryOptions#getCircuitBreakerErrorThreshold()} is 0.
+   */
+  public static CircuitBreaker create(RetryOptions retryOptions) {
+    double threshold = retryOptions.getCircuitBreakerErrorThreshold();
+    if (threshold <= 0) {
+      return null;
+    }
+    return new CircuitBreaker(threshold, retryOptions.getCircuitBreakerOpenMs());
+  }
+
+  /**
+   * Does the given status indicate that the service is unhealthy? Other statuses, such as
+   * NOT_FOUND, are successful calls as far as the breaker is concerned. CANCELLED calls aren't
+   * counted at all, since the client chose to end them.
+   */
+  public static boolean isFailure(Status status) {
+    switch (status.getCode()) {
+    case UNAVAILABLE:
+    case INTERNAL:
+    case DEADLINE_EXCEEDED:
+    case RESOURCE_EXHAUSTED:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private final double errorThreshold;
+  private final long openNanos;
+
+  // All of the following are guarded by this.
+  private State state = State.CLOSED;
+  private long windowStartNanos = System.nanoTime();
+  private int windowCalls = 0;
+  private int windowFailures = 0;
+  private long openUntilNanos;
+  // The permit of the probe call while the breaker is HALF_OPEN.
+  private Permit probe;
+  // Calls that are allowed while the breaker is CLOSED share a permit.
+  private final Permit closedPermit = new Permit();
+
+  /**
+   * @param errorThreshold The fraction of failed calls in a window at which the breaker opens.
+   * @param openMs The time that the breaker stays open before it lets a probe through.
+   */
+  public CircuitBreaker(double errorThreshold, long openMs) {
+    Preconditions.checkArgument(errorThreshold > 0 && errorThreshold <= 1,
+      "errorThreshold must be greater than 0 and at most 1.");
+    Preconditions.checkArgument(openMs > 0, "openMs must be greater than 0.");
+    this.errorThreshold = errorThreshold;
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+  }
+
+  /**
+   * Should a new call be sent? A call that is allowed must be followed by
+   * {@link #onComplete(Permit, Status)}, even if it couldn't be started.
+   * @return The permit of the call, or null if the call should be rejected.
+   */
+  public synchronized Permit allowRequest() {
+    switch (state) {
+    case CLOSED:
+      return closedPermit;
+    case OPEN:
+      if (System.nanoTime() - openUntilNanos >= 0) {
+        state = State.HALF_OPEN;
+        probe = new Permit();
+        return probe;
+      }
+      return null;
+    default:
+      // A probe is already in flight.
+      return null;
+    }
+  }
+
+  /**
+   * Records the outcome of a call that was allowed by {@link #allowRequest()}.
+   */
+  public synchronized void onComplete(Permit permit, Status status) {
+    long now = System.nanoTime();
+    boolean failure = isFailure(status);
+    switch (state) {
+    case HALF_OPEN:
+      if (permit != probe) {
+        // A call that started before the breaker opened.
+        break;
+      }
+      probe = null;
+      if (failure) {
+        open(now, "the probe call failed with " + status.getCode());
+      } else if (status.getCode() == Status.Code.CANCELLED) {
+        // The probe didn't tell us anything, so let the next call probe.
+        state = State.OPEN;
+        openUntilNanos = now;
+      } else {
+        LOG.info("Closing the circuit breaker after a successful probe call.");
+        state = State.CLOSED;
+        resetWindow(now);
+      }
+      break;
+    case CLOSED:
+      if (status.getCode() == Status.Code.CANCELLED) {
+        break;
+      }
+      if (now - windowStartNanos > TimeUnit.MILLISECONDS.toNanos(WINDOW_MS)) {
+        resetWindow(now);
+      }
+      windowCalls++;
+      if (failure) {
+        windowFailures++;
+        if (windowCalls >= MIN_CALLS && windowFailures >= errorThreshold * windowCalls) {
+          open(now, String.format("%d of %d calls failed", windowFailures, windowCalls));
+        }
+      }
+      break;
+    default:
+      // Calls that started before the breaker opened.
+      break;
+    }
+  }
+
+  private void open(long now, String reason) {
+    LOG.warn("Opening the circuit breaker for %d ms because %s.",
+      TimeUnit.NANOSECONDS.toMillis(openNanos), reason);
+    state = State.OPEN;
+    openUntilNanos = now + openNanos;
+  }
+
+  private void resetWindow(long now) {
+    windowStartNanos = now;
+    windowCalls = 0;
+    windowFailures = 0;
+  }
+
+  /**
+   * The current state of the breaker.
+   */
+  public synchronized State getState() {
+    return state;
+  }
+
+  @VisibleForTesting
+  synchronized void setOpenUntilNanos(long openUntilNanos) {
+    this.openUntilNanos = openUntilNanos;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import com.google.cloud.bigtable.config.Logger;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Estimates the bandwidth-delay product (BDP) of the connections in a {@link ChannelPool}, and
+ * grows the HTTP/2 flow control window for new channels to match it.
+ * <p>
+ * The round trip time is estimated as the lowest time between the start of a call and its
+ * response headers. A completed stream that received at least a full window of data gives a
+ * sample of the number of bytes received per round trip. If a sample is more than
+ * {@link #GROWTH_THRESHOLD} of the current window, the stream was probably limited by flow
+ * control, and the window is set to twice the sample, up to a maximum.
+ * <p>
+ * The window of a channel is fixed when the channel is created, so a larger window applies to the
+ * channels that the pool creates afterwards, such as channels that replace aged channels.
+ */
+public class FlowControlWindowTuner {
+
+  protected static final Logger LOG = new Logger(FlowControlWindowTuner.class);
+
+  /**
+   * The fraction of the current window above which a bytes-per-round-trip sample grows the window.
+   */
+  public static final double GROWTH_THRESHOLD = 2.0 / 3.0;
+
+  private final int maxWindow;
+  private volatile int window;
+  private volatile long minRttNanos = Long.MAX_VALUE;
+
+  /**
+   * @param initialWindow The window for channels created before any samples.
+   * @param maxWindow The largest window that the tuner will set.
+   */
+  public FlowControlWindowTuner(int initialWindow, int maxWindow) {
+    Preconditions.checkArgument(initialWindow > 0, "initialWindow must be greater than 0.");
+    Preconditions.checkArgument(maxWindow >= initialWindow,
+      "maxWindow must be at least initialWindow.");
+    this.window = initialWindow;
+    this.maxWindow = maxWindow;
+  }
+
+  /**
+   * The flow control window in bytes to use for a new channel.
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Records the time between the start of a call and the arrival of its response headers.
+   */
+  public synchronized void onRttSample(long rttNanos) {
+    if (rttNanos > 0 && rttNanos < minRttNanos) {
+      minRttNanos = rttNanos;
+    }
+  }
+
+  /**
+   * Records a completed stream.
+   *
+   * @param bytes The approximate number of bytes of messages that the stream received.
+   * @param durationNanos The time between the stream's response headers and its completion.
+   */
+  public synchronized void onStreamComplete(long bytes, long durationNanos) {
+    long rtt = minRttNanos;
+    if (rtt == Long.MAX_VALUE || durationNanos <= 0 || bytes < window) {
+      // The stream was too short to be limited by the window.
+      return;
+    }
+    double bytesPerRtt = bytes * ((double) rtt / durationNanos);
+    if (bytesPerRtt > window * GROWTH_THRESHOLD && window < maxWindow) {
+      int newWindow = (int) Math.min(maxWindow, Math.max(window, (long) (2 * bytesPerRtt)));
+      LOG.debug("Increasing the flow control window from %d to %d bytes.", window, newWindow);
+      window = newWindow;
+    }
+  }
+
+  @VisibleForTesting
+  long getMinRttNanos() {
+    return minRttNanos;
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * A Call that sends a copy of an idempotent request on a second channel of a {@link ChannelPool}
+ * if the first channel hasn't responded within the {@link HedgingPolicy}'s delay. The first copy
+ * that sends a response message or completes successfully wins: only its responses are passed on,
+ * and the other copy is cancelled. Response headers alone don't win, since a server can send them
+ * right away and then stall on a slow tablet, so they are held back until their copy wins. A copy
+ * that fails only wins once the other copy has also failed, or if the other copy was never started.
+ * <p>
+ * Requests that don't match {@code isHedgeable}, and calls on a pool with a single channel, are
+ * sent once.
+ * @param <RequestT> The type of the request message
+ * @param <ResponseT> The type of the response message
+ */
+public class HedgingCall<RequestT, ResponseT> extends ClientCall<RequestT, ResponseT> {
+
+  private final ChannelPool channelPool;
+  private final MethodDescriptor<RequestT, ResponseT> method;
+  private final CallOptions callOptions;
+  private final ScheduledExecutorService scheduledExecutorService;
+  private final HedgingPolicy hedgingPolicy;
+  private final Predicate<? super RequestT> isHedgeable;
+
+  private Listener<ResponseT> listener;
+  private Metadata headers;
+  private RequestT message;
+  private long startNanos;
+  private final AtomicReference<AttemptListener> winner = new AtomicReference<>();
+
+  // All of the following are guarded by this.
+  private final List<ClientCall<RequestT, ResponseT>> startedCalls = new ArrayList<>();
+  private int requested = 0;
+  private int failedCount = 0;
+  private boolean cancelled = false;
+  private ScheduledFuture<?> hedgeFuture;
+
+  public HedgingCall(
+      ChannelPool channelPool,
+      MethodDescriptor<RequestT, ResponseT> method,
+      CallOptions callOptions,
+      ScheduledExecutorService scheduledExecutorService,
+      HedgingPolicy hedgingPolicy,
+      Predicate<? super RequestT> isHedgeable) {
+    this.channelPool = channelPool;
+    this.method = method;
+    this.callOptions = callOptions;
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.hedgingPolicy = hedgingPolicy;
+    this.isHedgeable = isHedgeable;
+  }
+
+  @Override
+  public void start(Listener<ResponseT> listener, Metadata headers) {
+    Preconditions.checkState(this.listener == null, "start should not be invoked more than once.");
+    this.listener = listener;
+    this.headers = headers;
+  }
+
+  @Override
+  public synchronized void request(int numMessages) {
+    requested += numMessages;
+    for (ClientCall<RequestT, ResponseT> call : startedCalls) {
+      call.request(numMessages);
+    }
+  }
+
+  @Override
+  public void cancel() {
+    synchronized (this) {
+      cancelled = true;
+      if (hedgeFuture != null) {
+        hedgeFuture.cancel(false);
+      }
+      for (ClientCall<RequestT, ResponseT> call : startedCalls) {
+        call.cancel();
+      }
+    }
+  }
+
+  @Override
+  public void sendMessage(RequestT message) {
+    Preconditions.checkState(this.message == null,
+      "sendMessage should not be invoked more than once.");
+    this.message = message;
+  }
+
+  @Override
+  public void halfClose() {
+    startNanos = System.nanoTime();
+    boolean hedgeable = isHedgeable.apply(message);
+    List<ClientCall<RequestT, ResponseT>> calls =
+        channelPool.newCalls(method, callOptions, hedgeable ? 2 : 1);
+    // The pool's interceptors add to the headers when a call starts, so the hedge gets a copy of
+    // the original headers.
+    final Metadata hedgeHeaders = new Metadata();
+    hedgeHeaders.merge(headers);
+    startCall(calls.get(0), headers);
+    if (calls.size() > 1) {
+      hedgingPolicy.onCall();
+      final ClientCall<RequestT, ResponseT> hedge = calls.get(1);
+      synchronized (this) {
+        if (!cancelled && winner.get() == null) {
+          hedgeFuture = scheduledExecutorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+              if (winner.get() == null && hedgingPolicy.tryAcquireHedge()) {
+                startCall(hedge, hedgeHeaders);
+              }
+            }
+          }, hedgingPolicy.getDelayNanos(), TimeUnit.NANOSECONDS);
+        }
+      }
+    }
+  }
+
+  private synchronized void startCall(ClientCall<RequestT, ResponseT> call, Metadata headers) {
+    if (cancelled || winner.get() != null) {
+      return;
+    }
+    startedCalls.add(call);
+    call.start(new AttemptListener(call), headers);
+    call.sendMessage(message);
+    call.halfClose();
+    if (requested > 0) {
+      call.request(requested);
+    }
+  }
+
+  /**
+   * Cancels every started call other than the winner's.
+   */
+  private void onWin(AttemptListener attempt) {
+    synchronized (this) {
+      if (hedgeFuture != null) {
+        hedgeFuture.cancel(false);
+      }
+      for (ClientCall<RequestT, ResponseT> call : startedCalls) {
+        if (call != attempt.call) {
+          call.cancel();
+        }
+      }
+    }
+  }
+
+  /**
+   * Decides whether a failed attempt wins, which is the case if no other attempt is still running
+   * or could still be started. The decision is made under the lock that
+   * {@link #startCall(ClientCall, Metadata)} holds, so that a hedge isn't started after it.
+   */
+  private synchronized boolean tryWinWithFailure(AttemptListener attempt) {
+    failedCount++;
+    return failedCount >= startedCalls.size() && winner.compareAndSet(null, attempt);
+  }
+
+  /**
+   * Passes on the responses of one of the calls, if that call is the first to send a message or
+   * to complete successfully.
+   */
+  private class AttemptListener extends ClientCall.Listener<ResponseT> {
+    private final ClientCall<RequestT, ResponseT> call;
+    // The response headers, held back until this attempt wins.
+    private Metadata responseHeaders;
+
+    AttemptListener(ClientCall<RequestT, ResponseT> call) {
+      this.call = call;
+    }
+
+    private boolean isWinner() {
+      if (winner.get() == this) {
+        return true;
+      }
+      if (winner.compareAndSet(null, this)) {
+        win();
+        return true;
+      }
+      return false;
+    }
+
+    private void win() {
+      onWin(this);
+      if (responseHeaders != null) {
+        listener.onHeaders(responseHeaders);
+        responseHeaders = null;
+      }
+    }
+
+    @Override
+    public void onHeaders(Metadata headers) {
+      if (winner.get() == this) {
+        listener.onHeaders(headers);
+      } else {
+        responseHeaders = headers;
+      }
+    }
+
+    @Override
+    public void onMessage(ResponseT message) {
+      if (isWinner()) {
+        listener.onMessage(message);
+      }
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+      if (winner.get() != this) {
+        if (status.isOk()) {
+          if (!isWinner()) {
+            return;
+          }
+        } else if (tryWinWithFailure(this)) {
+          win();
+        } else {
+          // The other attempt may still succeed.
+          return;
+        }
+      }
+      if (status.isOk()) {
+        hedgingPolicy.onLatency(System.nanoTime() - startNanos);
+      }
+      listener.onClose(status, trailers);
+    }
+
+    @Override
+    public void onReady() {
+      if (winner.get() == this) {
+        listener.onReady();
+      }
+    }
+  }
+}
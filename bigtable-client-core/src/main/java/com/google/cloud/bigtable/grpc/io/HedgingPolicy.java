@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.google.cloud.bigtable.config.RetryOptions;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Decides when a {@link HedgingCall} sends its hedge, and whether it may send one at all.
+ * <p>
+ * The delay is either fixed, or a percentile of the latencies of the last
+ * {@link #SAMPLE_COUNT} calls. The percentile is recomputed every {@link #SAMPLES_PER_UPDATE}
+ * calls, and the fixed delay is used until there are that many samples.
+ * <p>
+ * Hedges are limited by a token bucket: each call adds {@code maxHedgeRatio} tokens, up to
+ * {@link #MAX_TOKENS}, and each hedge takes one token. Over time, no more than
+ * {@code maxHedgeRatio} hedges are sent per call, which bounds the extra load even when the
+ * service is slow for everyone.
+ */
+public class HedgingPolicy {
+
+  /**
+   * The number of recent latencies that the percentile is computed over.
+   */
+  public static final int SAMPLE_COUNT = 1000;
+
+  /**
+   * The number of latencies between updates of the percentile.
+   */
+  public static final int SAMPLES_PER_UPDATE = 100;
+
+  /**
+   * The most hedges that can be sent in a burst.
+   */
+  public static final double MAX_TOKENS = 10;
+
+  /**
+   * Creates a policy from the hedging settings of the given {@link RetryOptions}.
+   */
+  public static HedgingPolicy create(RetryOptions retryOptions) {
+    return new HedgingPolicy(
+        TimeUnit.MILLISECONDS.toNanos(retryOptions.getHedgeDelayMs()),
+        retryOptions.getHedgeLatencyPercentile(),
+        retryOptions.getMaxHedgeRatio());
+  }
+
+  private final double percentile;
+  private final double maxHedgeRatio;
+  private volatile long delayNanos;
+
+  // All of the following are guarded by this.
+  private final long[] latencies = new long[SAMPLE_COUNT];
+  private int latencyCount = 0;
+  private int nextLatency = 0;
+  private int latenciesSinceUpdate = 0;
+  private double tokens = 0;
+
+  /**
+   * @param delayNanos The delay before a hedge, or the initial delay if a percentile is set.
+   * @param percentile The percentile of recent latencies to use as the delay, or 0 for a fixed
+   *          delay.
+   * @param maxHedgeRatio The maximum number of hedges per call.
+   */
+  public HedgingPolicy(long delayNanos, double percentile, double maxHedgeRatio) {
+    Preconditions.checkArgument(delayNanos > 0, "delayNanos must be greater than 0.");
+    Preconditions.checkArgument(percentile >= 0 && percentile < 100,
+      "percentile must be between 0 and 100.");
+    this.delayNanos = delayNanos;
+    this.percentile = percentile;
+    this.maxHedgeRatio = maxHedgeRatio;
+  }
+
+  /**
+   * The time to wait for a call to respond before sending its hedge.
+   */
+  public long getDelayNanos() {
+    return delayNanos;
+  }
+
+  /**
+   * Records the start of a call that may be hedged, which adds to the hedging budget.
+   */
+  public synchronized void onCall() {
+    tokens = Math.min(MAX_TOKENS, tokens + maxHedgeRatio);
+  }
+
+  /**
+   * Takes a hedge out of the budget.
+   *
+   * @return true if the hedge may be sent.
+   */
+  public synchronized boolean tryAcquireHedge() {
+    if (tokens < 1) {
+      return false;
+    }
+    tokens -= 1;
+    return true;
+  }
+
+  /**
+   * Records the latency of a successful call.
+   */
+  public synchronized void onLatency(long latencyNanos) {
+    if (percentile <= 0) {
+      return;
+    }
+    latencies[nextLatency] = latencyNanos;
+    nextLatency = (nextLatency + 1) % SAMPLE_COUNT;
+    latencyCount = Math.min(SAMPLE_COUNT, latencyCount + 1);
+    if (++latenciesSinceUpdate >= SAMPLES_PER_UPDATE) {
+      latenciesSinceUpdate = 0;
+      long[] sorted = Arrays.copyOf(latencies, latencyCount);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100 * latencyCount) - 1;
+      delayNanos = Math.max(1, sorted[Math.max(0, index)]);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized double getTokens() {
+    return tokens;
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.google.cloud.bigtable.config.Logger;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import io.grpc.internal.ClientTransport.PingCallback;
+import io.grpc.netty.ProtocolNegotiator;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * A {@link ProtocolNegotiator} that adds HTTP/2 keepalive pings to the connections of another
+ * negotiator. When a connection hasn't received anything for the keepalive time, a PING frame is
+ * sent. If the server doesn't acknowledge the ping within the keepalive timeout, the connection
+ * is closed, so that the channel's next call opens a new connection instead of waiting on a
+ * connection that an intermediary silently dropped. An optional listener is told about the
+ * timeout, so that the owner of the channel, such as a {@link ChannelPool}, can replace it.
+ * <p>
+ * This version of gRPC doesn't have a public keepalive API, so the pings are sent with the same
+ * command that the transport uses to implement {@code ClientTransport.ping()}.
+ */
+public class KeepAliveNegotiator implements ProtocolNegotiator {
+
+  protected static final Logger LOG = new Logger(KeepAliveNegotiator.class);
+
+  private static final String PING_COMMAND_CLASS = "io.grpc.netty.SendPingCommand";
+
+  /**
+   * Lazily finds the constructor of the transport's ping command, and caches the result.
+   */
+  private static class PingCommand {
+    static final Constructor<?> CONSTRUCTOR = findConstructor();
+
+    private static Constructor<?> findConstructor() {
+      try {
+        Constructor<?> constructor = Class.forName(PING_COMMAND_CLASS)
+            .getDeclaredConstructor(PingCallback.class, Executor.class);
+        constructor.setAccessible(true);
+        return constructor;
+      } catch (Exception e) {
+        LOG.warn("Keepalive pings are not supported by this version of gRPC.", e);
+        return null;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static Object createPingCommand(PingCallback callback, Executor executor) {
+    if (PingCommand.CONSTRUCTOR == null) {
+      return null;
+    }
+    try {
+      return PingCommand.CONSTRUCTOR.newInstance(callback, executor);
+    } catch (Exception e) {
+      LOG.warn("Could not create a keepalive ping.", e);
+      return null;
+    }
+  }
+
+  private final ProtocolNegotiator delegate;
+  private final long keepAliveTimeNanos;
+  private final long keepAliveTimeoutNanos;
+  private final boolean keepAliveWithoutCalls;
+  @Nullable
+  private final Runnable pingTimeoutListener;
+
+  /**
+   * @param delegate Negotiates the connections.
+   * @param keepAliveTimeMs How long a connection can go without receiving anything before a ping
+   *          is sent.
+   * @param keepAliveTimeoutMs How long to wait for the acknowledgement of a ping before closing
+   *          the connection.
+   * @param keepAliveWithoutCalls Whether to send pings when the connection has no active calls.
+   */
+  public KeepAliveNegotiator(ProtocolNegotiator delegate, long keepAliveTimeMs,
+      long keepAliveTimeoutMs, boolean keepAliveWithoutCalls) {
+    this(delegate, keepAliveTimeMs, keepAliveTimeoutMs, keepAliveWithoutCalls, null);
+  }
+
+  /**
+   * @param delegate Negotiates the connections.
+   * @param keepAliveTimeMs How long a connection can go without receiving anything before a ping
+   *          is sent.
+   * @param keepAliveTimeoutMs How long to wait for the acknowledgement of a ping before closing
+   *          the connection.
+   * @param keepAliveWithoutCalls Whether to send pings when the connection has no active calls.
+   * @param pingTimeoutListener If set, runs on the connection's event loop after a connection is
+   *          closed because a ping timed out. It must not block.
+   */
+  public KeepAliveNegotiator(ProtocolNegotiator delegate, long keepAliveTimeMs,
+      long keepAliveTimeoutMs, boolean keepAliveWithoutCalls,
+      @Nullable Runnable pingTimeoutListener) {
+    Preconditions.checkArgument(keepAliveTimeMs > 0, "keepAliveTimeMs must be greater than 0.");
+    Preconditions.checkArgument(keepAliveTimeoutMs > 0,
+      "keepAliveTimeoutMs must be greater than 0.");
+    this.delegate = delegate;
+    this.keepAliveTimeNanos = TimeUnit.MILLISECONDS.toNanos(keepAliveTimeMs);
+    this.keepAliveTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(keepAliveTimeoutMs);
+    this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+    this.pingTimeoutListener = pingTimeoutListener;
+  }
+
+  @Override
+  public Handler newHandler(final Http2ConnectionHandler http2Handler) {
+    final Handler delegateHandler = delegate.newHandler(http2Handler);
+    return new KeepAliveInstallingHandler(delegateHandler, http2Handler);
+  }
+
+  /**
+   * Adds the delegate's negotiation handler in its place, and a {@link KeepAliveHandler} at the
+   * front of the pipeline, where it sees all of the bytes that the connection receives.
+   */
+  private class KeepAliveInstallingHandler extends ChannelHandlerAdapter implements Handler {
+    private final Handler delegateHandler;
+    private final Http2ConnectionHandler http2Handler;
+
+    KeepAliveInstallingHandler(Handler delegateHandler, Http2ConnectionHandler http2Handler) {
+      this.delegateHandler = delegateHandler;
+      this.http2Handler = http2Handler;
+    }
+
+    @Override
+    public AsciiString scheme() {
+      return delegateHandler.scheme();
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+      ctx.pipeline().addAfter(ctx.name(), null, delegateHandler);
+      ctx.pipeline().addFirst(new KeepAliveHandler(http2Handler));
+      ctx.pipeline().remove(this);
+    }
+  }
+
+  /**
+   * Tracks when the connection last received data, and periodically checks whether a ping is
+   * needed. All of the state is only used on the channel's event loop.
+   */
+  @VisibleForTesting
+  class KeepAliveHandler extends ChannelInboundHandlerAdapter {
+    private final Http2ConnectionHandler http2Handler;
+    private long lastReadNanos = System.nanoTime();
+    private long pingCount = 0;
+    private boolean pingOutstanding = false;
+    private ScheduledFuture<?> checkFuture;
+
+    KeepAliveHandler(Http2ConnectionHandler http2Handler) {
+      this.http2Handler = http2Handler;
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) {
+      // Checking twice per keepalive time keeps the idle time before a ping under 1.5 times the
+      // keepalive time.
+      long checkIntervalNanos = Math.max(1, keepAliveTimeNanos / 2);
+      checkFuture = ctx.executor().scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          checkIdle(ctx);
+        }
+      }, checkIntervalNanos, checkIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+      cancelChecks();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+      lastReadNanos = System.nanoTime();
+      super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      cancelChecks();
+      super.channelInactive(ctx);
+    }
+
+    private void cancelChecks() {
+      if (checkFuture != null) {
+        checkFuture.cancel(false);
+        checkFuture = null;
+      }
+    }
+
+    @VisibleForTesting
+    void checkIdle(ChannelHandlerContext ctx) {
+      if (pingOutstanding || !ctx.channel().isActive()
+          || System.nanoTime() - lastReadNanos < keepAliveTimeNanos) {
+        return;
+      }
+      // The HTTP/2 handler is only in the pipeline once the protocol negotiation completed.
+      if (ctx.pipeline().context(http2Handler) == null) {
+        return;
+      }
+      if (!keepAliveWithoutCalls && http2Handler.connection().numActiveStreams() == 0) {
+        return;
+      }
+      sendPing(ctx);
+    }
+
+    private void sendPing(final ChannelHandlerContext ctx) {
+      final long pingId = ++pingCount;
+      Object command = createPingCommand(new PingCallback() {
+        @Override
+        public void onSuccess(long roundTripTimeNanos) {
+          if (pingId == pingCount) {
+            pingOutstanding = false;
+          }
+        }
+
+        @Override
+        public void onFailure(Throwable cause) {
+          // The transport failed, so the connection is closed anyway.
+          if (pingId == pingCount) {
+            pingOutstanding = false;
+          }
+        }
+      }, ctx.executor());
+      if (command == null) {
+        cancelChecks();
+        return;
+      }
+      pingOutstanding = true;
+      // Writing to the channel rather than the context sends the command through the gRPC
+      // handler, which turns it into a PING frame.
+      ctx.channel().writeAndFlush(command);
+      ctx.executor().schedule(new Runnable() {
+        @Override
+        public void run() {
+          if (pingOutstanding && pingId == pingCount && ctx.channel().isOpen()) {
+            LOG.warn("No response to a keepalive ping from %s within %d ms. Closing the "
+                + "connection.", ctx.channel().remoteAddress(),
+              TimeUnit.NANOSECONDS.toMillis(keepAliveTimeoutNanos));
+            // Closing from the front of the pipeline closes the socket directly, and the gRPC
+            // handler fails the connection's calls once the channel is inactive.
+            ctx.close();
+            if (pingTimeoutListener != null) {
+              try {
+                pingTimeoutListener.run();
+              } catch (RuntimeException e) {
+                LOG.warn("The keepalive ping timeout listener failed.", e);
+              }
+            }
+          }
+        }
+      }, keepAliveTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+}
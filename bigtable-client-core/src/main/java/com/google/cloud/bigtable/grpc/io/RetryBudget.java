@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import com.google.cloud.bigtable.config.RetryOptions;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Limits the retries of all of the operations of a client to a fraction of its requests, so that
+ * retries don't multiply the load on the service when it is failing.
+ * <p>
+ * Each request adds {@code retryRatio} tokens to a bucket of at most {@link #MAX_TOKENS}, and
+ * each retry takes one token. The bucket starts full, so that a client with little traffic can
+ * still retry occasional failures.
+ */
+public class RetryBudget {
+
+  /**
+   * The most retries that can be made in a burst.
+   */
+  public static final double MAX_TOKENS = 10;
+
+  /**
+   * A budget that allows every retry.
+   */
+  public static final RetryBudget UNLIMITED = new RetryBudget(0) {
+    @Override
+    public void onRequest() {
+    }
+
+    @Override
+    public boolean tryAcquireRetry() {
+      return true;
+    }
+  };
+
+  /**
+   * Creates a budget from {@link RetryOptions#getRetryBudgetRatio()}, or an unlimited budget if
+   * the ratio is 0.
+   */
+  public static RetryBudget create(RetryOptions retryOptions) {
+    double ratio = retryOptions.getRetryBudgetRatio();
+    return ratio > 0 ? new RetryBudget(ratio) : UNLIMITED;
+  }
+
+  // Tokens are counted in thousandths, so that adding up fractional ratios is exact.
+  private static final int TOKEN_UNITS = 1000;
+  private static final long MAX_UNITS = (long) (MAX_TOKENS * TOKEN_UNITS);
+
+  private final long unitsPerRequest;
+
+  // Guarded by this.
+  private long units = MAX_UNITS;
+
+  /**
+   * @param retryRatio The maximum number of retries per request.
+   */
+  public RetryBudget(double retryRatio) {
+    Preconditions.checkArgument(retryRatio >= 0, "retryRatio must be at least 0.");
+    this.unitsPerRequest = Math.round(retryRatio * TOKEN_UNITS);
+  }
+
+  /**
+   * Records an operation's first request, which adds to the budget.
+   */
+  public synchronized void onRequest() {
+    units = Math.min(MAX_UNITS, units + unitsPerRequest);
+  }
+
+  /**
+   * Takes a retry out of the budget.
+   *
+   * @return true if the retry may be made.
+   */
+  public synchronized boolean tryAcquireRetry() {
+    if (units < TOKEN_UNITS) {
+      return false;
+    }
+    units -= TOKEN_UNITS;
+    return true;
+  }
+
+  @VisibleForTesting
+  synchronized double getTokens() {
+    return (double) units / TOKEN_UNITS;
+  }
+}
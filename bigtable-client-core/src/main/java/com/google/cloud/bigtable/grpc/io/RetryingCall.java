@@ -35,6 +35,11 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * A Call that reties lower-level Calls that fail with INTERNAL errors.
+ * <p>
+ * Each attempt gets its own deadline of {@code rpcTimeoutMs}. If
+ * {@link RetryOptions#getOperationTimeoutMs()} is set, no attempt's deadline goes past the
+ * operation's deadline, and no retry is scheduled after it. Retries also need room in the
+ * {@link RetryBudget}.
  * @param <RequestT> The type of the request message
  * @param <ResponseT> The type of the response message
  */
@@ -44,7 +49,11 @@ public class RetryingCall<RequestT, ResponseT> extends ClientCall<RequestT, Resp
   private final MethodDescriptor<RequestT, ResponseT> method;
   private final CallOptions callOptions;
   private final RetryOptions retryOptions;
+  private final long rpcTimeoutMs;
+  private final RetryBudget retryBudget;
   private BackOff backOff;
+  // 0 if the operation has no deadline. Set when the first attempt starts.
+  private volatile long operationDeadlineNanos = 0;
   private final ScheduledExecutorService scheduledExecutorService;
 
   private Listener<ResponseT> listener;
@@ -59,6 +68,24 @@ public class RetryingCall<RequestT, ResponseT> extends ClientCall<RequestT, Resp
       CallOptions callOptions,
       ScheduledExecutorService scheduledExecutorService,
       RetryOptions retryOptions) {
+    this(channel, method, callOptions, scheduledExecutorService, retryOptions, 0,
+        RetryBudget.UNLIMITED);
+  }
+
+  /**
+   * @param rpcTimeoutMs The deadline of each attempt, or 0 for no per-attempt deadline.
+   * @param retryBudget Limits the retries that this call shares with other operations.
+   */
+  public RetryingCall(
+      Channel channel,
+      MethodDescriptor<RequestT, ResponseT> method,
+      CallOptions callOptions,
+      ScheduledExecutorService scheduledExecutorService,
+      RetryOptions retryOptions,
+      long rpcTimeoutMs,
+      RetryBudget retryBudget) {
+    this.rpcTimeoutMs = rpcTimeoutMs;
+    this.retryBudget = retryBudget;
     this.channel = channel;
     this.method = method;
     this.callOptions = callOptions;
@@ -99,15 +126,43 @@ public class RetryingCall<RequestT, ResponseT> extends ClientCall<RequestT, Resp
 
   @Override
   public void halfClose() {
+    retryBudget.onRequest();
+    int operationTimeoutMs = retryOptions.getOperationTimeoutMs();
+    if (operationTimeoutMs > 0) {
+      operationDeadlineNanos =
+          System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(operationTimeoutMs);
+    }
     retryCall(message, headers, listener);
   }
 
+  /**
+   * The options of a new attempt, with the earliest of the attempt's deadline, the operation's
+   * deadline and the deadline of the original options.
+   */
+  @VisibleForTesting
+  CallOptions getAttemptCallOptions() {
+    long deadlineNanos = Long.MAX_VALUE;
+    if (rpcTimeoutMs > 0) {
+      deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rpcTimeoutMs);
+    }
+    if (operationDeadlineNanos != 0) {
+      deadlineNanos = Math.min(deadlineNanos, operationDeadlineNanos);
+    }
+    Long originalDeadlineNanos = callOptions.getDeadlineNanoTime();
+    if (deadlineNanos == Long.MAX_VALUE
+        || (originalDeadlineNanos != null && originalDeadlineNanos <= deadlineNanos)) {
+      return callOptions;
+    }
+    return callOptions.withDeadlineNanoTime(deadlineNanos);
+  }
+
   // retryCall can be invoked from any thread.
   private void retryCall(
       RequestT message,
       Metadata requestHeaders,
       Listener<ResponseT> listener) {
-    final ClientCall<RequestT, ResponseT> delegate = channel.newCall(method, callOptions);
+    final ClientCall<RequestT, ResponseT> delegate =
+        channel.newCall(method, getAttemptCallOptions());
     delegate.start(listener, requestHeaders);
     delegate.request(1);
     cancelled.addListener(new Runnable() {
@@ -136,6 +191,16 @@ public class RetryingCall<RequestT, ResponseT> extends ClientCall<RequestT, Resp
     } catch (IOException e) {
       // Ignored, we will not retry and close will bubble outward
     }
+    if (sleepTimeout != BackOff.STOP && operationDeadlineNanos != 0
+        && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sleepTimeout)
+            >= operationDeadlineNanos) {
+      // The retry would start after the operation's deadline.
+      sleepTimeout = BackOff.STOP;
+    }
+    if (sleepTimeout != BackOff.STOP && !retryBudget.tryAcquireRetry()) {
+      // Too many operations are retrying.
+      sleepTimeout = BackOff.STOP;
+    }
     if (sleepTimeout != BackOff.STOP) {
       scheduledExecutorService.schedule(new Runnable() {
         @Override
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSession;
+
+import com.google.cloud.bigtable.config.Logger;
+import com.google.common.annotations.VisibleForTesting;
+
+import io.grpc.netty.ProtocolNegotiator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+
+/**
+ * Counts the TLS handshakes of the connections that use a wrapped {@link ProtocolNegotiator},
+ * and whether each one was a full handshake or resumed a cached TLS session. A resumed handshake
+ * skips the key exchange, so it is cheaper and has one less round trip.
+ * <p>
+ * A handshake is considered resumed if its session was created before the handshake started.
+ */
+public class TlsHandshakeCounter {
+
+  protected static final Logger LOG = new Logger(TlsHandshakeCounter.class);
+
+  private final AtomicLong fullHandshakeCount = new AtomicLong();
+  private final AtomicLong resumedHandshakeCount = new AtomicLong();
+
+  /**
+   * Returns a {@link ProtocolNegotiator} that negotiates with the given negotiator, and counts the
+   * TLS handshakes that it performs.
+   */
+  public ProtocolNegotiator wrap(final ProtocolNegotiator negotiator) {
+    return new ProtocolNegotiator() {
+      @Override
+      public Handler newHandler(Http2ConnectionHandler handler) {
+        return new CountingHandler(negotiator.newHandler(handler));
+      }
+    };
+  }
+
+  /**
+   * The number of handshakes that did not resume a cached TLS session.
+   */
+  public long getFullHandshakeCount() {
+    return fullHandshakeCount.get();
+  }
+
+  /**
+   * The number of handshakes that resumed a cached TLS session.
+   */
+  public long getResumedHandshakeCount() {
+    return resumedHandshakeCount.get();
+  }
+
+  @VisibleForTesting
+  void onHandshakeComplete(SSLSession session, long startMillis) {
+    if (session.getCreationTime() < startMillis) {
+      long count = resumedHandshakeCount.incrementAndGet();
+      LOG.debug("Resumed a TLS session with %s. %d resumed and %d full handshakes so far.",
+        session.getPeerHost(), count, fullHandshakeCount.get());
+    } else {
+      long count = fullHandshakeCount.incrementAndGet();
+      LOG.debug("Full TLS handshake with %s. %d full and %d resumed handshakes so far.",
+        session.getPeerHost(), count, resumedHandshakeCount.get());
+    }
+  }
+
+  /**
+   * Adds the wrapped negotiation handler in its place, and listens to the handshake of the
+   * {@link SslHandler} that the negotiation handler adds to the pipeline.
+   */
+  private class CountingHandler extends ChannelHandlerAdapter
+      implements ProtocolNegotiator.Handler {
+    private final ProtocolNegotiator.Handler delegate;
+
+    CountingHandler(ProtocolNegotiator.Handler delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public AsciiString scheme() {
+      return delegate.scheme();
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+      final long startMillis = System.currentTimeMillis();
+      ctx.pipeline().addAfter(ctx.name(), null, delegate);
+      final SslHandler sslHandler = ctx.pipeline().get(SslHandler.class);
+      if (sslHandler != null) {
+        sslHandler.handshakeFuture().addListener(new GenericFutureListener<Future<Channel>>() {
+          @Override
+          public void operationComplete(Future<Channel> future) {
+            if (future.isSuccess()) {
+              onHandshakeComplete(sslHandler.engine().getSession(), startMillis);
+            }
+          }
+        });
+      }
+      ctx.pipeline().remove(this);
+    }
+  }
+}
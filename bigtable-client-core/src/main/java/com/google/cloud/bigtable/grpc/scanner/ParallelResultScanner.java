@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.scanner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.bigtable.v1.ReadRowsRequest;
+import com.google.bigtable.v1.Row;
+import com.google.bigtable.v1.RowRange;
+import com.google.bigtable.v1.SampleRowKeysRequest;
+import com.google.bigtable.v1.SampleRowKeysResponse;
+import com.google.cloud.bigtable.config.Logger;
+import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.UnsignedBytes;
+import com.google.protobuf.ByteString;
+
+/**
+ * A {@link ResultScanner} that reads a row range as several concurrent sub-scans, split at the
+ * tablet boundaries returned by SampleRowKeys. Each sub-scan is a separate ReadRows stream, so the
+ * sub-scans are spread over the channels of the data client's pool.
+ * <p>
+ * Each sub-scan is read by a task on the given executor into a bounded buffer. In ordered mode,
+ * rows are returned in key order: since the sub-scans cover consecutive, non-overlapping ranges,
+ * the merge of their sorted streams drains each sub-scan in turn, while the later ones fill their
+ * buffers. In unordered mode, rows are returned as soon as any sub-scan reads them, which gives the
+ * highest throughput.
+ */
+public class ParallelResultScanner extends AbstractBigtableResultScanner {
+
+  private static final Logger LOG = new Logger(ParallelResultScanner.class);
+
+  /**
+   * Creates a scanner for {@code request} with up to {@code parallelism} sub-scans. Requests that
+   * don't read a row range, requests with a row limit, which applies to the whole range, and ranges
+   * with no tablet boundaries in them are read by a single scan.
+   */
+  public static ResultScanner<Row> create(BigtableDataClient client, ReadRowsRequest request,
+      int parallelism, boolean ordered, int bufferSize, ExecutorService executorService) {
+    if (parallelism <= 1
+        || request.getTargetCase() != ReadRowsRequest.TargetCase.ROW_RANGE
+        || request.getNumRowsLimit() > 0) {
+      return client.readRows(request);
+    }
+    List<SampleRowKeysResponse> sampleRowKeys = client.sampleRowKeys(
+      SampleRowKeysRequest.newBuilder().setTableName(request.getTableName()).build());
+    List<ReadRowsRequest> subRequests = splitRequest(request, sampleRowKeys, parallelism);
+    if (subRequests.size() == 1) {
+      return client.readRows(request);
+    }
+    LOG.debug("Scanning %s in %d parallel sub-scans.", request.getTableName(), subRequests.size());
+    List<ResultScanner<Row>> scanners = new ArrayList<>(subRequests.size());
+    try {
+      for (ReadRowsRequest subRequest : subRequests) {
+        scanners.add(client.readRows(subRequest));
+      }
+    } catch (RuntimeException e) {
+      for (ResultScanner<Row> scanner : scanners) {
+        closeQuietly(scanner);
+      }
+      throw e;
+    }
+    return new ParallelResultScanner(scanners, ordered, bufferSize, executorService);
+  }
+
+  /**
+   * Splits the row range of {@code request} at the sampled row keys that fall inside of it, into
+   * at most {@code maxCount} requests for consecutive ranges. If there are more sampled keys than
+   * that, evenly spaced keys are used.
+   */
+  public static List<ReadRowsRequest> splitRequest(ReadRowsRequest request,
+      List<SampleRowKeysResponse> sampleRowKeys, int maxCount) {
+    Preconditions.checkArgument(request.getTargetCase() == ReadRowsRequest.TargetCase.ROW_RANGE,
+      "Only row range requests can be split.");
+    ByteString startKey = request.getRowRange().getStartKey();
+    ByteString endKey = request.getRowRange().getEndKey();
+
+    List<ByteString> splitKeys = new ArrayList<>();
+    for (SampleRowKeysResponse response : sampleRowKeys) {
+      ByteString key = response.getRowKey();
+      if (!key.isEmpty()
+          && compare(key, startKey) > 0
+          && (endKey.isEmpty() || compare(key, endKey) < 0)
+          && (splitKeys.isEmpty() || compare(key, splitKeys.get(splitKeys.size() - 1)) > 0)) {
+        splitKeys.add(key);
+      }
+    }
+    int splitCount = Math.min(splitKeys.size(), maxCount - 1);
+
+    List<ReadRowsRequest> requests = new ArrayList<>(splitCount + 1);
+    ByteString rangeStart = startKey;
+    for (int i = 1; i <= splitCount; i++) {
+      ByteString rangeEnd = splitKeys.get((int) ((long) i * splitKeys.size() / (splitCount + 1)));
+      requests.add(createSubRequest(request, rangeStart, rangeEnd));
+      rangeStart = rangeEnd;
+    }
+    requests.add(createSubRequest(request, rangeStart, endKey));
+    return requests;
+  }
+
+  private static ReadRowsRequest createSubRequest(ReadRowsRequest request, ByteString startKey,
+      ByteString endKey) {
+    return request.toBuilder()
+        .setRowRange(RowRange.newBuilder().setStartKey(startKey).setEndKey(endKey))
+        .build();
+  }
+
+  private static int compare(ByteString left, ByteString right) {
+    int length = Math.min(left.size(), right.size());
+    for (int i = 0; i < length; i++) {
+      int result = UnsignedBytes.compare(left.byteAt(i), right.byteAt(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return left.size() - right.size();
+  }
+
+  private static void closeQuietly(ResultScanner<Row> scanner) {
+    try {
+      scanner.close();
+    } catch (IOException e) {
+      LOG.warn("Could not close a sub-scan.", e);
+    }
+  }
+
+  private final List<ResultScanner<Row>> scanners;
+  private final boolean ordered;
+  // In ordered mode, one queue per sub-scan. In unordered mode, a single queue for all of them.
+  private final List<BlockingQueue<ResultQueueEntry<Row>>> queues;
+  private final List<Future<?>> readers;
+  private int currentQueue = 0;
+  private int completedCount = 0;
+  private IOException failure;
+  private volatile boolean closed = false;
+
+  /**
+   * @param scanners The sub-scans, in key order.
+   * @param ordered Whether rows are returned in key order.
+   * @param bufferSize The number of rows each sub-scan reads ahead.
+   * @param executorService Runs a task per sub-scan, which blocks while its buffer is full.
+   */
+  public ParallelResultScanner(List<ResultScanner<Row>> scanners, boolean ordered,
+      int bufferSize, ExecutorService executorService) {
+    Preconditions.checkArgument(!scanners.isEmpty(), "There must be at least one scanner.");
+    Preconditions.checkArgument(bufferSize > 0, "bufferSize must be greater than 0.");
+    this.scanners = scanners;
+    this.ordered = ordered;
+    this.queues = new ArrayList<>(scanners.size());
+    if (!ordered) {
+      queues.add(new ArrayBlockingQueue<ResultQueueEntry<Row>>(bufferSize * scanners.size()));
+    }
+    this.readers = new ArrayList<>(scanners.size());
+    for (ResultScanner<Row> scanner : scanners) {
+      BlockingQueue<ResultQueueEntry<Row>> queue;
+      if (ordered) {
+        queue = new ArrayBlockingQueue<>(bufferSize);
+        queues.add(queue);
+      } else {
+        queue = queues.get(0);
+      }
+      readers.add(executorService.submit(new SubScanReader(scanner, queue)));
+    }
+  }
+
+  @Override
+  public synchronized Row next() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+    while (!closed && completedCount < scanners.size()) {
+      ResultQueueEntry<Row> entry;
+      try {
+        entry = queues.get(currentQueue).take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for next result", e);
+      }
+      if (closed) {
+        break;
+      }
+      if (entry.isCompletionMarker()) {
+        completedCount++;
+        if (ordered) {
+          currentQueue++;
+        }
+      } else {
+        try {
+          return entry.getResponseOrThrow();
+        } catch (IOException e) {
+          // The sub-scan that failed won't add a completion marker, so the scan can't continue.
+          failure = e;
+          throw e;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int available() {
+    int available = 0;
+    for (BlockingQueue<ResultQueueEntry<Row>> queue : queues) {
+      available += queue.size();
+    }
+    return available;
+  }
+
+  /**
+   * Stops the sub-scans. A concurrent {@link #next()} returns null, as do later calls.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    for (Future<?> reader : readers) {
+      reader.cancel(true);
+    }
+    // Cancelled readers don't add their completion markers, so wake up a waiting next().
+    for (BlockingQueue<ResultQueueEntry<Row>> queue : queues) {
+      queue.clear();
+      queue.offer(ResultQueueEntry.<Row> newCompletionMarker());
+    }
+    for (ResultScanner<Row> scanner : scanners) {
+      closeQuietly(scanner);
+    }
+  }
+
+  /**
+   * Reads a sub-scan into a queue, followed by a completion marker or the error that ended it.
+   */
+  private static class SubScanReader implements Runnable {
+    private final ResultScanner<Row> scanner;
+    private final BlockingQueue<ResultQueueEntry<Row>> queue;
+
+    SubScanReader(ResultScanner<Row> scanner, BlockingQueue<ResultQueueEntry<Row>> queue) {
+      this.scanner = scanner;
+      this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+      try {
+        ResultQueueEntry<Row> last;
+        try {
+          for (Row row = scanner.next(); row != null; row = scanner.next()) {
+            queue.put(ResultQueueEntry.newResult(row));
+          }
+          last = ResultQueueEntry.newCompletionMarker();
+        } catch (IOException | RuntimeException e) {
+          last = ResultQueueEntry.newThrowable(e);
+        }
+        queue.put(last);
+      } catch (InterruptedException e) {
+        // The scanner was closed.
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
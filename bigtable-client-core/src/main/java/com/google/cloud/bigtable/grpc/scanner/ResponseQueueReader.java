@@ -18,11 +18,12 @@ package com.google.cloud.bigtable.grpc.scanner;
 import io.grpc.ClientCall;
 
 import java.io.IOException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
 
 import com.google.bigtable.v1.ReadRowsResponse;
 import com.google.bigtable.v1.Row;
@@ -31,24 +32,72 @@ import com.google.common.base.Preconditions;
 /**
  * Helper to read a queue of ResultQueueEntries and use the RowMergers to reconstruct
  * complete Row objects from the partial ReadRowsResponse objects.
+ * <p>
+ * The reader requests responses ahead of its caller. It either buffers up to a number of
+ * messages, or, if it has a {@link ScanBufferBudget}, up to a number of bytes. A byte-budgeted
+ * reader estimates the size of the responses it requests from the average size of the responses
+ * it has received so far.
+ * <p>
+ * Responses are handed from the gRPC listener to the scanner through a {@link SpscRingBuffer}.
+ * The reader never requests more responses than the ring buffer has room for, and
+ * {@link #getNextMergedRow()} is synchronized so that the ring buffer has a single consumer.
  */
 public class ResponseQueueReader {
-  private final BlockingQueue<ResultQueueEntry<ReadRowsResponse>> resultQueue;
+
+  /**
+   * The number of responses that a byte-budgeted reader can buffer, however small they are.
+   */
+  public static final int MAX_BUFFERED_RESPONSES = 4096;
+
+  private final SpscRingBuffer<ResultQueueEntry<ReadRowsResponse>> resultQueue;
   private final int readPartialRowTimeoutMillis;
   private boolean lastResponseProcessed = false;
   private AtomicBoolean completionMarkerFound = new AtomicBoolean(false);
+  private final AtomicBoolean closed = new AtomicBoolean(false);
   private final int capacityCap;
   private final int batchRequestSize;
   private AtomicInteger outstandingRequestCount;
+  private final ScanBufferBudget scannerBudget;
+  private final ScanBufferBudget globalBudget;
+  private final AtomicLong receivedBytes = new AtomicLong();
+  private final AtomicLong receivedCount = new AtomicLong();
+  // The bytes this reader holds in the global budget, or -1 once the reader is closed.
+  private final AtomicLong globalBytes = new AtomicLong();
   private final ClientCall<?, ReadRowsResponse> call;
+  private final RowMerger rowMerger = new RowMerger();
 
+  /**
+   * Creates a reader that buffers up to {@code capacityCap} messages.
+   */
   public ResponseQueueReader(int readPartialRowTimeoutMillis, int capacityCap,
       int outstandingRequestCount, int batchRequestSize, ClientCall<?, ReadRowsResponse> call) {
-    this.resultQueue = new LinkedBlockingQueue<>();
+    this(readPartialRowTimeoutMillis, capacityCap, outstandingRequestCount, batchRequestSize, null,
+        null, call);
+  }
+
+  /**
+   * Creates a reader that buffers up to the bytes of {@code scannerBudget} and, if it is set,
+   * {@code globalBudget}. The reader requests at least {@code batchRequestSize} messages at a time
+   * when its budget has room for twice that many.
+   */
+  public ResponseQueueReader(int readPartialRowTimeoutMillis, int outstandingRequestCount,
+      int batchRequestSize, ScanBufferBudget scannerBudget,
+      @Nullable ScanBufferBudget globalBudget, ClientCall<?, ReadRowsResponse> call) {
+    this(readPartialRowTimeoutMillis, MAX_BUFFERED_RESPONSES, outstandingRequestCount,
+        batchRequestSize, Preconditions.checkNotNull(scannerBudget), globalBudget, call);
+  }
+
+  private ResponseQueueReader(int readPartialRowTimeoutMillis, int capacityCap,
+      int outstandingRequestCount, int batchRequestSize, ScanBufferBudget scannerBudget,
+      ScanBufferBudget globalBudget, ClientCall<?, ReadRowsResponse> call) {
+    // Leave room for the completion marker or error that follows the requested responses.
+    this.resultQueue = new SpscRingBuffer<>(capacityCap + 1);
     this.readPartialRowTimeoutMillis = readPartialRowTimeoutMillis;
     this.capacityCap = capacityCap;
     this.outstandingRequestCount = new AtomicInteger(outstandingRequestCount);
     this.batchRequestSize = batchRequestSize;
+    this.scannerBudget = scannerBudget;
+    this.globalBudget = globalBudget;
     this.call = call;
   }
 
@@ -58,7 +107,7 @@ public class ResponseQueueReader {
    * @throws IOException On errors.
    */
   public synchronized Row getNextMergedRow() throws IOException {
-    RowMerger builder = null;
+    rowMerger.reset();
 
     while (!lastResponseProcessed) {
       ResultQueueEntry<ReadRowsResponse> queueEntry = getNext();
@@ -69,24 +118,20 @@ public class ResponseQueueReader {
       }
 
       ReadRowsResponse partialRow = queueEntry.getResponseOrThrow();
-      if (builder == null) {
-        builder = new RowMerger();
-      }
-
-      builder.addPartialRow(partialRow);
+      rowMerger.addPartialRow(partialRow);
 
-      if (builder.isRowCommitted()) {
-        Row builtRow = builder.buildRow();
+      if (rowMerger.isRowCommitted()) {
+        Row builtRow = rowMerger.buildRow();
         if (builtRow == null) {
           // This could happen when a row that was scanned was deleted after the scan started.
-          builder = null;
+          rowMerger.reset();
         } else {
           return builtRow;
         }
       }
     }
 
-    Preconditions.checkState(builder == null,
+    Preconditions.checkState(rowMerger.isEmpty(),
       "End of stream marker encountered while merging a row.");
     Preconditions.checkState(lastResponseProcessed,
       "Should only exit merge loop with by returning a complete Row or hitting end of stream.");
@@ -98,9 +143,15 @@ public class ResponseQueueReader {
     // If there are currently less than or equal to the batch request size, then ask gRPC to
     // request more results in a batch. Batch requests are more efficient that reading one at
     // a time.
-    if (!completionMarkerFound.get() && moreCanBeRequested()) {
-      call.request(batchRequestSize);
-      outstandingRequestCount.addAndGet(batchRequestSize);
+    if (closed.get()) {
+      throw new IOException("The scanner is closed.");
+    }
+    if (!completionMarkerFound.get()) {
+      int requestCount = getRequestCount();
+      if (requestCount > 0) {
+        call.request(requestCount);
+        outstandingRequestCount.addAndGet(requestCount);
+      }
     }
     ResultQueueEntry<ReadRowsResponse> queueEntry;
     try {
@@ -112,16 +163,46 @@ public class ResponseQueueReader {
     if (queueEntry == null) {
       throw new ScanTimeoutException("Timeout while merging responses.");
     }
+    if (scannerBudget != null && queueEntry.response != null) {
+      long size = queueEntry.response.getSerializedSize();
+      scannerBudget.release(size);
+      updateGlobalBytes(-size);
+    }
 
     return queueEntry;
   }
 
   /**
-   * Calculates whether or not a new batch should be requested.
-   * @return true if a new batch should be requested.
+   * Calculates how many messages should be requested.
+   * @return the number of messages to request, or 0 if no more should be requested yet.
    */
-  private boolean moreCanBeRequested() {
-    return outstandingRequestCount.get() + resultQueue.size() <= capacityCap - batchRequestSize;
+  private int getRequestCount() {
+    int outstanding = outstandingRequestCount.get();
+    if (scannerBudget == null) {
+      boolean moreCanBeRequested =
+          outstanding + resultQueue.size() <= capacityCap - batchRequestSize;
+      return moreCanBeRequested ? batchRequestSize : 0;
+    }
+    long count = receivedCount.get();
+    if (count == 0) {
+      // There is no estimate of the response size until the first response arrives.
+      return outstanding > 0 ? 0 : batchRequestSize;
+    }
+    long responseSize = Math.max(1, receivedBytes.get() / count);
+    long availableBytes = scannerBudget.getAvailableBytes();
+    if (globalBudget != null) {
+      availableBytes = Math.min(availableBytes, globalBudget.getAvailableBytes());
+    }
+    long requestCount = availableBytes / responseSize - Math.max(0, outstanding);
+    // Batch requests, unless the budget only fits a few responses.
+    long minRequestCount =
+        Math.max(1, Math.min(batchRequestSize, scannerBudget.getMaxBytes() / responseSize / 2));
+    requestCount = Math.min(requestCount, capacityCap - Math.max(0, outstanding) - available());
+    if (requestCount >= minRequestCount) {
+      return (int) requestCount;
+    }
+    // Always keep a response coming, so that a full global budget can't stall the scanner.
+    return outstanding <= 0 && resultQueue.isEmpty() ? 1 : 0;
   }
 
   public int available() {
@@ -133,6 +214,46 @@ public class ResponseQueueReader {
       completionMarkerFound.set(true);
     }
     outstandingRequestCount.decrementAndGet();
-    resultQueue.put(entry);
+    if (scannerBudget != null && entry.response != null) {
+      long size = entry.response.getSerializedSize();
+      receivedBytes.addAndGet(size);
+      receivedCount.incrementAndGet();
+      scannerBudget.add(size);
+      updateGlobalBytes(size);
+    }
+    if (!resultQueue.offer(entry) && !closed.get()) {
+      throw new IllegalStateException("Received more responses than were requested.");
+    }
+  }
+
+  /**
+   * Returns the bytes of the buffered responses to the global budget. The scanner can't be read
+   * after this.
+   */
+  public void close() {
+    closed.set(true);
+    long heldBytes = globalBytes.getAndSet(-1);
+    if (globalBudget != null && heldBytes > 0) {
+      globalBudget.release(heldBytes);
+    }
+  }
+
+  private void updateGlobalBytes(long delta) {
+    if (globalBudget == null) {
+      return;
+    }
+    long heldBytes;
+    do {
+      heldBytes = globalBytes.get();
+      if (heldBytes < 0) {
+        // The reader is closed, and its bytes were released.
+        return;
+      }
+    } while (!globalBytes.compareAndSet(heldBytes, heldBytes + delta));
+    if (delta > 0) {
+      globalBudget.add(delta);
+    } else {
+      globalBudget.release(-delta);
+    }
   }
-}
\ No newline at end of file
+}
@@ -25,6 +25,7 @@ import com.google.bigtable.v1.Row;
 import com.google.cloud.bigtable.config.Logger;
 import com.google.cloud.bigtable.config.RetryOptions;
 import com.google.cloud.bigtable.grpc.io.IOExceptionWithStatus;
+import com.google.cloud.bigtable.grpc.io.RetryBudget;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.protobuf.ByteString;
 
@@ -35,7 +36,7 @@ import java.io.IOException;
 
 /**
  * A ResultScanner that attempts to resume the readRows call when it
- * encounters gRPC INTERNAL errors.
+ * encounters gRPC INTERNAL errors. Resumes need room in the {@link RetryBudget}.
  */
 public class ResumingStreamingResultScanner extends AbstractBigtableResultScanner {
 
@@ -53,6 +54,7 @@ public class ResumingStreamingResultScanner extends AbstractBigtableResultScanne
 
   private final ReadRowsRequest originalRequest;
   private final RetryOptions retryOptions;
+  private final RetryBudget retryBudget;
 
   private BackOff currentBackoff;
   private ResultScanner<Row> currentDelegate;
@@ -67,7 +69,15 @@ public class ResumingStreamingResultScanner extends AbstractBigtableResultScanne
     RetryOptions retryOptions,
     ReadRowsRequest originalRequest,
     BigtableResultScannerFactory scannerFactory) {
-    this(retryOptions, originalRequest, scannerFactory, LOG);
+    this(retryOptions, originalRequest, scannerFactory, RetryBudget.UNLIMITED);
+  }
+
+  public ResumingStreamingResultScanner(
+    RetryOptions retryOptions,
+    ReadRowsRequest originalRequest,
+    BigtableResultScannerFactory scannerFactory,
+    RetryBudget retryBudget) {
+    this(retryOptions, originalRequest, scannerFactory, retryBudget, LOG);
   }
 
   @VisibleForTesting
@@ -75,6 +85,7 @@ public class ResumingStreamingResultScanner extends AbstractBigtableResultScanne
       RetryOptions retryOptions,
       ReadRowsRequest originalRequest,
       BigtableResultScannerFactory scannerFactory,
+      RetryBudget retryBudget,
       Logger logger) {
     Preconditions.checkArgument(
         !originalRequest.getAllowRowInterleaving(),
@@ -83,7 +94,9 @@ public class ResumingStreamingResultScanner extends AbstractBigtableResultScanne
     this.scannerFactory = scannerFactory;
     this.currentDelegate = scannerFactory.createScanner(originalRequest);
     this.retryOptions = retryOptions;
+    this.retryBudget = retryBudget;
     this.logger = logger;
+    retryBudget.onRequest();
   }
 
   @Override
@@ -136,6 +149,10 @@ public class ResumingStreamingResultScanner extends AbstractBigtableResultScanne
     if (nextBackOff == BackOff.STOP) {
       throw new ScanRetriesExhaustedException("Exhausted streaming retries.", cause);
     }
+    if (!retryBudget.tryAcquireRetry()) {
+      throw new ScanRetriesExhaustedException(
+          "The retry budget is exhausted because too many operations are retrying.", cause);
+    }
 
     sleep(nextBackOff);
     reissueRequest();
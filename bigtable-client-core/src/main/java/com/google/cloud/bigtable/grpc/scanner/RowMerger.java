@@ -15,8 +15,10 @@
  */
 package com.google.cloud.bigtable.grpc.scanner;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
@@ -33,8 +35,8 @@ import com.google.protobuf.ByteString;
  * does not currently handle multiple interleaved rows. It is assumed that it is
  * handling results for a request with allow_row_interleaving = false.
  * </p>
- * <p>Each RowMerger object is valid only for building a single Row. Expected usage
- * is along the lines of:
+ * <p>A RowMerger builds one Row at a time, and can be reused for the next Row after
+ * {@link #reset()}. Expected usage is along the lines of:
  * </p>
  * <pre>
  * RowMerger rm = new RowMerger();
@@ -42,21 +44,39 @@ import com.google.protobuf.ByteString;
  *   rm.addPartialRow(...);
  * }
  * Row r = rm.buildRow();
+ * rm.reset();
  * </pre>
  *
  * <p> {@link RowMerger#readNextRow(Iterator)} will essentially perform the code above.</p>
+ * <p>Families are kept in the order in which they arrived. A family that arrives in a single
+ * chunk, which is the common case, is added to the Row as is, without copying its columns. Only
+ * families that arrive in several chunks are merged.</p>
  */
 public class RowMerger {
 
+  /**
+   * Rows with more family chunks than this are merged with a map instead of by comparing every
+   * pair of family names.
+   */
+  private static final int MAX_FAMILIES_TO_SCAN = 16;
+
   /**
    * Reads the next {@link Row} from the responseIterator.
    */
   public static Row readNextRow(Iterator<ReadRowsResponse> responseIterator) {
+    return readNextRow(responseIterator, new RowMerger());
+  }
+
+  /**
+   * Reads the next {@link Row} from the responseIterator with the given rowMerger, which is reset
+   * before it is used.
+   */
+  public static Row readNextRow(Iterator<ReadRowsResponse> responseIterator, RowMerger rowMerger) {
     while (true) {
       Preconditions.checkState(responseIterator.hasNext(),
         "End of stream marker encountered while merging a row.");
 
-      RowMerger rowMerger = new RowMerger();
+      rowMerger.reset();
       while (responseIterator.hasNext() && !rowMerger.isRowCommitted()) {
         rowMerger.addPartialRow(responseIterator.next());
       }
@@ -74,10 +94,28 @@ public class RowMerger {
     }
   }
 
-  private final Map<String, Family.Builder> familyMap = new HashMap<>();
+  // The ROW_CONTENTS of the current row, in the order in which they arrived.
+  private final List<Family> families = new ArrayList<>();
+  private Map<String, Family.Builder> familyMap;
   private boolean committed = false;
   private ByteString currentRowKey;
 
+  /**
+   * Clears the current row, so that the next row can be built.
+   */
+  public void reset() {
+    families.clear();
+    committed = false;
+    currentRowKey = null;
+  }
+
+  /**
+   * Indicates whether a row has been started since the last {@link #reset()}.
+   */
+  public boolean isEmpty() {
+    return currentRowKey == null;
+  }
+
   /**
    * Add a partial row response to this builder.
    */
@@ -90,14 +128,16 @@ public class RowMerger {
       currentRowKey = partialRow.getRowKey();
     }
 
-    for (Chunk chunk : partialRow.getChunksList()) {
+    int chunkCount = partialRow.getChunksCount();
+    for (int i = 0; i < chunkCount; i++) {
+      Chunk chunk = partialRow.getChunks(i);
       Preconditions.checkState(!committed, "Encountered chunk after row commit.");
       switch (chunk.getChunkCase()) {
         case ROW_CONTENTS:
-          merge(familyMap, chunk.getRowContents());
+          families.add(chunk.getRowContents());
           break;
         case RESET_ROW:
-          familyMap.clear();
+          families.clear();
           break;
         case COMMIT_ROW:
           committed = true;
@@ -127,7 +167,8 @@ public class RowMerger {
   public @Nullable Row buildRow() {
     Preconditions.checkState(committed,
         "Cannot build a Row object if we have not yet encountered a COMMIT_ROW chunk.");
-    if (familyMap.isEmpty()) {
+    int familyCount = families.size();
+    if (familyCount == 0) {
       // A chunk of a row could be partially read, but then deleted by a different operation.
       // It would result in a sequence like: [ROW_CONTENTS, ROW_CONTENTS, RESET_ROW, COMMIT_ROW].
       // Return null in that case.
@@ -135,20 +176,58 @@ public class RowMerger {
     }
     Row.Builder currentRowBuilder = Row.newBuilder();
     currentRowBuilder.setKey(currentRowKey);
-    for (Family.Builder builder : familyMap.values()) {
-      currentRowBuilder.addFamilies(builder.build());
+    if (familyCount == 1) {
+      // The whole row arrived in a single chunk, so there is nothing to merge.
+      currentRowBuilder.addFamilies(families.get(0));
+    } else if (familyCount <= MAX_FAMILIES_TO_SCAN) {
+      mergeByScanning(currentRowBuilder);
+    } else {
+      mergeWithMap(currentRowBuilder);
     }
     return currentRowBuilder.build();
   }
 
-  // Merge newRowContents into the map of family builders, creating one if necessary.
-  private void merge(Map<String, Family.Builder> familyBuilderMap, Family newRowContents) {
-    String familyName = newRowContents.getName();
-    Family.Builder familyBuilder = familyBuilderMap.get(familyName);
-    if (familyBuilder == null) {
-      familyBuilder = Family.newBuilder().setName(familyName);
-      familyBuilderMap.put(familyName, familyBuilder);
+  // Adds each family to the row, merged with the later chunks of the same family, if there are
+  // any. Merged chunks are removed from the list.
+  private void mergeByScanning(Row.Builder rowBuilder) {
+    int familyCount = families.size();
+    for (int i = 0; i < familyCount; i++) {
+      Family family = families.get(i);
+      if (family == null) {
+        continue;
+      }
+      String familyName = family.getName();
+      Family.Builder familyBuilder = null;
+      for (int j = i + 1; j < familyCount; j++) {
+        Family laterFamily = families.get(j);
+        if (laterFamily != null && familyName.equals(laterFamily.getName())) {
+          if (familyBuilder == null) {
+            familyBuilder = family.toBuilder();
+          }
+          familyBuilder.addAllColumns(laterFamily.getColumnsList());
+          families.set(j, null);
+        }
+      }
+      rowBuilder.addFamilies(familyBuilder == null ? family : familyBuilder.build());
+    }
+  }
+
+  // Merges the families with a map from family name to builder, for rows with many chunks.
+  private void mergeWithMap(Row.Builder rowBuilder) {
+    if (familyMap == null) {
+      familyMap = new LinkedHashMap<>();
+    }
+    for (Family family : families) {
+      Family.Builder familyBuilder = familyMap.get(family.getName());
+      if (familyBuilder == null) {
+        familyMap.put(family.getName(), family.toBuilder());
+      } else {
+        familyBuilder.addAllColumns(family.getColumnsList());
+      }
+    }
+    for (Family.Builder familyBuilder : familyMap.values()) {
+      rowBuilder.addFamilies(familyBuilder.build());
     }
-    familyBuilder.addAllColumns(newRowContents.getColumnsList());
+    familyMap.clear();
   }
 }
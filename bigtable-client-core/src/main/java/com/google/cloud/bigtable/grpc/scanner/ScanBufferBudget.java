@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.scanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.cloud.bigtable.config.Logger;
+import com.google.common.base.Preconditions;
+
+/**
+ * A limit on the serialized size of the ReadRowsResponses that scanners have received but their
+ * callers haven't read yet. Each byte-budgeted {@link ResponseQueueReader} has a budget of its
+ * own, and may also share the global budget from {@link #getGlobal(long)} with every other open
+ * scanner in the JVM.
+ * <p>
+ * A budget doesn't block: readers only request more responses while there is room in their
+ * budgets, so the buffered bytes can overshoot the limit by the responses that were already
+ * requested when the budget filled up.
+ */
+public class ScanBufferBudget {
+
+  private static final Logger LOG = new Logger(ScanBufferBudget.class);
+
+  private static ScanBufferBudget global;
+
+  /**
+   * Returns the budget that is shared by every scanner in the JVM that uses one. The first call
+   * sets the limit, and later calls with a different limit log a warning and get the existing
+   * budget.
+   */
+  public static synchronized ScanBufferBudget getGlobal(long maxBytes) {
+    if (global == null) {
+      global = new ScanBufferBudget(maxBytes);
+    } else if (global.getMaxBytes() != maxBytes) {
+      LOG.warn("The global scan buffer is already limited to %d bytes. "
+          + "Ignoring a limit of %d bytes.", global.getMaxBytes(), maxBytes);
+    }
+    return global;
+  }
+
+  private final long maxBytes;
+  private final AtomicLong bufferedBytes = new AtomicLong();
+
+  public ScanBufferBudget(long maxBytes) {
+    Preconditions.checkArgument(maxBytes > 0, "maxBytes must be greater than 0.");
+    this.maxBytes = maxBytes;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getBufferedBytes() {
+    return bufferedBytes.get();
+  }
+
+  /**
+   * The number of bytes that can still be buffered, which is negative if the budget overshot.
+   */
+  public long getAvailableBytes() {
+    return maxBytes - bufferedBytes.get();
+  }
+
+  void add(long bytes) {
+    bufferedBytes.addAndGet(bytes);
+  }
+
+  void release(long bytes) {
+    bufferedBytes.addAndGet(-bytes);
+  }
+}
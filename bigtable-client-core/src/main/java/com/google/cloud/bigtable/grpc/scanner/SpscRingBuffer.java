@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.scanner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded queue for a single producer and a single consumer, which hands elements over without
+ * locks or allocations. A consumer that finds the queue empty spins for a little while, and then
+ * parks until the producer adds an element.
+ * <p>
+ * {@link #offer(Object)} may only be called by one thread at a time, and so may
+ * {@link #poll()} and {@link #poll(long, TimeUnit)}. The threads may change, as long as there is a
+ * happens-before edge between the calls of one side, which is the case for a gRPC listener.
+ * @param <T> The type of the elements.
+ */
+class SpscRingBuffer<T> {
+
+  /**
+   * The number of times an empty queue is checked before the consumer parks.
+   */
+  private static final int SPIN_COUNT = 100;
+
+  private final Object[] elements;
+  private final int mask;
+
+  // The index of the next element to poll, only written by the consumer.
+  private volatile long head = 0;
+  // The index of the next element to offer, only written by the producer.
+  private volatile long tail = 0;
+  private volatile Thread waitingConsumer;
+
+  /**
+   * @param minCapacity The minimum number of elements the queue holds. The capacity is rounded up
+   *          to a power of two.
+   */
+  SpscRingBuffer(int minCapacity) {
+    Preconditions.checkArgument(minCapacity > 0 && minCapacity <= 1 << 30,
+      "minCapacity must be between 1 and 2^30.");
+    int capacity = Integer.highestOneBit(minCapacity);
+    if (capacity < minCapacity) {
+      capacity <<= 1;
+    }
+    this.elements = new Object[capacity];
+    this.mask = capacity - 1;
+  }
+
+  int capacity() {
+    return elements.length;
+  }
+
+  int size() {
+    // Read head first, so that the size is never negative.
+    long currentHead = head;
+    return (int) (tail - currentHead);
+  }
+
+  boolean isEmpty() {
+    return head == tail;
+  }
+
+  /**
+   * Adds an element, and wakes the consumer up if it is parked.
+   * @return false if the queue is full.
+   */
+  boolean offer(T element) {
+    Preconditions.checkNotNull(element);
+    long currentTail = tail;
+    if (currentTail - head == elements.length) {
+      return false;
+    }
+    elements[(int) currentTail & mask] = element;
+    // The volatile write publishes the element, and orders it before the read of waitingConsumer.
+    tail = currentTail + 1;
+    Thread consumer = waitingConsumer;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+    return true;
+  }
+
+  /**
+   * Removes the next element.
+   * @return null if the queue is empty.
+   */
+  T poll() {
+    long currentHead = head;
+    if (currentHead == tail) {
+      return null;
+    }
+    int index = (int) currentHead & mask;
+    @SuppressWarnings("unchecked")
+    T element = (T) elements[index];
+    elements[index] = null;
+    head = currentHead + 1;
+    return element;
+  }
+
+  /**
+   * Removes the next element, waiting up to the timeout for one to be added.
+   * @return null if the timeout elapsed first.
+   * @throws InterruptedException if the thread was interrupted while waiting.
+   */
+  T poll(long timeout, TimeUnit unit) throws InterruptedException {
+    T element = poll();
+    if (element != null) {
+      return element;
+    }
+    long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    for (int spins = 0; ; spins++) {
+      element = poll();
+      if (element != null) {
+        return element;
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      long remainingNanos = deadlineNanos - System.nanoTime();
+      if (remainingNanos <= 0) {
+        return null;
+      }
+      if (spins >= SPIN_COUNT) {
+        waitingConsumer = Thread.currentThread();
+        // The producer may have added an element before it could see waitingConsumer.
+        if (isEmpty()) {
+          LockSupport.parkNanos(this, remainingNanos);
+        }
+        waitingConsumer = null;
+      }
+    }
+  }
+}
@@ -72,5 +72,6 @@ public class StreamingBigtableResultScanner extends AbstractBigtableResultScanne
   @Override
   public void close() throws IOException {
     cancellationToken.cancel();
+    responseQueueReader.close();
   }
 }
@@ -83,6 +83,20 @@ public class TestBigtableOptions {
     Assert.assertEquals(options, deserialized);
   }
 
+  @Test
+  public void testToStringIncludesNestedOptions() {
+    BigtableOptions options = new BigtableOptions.Builder()
+        .setProjectId("project")
+        .setBulkOptions(new BulkOptions.Builder().setBulkMaxRowKeyCount(7).build())
+        .setReadOptions(new ReadOptions.Builder().setParallelScanCount(3).build())
+        .setChannelOptions(new ChannelOptions.Builder().setMinChannelCount(2).build())
+        .build();
+    String string = options.toString();
+    Assert.assertTrue(string, string.contains("bulkMaxRowKeyCount=7"));
+    Assert.assertTrue(string, string.contains("parallelScanCount=3"));
+    Assert.assertTrue(string, string.contains("minChannelCount=2"));
+  }
+
   @Test
   public void testNullStringsDontThrowExceptions() {
      new BigtableOptions.Builder().build();
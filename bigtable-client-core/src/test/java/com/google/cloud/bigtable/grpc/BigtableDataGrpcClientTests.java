@@ -16,6 +16,7 @@
 package com.google.cloud.bigtable.grpc;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -26,11 +27,13 @@ import static org.mockito.Mockito.when;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -38,10 +41,12 @@ import com.google.api.client.util.NanoClock;
 import com.google.bigtable.v1.BigtableServiceGrpc;
 import com.google.bigtable.v1.CheckAndMutateRowRequest;
 import com.google.bigtable.v1.MutateRowRequest;
+import com.google.bigtable.v1.MutateRowsRequest;
 import com.google.bigtable.v1.Mutation;
 import com.google.bigtable.v1.Mutation.SetCell;
 import com.google.bigtable.v1.ReadRowsRequest;
 import com.google.bigtable.v1.RowRange;
+import com.google.bigtable.v1.RowSet;
 import com.google.cloud.bigtable.config.BigtableOptions;
 import com.google.cloud.bigtable.config.RetryOptions;
 import com.google.cloud.bigtable.config.RetryOptionsUtil;
@@ -139,6 +144,28 @@ public class BigtableDataGrpcClientTests {
     assertFalse(predicate.apply(request.build()));
   }
 
+  @Test
+  public void testRetyableMutateRowsAsync() {
+    MutateRowsRequest request = MutateRowsRequest.getDefaultInstance();
+    underTest.mutateRowsAsync(request);
+    verify(clientCallService).listenableAsyncCall(any(RetryingCall.class), same(request));
+  }
+
+  @Test
+  public void testMutateRowsPredicate() {
+    Predicate<MutateRowsRequest> predicate = BigtableDataGrpcClient.IS_RETRYABLE_MUTATIONS;
+    assertFalse(predicate.apply(null));
+
+    MutateRowsRequest.Builder request = MutateRowsRequest.newBuilder();
+    request.addEntriesBuilder().addMutations(
+        Mutation.newBuilder().setSetCell(SetCell.newBuilder().setTimestampMicros(1)));
+    assertTrue(predicate.apply(request.build()));
+
+    request.addEntriesBuilder().addMutations(
+        Mutation.newBuilder().setSetCell(SetCell.newBuilder().setTimestampMicros(-1)));
+    assertFalse(predicate.apply(request.build()));
+  }
+
   @Test
   public void testCheckAndMutateRowPredicate() {
     Predicate<CheckAndMutateRowRequest> predicate =
@@ -175,4 +202,56 @@ public class BigtableDataGrpcClientTests {
     verify(channelPool, times(1)).newCall(eq(BigtableServiceGrpc.METHOD_READ_ROWS),
       same(CallOptions.DEFAULT));
   }
+
+  @Test
+  public void testCallOptionsDeadlines() {
+    RetryOptions retryOptions = new RetryOptions.Builder()
+        .setReadRowRpcTimeoutMs(1000)
+        .setOperationTimeoutMs(500)
+        .build();
+    BigtableOptions options = new BigtableOptions.Builder().setRetryOptions(retryOptions).build();
+    underTest = new BigtableDataGrpcClient(channelPool, executorService, retryExecutorService,
+        options, clientCallService);
+
+    // No timeout for the RPC means that the operation timeout applies.
+    assertDeadlineWithin(underTest.createCallOptions(0), 500);
+    // The operation timeout caps the RPC timeout.
+    assertDeadlineWithin(underTest.createCallOptions(1000), 500);
+    assertDeadlineWithin(underTest.createCallOptions(100), 100);
+
+    ReadRowsRequest request =
+        ReadRowsRequest.newBuilder().setRowKey(ByteString.copyFrom(new byte[0])).build();
+    underTest.readRows(request);
+    ArgumentCaptor<CallOptions> callOptions = ArgumentCaptor.forClass(CallOptions.class);
+    verify(channelPool, times(1)).newCall(eq(BigtableServiceGrpc.METHOD_READ_ROWS),
+      callOptions.capture());
+    assertDeadlineWithin(callOptions.getValue(), 500);
+  }
+
+  @Test
+  public void testRowKeySetReadHasReadRowDeadline() {
+    RetryOptions retryOptions = new RetryOptions.Builder().setReadRowRpcTimeoutMs(1000).build();
+    BigtableOptions options = new BigtableOptions.Builder().setRetryOptions(retryOptions).build();
+    underTest = new BigtableDataGrpcClient(channelPool, executorService, retryExecutorService,
+        options, clientCallService);
+
+    ReadRowsRequest request = ReadRowsRequest.newBuilder()
+        .setRowSet(RowSet.newBuilder()
+            .addRowKeys(ByteString.copyFromUtf8("a"))
+            .addRowKeys(ByteString.copyFromUtf8("b")))
+        .build();
+    underTest.readRows(request);
+    ArgumentCaptor<CallOptions> callOptions = ArgumentCaptor.forClass(CallOptions.class);
+    verify(channelPool, times(1)).newCall(eq(BigtableServiceGrpc.METHOD_READ_ROWS),
+      callOptions.capture());
+    assertDeadlineWithin(callOptions.getValue(), 1000);
+  }
+
+  private static void assertDeadlineWithin(CallOptions callOptions, long timeoutMs) {
+    Long deadlineNanos = callOptions.getDeadlineNanoTime();
+    assertNotNull(deadlineNanos);
+    long remainingNanos = deadlineNanos - System.nanoTime();
+    assertTrue(remainingNanos > 0);
+    assertTrue(remainingNanos <= TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+  }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.bigtable.config.ChannelOptions.Transport;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * Tests for {@link BigtableSessionSharedThreadPools}.
+ */
+@RunWith(JUnit4.class)
+public class TestBigtableSessionSharedThreadPools {
+
+  @Test
+  public void testEpollFallsBackToNio() {
+    // netty-transport-native-epoll is not a dependency of this project.
+    Assert.assertEquals(Transport.NIO,
+      BigtableSessionSharedThreadPools.resolveTransport(Transport.EPOLL));
+    Assert.assertEquals(Transport.NIO,
+      BigtableSessionSharedThreadPools.resolveTransport(Transport.NIO));
+    Assert.assertEquals(NioSocketChannel.class,
+      BigtableSessionSharedThreadPools.getChannelType(Transport.NIO));
+  }
+
+  @Test
+  public void testEventLoopGroupsAreShared() {
+    BigtableSessionSharedThreadPools pools = BigtableSessionSharedThreadPools.getInstance();
+    Assert.assertSame(pools.getElg(), pools.getEventLoopGroup(Transport.NIO, 0));
+    EventLoopGroup group = pools.getEventLoopGroup(Transport.NIO, 2);
+    Assert.assertTrue(group instanceof NioEventLoopGroup);
+    Assert.assertNotSame(pools.getElg(), group);
+    Assert.assertSame(group, pools.getEventLoopGroup(Transport.NIO, 2));
+    Assert.assertEquals(2, ((NioEventLoopGroup) group).executorCount());
+  }
+}
@@ -15,27 +15,40 @@
  */
 package com.google.cloud.bigtable.grpc.async;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import com.google.api.client.util.NanoClock;
-import com.google.api.client.util.Sleeper;
 import com.google.bigtable.v1.ReadRowsRequest;
 import com.google.cloud.bigtable.config.RetryOptions;
 import com.google.cloud.bigtable.config.RetryOptionsUtil;
+import com.google.cloud.bigtable.grpc.io.RetryBudget;
 import com.google.cloud.bigtable.grpc.scanner.ScanRetriesExhaustedException;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 import io.grpc.Status;
 
@@ -51,6 +64,9 @@ public class RetryingRpcFunctionTest {
   @Mock
   private RetryableRpc readAsync;
 
+  @Mock
+  private ScheduledExecutorService retryExecutorService;
+
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
@@ -63,7 +79,7 @@ public class RetryingRpcFunctionTest {
     RetryOptions retryOptions = RetryOptionsUtil.createTestRetryOptions(nanoClock);
     underTest =
         RetryingRpcFunction.create(retryOptions, ReadRowsRequest.getDefaultInstance(),
-          readAsync);
+          readAsync, retryExecutorService, RetryBudget.UNLIMITED);
   }
 
   @Test
@@ -83,12 +99,14 @@ public class RetryingRpcFunctionTest {
         return start + totalSleep.get();
       }
     });
-    underTest.sleeper = new Sleeper() {
-      @Override
-      public void sleep(long ms) throws InterruptedException {
-        totalSleep.addAndGet(ms * 1000000);
-      }
-    };
+    when(retryExecutorService.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS)))
+        .then(new Answer<Void>() {
+          @Override
+          public Void answer(InvocationOnMock invocation) throws Throwable {
+            totalSleep.addAndGet((Long) invocation.getArguments()[1] * 1000000);
+            return null;
+          }
+        });
     // This should throw a ScanRetriesExhaustedException after a short while.  The max of 50
     // is a safe number of attempts before assuming that a ScanRetriesExhaustedException will
     // not be thrown.
@@ -96,4 +114,48 @@ public class RetryingRpcFunctionTest {
       underTest.apply(Status.INTERNAL.asRuntimeException());
     }
   }
+
+  @Test
+  public void testRetryIsScheduled() throws Exception {
+    SettableFuture firstRetry = SettableFuture.create();
+    when(readAsync.call(any())).thenReturn(firstRetry, Futures.immediateFuture("result"));
+
+    ListenableFuture result = underTest.apply(Status.INTERNAL.asRuntimeException());
+    // Nothing is sent until the back off is over.
+    verify(readAsync, never()).call(any());
+    runScheduledRetry(1);
+    Assert.assertFalse(result.isDone());
+
+    // A failed retry is retried again.
+    firstRetry.setException(Status.UNAVAILABLE.asRuntimeException());
+    Assert.assertFalse(result.isDone());
+    runScheduledRetry(2);
+    Assert.assertEquals("result", result.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testOperationTimeout() throws Exception {
+    RetryOptions retryOptions = new RetryOptions.Builder()
+        .setInitialBackoffMillis(10)
+        .setOperationTimeoutMs(1)
+        .build();
+    underTest = RetryingRpcFunction.create(retryOptions, ReadRowsRequest.getDefaultInstance(),
+      readAsync, retryExecutorService, RetryBudget.UNLIMITED);
+    try {
+      underTest.apply(Status.INTERNAL.asRuntimeException());
+      Assert.fail("Expected a ScanRetriesExhaustedException");
+    } catch (ScanRetriesExhaustedException e) {
+      // The retry would finish after the operation timeout.
+    }
+    verify(retryExecutorService, never()).schedule(any(Runnable.class), anyLong(),
+      any(TimeUnit.class));
+  }
+
+  private void runScheduledRetry(int expectedRetries) {
+    ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+    verify(retryExecutorService, times(expectedRetries)).schedule(retry.capture(), anyLong(),
+      eq(TimeUnit.MILLISECONDS));
+    retry.getValue().run();
+    verify(readAsync, times(expectedRetries)).call(any());
+  }
 }
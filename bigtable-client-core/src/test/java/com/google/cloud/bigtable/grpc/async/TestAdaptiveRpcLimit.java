@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import io.grpc.Status;
+
+/**
+ * Tests for {@link AdaptiveRpcLimit}
+ */
+@RunWith(JUnit4.class)
+public class TestAdaptiveRpcLimit {
+
+  private static final long LATENCY = 1000000;
+
+  @Test
+  public void testIncreasesWhenLatencyIsSteady() {
+    AdaptiveRpcLimit underTest = new AdaptiveRpcLimit(10, 1, 100);
+    completeWindow(underTest, LATENCY, 10);
+    assertEquals(11, underTest.getLimit());
+    completeWindow(underTest, LATENCY, 11);
+    assertEquals(12, underTest.getLimit());
+    assertEquals(LATENCY, underTest.getBaselineLatencyNanos());
+  }
+
+  @Test
+  public void testDoesNotIncreaseWhenUnderused() {
+    AdaptiveRpcLimit underTest = new AdaptiveRpcLimit(10, 1, 100);
+    completeWindow(underTest, LATENCY, 2);
+    assertEquals(10, underTest.getLimit());
+  }
+
+  @Test
+  public void testDecreasesWhenLatencyInflates() {
+    AdaptiveRpcLimit underTest = new AdaptiveRpcLimit(10, 1, 100);
+    completeWindow(underTest, LATENCY, 10);
+    assertEquals(11, underTest.getLimit());
+    completeWindow(underTest, LATENCY * 3, 11);
+    assertEquals(9, underTest.getLimit());
+  }
+
+  @Test
+  public void testDecreasesOncePerWindowOnOverload() {
+    AdaptiveRpcLimit underTest = new AdaptiveRpcLimit(40, 1, 100);
+    underTest.onCompletion(LATENCY, Status.UNAVAILABLE.asRuntimeException(), 40);
+    assertEquals(20, underTest.getLimit());
+    underTest.onCompletion(LATENCY, Status.UNAVAILABLE.asRuntimeException(), 40);
+    assertEquals(20, underTest.getLimit());
+    // A failure that isn't caused by load is treated like a success.
+    underTest.onCompletion(LATENCY, Status.NOT_FOUND.asRuntimeException(), 40);
+    assertEquals(20, underTest.getLimit());
+  }
+
+  @Test
+  public void testStaysWithinBounds() {
+    AdaptiveRpcLimit underTest = new AdaptiveRpcLimit(2, 2, 3);
+    underTest.onCompletion(LATENCY, Status.UNAVAILABLE.asRuntimeException(), 2);
+    assertEquals(2, underTest.getLimit());
+    for (int i = 0; i < 10; i++) {
+      completeWindow(underTest, LATENCY, 3);
+    }
+    assertEquals(3, underTest.getLimit());
+  }
+
+  @Test
+  public void testIsOverloaded() {
+    assertTrue(AdaptiveRpcLimit.isOverloaded(Status.UNAVAILABLE.asRuntimeException()));
+    assertTrue(AdaptiveRpcLimit.isOverloaded(Status.RESOURCE_EXHAUSTED.asRuntimeException()));
+    assertFalse(AdaptiveRpcLimit.isOverloaded(Status.NOT_FOUND.asRuntimeException()));
+  }
+
+  @Test
+  public void testHeapSizeManagerFollowsLimit() throws InterruptedException {
+    AdaptiveRpcLimit limit = new AdaptiveRpcLimit(2, 1, 10);
+    HeapSizeManager underTest = new HeapSizeManager(1000, limit);
+    assertEquals(2, underTest.getMaxInFlightRpcs());
+    long id1 = underTest.registerOperationWithHeapSize(1);
+    long id2 = underTest.registerOperationWithHeapSize(1);
+    assertTrue(underTest.isFull());
+    underTest.markCanBeCompleted(id1);
+    underTest.markCanBeCompleted(id2);
+    assertEquals(3, underTest.getMaxInFlightRpcs());
+  }
+
+  private static void completeWindow(AdaptiveRpcLimit limit, long latency, int inFlight) {
+    int count = limit.getLimit();
+    for (int i = 0; i < count; i++) {
+      limit.onCompletion(latency, null, inFlight);
+    }
+  }
+}
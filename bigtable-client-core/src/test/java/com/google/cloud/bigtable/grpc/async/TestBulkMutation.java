@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.async;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.bigtable.v1.MutateRowRequest;
+import com.google.bigtable.v1.MutateRowsRequest;
+import com.google.bigtable.v1.MutateRowsResponse;
+import com.google.bigtable.v1.Mutation;
+import com.google.bigtable.v1.Mutation.SetCell;
+import com.google.api.client.util.NanoClock;
+import com.google.cloud.bigtable.config.BulkOptions;
+import com.google.cloud.bigtable.config.RetryOptions;
+import com.google.cloud.bigtable.config.RetryOptionsUtil;
+import com.google.cloud.bigtable.grpc.BigtableClusterName;
+import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.cloud.bigtable.grpc.BigtableTableName;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+/**
+ * Tests for {@link BulkMutation}
+ */
+@RunWith(JUnit4.class)
+public class TestBulkMutation {
+
+  private static final BigtableTableName TABLE_NAME =
+      new BigtableClusterName("project", "zone", "cluster").toTableName("table");
+
+  @Mock
+  private BigtableDataClient client;
+
+  @Mock
+  private NanoClock nanoClock;
+
+  private List<MutateRowsRequest> requests;
+  private List<SettableFuture<MutateRowsResponse>> responseFutures;
+  private ScheduledExecutorService retryExecutorService;
+  private ExecutorService batchExecutorService;
+  private AsyncExecutor asyncExecutor;
+  private RetryOptions retryOptions;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    requests = new ArrayList<>();
+    responseFutures = new ArrayList<>();
+    when(client.mutateRowsAsync(any(MutateRowsRequest.class))).thenAnswer(
+      new Answer<ListenableFuture<MutateRowsResponse>>() {
+        @Override
+        public ListenableFuture<MutateRowsResponse> answer(InvocationOnMock invocation) {
+          SettableFuture<MutateRowsResponse> future = SettableFuture.create();
+          synchronized (requests) {
+            requests.add((MutateRowsRequest) invocation.getArguments()[0]);
+            responseFutures.add(future);
+          }
+          return future;
+        }
+      });
+    retryExecutorService = Executors.newScheduledThreadPool(1);
+    batchExecutorService = Executors.newCachedThreadPool();
+    asyncExecutor = new AsyncExecutor(client, new HeapSizeManager(100000, 10));
+    retryOptions = new RetryOptions.Builder().build();
+  }
+
+  @After
+  public void tearDown() {
+    retryExecutorService.shutdownNow();
+    batchExecutorService.shutdownNow();
+  }
+
+  @Test
+  public void testBatchesOnRowKeyCount() throws Exception {
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(3).setAutoflushMs(0).build());
+    for (int i = 0; i < 7; i++) {
+      underTest.add(createRequest(i));
+    }
+    verify(client, times(2)).mutateRowsAsync(any(MutateRowsRequest.class));
+    Assert.assertEquals(3, requests.get(0).getEntriesCount());
+    Assert.assertEquals(TABLE_NAME.toString(), requests.get(0).getTableName());
+    Assert.assertEquals(1, underTest.currentBatch.getEntryCount());
+
+    underTest.flush();
+    verify(client, times(3)).mutateRowsAsync(any(MutateRowsRequest.class));
+    Assert.assertEquals(1, requests.get(2).getEntriesCount());
+    Assert.assertNull(underTest.currentBatch);
+  }
+
+  @Test
+  public void testBatchesOnRequestSize() throws Exception {
+    long entrySize = toEntry(createRequest(0)).getSerializedSize();
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(1000)
+        .setBulkMaxRequestSize(TABLE_NAME.toString().length() + 2 * entrySize + 1)
+        .setAutoflushMs(0)
+        .build());
+    for (int i = 0; i < 5; i++) {
+      underTest.add(createRequest(i));
+    }
+    Assert.assertEquals(2, requests.size());
+    Assert.assertEquals(2, requests.get(0).getEntriesCount());
+    Assert.assertEquals(2, requests.get(1).getEntriesCount());
+  }
+
+  @Test
+  public void testAutoflush() throws Exception {
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(1000).setAutoflushMs(10).build());
+    underTest.add(createRequest(0));
+    Assert.assertTrue(requests.isEmpty());
+    for (int i = 0; i < 100 && requests.isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, requests.size());
+    Assert.assertEquals(1, requests.get(0).getEntriesCount());
+  }
+
+  @Test
+  public void testBlockedAutoflushDoesNotBlockRetriesOrAdds() throws Exception {
+    asyncExecutor = new AsyncExecutor(client, new HeapSizeManager(100000, 1));
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(1000).setAutoflushMs(10).build());
+    underTest.add(createRequest(0));
+    underTest.flush();
+    Assert.assertEquals(1, requests.size());
+
+    // The next batch can't be sent until the first one completes.
+    underTest.add(createRequest(1));
+    Thread.sleep(50);
+    Assert.assertEquals(1, requests.size());
+    retryExecutorService.submit(new Runnable() {
+      @Override
+      public void run() {
+      }
+    }).get(1, TimeUnit.SECONDS);
+    underTest.add(createRequest(2));
+
+    responseFutures.get(0).set(MutateRowsResponse.newBuilder()
+        .addStatuses(createStatus(Status.Code.OK))
+        .build());
+    waitForRequests(2);
+    Assert.assertEquals(toEntry(createRequest(1)), requests.get(1).getEntries(0));
+  }
+
+  @Test
+  public void testPerEntryStatuses() throws Exception {
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(1000).setAutoflushMs(0).build());
+    ListenableFuture<Empty> first = underTest.add(createRequest(0));
+    ListenableFuture<Empty> second = underTest.add(createRequest(1));
+    ListenableFuture<Empty> third = underTest.add(createRequest(2));
+    underTest.flush();
+    Assert.assertTrue(asyncExecutor.hasInflightRequests());
+
+    responseFutures.get(0).set(MutateRowsResponse.newBuilder()
+        .addStatuses(createStatus(Status.Code.OK))
+        .addStatuses(createStatus(Status.Code.NOT_FOUND))
+        .build());
+
+    Assert.assertEquals(Empty.getDefaultInstance(), first.get(1, TimeUnit.SECONDS));
+    assertFailedWith(Status.Code.NOT_FOUND, second);
+    // The response did not have a status for the third entry.
+    assertFailedWith(Status.Code.INTERNAL, third);
+    Assert.assertFalse(asyncExecutor.hasInflightRequests());
+  }
+
+  @Test
+  public void testRpcFailure() throws Exception {
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(2).setAutoflushMs(0).build());
+    ListenableFuture<Empty> first = underTest.add(createRequest(0));
+    ListenableFuture<Empty> second = underTest.add(createRequest(1));
+    responseFutures.get(0).setException(Status.UNAUTHENTICATED.asRuntimeException());
+    assertFailedWith(Status.Code.UNAUTHENTICATED, first);
+    assertFailedWith(Status.Code.UNAUTHENTICATED, second);
+  }
+
+  @Test
+  public void testRetriesOnlyFailedEntries() throws Exception {
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(1000).setAutoflushMs(0).build());
+    ListenableFuture<Empty> first = underTest.add(createRequest(0));
+    ListenableFuture<Empty> second = underTest.add(createRequest(1));
+    ListenableFuture<Empty> third = underTest.add(createRequest(2));
+    underTest.flush();
+
+    responseFutures.get(0).set(MutateRowsResponse.newBuilder()
+        .addStatuses(createStatus(Status.Code.OK))
+        .addStatuses(createStatus(Status.Code.UNAVAILABLE))
+        .addStatuses(createStatus(Status.Code.NOT_FOUND))
+        .build());
+    Assert.assertEquals(Empty.getDefaultInstance(), first.get(1, TimeUnit.SECONDS));
+    assertFailedWith(Status.Code.NOT_FOUND, third);
+    Assert.assertFalse(second.isDone());
+    Assert.assertTrue(asyncExecutor.hasInflightRequests());
+
+    waitForRequests(2);
+    Assert.assertEquals(1, requests.get(1).getEntriesCount());
+    Assert.assertEquals(toEntry(createRequest(1)), requests.get(1).getEntries(0));
+    responseFutures.get(1).set(MutateRowsResponse.newBuilder()
+        .addStatuses(createStatus(Status.Code.OK))
+        .build());
+    Assert.assertEquals(Empty.getDefaultInstance(), second.get(1, TimeUnit.SECONDS));
+    Assert.assertFalse(asyncExecutor.hasInflightRequests());
+  }
+
+  @Test
+  public void testDoesNotRetryNonIdempotentEntries() throws Exception {
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(1000).setAutoflushMs(0).build());
+    MutateRowRequest request = createRequest(0);
+    MutateRowRequest.Builder nonIdempotent = request.toBuilder();
+    nonIdempotent.getMutationsBuilder(0).getSetCellBuilder().setTimestampMicros(-1);
+    ListenableFuture<Empty> future = underTest.add(nonIdempotent.build());
+    underTest.flush();
+
+    responseFutures.get(0).set(MutateRowsResponse.newBuilder()
+        .addStatuses(createStatus(Status.Code.UNAVAILABLE))
+        .build());
+    assertFailedWith(Status.Code.UNAVAILABLE, future);
+    Assert.assertEquals(1, requests.size());
+    Assert.assertFalse(asyncExecutor.hasInflightRequests());
+  }
+
+  @Test
+  public void testRetriesExhausted() throws Exception {
+    when(nanoClock.nanoTime()).thenReturn(0L, TimeUnit.MINUTES.toNanos(10));
+    retryOptions = RetryOptionsUtil.createTestRetryOptions(nanoClock);
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder()
+        .setBulkMaxRowKeyCount(1000).setAutoflushMs(0).build());
+    ListenableFuture<Empty> future = underTest.add(createRequest(0));
+    underTest.flush();
+
+    responseFutures.get(0).set(MutateRowsResponse.newBuilder()
+        .addStatuses(createStatus(Status.Code.UNAVAILABLE))
+        .build());
+    assertFailedWith(Status.Code.UNAVAILABLE, future);
+    Assert.assertEquals(1, requests.size());
+    Assert.assertFalse(asyncExecutor.hasInflightRequests());
+  }
+
+  @Test
+  public void testWrongTable() throws Exception {
+    BulkMutation underTest = createBulkMutation(new BulkOptions.Builder().build());
+    ListenableFuture<Empty> future =
+        underTest.add(createRequest(0).toBuilder().setTableName("other").build());
+    try {
+      future.get();
+      Assert.fail("Expected an exception");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+    Assert.assertNull(underTest.currentBatch);
+  }
+
+  private BulkMutation createBulkMutation(BulkOptions bulkOptions) {
+    return new BulkMutation(TABLE_NAME, client, asyncExecutor, retryOptions,
+        retryExecutorService, batchExecutorService, bulkOptions);
+  }
+
+  private void waitForRequests(int count) throws InterruptedException {
+    for (int i = 0; i < 100; i++) {
+      synchronized (requests) {
+        if (requests.size() >= count) {
+          return;
+        }
+      }
+      Thread.sleep(10);
+    }
+    Assert.fail("Expected " + count + " requests, but got " + requests.size());
+  }
+
+  private static void assertFailedWith(Status.Code code, ListenableFuture<Empty> future)
+      throws InterruptedException {
+    try {
+      future.get();
+      Assert.fail("Expected an exception");
+    } catch (ExecutionException e) {
+      Assert.assertEquals(code, ((StatusRuntimeException) e.getCause()).getStatus().getCode());
+    }
+  }
+
+  private static com.google.rpc.Status createStatus(Status.Code code) {
+    return com.google.rpc.Status.newBuilder().setCode(code.value()).build();
+  }
+
+  private static MutateRowsRequest.Entry toEntry(MutateRowRequest request) {
+    return MutateRowsRequest.Entry.newBuilder()
+        .setRowKey(request.getRowKey())
+        .addAllMutations(request.getMutationsList())
+        .build();
+  }
+
+  private static MutateRowRequest createRequest(int i) {
+    SetCell setCell = SetCell.newBuilder()
+        .setFamilyName("cf")
+        .setColumnQualifier(ByteString.copyFromUtf8("qualifier"))
+        .setTimestampMicros(1000)
+        .setValue(ByteString.copyFromUtf8("value"))
+        .build();
+    return MutateRowRequest.newBuilder()
+        .setTableName(TABLE_NAME.toString())
+        .setRowKey(ByteString.copyFromUtf8(String.format("row%03d", i)))
+        .addMutations(Mutation.newBuilder().setSetCell(setCell))
+        .build();
+  }
+}
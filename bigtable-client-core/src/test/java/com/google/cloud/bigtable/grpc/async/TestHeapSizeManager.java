@@ -18,6 +18,7 @@ package com.google.cloud.bigtable.grpc.async;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -29,6 +30,7 @@ import org.junit.runners.JUnit4;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -149,6 +151,45 @@ public class TestHeapSizeManager {
     }
   }
 
+  @Test
+  public void testFlushWakesUpOnLastCompletion() throws Exception {
+    ExecutorService pool = Executors.newCachedThreadPool();
+    try {
+      final HeapSizeManager underTest = new HeapSizeManager(100l, 100);
+      final long id = underTest.registerOperationWithHeapSize(1);
+      Future<?> flushFuture = pool.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          underTest.flush();
+          return null;
+        }
+      });
+      Thread.sleep(10);
+      assertFalse(flushFuture.isDone());
+      underTest.markCanBeCompleted(id);
+      // flush() should not have to wait for a polling interval.
+      flushFuture.get(50, TimeUnit.MILLISECONDS);
+      assertFalse(underTest.hasInflightRequests());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRegisterIsInterruptible() throws Exception {
+    final HeapSizeManager underTest = new HeapSizeManager(100l, 1);
+    long id = underTest.registerOperationWithHeapSize(1);
+    Thread.currentThread().interrupt();
+    try {
+      underTest.registerOperationWithHeapSize(1);
+      fail("Expected an InterruptedException");
+    } catch (InterruptedException expected) {
+    }
+    assertEquals(1l, underTest.getHeapSize());
+    underTest.markCanBeCompleted(id);
+    assertFalse(underTest.hasInflightRequests());
+  }
+
   @Test
   public void testFlush() throws Exception {
     final int registerCount = 1000;
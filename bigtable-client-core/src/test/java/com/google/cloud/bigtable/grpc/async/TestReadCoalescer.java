@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.async;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.bigtable.v1.ReadRowsRequest;
+import com.google.bigtable.v1.Row;
+import com.google.bigtable.v1.RowFilter;
+import com.google.cloud.bigtable.config.ReadOptions;
+import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.ByteString;
+
+import io.grpc.Status;
+
+/**
+ * Tests for {@link ReadCoalescer}
+ */
+@RunWith(JUnit4.class)
+public class TestReadCoalescer {
+
+  private static final String TABLE_NAME = "projects/p/zones/z/clusters/c/tables/t";
+
+  @Mock
+  private BigtableDataClient client;
+
+  private List<ReadRowsRequest> requests;
+  private List<SettableFuture<List<Row>>> responseFutures;
+  private ScheduledExecutorService scheduledExecutorService;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    requests = new ArrayList<>();
+    responseFutures = new ArrayList<>();
+    when(client.readRowsAsync(any(ReadRowsRequest.class))).thenAnswer(
+      new Answer<ListenableFuture<List<Row>>>() {
+        @Override
+        public ListenableFuture<List<Row>> answer(InvocationOnMock invocation) {
+          SettableFuture<List<Row>> future = SettableFuture.create();
+          synchronized (requests) {
+            requests.add((ReadRowsRequest) invocation.getArguments()[0]);
+            responseFutures.add(future);
+          }
+          return future;
+        }
+      });
+    scheduledExecutorService = Executors.newScheduledThreadPool(1);
+  }
+
+  @After
+  public void tearDown() {
+    scheduledExecutorService.shutdownNow();
+  }
+
+  @Test
+  public void testCoalescesOnMaxRowKeyCount() throws Exception {
+    ReadCoalescer underTest = createReadCoalescer(TimeUnit.SECONDS.toMicros(10), 2);
+    ListenableFuture<Row> first = underTest.readRowAsync(createRequest("a", 1));
+    ListenableFuture<Row> duplicate = underTest.readRowAsync(createRequest("a", 1));
+    Assert.assertTrue(requests.isEmpty());
+    ListenableFuture<Row> second = underTest.readRowAsync(createRequest("b", 1));
+
+    Assert.assertEquals(1, requests.size());
+    Assert.assertEquals(TABLE_NAME, requests.get(0).getTableName());
+    Assert.assertEquals(Arrays.asList(ByteString.copyFromUtf8("a"), ByteString.copyFromUtf8("b")),
+      requests.get(0).getRowSet().getRowKeysList());
+    Assert.assertTrue(underTest.batches.isEmpty());
+
+    Row row = createRow("a");
+    responseFutures.get(0).set(Arrays.asList(row));
+    Assert.assertEquals(row, first.get(1, TimeUnit.SECONDS));
+    Assert.assertEquals(row, duplicate.get(1, TimeUnit.SECONDS));
+    Assert.assertNull(second.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCoalescesOnWindow() throws Exception {
+    ReadCoalescer underTest = createReadCoalescer(TimeUnit.MILLISECONDS.toMicros(5), 100);
+    underTest.readRowAsync(createRequest("a", 1));
+    underTest.readRowAsync(createRequest("b", 1));
+    for (int i = 0; i < 100 && requests.isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, requests.size());
+    Assert.assertEquals(2, requests.get(0).getRowSet().getRowKeysCount());
+  }
+
+  @Test
+  public void testSingleKeyIsSentAsRowKeyRead() throws Exception {
+    ReadCoalescer underTest = createReadCoalescer(TimeUnit.MILLISECONDS.toMicros(5), 100);
+    ListenableFuture<Row> first = underTest.readRowAsync(createRequest("a", 1));
+    ListenableFuture<Row> duplicate = underTest.readRowAsync(createRequest("a", 1));
+    for (int i = 0; i < 100 && requests.isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, requests.size());
+    Assert.assertEquals(ReadRowsRequest.TargetCase.ROW_KEY, requests.get(0).getTargetCase());
+    Assert.assertEquals(createRequest("a", 1), requests.get(0));
+
+    Row row = createRow("a");
+    responseFutures.get(0).set(Arrays.asList(row));
+    Assert.assertEquals(row, first.get(1, TimeUnit.SECONDS));
+    Assert.assertEquals(row, duplicate.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testDifferentFilters() throws Exception {
+    ReadCoalescer underTest = createReadCoalescer(TimeUnit.SECONDS.toMicros(10), 2);
+    underTest.readRowAsync(createRequest("a", 1));
+    underTest.readRowAsync(createRequest("b", 2));
+    Assert.assertTrue(requests.isEmpty());
+    Assert.assertEquals(2, underTest.batches.size());
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    ReadCoalescer underTest = createReadCoalescer(TimeUnit.SECONDS.toMicros(10), 2);
+    ListenableFuture<Row> first = underTest.readRowAsync(createRequest("a", 1));
+    ListenableFuture<Row> second = underTest.readRowAsync(createRequest("b", 1));
+    responseFutures.get(0).setException(Status.UNAVAILABLE.asRuntimeException());
+    for (ListenableFuture<Row> future : Arrays.asList(first, second)) {
+      try {
+        future.get();
+        Assert.fail("Expected an exception");
+      } catch (ExecutionException e) {
+        Assert.assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(e).getCode());
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsMultiRowReads() throws Exception {
+    createReadCoalescer(10, 2).readRowAsync(ReadRowsRequest.newBuilder()
+        .setTableName(TABLE_NAME).setRowRange(com.google.bigtable.v1.RowRange.getDefaultInstance())
+        .build());
+  }
+
+  private ReadCoalescer createReadCoalescer(long windowMicros, int maxRowKeyCount) {
+    ReadOptions readOptions = new ReadOptions.Builder()
+        .setCoalescingWindowMicros(windowMicros)
+        .setCoalescingMaxRowKeyCount(maxRowKeyCount)
+        .build();
+    return new ReadCoalescer(client, scheduledExecutorService, readOptions);
+  }
+
+  private static ReadRowsRequest createRequest(String rowKey, int maxVersions) {
+    return ReadRowsRequest.newBuilder()
+        .setTableName(TABLE_NAME)
+        .setRowKey(ByteString.copyFromUtf8(rowKey))
+        .setFilter(RowFilter.newBuilder().setCellsPerColumnLimitFilter(maxVersions))
+        .build();
+  }
+
+  private static Row createRow(String rowKey) {
+    return Row.newBuilder().setKey(ByteString.copyFromUtf8(rowKey)).build();
+  }
+}
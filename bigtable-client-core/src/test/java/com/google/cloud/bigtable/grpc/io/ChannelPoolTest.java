@@ -17,7 +17,10 @@ package com.google.cloud.bigtable.grpc.io;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -26,18 +29,33 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.cloud.bigtable.config.ChannelOptions;
+import com.google.cloud.bigtable.config.ChannelOptions.SelectionStrategy;
 
 import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
+import io.grpc.Status;
 
 @RunWith(JUnit4.class)
 @SuppressWarnings({"rawtypes", "unchecked"})
@@ -45,11 +63,21 @@ public class ChannelPoolTest {
 
   private static class MockChannelFactory implements ChannelPool.ChannelFactory {
     List<Channel> channels = new ArrayList<>();
+    List<ClientCall.Listener> startedListeners = new ArrayList<>();
+    List<String> creatingThreadNames = new ArrayList<>();
 
     @Override
     public Channel create() throws IOException {
-      Channel channel = mock(Channel.class);
+      creatingThreadNames.add(Thread.currentThread().getName());
+      ManagedChannel channel = mock(ManagedChannel.class);
       ClientCall callStub = mock(ClientCall.class);
+      doAnswer(new Answer<Void>() {
+        @Override
+        public Void answer(InvocationOnMock invocation) {
+          startedListeners.add((ClientCall.Listener) invocation.getArguments()[0]);
+          return null;
+        }
+      }).when(callStub).start(any(ClientCall.Listener.class), any(Metadata.class));
       when(channel.newCall(any(MethodDescriptor.class), any(CallOptions.class)))
           .thenReturn(callStub);
       channels.add(channel);
@@ -84,6 +112,83 @@ public class ChannelPoolTest {
     verify(factory.channels.get(1), times(1)).newCall(same(descriptor), same(CallOptions.DEFAULT));
   }
 
+  @Test
+  public void testNewCallsUseDifferentChannels() throws IOException {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ChannelPool pool = new ChannelPool(null, factory);
+    pool.ensureChannelCount(3);
+    Assert.assertEquals(2, pool.newCalls(descriptor, CallOptions.DEFAULT, 2).size());
+    verify(factory.channels.get(0), times(1)).newCall(same(descriptor), same(CallOptions.DEFAULT));
+    verify(factory.channels.get(1), times(1)).newCall(same(descriptor), same(CallOptions.DEFAULT));
+    verify(factory.channels.get(2), times(0)).newCall(same(descriptor), same(CallOptions.DEFAULT));
+
+    // A pool can't spread more calls than it has channels.
+    Assert.assertEquals(3, pool.newCalls(descriptor, CallOptions.DEFAULT, 5).size());
+  }
+
+  @Test
+  public void testOpenCircuitBreakerFailsCalls() throws IOException {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 1000);
+    ChannelPool pool =
+        new ChannelPool.Builder(factory).setCircuitBreaker(circuitBreaker).build();
+    for (int i = 0; i < CircuitBreaker.MIN_CALLS; i++) {
+      startCall(pool, descriptor);
+      factory.startedListeners.get(i).onClose(Status.UNAVAILABLE, new Metadata());
+    }
+    Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    ClientCall.Listener listener = mock(ClientCall.Listener.class);
+    pool.newCall(descriptor, CallOptions.DEFAULT).start(listener, new Metadata());
+    ArgumentCaptor<Status> status = ArgumentCaptor.forClass(Status.class);
+    verify(listener, times(1)).onClose(status.capture(), any(Metadata.class));
+    // Rejected calls aren't retried.
+    Assert.assertEquals(Status.Code.RESOURCE_EXHAUSTED, status.getValue().getCode());
+    Assert.assertEquals(CircuitBreaker.MIN_CALLS, factory.startedListeners.size());
+    Assert.assertEquals(0, pool.getActiveCallCount());
+  }
+
+  @Test
+  public void testFailedHeadersDontBlockProbe() throws Exception {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    HeaderInterceptor interceptor = mock(HeaderInterceptor.class);
+    CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 1000);
+    ChannelPool pool = new ChannelPool.Builder(factory)
+        .setHeaderInterceptors(Collections.singletonList(interceptor))
+        .setCircuitBreaker(circuitBreaker)
+        .build();
+    for (int i = 0; i < CircuitBreaker.MIN_CALLS; i++) {
+      startCall(pool, descriptor);
+      factory.startedListeners.get(i).onClose(Status.UNAVAILABLE, new Metadata());
+    }
+    circuitBreaker.setOpenUntilNanos(System.nanoTime());
+
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Exception {
+        throw new IOException("Could not refresh the credentials.");
+      }
+    }).when(interceptor).updateHeaders(any(Metadata.class));
+    startCall(pool, descriptor);
+    Assert.assertEquals(CircuitBreaker.MIN_CALLS, factory.startedListeners.size());
+    Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    // The next call is still let through as the probe.
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        return null;
+      }
+    }).when(interceptor).updateHeaders(any(Metadata.class));
+    startCall(pool, descriptor);
+    Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    factory.startedListeners.get(CircuitBreaker.MIN_CALLS).onClose(Status.OK, new Metadata());
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
   @Test
   public void testEnsureCapcity() throws IOException {
     MockChannelFactory factory = new MockChannelFactory();
@@ -92,4 +197,395 @@ public class ChannelPoolTest {
     Assert.assertEquals(4, factory.channels.size());
     Assert.assertEquals(4, pool.size());
   }
+
+  @Test
+  public void testExplicitRoundRobinIgnoresActiveCalls() throws IOException {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ChannelPool pool = createPool(factory, SelectionStrategy.ROUND_ROBIN);
+    pool.ensureChannelCount(2);
+    startCall(pool, descriptor);
+    startCall(pool, descriptor);
+    startCall(pool, descriptor);
+    verify(factory.channels.get(0), times(2)).newCall(same(descriptor), same(CallOptions.DEFAULT));
+    verify(factory.channels.get(1), times(1)).newCall(same(descriptor), same(CallOptions.DEFAULT));
+  }
+
+  @Test
+  public void testLeastOutstandingAvoidsBusyChannel() throws IOException {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ChannelPool pool = createPool(factory, SelectionStrategy.LEAST_OUTSTANDING);
+    pool.ensureChannelCount(2);
+    // Two long running calls on channel 0, and a short call on channel 1.
+    startCall(pool, descriptor);
+    startCall(pool, descriptor);
+    startCall(pool, descriptor);
+    Assert.assertEquals(3, pool.getActiveCallCount());
+    factory.startedListeners.get(1).onClose(Status.OK, new Metadata());
+    Assert.assertEquals(2, pool.getActiveCallCount());
+    // Channel 1 has fewer active calls, so it gets the next two calls.
+    startCall(pool, descriptor);
+    startCall(pool, descriptor);
+    verify(factory.channels.get(0), times(2)).newCall(same(descriptor), same(CallOptions.DEFAULT));
+    verify(factory.channels.get(1), times(3)).newCall(same(descriptor), same(CallOptions.DEFAULT));
+    Assert.assertEquals(4, pool.getActiveCallCount());
+  }
+
+  @Test
+  public void testActiveCallsAreReleasedOnClose() throws IOException {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ChannelPool pool = createPool(factory, SelectionStrategy.LEAST_OUTSTANDING);
+    pool.ensureChannelCount(2);
+    startCall(pool, descriptor);
+    startCall(pool, descriptor);
+    Assert.assertEquals(2, pool.getActiveCallCount());
+    ClientCall.Listener first = factory.startedListeners.get(0);
+    first.onClose(Status.OK, new Metadata());
+    // A second close of the same call must not be counted twice.
+    first.onClose(Status.OK, new Metadata());
+    Assert.assertEquals(1, pool.getActiveCallCount());
+    factory.startedListeners.get(1).onClose(Status.CANCELLED, new Metadata());
+    Assert.assertEquals(0, pool.getActiveCallCount());
+  }
+
+  @Test
+  public void testPowerOfTwoChoicesPicksLessLoadedChannel() throws IOException {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ChannelPool pool = createPool(factory, SelectionStrategy.POWER_OF_TWO_CHOICES);
+    pool.ensureChannelCount(2);
+    ChannelPool.PooledChannel busy = pool.getNextChannel();
+    busy.activeCalls.set(10);
+    // With two channels, both are always compared, so the idle channel always wins.
+    for (int i = 0; i < 20; i++) {
+      Assert.assertNotSame(busy, pool.getNextChannel());
+    }
+  }
+
+  @Test
+  public void testRefreshReplacesOldestChannelAfterDraining() throws Exception {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ChannelPool pool = new ChannelPool.Builder(factory)
+          .setChannelOptions(createChannelOptions(SelectionStrategy.ROUND_ROBIN))
+          .setMaxChannelAgeMs(TimeUnit.HOURS.toMillis(1))
+          .setExecutor(executor)
+          .build();
+      pool.ensureChannelCount(2);
+      ManagedChannel oldest = (ManagedChannel) factory.channels.get(0);
+      startCall(pool, descriptor);
+
+      pool.refreshOldestChannel();
+      Assert.assertEquals(3, factory.channels.size());
+      Assert.assertEquals(2, pool.availbleSize());
+      // The old channel doesn't get new calls, and isn't shut down while it has an active call.
+      startCall(pool, descriptor);
+      startCall(pool, descriptor);
+      verify(oldest, times(1)).newCall(same(descriptor), same(CallOptions.DEFAULT));
+      verify(factory.channels.get(2), times(1))
+          .newCall(same(descriptor), same(CallOptions.DEFAULT));
+      verify(oldest, never()).shutdown();
+
+      factory.startedListeners.get(0).onClose(Status.OK, new Metadata());
+      verify(oldest, timeout(5000)).shutdown();
+      verify((ManagedChannel) factory.channels.get(1), never()).shutdown();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testChannelsAreRefreshedOneAtATime() throws Exception {
+    MockChannelFactory factory = new MockChannelFactory();
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ChannelPool pool = new ChannelPool.Builder(factory)
+          .setChannelOptions(createChannelOptions(SelectionStrategy.ROUND_ROBIN))
+          .setMaxChannelAgeMs(200)
+          .setExecutor(executor)
+          .build();
+      pool.ensureChannelCount(2);
+      // With two channels, one channel is replaced every 100ms.
+      for (int i = 0; i < 100 && factory.channels.size() < 4; i++) {
+        Thread.sleep(10);
+      }
+      Assert.assertTrue(factory.channels.size() >= 4);
+      Assert.assertEquals(2, pool.availbleSize());
+      pool.close();
+      int createdCount = factory.channels.size();
+      Thread.sleep(300);
+      // A refresh that was already in progress may create one more channel, which it shuts down.
+      Assert.assertTrue(factory.channels.size() <= createdCount + 1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRefreshWarmsUpNewChannelBeforeSwappingItIn() throws Exception {
+    final MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor warmUpDescriptor = mock(MethodDescriptor.class);
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      final ChannelPool pool = new ChannelPool.Builder(factory)
+          .setMaxChannelAgeMs(TimeUnit.HOURS.toMillis(1))
+          .setExecutor(executor)
+          .setWarmUp(warmUpDescriptor, "request", TimeUnit.SECONDS.toMillis(10))
+          .build();
+      Future<?> refresh = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          pool.refreshOldestChannel();
+          return null;
+        }
+      });
+      for (int i = 0; i < 500 && factory.startedListeners.isEmpty(); i++) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(1, factory.startedListeners.size());
+      verify(factory.channels.get(1), times(1))
+          .newCall(same(warmUpDescriptor), any(CallOptions.class));
+      // The new channel isn't used until the server answers its warm up call.
+      Thread.sleep(50);
+      Assert.assertFalse(refresh.isDone());
+      Assert.assertSame(factory.channels.get(0), pool.getNextChannel().channel);
+
+      factory.startedListeners.get(0).onClose(Status.INVALID_ARGUMENT, new Metadata());
+      refresh.get(1, TimeUnit.SECONDS);
+      Assert.assertSame(factory.channels.get(1), pool.getNextChannel().channel);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testChannelsAreRefreshedOnChannelExecutor() throws Exception {
+    MockChannelFactory factory = new MockChannelFactory();
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    ExecutorService channelExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        return new Thread(r, "channel-executor");
+      }
+    });
+    try {
+      ChannelPool pool = new ChannelPool.Builder(factory)
+          .setMaxChannelAgeMs(100)
+          .setExecutor(executor)
+          .setChannelExecutor(channelExecutor)
+          .build();
+      for (int i = 0; i < 100 && factory.channels.size() < 2; i++) {
+        Thread.sleep(10);
+      }
+      pool.close();
+      Assert.assertTrue(factory.channels.size() >= 2);
+      Assert.assertEquals("channel-executor", factory.creatingThreadNames.get(1));
+    } finally {
+      executor.shutdownNow();
+      channelExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReplaceChannelSwapsOutThatChannel() throws Exception {
+    MockChannelFactory factory = new MockChannelFactory();
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ChannelPool pool = new ChannelPool.Builder(factory)
+          .setChannelOptions(createChannelOptions(SelectionStrategy.ROUND_ROBIN))
+          .setExecutor(executor)
+          .build();
+      pool.ensureChannelCount(2);
+      Channel failed = factory.channels.get(1);
+      pool.replaceChannel(failed);
+      // A channel that is already being replaced isn't replaced twice.
+      pool.replaceChannel(failed);
+      // The replaced channel is shut down once it is drained.
+      verify((ManagedChannel) failed, timeout(5000)).shutdown();
+      // A channel that is no longer in the pool isn't replaced.
+      pool.replaceChannel(failed);
+      Thread.sleep(50);
+      Assert.assertEquals(3, factory.channels.size());
+      Assert.assertEquals(2, pool.availbleSize());
+      Assert.assertSame(factory.channels.get(0), pool.getNextChannel().channel);
+      Assert.assertSame(factory.channels.get(2), pool.getNextChannel().channel);
+      verify((ManagedChannel) factory.channels.get(0), never()).shutdown();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCloseShutsDownChannels() throws IOException {
+    MockChannelFactory factory = new MockChannelFactory();
+    ChannelPool pool = new ChannelPool(null, factory);
+    pool.ensureChannelCount(2);
+    pool.close();
+    for (Channel channel : factory.channels) {
+      verify((ManagedChannel) channel, times(1)).shutdown();
+    }
+  }
+
+  @Test
+  public void testElasticPoolGrowsWithActiveCalls() throws Exception {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ChannelPool pool = createElasticPool(factory, executor);
+      Assert.assertTrue(pool.isElastic());
+      Assert.assertEquals(1, pool.availbleSize());
+      startCall(pool, descriptor);
+      startCall(pool, descriptor);
+      waitForSize(pool, 2);
+      startCall(pool, descriptor);
+      startCall(pool, descriptor);
+      waitForSize(pool, 3);
+      // The pool is at its maximum size.
+      startCall(pool, descriptor);
+      startCall(pool, descriptor);
+      Thread.sleep(100);
+      Assert.assertEquals(3, pool.availbleSize());
+      Assert.assertEquals(3, factory.channels.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testElasticPoolRemovesUnneededChannels() throws Exception {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ChannelPool pool = createElasticPool(factory, executor);
+      startCall(pool, descriptor);
+      startCall(pool, descriptor);
+      waitForSize(pool, 2);
+      startCall(pool, descriptor);
+      startCall(pool, descriptor);
+      waitForSize(pool, 3);
+      // The peak still needs all of the channels.
+      pool.removeUnneededChannels();
+      Assert.assertEquals(3, pool.availbleSize());
+
+      for (ClientCall.Listener listener : factory.startedListeners) {
+        listener.onClose(Status.OK, new Metadata());
+      }
+      Assert.assertEquals(0, pool.getActiveCallCount());
+      // The calls were active at the start of this period.
+      pool.removeUnneededChannels();
+      Assert.assertEquals(3, pool.availbleSize());
+      // There were no calls during this period.
+      pool.removeUnneededChannels();
+      Assert.assertEquals(1, pool.availbleSize());
+      // The removed channels are shut down after a drain check.
+      int shutdownCount = 0;
+      for (int i = 0; i < 500 && shutdownCount < 2; i++) {
+        Thread.sleep(10);
+        shutdownCount = countShutdownChannels(factory);
+      }
+      Assert.assertEquals(2, shutdownCount);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static int countShutdownChannels(MockChannelFactory factory) {
+    int count = 0;
+    for (Channel channel : factory.channels) {
+      try {
+        verify((ManagedChannel) channel).shutdown();
+        count++;
+      } catch (AssertionError e) {
+        // This channel is still in the pool.
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void testWarmUpCountsChannelsThatGotAResponse() throws Exception {
+    final MockChannelFactory factory = new MockChannelFactory();
+    final MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    final ChannelPool pool = new ChannelPool(null, factory);
+    pool.ensureChannelCount(3);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> readyCount = executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          return pool.warmUp(descriptor, "request", TimeUnit.SECONDS.toMillis(10));
+        }
+      });
+      for (int i = 0; i < 500 && factory.startedListeners.size() < 3; i++) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(3, factory.startedListeners.size());
+      // Errors from the server mean that the channel is connected.
+      factory.startedListeners.get(0).onClose(Status.INVALID_ARGUMENT, new Metadata());
+      factory.startedListeners.get(1).onClose(Status.UNAVAILABLE, new Metadata());
+      factory.startedListeners.get(2).onClose(Status.OK, new Metadata());
+      Assert.assertEquals(2, readyCount.get(1, TimeUnit.SECONDS).intValue());
+      for (Channel channel : factory.channels) {
+        verify(channel, times(1)).newCall(same(descriptor), any(CallOptions.class));
+      }
+      // The warm up calls are not counted as active calls.
+      Assert.assertEquals(0, pool.getActiveCallCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWarmUpIsBounded() throws Exception {
+    MockChannelFactory factory = new MockChannelFactory();
+    MethodDescriptor descriptor = mock(MethodDescriptor.class);
+    ChannelPool pool = new ChannelPool(null, factory);
+    pool.ensureChannelCount(2);
+    long startNanos = System.nanoTime();
+    Assert.assertEquals(0, pool.warmUp(descriptor, "request", 50));
+    Assert.assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+  }
+
+  private static ChannelPool createElasticPool(MockChannelFactory factory,
+      ScheduledExecutorService executor) throws IOException {
+    ChannelOptions channelOptions = new ChannelOptions.Builder()
+        .setMaxStreamsPerChannel(2)
+        .setMinChannelCount(1)
+        .setChannelIdleTimeoutMs(TimeUnit.HOURS.toMillis(1))
+        .build();
+    return new ChannelPool.Builder(factory)
+        .setChannelOptions(channelOptions)
+        .setMaxChannelCount(3)
+        .setExecutor(executor)
+        .build();
+  }
+
+  private static ChannelPool createPool(MockChannelFactory factory,
+      SelectionStrategy selectionStrategy) throws IOException {
+    return new ChannelPool.Builder(factory)
+        .setChannelOptions(createChannelOptions(selectionStrategy))
+        .build();
+  }
+
+  private static ChannelOptions createChannelOptions(SelectionStrategy selectionStrategy) {
+    return new ChannelOptions.Builder().setSelectionStrategy(selectionStrategy).build();
+  }
+
+  private static void waitForSize(ChannelPool pool, int size) throws InterruptedException {
+    for (int i = 0; i < 500 && pool.availbleSize() < size; i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(size, pool.availbleSize());
+  }
+
+  private static void startCall(ChannelPool pool, MethodDescriptor descriptor) {
+    ClientCall call = pool.newCall(descriptor, CallOptions.DEFAULT);
+    call.start(mock(ClientCall.Listener.class), new Metadata());
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import io.grpc.Channel;
+
+/**
+ * Tests for {@link AddressAwareChannelFactory}
+ */
+@RunWith(JUnit4.class)
+public class TestAddressAwareChannelFactory {
+
+  private static final String HOST = "bigtable.example.com";
+  private static final int PORT = 443;
+
+  /**
+   * A resolver that returns preset addresses, and fails when there are none.
+   */
+  private static class StubResolver implements AddressAwareChannelFactory.AddressResolver {
+    List<InetAddress> addresses = new ArrayList<>();
+    int resolveCount = 0;
+
+    @Override
+    public List<InetAddress> resolve(String host) throws UnknownHostException {
+      Assert.assertEquals(HOST, host);
+      resolveCount++;
+      if (addresses.isEmpty()) {
+        throw new UnknownHostException(host);
+      }
+      return addresses;
+    }
+  }
+
+  /**
+   * Records the address of each created channel.
+   */
+  private static class RecordingFactory
+      implements AddressAwareChannelFactory.AddressChannelFactory {
+    List<InetSocketAddress> addresses = new ArrayList<>();
+
+    @Override
+    public Channel create(InetSocketAddress address) throws IOException {
+      addresses.add(address);
+      return mock(Channel.class);
+    }
+  }
+
+  @Test
+  public void testSpreadsChannelsAcrossAddresses() throws Exception {
+    StubResolver resolver = new StubResolver();
+    resolver.addresses = Arrays.asList(address(1), address(2), address(1), address(3));
+    RecordingFactory channelFactory = new RecordingFactory();
+    AddressAwareChannelFactory underTest = new AddressAwareChannelFactory(HOST, PORT, resolver,
+        channelFactory, TimeUnit.HOURS.toMillis(1));
+    for (int i = 0; i < 6; i++) {
+      underTest.create();
+    }
+    Assert.assertEquals(Arrays.asList(socketAddress(1), socketAddress(2), socketAddress(3),
+      socketAddress(1), socketAddress(2), socketAddress(3)), channelFactory.addresses);
+    Assert.assertEquals(1, resolver.resolveCount);
+  }
+
+  @Test
+  public void testReResolvesAfterInterval() throws Exception {
+    StubResolver resolver = new StubResolver();
+    resolver.addresses = Arrays.asList(address(1));
+    RecordingFactory channelFactory = new RecordingFactory();
+    AddressAwareChannelFactory underTest =
+        new AddressAwareChannelFactory(HOST, PORT, resolver, channelFactory, 0);
+    underTest.create();
+    resolver.addresses = Arrays.asList(address(2), address(3));
+    underTest.create();
+    underTest.create();
+    Assert.assertEquals(Arrays.asList(socketAddress(2), socketAddress(3)),
+      underTest.getAddresses());
+    Assert.assertEquals(3, resolver.resolveCount);
+    Assert.assertEquals(socketAddress(1), channelFactory.addresses.get(0));
+    Assert.assertTrue(channelFactory.addresses.contains(socketAddress(2)));
+  }
+
+  @Test
+  public void testKeepsAddressesWhenResolutionFails() throws Exception {
+    StubResolver resolver = new StubResolver();
+    resolver.addresses = Arrays.asList(address(1), address(2));
+    RecordingFactory channelFactory = new RecordingFactory();
+    AddressAwareChannelFactory underTest =
+        new AddressAwareChannelFactory(HOST, PORT, resolver, channelFactory, 0);
+    underTest.create();
+    resolver.addresses = new ArrayList<>();
+    underTest.create();
+    Assert.assertEquals(Arrays.asList(socketAddress(1), socketAddress(2)),
+      channelFactory.addresses);
+  }
+
+  @Test(expected = UnknownHostException.class)
+  public void testFailsWhenNeverResolved() throws Exception {
+    new AddressAwareChannelFactory(HOST, PORT, new StubResolver(), new RecordingFactory(), 0)
+        .create();
+  }
+
+  private static InetAddress address(int lastByte) throws UnknownHostException {
+    return InetAddress.getByAddress(HOST, new byte[] { 10, 0, 0, (byte) lastByte });
+  }
+
+  private static InetSocketAddress socketAddress(int lastByte) throws UnknownHostException {
+    return new InetSocketAddress(address(lastByte), PORT);
+  }
+}
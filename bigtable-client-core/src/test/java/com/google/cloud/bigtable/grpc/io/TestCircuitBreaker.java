@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.bigtable.config.RetryOptions;
+import com.google.cloud.bigtable.grpc.io.CircuitBreaker.Permit;
+import com.google.cloud.bigtable.grpc.io.CircuitBreaker.State;
+
+import io.grpc.Status;
+
+/**
+ * Tests for {@link CircuitBreaker}
+ */
+@RunWith(JUnit4.class)
+public class TestCircuitBreaker {
+
+  @Test
+  public void testOpensAtThreshold() {
+    CircuitBreaker underTest = new CircuitBreaker(0.5, 1000);
+    complete(underTest, Status.OK, CircuitBreaker.MIN_CALLS / 2 + 1);
+    complete(underTest, Status.UNAVAILABLE, CircuitBreaker.MIN_CALLS / 2 - 1);
+    assertEquals(State.CLOSED, underTest.getState());
+    // Cancelled calls aren't counted.
+    complete(underTest, Status.CANCELLED, 10);
+    assertEquals(State.CLOSED, underTest.getState());
+    complete(underTest, Status.DEADLINE_EXCEEDED, 1);
+    assertEquals(State.CLOSED, underTest.getState());
+    complete(underTest, Status.INTERNAL, 1);
+    assertEquals(State.OPEN, underTest.getState());
+    assertNull(underTest.allowRequest());
+  }
+
+  @Test
+  public void testNeedsMinimumCalls() {
+    CircuitBreaker underTest = new CircuitBreaker(0.5, 1000);
+    complete(underTest, Status.UNAVAILABLE, CircuitBreaker.MIN_CALLS - 1);
+    assertEquals(State.CLOSED, underTest.getState());
+  }
+
+  @Test
+  public void testProbeCloses() {
+    CircuitBreaker underTest = openBreaker();
+    underTest.setOpenUntilNanos(System.nanoTime());
+    Permit probe = underTest.allowRequest();
+    assertNotNull(probe);
+    assertEquals(State.HALF_OPEN, underTest.getState());
+    // Only one probe at a time.
+    assertNull(underTest.allowRequest());
+    underTest.onComplete(probe, Status.NOT_FOUND);
+    assertEquals(State.CLOSED, underTest.getState());
+    assertNotNull(underTest.allowRequest());
+  }
+
+  @Test
+  public void testOnlyProbeDecides() {
+    CircuitBreaker underTest = new CircuitBreaker(0.5, 60000);
+    Permit longCall = underTest.allowRequest();
+    complete(underTest, Status.UNAVAILABLE, CircuitBreaker.MIN_CALLS);
+    assertEquals(State.OPEN, underTest.getState());
+    underTest.setOpenUntilNanos(System.nanoTime());
+    Permit probe = underTest.allowRequest();
+    assertNotNull(probe);
+
+    // A call that started before the breaker opened doesn't close it.
+    underTest.onComplete(longCall, Status.OK);
+    assertEquals(State.HALF_OPEN, underTest.getState());
+    underTest.onComplete(probe, Status.UNAVAILABLE);
+    assertEquals(State.OPEN, underTest.getState());
+  }
+
+  @Test
+  public void testFailedProbeReopens() {
+    CircuitBreaker underTest = openBreaker();
+    underTest.setOpenUntilNanos(System.nanoTime());
+    underTest.onComplete(underTest.allowRequest(), Status.UNAVAILABLE);
+    assertEquals(State.OPEN, underTest.getState());
+    assertNull(underTest.allowRequest());
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    assertNull(CircuitBreaker.create(new RetryOptions.Builder().build()));
+  }
+
+  private static CircuitBreaker openBreaker() {
+    CircuitBreaker breaker = new CircuitBreaker(0.5, 60000);
+    complete(breaker, Status.UNAVAILABLE, CircuitBreaker.MIN_CALLS);
+    assertEquals(State.OPEN, breaker.getState());
+    return breaker;
+  }
+
+  private static void complete(CircuitBreaker breaker, Status status, int count) {
+    for (int i = 0; i < count; i++) {
+      Permit permit = breaker.allowRequest();
+      assertNotNull(permit);
+      breaker.onComplete(permit, status);
+    }
+  }
+}
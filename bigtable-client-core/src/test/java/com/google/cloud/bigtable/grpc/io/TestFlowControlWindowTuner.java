@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link FlowControlWindowTuner}
+ */
+@RunWith(JUnit4.class)
+public class TestFlowControlWindowTuner {
+
+  private static final int WINDOW = 1000;
+  private static final long RTT = 1000000;
+
+  @Test
+  public void testKeepsLowestRtt() {
+    FlowControlWindowTuner underTest = new FlowControlWindowTuner(WINDOW, WINDOW * 10);
+    underTest.onRttSample(RTT * 2);
+    underTest.onRttSample(RTT);
+    underTest.onRttSample(RTT * 3);
+    assertEquals(RTT, underTest.getMinRttNanos());
+  }
+
+  @Test
+  public void testGrowsWhenWindowLimited() {
+    FlowControlWindowTuner underTest = new FlowControlWindowTuner(WINDOW, WINDOW * 10);
+    underTest.onRttSample(RTT);
+    // A full window per round trip.
+    underTest.onStreamComplete(WINDOW * 4, RTT * 4);
+    assertEquals(WINDOW * 2, underTest.getWindow());
+  }
+
+  @Test
+  public void testDoesNotGrowWhenNotWindowLimited() {
+    FlowControlWindowTuner underTest = new FlowControlWindowTuner(WINDOW, WINDOW * 10);
+    underTest.onRttSample(RTT);
+    // Half a window per round trip.
+    underTest.onStreamComplete(WINDOW * 2, RTT * 4);
+    assertEquals(WINDOW, underTest.getWindow());
+  }
+
+  @Test
+  public void testIgnoresSmallStreamsAndMissingRtt() {
+    FlowControlWindowTuner underTest = new FlowControlWindowTuner(WINDOW, WINDOW * 10);
+    underTest.onStreamComplete(WINDOW * 4, RTT);
+    assertEquals(WINDOW, underTest.getWindow());
+    underTest.onRttSample(RTT);
+    underTest.onStreamComplete(WINDOW / 2, RTT / 10);
+    assertEquals(WINDOW, underTest.getWindow());
+  }
+
+  @Test
+  public void testStaysUnderMax() {
+    FlowControlWindowTuner underTest = new FlowControlWindowTuner(WINDOW, WINDOW * 3);
+    underTest.onRttSample(RTT);
+    underTest.onStreamComplete(WINDOW * 100, RTT);
+    assertEquals(WINDOW * 3, underTest.getWindow());
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.base.Predicates;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Tests for {@link HedgingCall}
+ */
+@RunWith(JUnit4.class)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class TestHedgingCall {
+
+  private static final long DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+  @Mock
+  private ChannelPool channelPool;
+
+  @Mock
+  private MethodDescriptor method;
+
+  @Mock
+  private ScheduledExecutorService executor;
+
+  @Mock
+  private ClientCall primary;
+
+  @Mock
+  private ClientCall hedge;
+
+  @Mock
+  private ClientCall.Listener listener;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    when(channelPool.newCalls(same(method), any(CallOptions.class), eq(2)))
+        .thenReturn(Arrays.asList(primary, hedge));
+    when(channelPool.newCalls(same(method), any(CallOptions.class), eq(1)))
+        .thenReturn(Collections.singletonList(primary));
+  }
+
+  @Test
+  public void testFirstResponseWins() {
+    HedgingCall underTest = createCall(new HedgingPolicy(DELAY_NANOS, 0, 1), true);
+    underTest.request(1);
+
+    ClientCall.Listener primaryListener = captureListener(primary);
+    verify(primary).sendMessage("request");
+    verify(primary).request(1);
+    startHedge();
+    ClientCall.Listener hedgeListener = captureListener(hedge);
+    verify(hedge).request(1);
+
+    hedgeListener.onMessage("hedged response");
+    verify(primary).cancel();
+    primaryListener.onMessage("primary response");
+    primaryListener.onClose(Status.CANCELLED, new Metadata());
+    hedgeListener.onClose(Status.OK, new Metadata());
+
+    verify(listener).onMessage("hedged response");
+    verify(listener, never()).onMessage("primary response");
+    verify(listener).onClose(same(Status.OK), any(Metadata.class));
+    verify(hedge, never()).cancel();
+  }
+
+  @Test
+  public void testHedgeNeedsBudget() {
+    HedgingPolicy policy = new HedgingPolicy(DELAY_NANOS, 0, 0.5);
+    createCall(policy, true);
+    startHedge();
+    verify(hedge, never()).start(any(ClientCall.Listener.class), any(Metadata.class));
+  }
+
+  @Test
+  public void testNoHedgeAfterResponse() {
+    createCall(new HedgingPolicy(DELAY_NANOS, 0, 1), true);
+    captureListener(primary).onMessage("primary response");
+    startHedge();
+    verify(hedge, never()).start(any(ClientCall.Listener.class), any(Metadata.class));
+  }
+
+  @Test
+  public void testHeadersDontWin() {
+    createCall(new HedgingPolicy(DELAY_NANOS, 0, 1), true);
+    ClientCall.Listener primaryListener = captureListener(primary);
+    Metadata primaryHeaders = new Metadata();
+    primaryListener.onHeaders(primaryHeaders);
+    startHedge();
+    ClientCall.Listener hedgeListener = captureListener(hedge);
+    verify(listener, never()).onHeaders(any(Metadata.class));
+
+    Metadata hedgeHeaders = new Metadata();
+    hedgeListener.onHeaders(hedgeHeaders);
+    hedgeListener.onMessage("hedged response");
+    verify(primary).cancel();
+    verify(listener).onHeaders(same(hedgeHeaders));
+    verify(listener, never()).onHeaders(same(primaryHeaders));
+    verify(listener).onMessage("hedged response");
+  }
+
+  @Test
+  public void testFailureWaitsForHedge() {
+    createCall(new HedgingPolicy(DELAY_NANOS, 0, 1), true);
+    ClientCall.Listener primaryListener = captureListener(primary);
+    startHedge();
+    ClientCall.Listener hedgeListener = captureListener(hedge);
+
+    primaryListener.onClose(Status.UNAVAILABLE, new Metadata());
+    verify(listener, never()).onClose(any(Status.class), any(Metadata.class));
+    verify(hedge, never()).cancel();
+
+    hedgeListener.onClose(Status.OK, new Metadata());
+    verify(listener).onClose(same(Status.OK), any(Metadata.class));
+  }
+
+  @Test
+  public void testLastFailureWins() {
+    createCall(new HedgingPolicy(DELAY_NANOS, 0, 1), true);
+    ClientCall.Listener primaryListener = captureListener(primary);
+    startHedge();
+    ClientCall.Listener hedgeListener = captureListener(hedge);
+
+    primaryListener.onClose(Status.UNAVAILABLE, new Metadata());
+    hedgeListener.onClose(Status.INTERNAL, new Metadata());
+    verify(listener).onClose(same(Status.INTERNAL), any(Metadata.class));
+    verify(listener, never()).onClose(same(Status.UNAVAILABLE), any(Metadata.class));
+  }
+
+  @Test
+  public void testFailureBeforeHedgeWins() {
+    createCall(new HedgingPolicy(DELAY_NANOS, 0, 1), true);
+    captureListener(primary).onClose(Status.UNAVAILABLE, new Metadata());
+    verify(listener).onClose(same(Status.UNAVAILABLE), any(Metadata.class));
+    startHedge();
+    verify(hedge, never()).start(any(ClientCall.Listener.class), any(Metadata.class));
+  }
+
+  @Test
+  public void testNotHedgeable() {
+    createCall(new HedgingPolicy(DELAY_NANOS, 0, 1), false);
+    captureListener(primary);
+    verify(executor, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  private HedgingCall createCall(HedgingPolicy policy, boolean hedgeable) {
+    HedgingCall call = new HedgingCall(channelPool, method, CallOptions.DEFAULT, executor, policy,
+        hedgeable ? Predicates.alwaysTrue() : Predicates.alwaysFalse());
+    call.start(listener, new Metadata());
+    call.sendMessage("request");
+    call.halfClose();
+    return call;
+  }
+
+  private void startHedge() {
+    ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).schedule(runnable.capture(), eq(DELAY_NANOS), eq(TimeUnit.NANOSECONDS));
+    runnable.getValue().run();
+  }
+
+  private static ClientCall.Listener captureListener(ClientCall call) {
+    ArgumentCaptor<ClientCall.Listener> listener =
+        ArgumentCaptor.forClass(ClientCall.Listener.class);
+    verify(call).start(listener.capture(), any(Metadata.class));
+    return listener.getValue();
+  }
+}
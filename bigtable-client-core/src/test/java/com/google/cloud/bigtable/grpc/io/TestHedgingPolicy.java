@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link HedgingPolicy}
+ */
+@RunWith(JUnit4.class)
+public class TestHedgingPolicy {
+
+  @Test
+  public void testBudget() {
+    HedgingPolicy underTest = new HedgingPolicy(1000, 0, 0.05);
+    for (int i = 0; i < 19; i++) {
+      underTest.onCall();
+    }
+    assertFalse(underTest.tryAcquireHedge());
+    underTest.onCall();
+    assertTrue(underTest.tryAcquireHedge());
+    assertFalse(underTest.tryAcquireHedge());
+  }
+
+  @Test
+  public void testBudgetIsCapped() {
+    HedgingPolicy underTest = new HedgingPolicy(1000, 0, 1);
+    for (int i = 0; i < 100; i++) {
+      underTest.onCall();
+    }
+    assertEquals(HedgingPolicy.MAX_TOKENS, underTest.getTokens(), 0.001);
+  }
+
+  @Test
+  public void testFixedDelay() {
+    HedgingPolicy underTest = new HedgingPolicy(1000, 0, 0.05);
+    for (int i = 0; i < HedgingPolicy.SAMPLES_PER_UPDATE; i++) {
+      underTest.onLatency(5);
+    }
+    assertEquals(1000, underTest.getDelayNanos());
+  }
+
+  @Test
+  public void testPercentileDelay() {
+    HedgingPolicy underTest = new HedgingPolicy(1000, 95, 0.05);
+    for (int i = 1; i < HedgingPolicy.SAMPLES_PER_UPDATE; i++) {
+      underTest.onLatency(i);
+    }
+    // Not enough samples yet.
+    assertEquals(1000, underTest.getDelayNanos());
+    underTest.onLatency(HedgingPolicy.SAMPLES_PER_UPDATE);
+    assertEquals(95, underTest.getDelayNanos());
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import io.grpc.netty.ProtocolNegotiator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+
+/**
+ * Tests for {@link KeepAliveNegotiator}
+ */
+@RunWith(JUnit4.class)
+public class TestKeepAliveNegotiator {
+
+  /**
+   * Records the objects written to the channel, before they reach the HTTP/2 handler.
+   */
+  private static class WriteRecorder extends ChannelOutboundHandlerAdapter {
+    final List<Object> writes = new ArrayList<>();
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+        throws Exception {
+      writes.add(msg);
+      super.write(ctx, msg, promise);
+    }
+  }
+
+  @Test
+  public void testPingsIdleConnectionWithCalls() throws Exception {
+    WriteRecorder recorder = new WriteRecorder();
+    EmbeddedChannel channel = createChannel(recorder, 1, false);
+    Thread.sleep(5);
+    checkIdle(channel);
+    Assert.assertEquals(1, recorder.writes.size());
+    Assert.assertEquals("io.grpc.netty.SendPingCommand",
+      recorder.writes.get(0).getClass().getName());
+
+    // Only one ping is outstanding at a time.
+    checkIdle(channel);
+    Assert.assertEquals(1, recorder.writes.size());
+  }
+
+  @Test
+  public void testClosesConnectionWhenPingTimesOut() throws Exception {
+    WriteRecorder recorder = new WriteRecorder();
+    EmbeddedChannel channel = createChannel(recorder, 1, false);
+    Thread.sleep(5);
+    checkIdle(channel);
+    Assert.assertEquals(1, recorder.writes.size());
+    Thread.sleep(5);
+    channel.runScheduledPendingTasks();
+    Assert.assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void testReportsPingTimeout() throws Exception {
+    final AtomicInteger timeoutCount = new AtomicInteger();
+    KeepAliveNegotiator negotiator =
+        new KeepAliveNegotiator(mock(ProtocolNegotiator.class), 1, 1, false, new Runnable() {
+          @Override
+          public void run() {
+            timeoutCount.incrementAndGet();
+          }
+        });
+    WriteRecorder recorder = new WriteRecorder();
+    EmbeddedChannel channel = createChannel(negotiator, recorder, 1);
+    Thread.sleep(5);
+    checkIdle(channel);
+    Assert.assertEquals(1, recorder.writes.size());
+    Assert.assertEquals(0, timeoutCount.get());
+    Thread.sleep(5);
+    channel.runScheduledPendingTasks();
+    Assert.assertFalse(channel.isOpen());
+    Assert.assertEquals(1, timeoutCount.get());
+  }
+
+  @Test
+  public void testNoPingWithoutCalls() throws Exception {
+    WriteRecorder recorder = new WriteRecorder();
+    EmbeddedChannel channel = createChannel(recorder, 0, false);
+    Thread.sleep(5);
+    checkIdle(channel);
+    Assert.assertTrue(recorder.writes.isEmpty());
+
+    recorder = new WriteRecorder();
+    channel = createChannel(recorder, 0, true);
+    Thread.sleep(5);
+    checkIdle(channel);
+    Assert.assertEquals(1, recorder.writes.size());
+  }
+
+  @Test
+  public void testNoPingAfterRecentRead() throws Exception {
+    WriteRecorder recorder = new WriteRecorder();
+    KeepAliveNegotiator negotiator =
+        new KeepAliveNegotiator(mock(ProtocolNegotiator.class), 60000, 1, true);
+    EmbeddedChannel channel = createChannel(negotiator, recorder, 1);
+    checkIdle(channel);
+    Assert.assertTrue(recorder.writes.isEmpty());
+  }
+
+  private static EmbeddedChannel createChannel(WriteRecorder recorder, int activeStreams,
+      boolean withoutCalls) {
+    KeepAliveNegotiator negotiator =
+        new KeepAliveNegotiator(mock(ProtocolNegotiator.class), 1, 1, withoutCalls);
+    return createChannel(negotiator, recorder, activeStreams);
+  }
+
+  private static EmbeddedChannel createChannel(KeepAliveNegotiator negotiator,
+      WriteRecorder recorder, int activeStreams) {
+    Http2Connection connection = mock(Http2Connection.class);
+    when(connection.numActiveStreams()).thenReturn(activeStreams);
+    Http2ConnectionHandler http2Handler = mock(Http2ConnectionHandler.class);
+    when(http2Handler.connection()).thenReturn(connection);
+    return new EmbeddedChannel(negotiator.new KeepAliveHandler(http2Handler), http2Handler,
+        recorder);
+  }
+
+  private static void checkIdle(EmbeddedChannel channel) {
+    ChannelHandlerContext ctx =
+        channel.pipeline().context(KeepAliveNegotiator.KeepAliveHandler.class);
+    ((KeepAliveNegotiator.KeepAliveHandler) ctx.handler()).checkIdle(ctx);
+  }
+}
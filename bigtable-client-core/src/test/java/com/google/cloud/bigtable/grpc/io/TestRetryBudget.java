@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.bigtable.config.RetryOptions;
+
+/**
+ * Tests for {@link RetryBudget}
+ */
+@RunWith(JUnit4.class)
+public class TestRetryBudget {
+
+  @Test
+  public void testRetriesAreLimitedByRequests() {
+    RetryBudget underTest = new RetryBudget(0.1);
+    // The budget starts full.
+    for (int i = 0; i < RetryBudget.MAX_TOKENS; i++) {
+      assertTrue(underTest.tryAcquireRetry());
+    }
+    assertFalse(underTest.tryAcquireRetry());
+    for (int i = 0; i < 9; i++) {
+      underTest.onRequest();
+    }
+    assertFalse(underTest.tryAcquireRetry());
+    underTest.onRequest();
+    assertTrue(underTest.tryAcquireRetry());
+    assertFalse(underTest.tryAcquireRetry());
+  }
+
+  @Test
+  public void testBudgetIsCapped() {
+    RetryBudget underTest = new RetryBudget(1);
+    for (int i = 0; i < 100; i++) {
+      underTest.onRequest();
+    }
+    assertEquals(RetryBudget.MAX_TOKENS, underTest.getTokens(), 0.001);
+  }
+
+  @Test
+  public void testUnlimitedByDefault() {
+    RetryBudget underTest = RetryBudget.create(new RetryOptions.Builder().build());
+    assertSame(RetryBudget.UNLIMITED, underTest);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(underTest.tryAcquireRetry());
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.io;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.net.ssl.SSLSession;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import io.grpc.netty.ProtocolNegotiator;
+import io.grpc.netty.ProtocolNegotiators;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+
+/**
+ * Tests for {@link TlsHandshakeCounter}
+ */
+@RunWith(JUnit4.class)
+public class TestTlsHandshakeCounter {
+
+  @Test
+  public void testCountsFullAndResumedHandshakes() {
+    TlsHandshakeCounter underTest = new TlsHandshakeCounter();
+    long startMillis = System.currentTimeMillis();
+
+    underTest.onHandshakeComplete(createSession(startMillis + 1), startMillis);
+    Assert.assertEquals(1, underTest.getFullHandshakeCount());
+    Assert.assertEquals(0, underTest.getResumedHandshakeCount());
+
+    // A session that was created before the handshake started was resumed from the cache.
+    underTest.onHandshakeComplete(createSession(startMillis - 1000), startMillis);
+    Assert.assertEquals(1, underTest.getFullHandshakeCount());
+    Assert.assertEquals(1, underTest.getResumedHandshakeCount());
+  }
+
+  @Test
+  public void testWrappedHandlerInstallsTlsHandler() throws Exception {
+    TlsHandshakeCounter underTest = new TlsHandshakeCounter();
+    ProtocolNegotiator negotiator = underTest.wrap(ProtocolNegotiators.tls(
+      SslContextBuilder.forClient().build(), "bigtable.googleapis.com:443"));
+    ProtocolNegotiator.Handler handler = negotiator.newHandler(null);
+    Assert.assertEquals("https", handler.scheme().toString());
+    EmbeddedChannel channel = new EmbeddedChannel(handler);
+    Assert.assertNotNull(channel.pipeline().get(SslHandler.class));
+    Assert.assertNull(channel.pipeline().get(handler.getClass()));
+    channel.close();
+  }
+
+  private static SSLSession createSession(long creationTime) {
+    SSLSession session = mock(SSLSession.class);
+    when(session.getCreationTime()).thenReturn(creationTime);
+    when(session.getPeerHost()).thenReturn("bigtable.googleapis.com");
+    return session;
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.scanner;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.bigtable.v1.ReadRowsRequest;
+import com.google.bigtable.v1.Row;
+import com.google.bigtable.v1.RowRange;
+import com.google.bigtable.v1.SampleRowKeysRequest;
+import com.google.bigtable.v1.SampleRowKeysResponse;
+import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.protobuf.ByteString;
+
+/**
+ * Tests for {@link ParallelResultScanner}
+ */
+@RunWith(JUnit4.class)
+public class ParallelResultScannerTest {
+
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void teardown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testSplitRequest() {
+    ReadRowsRequest request = createRequest("a", "z");
+    List<SampleRowKeysResponse> sampleRowKeys = createSampleRowKeys("", "c", "f", "m", "zz");
+
+    assertRanges(ParallelResultScanner.splitRequest(request, sampleRowKeys, 10),
+      "a", "c", "f", "m", "z");
+    assertRanges(ParallelResultScanner.splitRequest(request, sampleRowKeys, 2),
+      "a", "f", "z");
+    assertRanges(ParallelResultScanner.splitRequest(request, sampleRowKeys, 1),
+      "a", "z");
+  }
+
+  @Test
+  public void testSplitOpenEndedRequest() {
+    ReadRowsRequest request = createRequest("", "");
+    List<SampleRowKeysResponse> sampleRowKeys = createSampleRowKeys("c", "f", "");
+
+    assertRanges(ParallelResultScanner.splitRequest(request, sampleRowKeys, 10),
+      "", "c", "f", "");
+  }
+
+  @Test
+  public void testSplitRequestWithoutKeysInRange() {
+    ReadRowsRequest request = createRequest("d", "e");
+    List<SampleRowKeysResponse> sampleRowKeys = createSampleRowKeys("c", "e", "f");
+
+    assertRanges(ParallelResultScanner.splitRequest(request, sampleRowKeys, 10), "d", "e");
+  }
+
+  @Test
+  public void testRowLimitIsNotSplit() {
+    BigtableDataClient client = mock(BigtableDataClient.class);
+    ResultScanner<Row> scanner = new ListScanner(createRows("a"));
+    ReadRowsRequest request = createRequest("a", "z").toBuilder().setNumRowsLimit(10).build();
+    when(client.readRows(request)).thenReturn(scanner);
+
+    Assert.assertSame(scanner,
+      ParallelResultScanner.create(client, request, 4, true, 1, executorService));
+    verify(client, never()).sampleRowKeys(any(SampleRowKeysRequest.class));
+    verify(client, times(1)).readRows(any(ReadRowsRequest.class));
+  }
+
+  @Test
+  public void testOrdered() throws IOException {
+    List<ResultScanner<Row>> scanners = new ArrayList<>();
+    scanners.add(new ListScanner(createRows("a", "b", "c")));
+    scanners.add(new ListScanner(createRows()));
+    scanners.add(new ListScanner(createRows("d", "e", "f", "g")));
+    scanners.add(new ListScanner(createRows("h")));
+
+    try (ParallelResultScanner underTest =
+        new ParallelResultScanner(scanners, true, 1, executorService)) {
+      for (String key : Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h")) {
+        Assert.assertEquals(key, underTest.next().getKey().toStringUtf8());
+      }
+      Assert.assertNull(underTest.next());
+      Assert.assertNull(underTest.next());
+    }
+  }
+
+  @Test
+  public void testUnordered() throws IOException {
+    List<ResultScanner<Row>> scanners = new ArrayList<>();
+    scanners.add(new ListScanner(createRows("a", "b", "c")));
+    scanners.add(new ListScanner(createRows()));
+    scanners.add(new ListScanner(createRows("d", "e", "f", "g")));
+
+    Set<String> keys = new HashSet<>();
+    try (ParallelResultScanner underTest =
+        new ParallelResultScanner(scanners, false, 1, executorService)) {
+      for (Row row = underTest.next(); row != null; row = underTest.next()) {
+        Assert.assertTrue(keys.add(row.getKey().toStringUtf8()));
+      }
+    }
+    Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d", "e", "f", "g")), keys);
+  }
+
+  @Test
+  public void testSubScanError() throws IOException {
+    IOException error = new IOException("Sub-scan failed");
+    List<ResultScanner<Row>> scanners = new ArrayList<>();
+    scanners.add(new ListScanner(createRows("a")));
+    scanners.add(new ListScanner(createRows("b"), error));
+    scanners.add(new ListScanner(createRows("c")));
+
+    try (ParallelResultScanner underTest =
+        new ParallelResultScanner(scanners, true, 1, executorService)) {
+      Assert.assertEquals("a", underTest.next().getKey().toStringUtf8());
+      Assert.assertEquals("b", underTest.next().getKey().toStringUtf8());
+      for (int i = 0; i < 2; i++) {
+        try {
+          underTest.next();
+          Assert.fail("Expected an IOException");
+        } catch (IOException e) {
+          Assert.assertSame(error, e.getCause());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCloseClosesSubScans() throws IOException {
+    List<ListScanner> listScanners = Arrays.asList(
+      new ListScanner(createRows("a", "b", "c")), new ListScanner(createRows("d", "e", "f")));
+    List<ResultScanner<Row>> scanners = new ArrayList<ResultScanner<Row>>(listScanners);
+
+    ParallelResultScanner underTest =
+        new ParallelResultScanner(scanners, true, 1, executorService);
+    Assert.assertEquals("a", underTest.next().getKey().toStringUtf8());
+    underTest.close();
+    for (ListScanner scanner : listScanners) {
+      Assert.assertTrue(scanner.closed);
+    }
+  }
+
+  @Test
+  public void testCloseWakesUpNext() throws Exception {
+    final CountDownLatch neverReleased = new CountDownLatch(1);
+    ResultScanner<Row> blockingScanner = new AbstractBigtableResultScanner() {
+      @Override
+      public Row next() throws IOException {
+        try {
+          neverReleased.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        return null;
+      }
+
+      @Override
+      public int available() {
+        return 0;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    List<ResultScanner<Row>> scanners = new ArrayList<>();
+    scanners.add(blockingScanner);
+    scanners.add(new ListScanner(createRows("b")));
+
+    final ParallelResultScanner underTest =
+        new ParallelResultScanner(scanners, true, 1, executorService);
+    Future<Row> next = executorService.submit(new Callable<Row>() {
+      @Override
+      public Row call() throws IOException {
+        return underTest.next();
+      }
+    });
+    Thread.sleep(50);
+    Assert.assertFalse(next.isDone());
+    underTest.close();
+    Assert.assertNull(next.get(1, TimeUnit.SECONDS));
+    Assert.assertNull(underTest.next());
+  }
+
+  private static ReadRowsRequest createRequest(String startKey, String endKey) {
+    return ReadRowsRequest.newBuilder()
+        .setTableName("table")
+        .setRowRange(RowRange.newBuilder()
+            .setStartKey(ByteString.copyFromUtf8(startKey))
+            .setEndKey(ByteString.copyFromUtf8(endKey)))
+        .build();
+  }
+
+  private static List<SampleRowKeysResponse> createSampleRowKeys(String... keys) {
+    List<SampleRowKeysResponse> responses = new ArrayList<>();
+    for (String key : keys) {
+      responses.add(
+        SampleRowKeysResponse.newBuilder().setRowKey(ByteString.copyFromUtf8(key)).build());
+    }
+    return responses;
+  }
+
+  private static List<Row> createRows(String... keys) {
+    List<Row> rows = new ArrayList<>();
+    for (String key : keys) {
+      rows.add(Row.newBuilder().setKey(ByteString.copyFromUtf8(key)).build());
+    }
+    return rows;
+  }
+
+  private static void assertRanges(List<ReadRowsRequest> requests, String... boundaries) {
+    Assert.assertEquals(boundaries.length - 1, requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      RowRange range = requests.get(i).getRowRange();
+      Assert.assertEquals("table", requests.get(i).getTableName());
+      Assert.assertEquals(boundaries[i], range.getStartKey().toStringUtf8());
+      Assert.assertEquals(boundaries[i + 1], range.getEndKey().toStringUtf8());
+    }
+  }
+
+  /**
+   * Returns a list of rows, and then either the end of the scan or an error.
+   */
+  private static class ListScanner extends AbstractBigtableResultScanner {
+    private final List<Row> rows;
+    private final IOException error;
+    private int index = 0;
+    private volatile boolean closed = false;
+
+    ListScanner(List<Row> rows) {
+      this(rows, null);
+    }
+
+    ListScanner(List<Row> rows, IOException error) {
+      this.rows = rows;
+      this.error = error;
+    }
+
+    @Override
+    public Row next() throws IOException {
+      if (index < rows.size()) {
+        return rows.get(index++);
+      }
+      if (error != null) {
+        throw error;
+      }
+      return null;
+    }
+
+    @Override
+    public int available() {
+      return rows.size() - index;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
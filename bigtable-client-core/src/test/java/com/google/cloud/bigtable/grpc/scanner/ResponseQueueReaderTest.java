@@ -22,6 +22,7 @@ import static com.google.cloud.bigtable.grpc.scanner.ReadRowTestUtils.generateRe
 import static com.google.cloud.bigtable.grpc.scanner.ReadRowTestUtils.randomBytes;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import io.grpc.ClientCall;
@@ -449,4 +450,58 @@ public class ResponseQueueReaderTest {
     addCompletion(reader);
     verify(call, times(20 * 2 * 2 - 1)).request(eq(capacityCap / 2));
   }
+
+  @Test
+  public void byteBudgetLimitsRequests() throws Exception {
+    List<ReadRowsResponse> responses = generateReadRowsResponses("rowKey-%s", 2);
+    long responseSize = responses.get(0).getSerializedSize();
+    ScanBufferBudget scannerBudget = new ScanBufferBudget(100 * responseSize);
+    ResponseQueueReader reader =
+        new ResponseQueueReader(defaultTimeout, 2, 5, scannerBudget, null, call);
+
+    addResponsesToReader(reader, responses);
+    Assert.assertEquals(2 * responseSize, scannerBudget.getBufferedBytes());
+
+    reader.getNextMergedRow();
+    // The budget has room for 98 more responses of the same size.
+    verify(call, times(1)).request(anyInt());
+    verify(call, times(1)).request(eq(98));
+    Assert.assertEquals(responseSize, scannerBudget.getBufferedBytes());
+  }
+
+  @Test
+  public void fullGlobalBudgetKeepsOneRequest() throws Exception {
+    ScanBufferBudget globalBudget = new ScanBufferBudget(1);
+    // Another scanner holds the whole global budget.
+    globalBudget.add(1);
+    ResponseQueueReader reader = new ResponseQueueReader(10 /* milliseconds */, 1, 5,
+        new ScanBufferBudget(1000 * 1000), globalBudget, call);
+
+    addResponsesToReader(reader, generateReadRowsResponses("rowKey-%s", 1));
+    reader.getNextMergedRow();
+    verify(call, never()).request(anyInt());
+
+    expectedException.expect(ScanTimeoutException.class);
+    try {
+      reader.getNextMergedRow();
+    } finally {
+      verify(call, times(1)).request(eq(1));
+    }
+  }
+
+  @Test
+  public void closeReleasesBudget() throws Exception {
+    ScanBufferBudget globalBudget = new ScanBufferBudget(1000 * 1000);
+    ResponseQueueReader reader = new ResponseQueueReader(defaultTimeout, 10, 5,
+        new ScanBufferBudget(1000 * 1000), globalBudget, call);
+
+    addResponsesToReader(reader, generateReadRowsResponses("rowKey-%s", 3));
+    Assert.assertTrue(globalBudget.getBufferedBytes() > 0);
+
+    reader.close();
+    Assert.assertEquals(0, globalBudget.getBufferedBytes());
+
+    addResponsesToReader(reader, generateReadRowsResponses("rowKey-%s", 1));
+    Assert.assertEquals(0, globalBudget.getBufferedBytes());
+  }
 }
@@ -30,6 +30,7 @@ import com.google.bigtable.v1.Row;
 import com.google.cloud.bigtable.config.Logger;
 import com.google.cloud.bigtable.config.RetryOptions;
 import com.google.cloud.bigtable.grpc.io.IOExceptionWithStatus;
+import com.google.cloud.bigtable.grpc.io.RetryBudget;
 import com.google.cloud.bigtable.grpc.scanner.BigtableResultScannerFactory;
 import com.google.cloud.bigtable.grpc.scanner.ScanTimeoutException;
 import com.google.cloud.bigtable.grpc.scanner.ResultScanner;
@@ -174,7 +175,7 @@ public class ResumingStreamingResultScannerTest {
         .thenReturn(mockScannerPostResume);
 
     ResumingStreamingResultScanner scanner = new ResumingStreamingResultScanner(
-        retryOptions, originalRequest.build(), mockScannerFactory, logger);
+        retryOptions, originalRequest.build(), mockScannerFactory, RetryBudget.UNLIMITED, logger);
 
     when(mockScanner.next())
         .thenReturn(row1)
@@ -207,6 +208,22 @@ public class ResumingStreamingResultScannerTest {
     scanner.close();
   }
 
+  @Test
+  public void testExhaustedRetryBudgetDoesNotResume() throws IOException {
+    RetryBudget retryBudget = new RetryBudget(0.1);
+    while (retryBudget.tryAcquireRetry()) {
+      // Use up the budget.
+    }
+    when(mockScannerFactory.createScanner(any(ReadRowsRequest.class))).thenReturn(mockScanner);
+    when(mockScanner.next()).thenThrow(
+      new IOExceptionWithStatus("Test", new StatusRuntimeException(Status.UNAVAILABLE)));
+    ResumingStreamingResultScanner scanner = new ResumingStreamingResultScanner(retryOptions,
+        readRowsRequest, mockScannerFactory, retryBudget, logger);
+    // The scan itself adds 0.1 of a retry to the budget, which isn't enough to resume.
+    thrown.expect(ScanRetriesExhaustedException.class);
+    scanner.next();
+  }
+
   @Test
   public void testFailedPreconditionErrorsDoNotResume() throws IOException {
     doErrorsDoNotResume(Status.FAILED_PRECONDITION);
@@ -240,7 +257,7 @@ public class ResumingStreamingResultScannerTest {
 
     ResumingStreamingResultScanner scanner =
         new ResumingStreamingResultScanner(retryOptions, readRowsRequest, mockScannerFactory,
-            logger);
+            RetryBudget.UNLIMITED, logger);
 
     when(mockScanner.next())
         .thenReturn(row1)
@@ -222,4 +222,59 @@ public class RowMergerTest {
     Row resultRow = RowMerger.readNextRow(iterator);
     resultRow = RowMerger.readNextRow(iterator);
   }
+
+  @Test
+  public void singleChunkRowIsNotCopied() {
+    RowMerger rowMerger = new RowMerger();
+    rowMerger.addPartialRow(createReadRowsResponse("row-1", Family1_c1_CHUNK, COMPLETE_CHUNK));
+    Row row = rowMerger.buildRow();
+    Assert.assertEquals(1, row.getFamiliesCount());
+    Assert.assertSame(Family1_c1_CHUNK.getRowContents(), row.getFamilies(0));
+  }
+
+  @Test
+  public void familiesKeepArrivalOrder() {
+    RowMerger rowMerger = new RowMerger();
+    rowMerger.addPartialRow(createReadRowsResponse("row-1", Family2_null_CHUNK, Family1_c1_CHUNK,
+      Family1_c2_CHUNK, COMPLETE_CHUNK));
+    Row row = rowMerger.buildRow();
+    Assert.assertEquals(2, row.getFamiliesCount());
+    Assert.assertEquals("Family2", row.getFamilies(0).getName());
+    Assert.assertEquals("Family1", row.getFamilies(1).getName());
+    Assert.assertEquals(2, row.getFamilies(1).getColumnsCount());
+  }
+
+  @Test
+  public void mergerCanBeReused() {
+    RowMerger rowMerger = new RowMerger();
+    rowMerger.addPartialRow(createReadRowsResponse("row-1", Family1_c1_CHUNK, COMPLETE_CHUNK));
+    Assert.assertThat(rowMerger.buildRow(),
+      matchesRow("row-1").withFamily("Family1").withColumn("c1").withAnyCell());
+
+    rowMerger.reset();
+    Assert.assertTrue(rowMerger.isEmpty());
+    Assert.assertFalse(rowMerger.isRowCommitted());
+    rowMerger.addPartialRow(createReadRowsResponse("row-2", Family1_c2_CHUNK, COMPLETE_CHUNK));
+    Assert.assertThat(rowMerger.buildRow(),
+      matchesRow("row-2").withFamily("Family1").withColumn("c2").withAnyCell());
+  }
+
+  @Test
+  public void manyChunksAreMerged() {
+    RowMerger rowMerger = new RowMerger();
+    for (int i = 0; i < 20; i++) {
+      rowMerger.addPartialRow(createReadRowsResponse("row-1",
+        createContentChunk("Family" + (i % 3), "c" + i, randomBytes(10), 100L)));
+    }
+    rowMerger.addPartialRow(createReadRowsResponse("row-1", COMPLETE_CHUNK));
+    Row row = rowMerger.buildRow();
+    Assert.assertEquals(3, row.getFamiliesCount());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals("Family" + i, row.getFamilies(i).getName());
+      Assert.assertEquals("c" + i, row.getFamilies(i).getColumns(0).getQualifier().toStringUtf8());
+    }
+    Assert.assertEquals(7, row.getFamilies(0).getColumnsCount());
+    Assert.assertEquals(7, row.getFamilies(1).getColumnsCount());
+    Assert.assertEquals(6, row.getFamilies(2).getColumnsCount());
+  }
 }
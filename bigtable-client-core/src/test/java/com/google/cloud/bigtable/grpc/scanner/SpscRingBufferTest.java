@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.grpc.scanner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link SpscRingBuffer}
+ */
+@RunWith(JUnit4.class)
+public class SpscRingBufferTest {
+
+  @Test
+  public void testOfferAndPoll() {
+    SpscRingBuffer<Integer> underTest = new SpscRingBuffer<>(3);
+    Assert.assertEquals(4, underTest.capacity());
+    Assert.assertNull(underTest.poll());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertTrue(underTest.offer(i));
+      Assert.assertTrue(underTest.offer(i + 100));
+      Assert.assertEquals(2, underTest.size());
+      Assert.assertEquals(Integer.valueOf(i), underTest.poll());
+      Assert.assertEquals(Integer.valueOf(i + 100), underTest.poll());
+      Assert.assertTrue(underTest.isEmpty());
+    }
+  }
+
+  @Test
+  public void testFull() {
+    SpscRingBuffer<Integer> underTest = new SpscRingBuffer<>(2);
+    Assert.assertTrue(underTest.offer(1));
+    Assert.assertTrue(underTest.offer(2));
+    Assert.assertFalse(underTest.offer(3));
+    Assert.assertEquals(Integer.valueOf(1), underTest.poll());
+    Assert.assertTrue(underTest.offer(3));
+  }
+
+  @Test
+  public void testPollTimesOut() throws InterruptedException {
+    SpscRingBuffer<Integer> underTest = new SpscRingBuffer<>(2);
+    Assert.assertNull(underTest.poll(10, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testHandOffBetweenThreads() throws Exception {
+    final int count = 100000;
+    final SpscRingBuffer<Integer> underTest = new SpscRingBuffer<>(16);
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < count; i++) {
+          while (!underTest.offer(i)) {
+            Thread.yield();
+          }
+        }
+      }
+    });
+    producer.start();
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(Integer.valueOf(i), underTest.poll(10, TimeUnit.SECONDS));
+    }
+    producer.join();
+    Assert.assertTrue(underTest.isEmpty());
+  }
+}
@@ -75,6 +75,7 @@ public class StreamingBigtableResultScannerTest {
   public void cancellationIsSignalled() throws IOException {
     scanner.close();
     verify(cancellationToken, times(1)).cancel();
+    verify(reader, times(1)).close();
   }
 
   @Test
@@ -17,7 +17,10 @@ package com.google.cloud.bigtable.hbase;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nullable;
@@ -34,6 +37,8 @@ import org.apache.hadoop.hbase.client.RowMutations;
 import org.apache.hadoop.hbase.client.coprocessor.Batch;
 
 import com.google.api.client.util.Preconditions;
+import com.google.bigtable.v1.ReadRowsRequest;
+import com.google.bigtable.v1.RowSet;
 import com.google.cloud.bigtable.config.BigtableOptions;
 import com.google.cloud.bigtable.config.Logger;
 import com.google.cloud.bigtable.grpc.async.AsyncExecutor;
@@ -45,6 +50,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.GeneratedMessage;
 
 /**
@@ -59,6 +65,11 @@ public class BatchExecutor {
    */
   public static final byte[] NO_REGION = new byte[0];
 
+  /**
+   * The maximum size of the {@link RowSet} in a single multi-row {@link ReadRowsRequest}.
+   */
+  public static final int MAX_ROW_SET_SIZE_BYTES = 1 << 20;
+
   private static final Function<List<com.google.bigtable.v1.Row>, com.google.bigtable.v1.Row> ROWS_TO_ROW_CONVERTER =
       new Function<List<com.google.bigtable.v1.Row>, com.google.bigtable.v1.Row>() {
         @Override
@@ -141,6 +152,71 @@ public class BatchExecutor {
     this.requestAdapter = requestAdapter;
   }
 
+  /**
+   * A set of {@link Get}s that share the same {@link ReadRowsRequest}, other than the row key, and
+   * are read with a single {@link RowSet} request. Each Get receives the {@link
+   * com.google.bigtable.v1.Row} with its key, or null if the row does not exist.
+   */
+  private static class MultiGet implements FutureCallback<List<com.google.bigtable.v1.Row>> {
+    private final RowSet.Builder rowSet = RowSet.newBuilder();
+    private final Map<ByteString, List<SettableFuture<GeneratedMessage>>> rowFutures =
+        new HashMap<>();
+    private long rowSetSize = 0;
+
+    boolean hasRoomFor(ByteString rowKey) {
+      return rowSetSize == 0
+          || rowFutures.containsKey(rowKey)
+          || rowSetSize + getRowKeySize(rowKey) <= MAX_ROW_SET_SIZE_BYTES;
+    }
+
+    ListenableFuture<GeneratedMessage> add(ByteString rowKey) {
+      List<SettableFuture<GeneratedMessage>> futures = rowFutures.get(rowKey);
+      if (futures == null) {
+        futures = new ArrayList<>(1);
+        rowFutures.put(rowKey, futures);
+        rowSet.addRowKeys(rowKey);
+        rowSetSize += getRowKeySize(rowKey);
+      }
+      SettableFuture<GeneratedMessage> future = SettableFuture.create();
+      futures.add(future);
+      return future;
+    }
+
+    /**
+     * The serialized size of the key in the {@link RowSet}, including the field tag and length.
+     */
+    private static long getRowKeySize(ByteString rowKey) {
+      return rowKey.size() + 8;
+    }
+
+    @Override
+    public void onSuccess(List<com.google.bigtable.v1.Row> rows) {
+      for (com.google.bigtable.v1.Row row : rows) {
+        List<SettableFuture<GeneratedMessage>> futures = rowFutures.remove(row.getKey());
+        if (futures != null) {
+          for (SettableFuture<GeneratedMessage> future : futures) {
+            future.set(row);
+          }
+        }
+      }
+      // Rows that were not returned do not exist.
+      for (List<SettableFuture<GeneratedMessage>> futures : rowFutures.values()) {
+        for (SettableFuture<GeneratedMessage> future : futures) {
+          future.set(null);
+        }
+      }
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+      for (List<SettableFuture<GeneratedMessage>> futures : rowFutures.values()) {
+        for (SettableFuture<GeneratedMessage> future : futures) {
+          future.setException(t);
+        }
+      }
+    }
+  }
+
   /**
    * Issue a single RPC recording the result into {@code results[index]} and if not-null, invoking
    * the supplied callback.
@@ -148,12 +224,15 @@ public class BatchExecutor {
    * @param callback The callback to invoke when the RPC completes and we have results
    * @param results An array of results, into which we should store the result of the operation
    * @param index The into into the array of results where we should store our result
+   * @param rowFuture The result of a multi-row read that includes this row, or null if this row
+   *          needs its own RPC
    * @param <R> The action type
    * @param <T> The type of the callback.
    * @return A ListenableFuture that will have the result when the RPC completes.
    */
   private <R extends Row, T> ListenableFuture<Result> issueAsyncRowRequest(Row row,
-      Batch.Callback<T> callback, Object[] results, int index) {
+      Batch.Callback<T> callback, Object[] results, int index,
+      @Nullable ListenableFuture<? extends GeneratedMessage> rowFuture) {
     LOG.trace("issueRowRequest(Row, Batch.Callback, Object[], index");
     SettableFuture<Result> resultFuture = SettableFuture.create();
     RpcResultFutureCallback<T> futureCallback =
@@ -170,7 +249,8 @@ public class BatchExecutor {
               "Cannot perform batch operations when a connection is closed"));
       Futures.addCallback(failFuture, futureCallback);
     } else {
-      ListenableFuture<? extends GeneratedMessage> future = issueAsyncRequest(row);
+      ListenableFuture<? extends GeneratedMessage> future =
+          rowFuture != null ? rowFuture : issueAsyncRequest(row);
       Futures.addCallback(future, futureCallback, service);
     }
     return resultFuture;
@@ -235,13 +315,84 @@ public class BatchExecutor {
 
   private <R> List<ListenableFuture<?>> issueAsyncRowRequests(List<? extends Row> actions,
       Object[] results, Batch.Callback<R> callback) {
+    Map<Integer, ListenableFuture<GeneratedMessage>> multiGetFutures =
+        service.isShutdown()
+            ? new HashMap<Integer, ListenableFuture<GeneratedMessage>>()
+            : issueMultiGets(actions);
     List<ListenableFuture<?>> resultFutures = new ArrayList<>(actions.size());
     for (int i = 0; i < actions.size(); i++) {
-      resultFutures.add(issueAsyncRowRequest(actions.get(i), callback, results, i));
+      resultFutures.add(
+        issueAsyncRowRequest(actions.get(i), callback, results, i, multiGetFutures.get(i)));
     }
     return resultFutures;
   }
 
+  /**
+   * Groups the {@link Get}s in {@code actions} that have the same filter into {@link RowSet} reads,
+   * each of which is limited to {@link #MAX_ROW_SET_SIZE_BYTES}. A Get that does not share its
+   * filter with any other Get is left out, and is sent as a single row read.
+   *
+   * @return a map from the index of each grouped Get to the future of its row.
+   */
+  private Map<Integer, ListenableFuture<GeneratedMessage>> issueMultiGets(
+      List<? extends Row> actions) {
+    Map<Integer, ListenableFuture<GeneratedMessage>> rowFutures = new HashMap<>();
+    Map<ReadRowsRequest, List<Integer>> getsByRequest = new LinkedHashMap<>();
+    Map<Integer, ByteString> rowKeys = new HashMap<>();
+    for (int i = 0; i < actions.size(); i++) {
+      if (!(actions.get(i) instanceof Get)) {
+        continue;
+      }
+      ReadRowsRequest request;
+      try {
+        request = requestAdapter.adapt((Get) actions.get(i));
+      } catch (Exception e) {
+        // The Get will fail with the same exception when it is sent on its own.
+        continue;
+      }
+      if (request == null || request.getTargetCase() != ReadRowsRequest.TargetCase.ROW_KEY) {
+        continue;
+      }
+      ReadRowsRequest template = request.toBuilder().clearRowKey().build();
+      List<Integer> indexes = getsByRequest.get(template);
+      if (indexes == null) {
+        indexes = new ArrayList<>();
+        getsByRequest.put(template, indexes);
+      }
+      indexes.add(i);
+      rowKeys.put(i, request.getRowKey());
+    }
+
+    for (Map.Entry<ReadRowsRequest, List<Integer>> entry : getsByRequest.entrySet()) {
+      List<Integer> indexes = entry.getValue();
+      if (indexes.size() < 2) {
+        continue;
+      }
+      MultiGet multiGet = new MultiGet();
+      for (Integer index : indexes) {
+        ByteString rowKey = rowKeys.get(index);
+        if (!multiGet.hasRoomFor(rowKey)) {
+          issueMultiGet(entry.getKey(), multiGet);
+          multiGet = new MultiGet();
+        }
+        rowFutures.put(index, multiGet.add(rowKey));
+      }
+      issueMultiGet(entry.getKey(), multiGet);
+    }
+    return rowFutures;
+  }
+
+  private void issueMultiGet(ReadRowsRequest template, MultiGet multiGet) {
+    ReadRowsRequest request = template.toBuilder().setRowSet(multiGet.rowSet).build();
+    ListenableFuture<List<com.google.bigtable.v1.Row>> future;
+    try {
+      future = asyncExecutor.readRowsAsync(request);
+    } catch (Exception e) {
+      future = Futures.immediateFailedFuture(e);
+    }
+    Futures.addCallback(future, multiGet);
+  }
+
   public Result[] batch(List<? extends Row> actions) throws IOException {
     try {
       Result[] results = new Result[actions.size()];
@@ -40,18 +40,24 @@ import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import com.google.cloud.bigtable.config.BigtableOptions;
+import com.google.cloud.bigtable.config.BulkOptions;
 import com.google.cloud.bigtable.config.Logger;
 import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.cloud.bigtable.grpc.BigtableSessionSharedThreadPools;
 import com.google.cloud.bigtable.grpc.async.AsyncExecutor;
+import com.google.cloud.bigtable.grpc.async.BulkMutation;
 import com.google.cloud.bigtable.grpc.async.HeapSizeManager;
 import com.google.cloud.bigtable.hbase.adapters.HBaseRequestAdapter;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.Empty;
 import com.google.protobuf.GeneratedMessage;
 
 /**
- * Bigtable's {@link BufferedMutator} implementation.
+ * Bigtable's {@link BufferedMutator} implementation. If {@link BulkOptions#useBulkApi()} is set,
+ * Puts and Deletes are grouped into MutateRows batches by a {@link BulkMutation}; Increments and
+ * Appends are always sent as individual requests.
  */
 public class BigtableBufferedMutator implements BufferedMutator {
 
@@ -113,6 +119,7 @@ public class BigtableBufferedMutator implements BufferedMutator {
   private final AsyncExecutor asyncExecutor;
   private final ExecutorService executorService;
   private final BigtableOptions options;
+  private final BulkMutation bulkMutation;
 
   private final LinkedBlockingQueue<MutationOperation> mutationsToBeSent =
       new LinkedBlockingQueue<>();
@@ -188,6 +195,16 @@ public class BigtableBufferedMutator implements BufferedMutator {
     this.options = options;
     this.heapSizeManager = heapSizeManager;
     this.executorService = asyncRpcExecutorService;
+    BulkOptions bulkOptions = options.getBulkOptions();
+    if (bulkOptions != null && bulkOptions.useBulkApi()) {
+      LOG.info("Grouping Puts and Deletes into MutateRows batches with %s", bulkOptions);
+      this.bulkMutation = new BulkMutation(adapter.getBigtableTableName(), client, asyncExecutor,
+          options.getRetryOptions(),
+          BigtableSessionSharedThreadPools.getInstance().getRetryExecutor(),
+          BigtableSessionSharedThreadPools.getInstance().getBatchThreadPool(), bulkOptions);
+    } else {
+      this.bulkMutation = null;
+    }
   }
 
   private void initializeAsyncMutators() {
@@ -221,6 +238,9 @@ public class BigtableBufferedMutator implements BufferedMutator {
     if (!mutationsToBeSent.isEmpty()) {
       initializeAsyncMutators();
     }
+    if (bulkMutation != null) {
+      bulkMutation.flush();
+    }
     asyncExecutor.flush();
     handleExceptions();
   }
@@ -281,6 +301,10 @@ public class BigtableBufferedMutator implements BufferedMutator {
    * could be parallelized, or at least removed from the user's thread.
    */
   private void offer(Mutation mutation) throws IOException {
+    if (bulkMutation != null && (mutation instanceof Put || mutation instanceof Delete)) {
+      offerBulk(mutation);
+      return;
+    }
     try {
       initializeAsyncMutators();
       long operationId = heapSizeManager.registerOperationWithHeapSize(mutation.heapSize());
@@ -297,6 +321,21 @@ public class BigtableBufferedMutator implements BufferedMutator {
     }
   }
 
+  /**
+   * Add a Put or Delete to the {@link BulkMutation}. This is done on the user's thread, since the
+   * {@link BulkMutation} blocks when a full batch can not yet be sent, which limits the amount of
+   * buffered memory.
+   */
+  private void offerBulk(Mutation mutation) {
+    ListenableFuture<Empty> future;
+    try {
+      future = bulkMutation.add(adapter.adapt(mutation));
+    } catch (Exception e) {
+      future = Futures.immediateFailedFuture(e);
+    }
+    Futures.addCallback(future, new ExceptionCallback(mutation));
+  }
+
   private ListenableFuture<? extends GeneratedMessage> issueRequest(Mutation mutation,
       long operationId) {
     try {
@@ -383,4 +422,13 @@ public class BigtableBufferedMutator implements BufferedMutator {
   public boolean hasInflightRequests() {
     return this.asyncExecutor.hasInflightRequests();
   }
+
+  /**
+   * The current maximum number of in-flight RPCs, which may change over time if
+   * {@link org.apache.hadoop.hbase.client.AbstractBigtableConnection#BIGTABLE_BUFFERED_MUTATOR_ADAPTIVE_INFLIGHT_RPCS_KEY}
+   * is set.
+   */
+  public int getMaxInFlightRpcs() {
+    return this.asyncExecutor.getMaxInFlightRpcs();
+  }
 }
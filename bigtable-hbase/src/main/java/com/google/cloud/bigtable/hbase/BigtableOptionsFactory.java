@@ -23,12 +23,18 @@ import static com.google.cloud.bigtable.config.BigtableOptions.BIGTABLE_PORT_DEF
 import static com.google.cloud.bigtable.config.BigtableOptions.BIGTABLE_ASYNC_MUTATOR_COUNT_DEFAULT;
 
 import com.google.cloud.bigtable.config.BigtableOptions;
+import com.google.cloud.bigtable.config.BulkOptions;
+import com.google.cloud.bigtable.config.ChannelOptions;
+import com.google.cloud.bigtable.config.ChannelOptions.SelectionStrategy;
+import com.google.cloud.bigtable.config.ChannelOptions.Transport;
 import com.google.cloud.bigtable.config.CredentialOptions;
 import com.google.cloud.bigtable.config.Logger;
+import com.google.cloud.bigtable.config.ReadOptions;
 import com.google.cloud.bigtable.config.RetryOptions;
 import com.google.common.base.Preconditions;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -106,6 +112,86 @@ public class BigtableOptionsFactory {
   public static final String MAX_ELAPSED_BACKOFF_MILLIS_KEY =
       "google.bigtable.grpc.retry.max.elapsed.backoff.ms";
 
+  /**
+   * Key to set the deadline in milliseconds of each attempt of an RPC, other than scans. If not
+   * set, {@link HConstants#HBASE_RPC_TIMEOUT_KEY} is used. 0 means no deadline.
+   */
+  public static final String RPC_TIMEOUT_MS_KEY = "google.bigtable.grpc.rpc.timeout.ms";
+
+  /**
+   * Key to set the deadline in milliseconds of each attempt of mutateRow and mutateRows. Defaults
+   * to {@link #RPC_TIMEOUT_MS_KEY}.
+   */
+  public static final String MUTATE_RPC_TIMEOUT_MS_KEY =
+      "google.bigtable.grpc.mutate.rpc.timeout.ms";
+
+  /**
+   * Key to set the deadline in milliseconds of checkAndMutateRow. Defaults to
+   * {@link #RPC_TIMEOUT_MS_KEY}.
+   */
+  public static final String CHECK_AND_MUTATE_RPC_TIMEOUT_MS_KEY =
+      "google.bigtable.grpc.check.and.mutate.rpc.timeout.ms";
+
+  /**
+   * Key to set the deadline in milliseconds of readModifyWriteRow. Defaults to
+   * {@link #RPC_TIMEOUT_MS_KEY}.
+   */
+  public static final String READ_MODIFY_WRITE_RPC_TIMEOUT_MS_KEY =
+      "google.bigtable.grpc.read.modify.write.rpc.timeout.ms";
+
+  /**
+   * Key to set the deadline in milliseconds of single row reads. Defaults to
+   * {@link #RPC_TIMEOUT_MS_KEY}.
+   */
+  public static final String READ_ROW_RPC_TIMEOUT_MS_KEY =
+      "google.bigtable.grpc.read.row.rpc.timeout.ms";
+
+  /**
+   * Key to set the total time in milliseconds that an operation, including all of its retries, may
+   * take. If not set, {@link HConstants#HBASE_CLIENT_OPERATION_TIMEOUT} is used. 0 means no limit.
+   */
+  public static final String OPERATION_TIMEOUT_MS_KEY =
+      "google.bigtable.grpc.operation.timeout.ms";
+
+  /**
+   * Key to set the time in milliseconds to wait for a single row read before sending a hedged copy
+   * of it on another channel. 0, the default, disables hedging.
+   */
+  public static final String HEDGE_DELAY_MS_KEY = "google.bigtable.grpc.hedge.delay.ms";
+
+  /**
+   * Key to set the percentile (e.g. 95) of recent single row read latencies to use as the hedging
+   * delay instead of {@link #HEDGE_DELAY_MS_KEY}.
+   */
+  public static final String HEDGE_LATENCY_PERCENTILE_KEY =
+      "google.bigtable.grpc.hedge.latency.percentile";
+
+  /**
+   * Key to set the maximum number of hedged reads per single row read, e.g. 0.05 for at most 5%
+   * extra load.
+   */
+  public static final String MAX_HEDGE_RATIO_KEY = "google.bigtable.grpc.hedge.max.ratio";
+
+  /**
+   * Key to set the maximum number of retries per request, shared by all of the operations of a
+   * connection, e.g. 0.1 to cap retries at 10% of requests. 0, the default, means no limit.
+   */
+  public static final String RETRY_BUDGET_RATIO_KEY = "google.bigtable.grpc.retry.budget.ratio";
+
+  /**
+   * Key to set the fraction of failed calls at which the circuit breaker opens and fails calls
+   * fast. 0, the default, disables the circuit breaker.
+   */
+  public static final String CIRCUIT_BREAKER_ERROR_THRESHOLD_KEY =
+      "google.bigtable.grpc.circuit.breaker.error.threshold";
+
+  /**
+   * Key to set the time in milliseconds that the circuit breaker stays open before it lets a probe
+   * call through.
+   */
+  public static final String CIRCUIT_BREAKER_OPEN_MS_KEY =
+      "google.bigtable.grpc.circuit.breaker.open.ms";
+
   /**
    * Key to set the amount of time to wait when reading a partial row.
    */
@@ -122,6 +208,20 @@ public class BigtableOptionsFactory {
    */
   public static final String READ_BATCH_SIZE = "google.bigtable.grpc.read.streaming.batch.size";
 
+  /**
+   * Key to set the maximum number of bytes of responses to buffer when scanning. 0 limits the
+   * buffer by {@link #READ_BUFFER_SIZE} messages instead.
+   */
+  public static final String READ_BUFFER_BYTES =
+      "google.bigtable.grpc.read.streaming.buffer.bytes";
+
+  /**
+   * Key to set the maximum number of bytes of responses that all of the scanners in the JVM
+   * buffer. 0, the default, means no global limit.
+   */
+  public static final String READ_GLOBAL_BUFFER_BYTES =
+      "google.bigtable.grpc.read.streaming.global.buffer.bytes";
+
   /**
    * The number of grpc channels to open for asynchronous processing such as puts.
    */
@@ -133,12 +233,184 @@ public class BigtableOptionsFactory {
   public static final String BIGTABLE_CHANNEL_TIMEOUT_MS_KEY =
       "google.bigtable.grpc.channel.timeout.ms";
 
+  /**
+   * How the channel for a new call is picked out of the grpc channel pool. One of ROUND_ROBIN,
+   * LEAST_OUTSTANDING or POWER_OF_TWO_CHOICES.
+   */
+  public static final String BIGTABLE_CHANNEL_SELECTION_STRATEGY_KEY =
+      "google.bigtable.grpc.channel.selection.strategy";
+
+  /**
+   * The average number of active calls per grpc channel at which the channel pool adds a channel,
+   * up to {@link #BIGTABLE_DATA_CHANNEL_COUNT_KEY} channels. 0, the default, keeps the pool at its
+   * full size.
+   */
+  public static final String BIGTABLE_MAX_STREAMS_PER_CHANNEL_KEY =
+      "google.bigtable.grpc.channel.max.streams";
+
+  /**
+   * The number of grpc channels that an elastic channel pool keeps when it is idle.
+   */
+  public static final String BIGTABLE_MIN_CHANNEL_COUNT_KEY =
+      "google.bigtable.grpc.channel.min.count";
+
+  /**
+   * The quiet period in milliseconds after which an elastic channel pool removes the channels that
+   * it no longer needs.
+   */
+  public static final String BIGTABLE_CHANNEL_IDLE_TIMEOUT_MS_KEY =
+      "google.bigtable.grpc.channel.idle.timeout.ms";
+
+  /**
+   * The netty transport for grpc channel I/O: NIO, or EPOLL for netty's native epoll transport on
+   * Linux. EPOLL requires netty-transport-native-epoll on the classpath, and falls back to NIO if
+   * it is not available.
+   */
+  public static final String BIGTABLE_TRANSPORT_KEY = "google.bigtable.grpc.transport";
+
+  /**
+   * The number of event loop threads that perform grpc channel I/O. 0, the default, uses netty's
+   * default of twice the number of processors.
+   */
+  public static final String BIGTABLE_EVENT_LOOP_THREAD_COUNT_KEY =
+      "google.bigtable.grpc.eventloop.thread.count";
+
+  /**
+   * The HTTP/2 flow control window of each grpc channel, in bytes. With auto-tuning, this is the
+   * window of the first channels.
+   */
+  public static final String BIGTABLE_FLOW_CONTROL_WINDOW_KEY =
+      "google.bigtable.grpc.flow.control.window";
+
+  /**
+   * Key to set to a boolean flag indicating whether the flow control window of new grpc channels
+   * should grow to match the measured bandwidth-delay product. Existing channels keep their
+   * window, so a tuned window only reaches all of the channels once they were replaced, which
+   * takes up to {@link #BIGTABLE_CHANNEL_TIMEOUT_MS_KEY} (30 minutes by default). Auto-tuning is
+   * ignored if that timeout is 0 and the pool isn't elastic, since no new channels are created.
+   */
+  public static final String BIGTABLE_AUTO_TUNE_FLOW_CONTROL_WINDOW_KEY =
+      "google.bigtable.grpc.flow.control.window.auto.tune";
+
+  /**
+   * The largest flow control window that auto-tuning will set, in bytes.
+   */
+  public static final String BIGTABLE_MAX_FLOW_CONTROL_WINDOW_KEY =
+      "google.bigtable.grpc.flow.control.window.max";
+
+  /**
+   * The maximum size of a message that a grpc channel will receive, in bytes.
+   */
+  public static final String BIGTABLE_MAX_MESSAGE_SIZE_KEY =
+      "google.bigtable.grpc.max.message.size";
+
+  /**
+   * Key to set to a boolean flag indicating whether a session should create and connect all of
+   * its data channels when it opens, instead of on the first call.
+   */
+  public static final String BIGTABLE_WARM_UP_CHANNELS_KEY = "google.bigtable.grpc.channel.warmup";
+
+  /**
+   * The maximum amount of time in milliseconds that opening a session waits for its data channels
+   * to connect, and that a channel that replaces an old channel waits to connect before it gets
+   * calls.
+   */
+  public static final String BIGTABLE_WARM_UP_TIMEOUT_MS_KEY =
+      "google.bigtable.grpc.channel.warmup.timeout.ms";
+
+  /**
+   * How long in milliseconds a grpc connection can go without receiving anything before a
+   * keepalive ping is sent. 0 disables keepalive pings.
+   */
+  public static final String BIGTABLE_KEEP_ALIVE_TIME_MS_KEY =
+      "google.bigtable.grpc.keepalive.time.ms";
+
+  /**
+   * How long in milliseconds to wait for the acknowledgement of a keepalive ping before closing the
+   * connection.
+   */
+  public static final String BIGTABLE_KEEP_ALIVE_TIMEOUT_MS_KEY =
+      "google.bigtable.grpc.keepalive.timeout.ms";
+
+  /**
+   * Key to set to a boolean flag indicating whether keepalive pings should be sent on connections
+   * that have no active calls.
+   */
+  public static final String BIGTABLE_KEEP_ALIVE_WITHOUT_CALLS_KEY =
+      "google.bigtable.grpc.keepalive.without.calls";
+
+  /**
+   * Key to set to a boolean flag indicating whether the channels of a pool should be spread across
+   * all of the addresses that the host resolves to.
+   */
+  public static final String BIGTABLE_SPREAD_ACROSS_ADDRESSES_KEY =
+      "google.bigtable.grpc.channel.spread.across.addresses";
+
+  /**
+   * How old in milliseconds the last resolution of a host's addresses can be before a new channel
+   * resolves the host again.
+   */
+  public static final String BIGTABLE_ADDRESS_RESOLUTION_INTERVAL_MS_KEY =
+      "google.bigtable.grpc.address.resolution.interval.ms";
+
   /**
    * The number of asynchronous workers to use for buffered mutator operations.
    */
   public static final String BIGTABLE_ASYNC_MUTATOR_COUNT_KEY =
       "google.bigtable.buffered.mutator.async.worker.count";
 
+  /**
+   * Key to set to a boolean flag indicating whether the buffered mutator should group Puts and
+   * Deletes into MutateRows batches.
+   */
+  public static final String BIGTABLE_USE_BULK_API = "google.bigtable.use.bulk.api";
+
+  /**
+   * The maximum number of row mutations in a single MutateRows batch.
+   */
+  public static final String BIGTABLE_BULK_MAX_ROW_KEY_COUNT =
+      "google.bigtable.bulk.max.row.key.count";
+
+  /**
+   * The maximum approximate size in bytes of a single MutateRows batch.
+   */
+  public static final String BIGTABLE_BULK_MAX_REQUEST_SIZE_BYTES =
+      "google.bigtable.bulk.max.request.size.bytes";
+
+  /**
+   * The amount of time in milliseconds after which a partially filled MutateRows batch is sent.
+   */
+  public static final String BIGTABLE_BULK_AUTOFLUSH_MS_KEY = "google.bigtable.bulk.autoflush.ms";
+
+  /**
+   * The amount of time in microseconds that a Table.get(Get) waits for other concurrent Gets with
+   * the same filter, so that they can be sent as a single read. 0, the default, disables read
+   * coalescing.
+   */
+  public static final String BIGTABLE_READ_COALESCING_WINDOW_MICROS_KEY =
+      "google.bigtable.read.coalescing.window.micros";
+
+  /**
+   * The maximum number of row keys in a single coalesced read.
+   */
+  public static final String BIGTABLE_READ_COALESCING_MAX_ROW_KEY_COUNT_KEY =
+      "google.bigtable.read.coalescing.max.row.key.count";
+
+  /**
+   * The maximum number of concurrent sub-scans that a Table.getScanner(Scan) is split into at
+   * tablet boundaries. 1, the default, disables parallel scans. A Scan can override this with an
+   * attribute of the same name, set to {@code Bytes.toBytes(int)}.
+   */
+  public static final String BIGTABLE_READ_PARALLEL_SCAN_COUNT_KEY =
+      "google.bigtable.read.parallel.scan.count";
+
+  /**
+   * Whether parallel scans return rows in key order, which is the default. A Scan can override
+   * this with an attribute of the same name, set to {@code Bytes.toBytes(boolean)}.
+   */
+  public static final String BIGTABLE_READ_PARALLEL_SCAN_ORDERED_KEY =
+      "google.bigtable.read.parallel.scan.ordered";
+
   public static BigtableOptions fromConfiguration(final Configuration configuration)
       throws IOException {
 
@@ -166,6 +438,9 @@ public class BigtableOptionsFactory {
         BIGTABLE_ASYNC_MUTATOR_COUNT_KEY, BIGTABLE_ASYNC_MUTATOR_COUNT_DEFAULT);
     bigtableOptionsBuilder.setAsyncMutatorWorkerCount(asyncMutatorCount);
 
+    bigtableOptionsBuilder.setBulkOptions(createBulkOptions(configuration));
+    bigtableOptionsBuilder.setReadOptions(createReadOptions(configuration));
+
     return bigtableOptionsBuilder.build();
   }
 
@@ -205,6 +480,8 @@ public class BigtableOptionsFactory {
       BIGTABLE_CHANNEL_TIMEOUT_MS_KEY + " has to be 0 (no timeout) or 1 minute+ (60000)");
     builder.setTimeoutMs(channelTimeout);
 
+    builder.setChannelOptions(createChannelOptions(configuration));
+
     builder.setUserAgent(BigtableConstants.USER_AGENT);
   }
 
@@ -263,6 +540,69 @@ public class BigtableOptionsFactory {
     LOG.debug("gRPC retry maxElapsedBackoffMillis: %d", maxElapsedBackoffMillis);
     retryOptionsBuilder.setMaxElapsedBackoffMillis(maxElapsedBackoffMillis);
 
+    int rpcTimeoutMs = configuration.getInt(RPC_TIMEOUT_MS_KEY,
+      configuration.getInt(HConstants.HBASE_RPC_TIMEOUT_KEY, RetryOptions.DEFAULT_RPC_TIMEOUT_MS));
+    LOG.debug("gRPC rpc timeout (millis): %d", rpcTimeoutMs);
+    retryOptionsBuilder.setRpcTimeoutMs(rpcTimeoutMs);
+
+    int mutateRpcTimeoutMs = configuration.getInt(MUTATE_RPC_TIMEOUT_MS_KEY, rpcTimeoutMs);
+    LOG.debug("gRPC mutate rpc timeout (millis): %d", mutateRpcTimeoutMs);
+    retryOptionsBuilder.setMutateRpcTimeoutMs(mutateRpcTimeoutMs);
+
+    int checkAndMutateRpcTimeoutMs =
+        configuration.getInt(CHECK_AND_MUTATE_RPC_TIMEOUT_MS_KEY, rpcTimeoutMs);
+    LOG.debug("gRPC checkAndMutate rpc timeout (millis): %d", checkAndMutateRpcTimeoutMs);
+    retryOptionsBuilder.setCheckAndMutateRpcTimeoutMs(checkAndMutateRpcTimeoutMs);
+
+    int readModifyWriteRpcTimeoutMs =
+        configuration.getInt(READ_MODIFY_WRITE_RPC_TIMEOUT_MS_KEY, rpcTimeoutMs);
+    LOG.debug("gRPC readModifyWrite rpc timeout (millis): %d", readModifyWriteRpcTimeoutMs);
+    retryOptionsBuilder.setReadModifyWriteRpcTimeoutMs(readModifyWriteRpcTimeoutMs);
+
+    int readRowRpcTimeoutMs = configuration.getInt(READ_ROW_RPC_TIMEOUT_MS_KEY, rpcTimeoutMs);
+    LOG.debug("gRPC read row rpc timeout (millis): %d", readRowRpcTimeoutMs);
+    retryOptionsBuilder.setReadRowRpcTimeoutMs(readRowRpcTimeoutMs);
+
+    int operationTimeoutMs = configuration.getInt(OPERATION_TIMEOUT_MS_KEY,
+      configuration.getInt(HConstants.HBASE_CLIENT_OPERATION_TIMEOUT,
+        RetryOptions.DEFAULT_OPERATION_TIMEOUT_MS));
+    if (operationTimeoutMs == Integer.MAX_VALUE) {
+      // HBase's way of saying that there is no limit.
+      operationTimeoutMs = 0;
+    }
+    LOG.debug("gRPC operation timeout (millis): %d", operationTimeoutMs);
+    retryOptionsBuilder.setOperationTimeoutMs(operationTimeoutMs);
+
+    int hedgeDelayMs =
+        configuration.getInt(HEDGE_DELAY_MS_KEY, RetryOptions.DEFAULT_HEDGE_DELAY_MS);
+    LOG.debug("gRPC hedge delay (millis): %d", hedgeDelayMs);
+    retryOptionsBuilder.setHedgeDelayMs(hedgeDelayMs);
+
+    double hedgeLatencyPercentile = configuration.getDouble(HEDGE_LATENCY_PERCENTILE_KEY,
+      RetryOptions.DEFAULT_HEDGE_LATENCY_PERCENTILE);
+    LOG.debug("gRPC hedge latency percentile: %s", hedgeLatencyPercentile);
+    retryOptionsBuilder.setHedgeLatencyPercentile(hedgeLatencyPercentile);
+
+    double maxHedgeRatio =
+        configuration.getDouble(MAX_HEDGE_RATIO_KEY, RetryOptions.DEFAULT_MAX_HEDGE_RATIO);
+    LOG.debug("gRPC max hedge ratio: %s", maxHedgeRatio);
+    retryOptionsBuilder.setMaxHedgeRatio(maxHedgeRatio);
+
+    double retryBudgetRatio =
+        configuration.getDouble(RETRY_BUDGET_RATIO_KEY, RetryOptions.DEFAULT_RETRY_BUDGET_RATIO);
+    LOG.debug("gRPC retry budget ratio: %s", retryBudgetRatio);
+    retryOptionsBuilder.setRetryBudgetRatio(retryBudgetRatio);
+
+    double circuitBreakerErrorThreshold = configuration.getDouble(
+      CIRCUIT_BREAKER_ERROR_THRESHOLD_KEY, RetryOptions.DEFAULT_CIRCUIT_BREAKER_ERROR_THRESHOLD);
+    LOG.debug("gRPC circuit breaker error threshold: %s", circuitBreakerErrorThreshold);
+    retryOptionsBuilder.setCircuitBreakerErrorThreshold(circuitBreakerErrorThreshold);
+
+    int circuitBreakerOpenMs = configuration.getInt(CIRCUIT_BREAKER_OPEN_MS_KEY,
+      RetryOptions.DEFAULT_CIRCUIT_BREAKER_OPEN_MS);
+    LOG.debug("gRPC circuit breaker open time (millis): %d", circuitBreakerOpenMs);
+    retryOptionsBuilder.setCircuitBreakerOpenMs(circuitBreakerOpenMs);
+
     int readPartialRowTimeoutMillis = configuration.getInt(
         READ_PARTIAL_ROW_TIMEOUT_MS, RetryOptions.DEFAULT_READ_PARTIAL_ROW_TIMEOUT_MS);
     LOG.debug("gRPC read partial row timeout (millis): %d", readPartialRowTimeoutMillis);
@@ -278,6 +618,167 @@ public class BigtableOptionsFactory {
     LOG.debug("gRPC read batch size (count): %d", streamingBatchSize);
     retryOptionsBuilder.setStreamingBatchSize(streamingBatchSize);
 
+    long streamingBufferBytes = configuration.getLong(
+      READ_BUFFER_BYTES, RetryOptions.DEFAULT_STREAMING_BUFFER_BYTES);
+    LOG.debug("gRPC read buffer size (bytes): %d", streamingBufferBytes);
+    retryOptionsBuilder.setStreamingBufferBytes(streamingBufferBytes);
+
+    long globalStreamingBufferBytes = configuration.getLong(
+      READ_GLOBAL_BUFFER_BYTES, RetryOptions.DEFAULT_GLOBAL_STREAMING_BUFFER_BYTES);
+    LOG.debug("gRPC global read buffer size (bytes): %d", globalStreamingBufferBytes);
+    retryOptionsBuilder.setGlobalStreamingBufferBytes(globalStreamingBufferBytes);
+
     return retryOptionsBuilder.build();
   }
+
+  private static ChannelOptions createChannelOptions(Configuration configuration) {
+    ChannelOptions.Builder channelOptionsBuilder = new ChannelOptions.Builder();
+    SelectionStrategy selectionStrategy = configuration.getEnum(
+      BIGTABLE_CHANNEL_SELECTION_STRATEGY_KEY,
+      ChannelOptions.BIGTABLE_CHANNEL_SELECTION_STRATEGY_DEFAULT);
+    LOG.debug("Channel selection strategy: %s", selectionStrategy);
+    channelOptionsBuilder.setSelectionStrategy(selectionStrategy);
+
+    int maxStreamsPerChannel = configuration.getInt(
+      BIGTABLE_MAX_STREAMS_PER_CHANNEL_KEY,
+      ChannelOptions.BIGTABLE_MAX_STREAMS_PER_CHANNEL_DEFAULT);
+    LOG.debug("Max streams per channel: %d", maxStreamsPerChannel);
+    channelOptionsBuilder.setMaxStreamsPerChannel(maxStreamsPerChannel);
+
+    int minChannelCount = configuration.getInt(
+      BIGTABLE_MIN_CHANNEL_COUNT_KEY, ChannelOptions.BIGTABLE_MIN_CHANNEL_COUNT_DEFAULT);
+    LOG.debug("Min channel count: %d", minChannelCount);
+    channelOptionsBuilder.setMinChannelCount(minChannelCount);
+
+    long channelIdleTimeoutMs = configuration.getLong(
+      BIGTABLE_CHANNEL_IDLE_TIMEOUT_MS_KEY,
+      ChannelOptions.BIGTABLE_CHANNEL_IDLE_TIMEOUT_MS_DEFAULT);
+    LOG.debug("Channel idle timeout (millis): %d", channelIdleTimeoutMs);
+    channelOptionsBuilder.setChannelIdleTimeoutMs(channelIdleTimeoutMs);
+
+    Transport transport =
+        configuration.getEnum(BIGTABLE_TRANSPORT_KEY, ChannelOptions.BIGTABLE_TRANSPORT_DEFAULT);
+    LOG.debug("Transport: %s", transport);
+    channelOptionsBuilder.setTransport(transport);
+
+    int eventLoopThreadCount = configuration.getInt(
+      BIGTABLE_EVENT_LOOP_THREAD_COUNT_KEY,
+      ChannelOptions.BIGTABLE_EVENT_LOOP_THREAD_COUNT_DEFAULT);
+    LOG.debug("Event loop thread count: %d", eventLoopThreadCount);
+    channelOptionsBuilder.setEventLoopThreadCount(eventLoopThreadCount);
+
+    int flowControlWindow = configuration.getInt(
+      BIGTABLE_FLOW_CONTROL_WINDOW_KEY, ChannelOptions.BIGTABLE_FLOW_CONTROL_WINDOW_DEFAULT);
+    LOG.debug("Flow control window (bytes): %d", flowControlWindow);
+    channelOptionsBuilder.setFlowControlWindow(flowControlWindow);
+
+    boolean autoTuneFlowControlWindow = configuration.getBoolean(
+      BIGTABLE_AUTO_TUNE_FLOW_CONTROL_WINDOW_KEY,
+      ChannelOptions.BIGTABLE_AUTO_TUNE_FLOW_CONTROL_WINDOW_DEFAULT);
+    LOG.debug("Flow control window auto-tuning enabled: %s", autoTuneFlowControlWindow);
+    channelOptionsBuilder.setAutoTuneFlowControlWindow(autoTuneFlowControlWindow);
+
+    int maxFlowControlWindow = configuration.getInt(BIGTABLE_MAX_FLOW_CONTROL_WINDOW_KEY,
+      ChannelOptions.BIGTABLE_MAX_FLOW_CONTROL_WINDOW_DEFAULT);
+    LOG.debug("Max flow control window (bytes): %d", maxFlowControlWindow);
+    channelOptionsBuilder.setMaxFlowControlWindow(maxFlowControlWindow);
+
+    int maxMessageSize = configuration.getInt(
+      BIGTABLE_MAX_MESSAGE_SIZE_KEY, ChannelOptions.BIGTABLE_MAX_MESSAGE_SIZE_DEFAULT);
+    LOG.debug("Max message size (bytes): %d", maxMessageSize);
+    channelOptionsBuilder.setMaxMessageSize(maxMessageSize);
+
+    boolean warmUpChannels = configuration.getBoolean(
+      BIGTABLE_WARM_UP_CHANNELS_KEY, ChannelOptions.BIGTABLE_WARM_UP_CHANNELS_DEFAULT);
+    LOG.debug("Channel warm up enabled: %s", warmUpChannels);
+    channelOptionsBuilder.setWarmUpChannels(warmUpChannels);
+
+    long warmUpTimeoutMs = configuration.getLong(
+      BIGTABLE_WARM_UP_TIMEOUT_MS_KEY, ChannelOptions.BIGTABLE_WARM_UP_TIMEOUT_MS_DEFAULT);
+    LOG.debug("Channel warm up timeout (ms): %d", warmUpTimeoutMs);
+    channelOptionsBuilder.setWarmUpTimeoutMs(warmUpTimeoutMs);
+
+    long keepAliveTimeMs = configuration.getLong(
+      BIGTABLE_KEEP_ALIVE_TIME_MS_KEY, ChannelOptions.BIGTABLE_KEEP_ALIVE_TIME_MS_DEFAULT);
+    LOG.debug("Keepalive time (ms): %d", keepAliveTimeMs);
+    channelOptionsBuilder.setKeepAliveTimeMs(keepAliveTimeMs);
+
+    long keepAliveTimeoutMs = configuration.getLong(
+      BIGTABLE_KEEP_ALIVE_TIMEOUT_MS_KEY, ChannelOptions.BIGTABLE_KEEP_ALIVE_TIMEOUT_MS_DEFAULT);
+    LOG.debug("Keepalive timeout (ms): %d", keepAliveTimeoutMs);
+    channelOptionsBuilder.setKeepAliveTimeoutMs(keepAliveTimeoutMs);
+
+    boolean keepAliveWithoutCalls = configuration.getBoolean(BIGTABLE_KEEP_ALIVE_WITHOUT_CALLS_KEY,
+      ChannelOptions.BIGTABLE_KEEP_ALIVE_WITHOUT_CALLS_DEFAULT);
+    LOG.debug("Keepalive without calls: %s", keepAliveWithoutCalls);
+    channelOptionsBuilder.setKeepAliveWithoutCalls(keepAliveWithoutCalls);
+
+    boolean spreadAcrossAddresses = configuration.getBoolean(BIGTABLE_SPREAD_ACROSS_ADDRESSES_KEY,
+      ChannelOptions.BIGTABLE_SPREAD_ACROSS_ADDRESSES_DEFAULT);
+    LOG.debug("Spread channels across addresses: %s", spreadAcrossAddresses);
+    channelOptionsBuilder.setSpreadAcrossAddresses(spreadAcrossAddresses);
+
+    long addressResolutionIntervalMs = configuration.getLong(
+      BIGTABLE_ADDRESS_RESOLUTION_INTERVAL_MS_KEY,
+      ChannelOptions.BIGTABLE_ADDRESS_RESOLUTION_INTERVAL_MS_DEFAULT);
+    LOG.debug("Address resolution interval (ms): %d", addressResolutionIntervalMs);
+    channelOptionsBuilder.setAddressResolutionIntervalMs(addressResolutionIntervalMs);
+
+    return channelOptionsBuilder.build();
+  }
+
+  private static BulkOptions createBulkOptions(Configuration configuration) {
+    BulkOptions.Builder bulkOptionsBuilder = new BulkOptions.Builder();
+    boolean useBulkApi =
+        configuration.getBoolean(BIGTABLE_USE_BULK_API, BulkOptions.BIGTABLE_USE_BULK_API_DEFAULT);
+    LOG.debug("Bulk mutations enabled: %s", useBulkApi);
+    bulkOptionsBuilder.setUseBulkApi(useBulkApi);
+
+    int bulkMaxRowKeyCount = configuration.getInt(
+      BIGTABLE_BULK_MAX_ROW_KEY_COUNT, BulkOptions.BIGTABLE_BULK_MAX_ROW_KEY_COUNT_DEFAULT);
+    LOG.debug("Bulk max row key count: %d", bulkMaxRowKeyCount);
+    bulkOptionsBuilder.setBulkMaxRowKeyCount(bulkMaxRowKeyCount);
+
+    long bulkMaxRequestSize = configuration.getLong(
+      BIGTABLE_BULK_MAX_REQUEST_SIZE_BYTES,
+      BulkOptions.BIGTABLE_BULK_MAX_REQUEST_SIZE_BYTES_DEFAULT);
+    LOG.debug("Bulk max request size (bytes): %d", bulkMaxRequestSize);
+    bulkOptionsBuilder.setBulkMaxRequestSize(bulkMaxRequestSize);
+
+    long autoflushMs = configuration.getLong(
+      BIGTABLE_BULK_AUTOFLUSH_MS_KEY, BulkOptions.BIGTABLE_BULK_AUTOFLUSH_MS_DEFAULT);
+    LOG.debug("Bulk autoflush (millis): %d", autoflushMs);
+    bulkOptionsBuilder.setAutoflushMs(autoflushMs);
+
+    return bulkOptionsBuilder.build();
+  }
+
+  private static ReadOptions createReadOptions(Configuration configuration) {
+    ReadOptions.Builder readOptionsBuilder = new ReadOptions.Builder();
+    long coalescingWindowMicros = configuration.getLong(
+      BIGTABLE_READ_COALESCING_WINDOW_MICROS_KEY,
+      ReadOptions.BIGTABLE_READ_COALESCING_WINDOW_MICROS_DEFAULT);
+    LOG.debug("Read coalescing window (micros): %d", coalescingWindowMicros);
+    readOptionsBuilder.setCoalescingWindowMicros(coalescingWindowMicros);
+
+    int coalescingMaxRowKeyCount = configuration.getInt(
+      BIGTABLE_READ_COALESCING_MAX_ROW_KEY_COUNT_KEY,
+      ReadOptions.BIGTABLE_READ_COALESCING_MAX_ROW_KEY_COUNT_DEFAULT);
+    LOG.debug("Read coalescing max row key count: %d", coalescingMaxRowKeyCount);
+    readOptionsBuilder.setCoalescingMaxRowKeyCount(coalescingMaxRowKeyCount);
+
+    int parallelScanCount = configuration.getInt(
+      BIGTABLE_READ_PARALLEL_SCAN_COUNT_KEY,
+      ReadOptions.BIGTABLE_READ_PARALLEL_SCAN_COUNT_DEFAULT);
+    LOG.debug("Read parallel scan count: %d", parallelScanCount);
+    readOptionsBuilder.setParallelScanCount(parallelScanCount);
+
+    boolean parallelScanOrdered = configuration.getBoolean(
+      BIGTABLE_READ_PARALLEL_SCAN_ORDERED_KEY,
+      ReadOptions.BIGTABLE_READ_PARALLEL_SCAN_ORDERED_DEFAULT);
+    LOG.debug("Read parallel scan ordered: %s", parallelScanOrdered);
+    readOptionsBuilder.setParallelScanOrdered(parallelScanOrdered);
+
+    return readOptionsBuilder.build();
+  }
 }
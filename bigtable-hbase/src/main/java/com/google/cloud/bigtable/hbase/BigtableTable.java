@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
@@ -60,7 +61,11 @@ import com.google.bigtable.v1.ReadModifyWriteRowRequest;
 import com.google.bigtable.v1.ReadRowsRequest;
 import com.google.cloud.bigtable.config.BigtableOptions;
 import com.google.cloud.bigtable.config.Logger;
+import com.google.cloud.bigtable.config.ReadOptions;
 import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.cloud.bigtable.grpc.BigtableSessionSharedThreadPools;
+import com.google.cloud.bigtable.grpc.async.ReadCoalescer;
+import com.google.cloud.bigtable.grpc.scanner.ParallelResultScanner;
 import com.google.cloud.bigtable.hbase.adapters.Adapters;
 import com.google.cloud.bigtable.hbase.adapters.ReadHooks;
 import com.google.cloud.bigtable.hbase.adapters.HBaseRequestAdapter;
@@ -99,9 +104,23 @@ public class BigtableTable implements Table {
   protected final BigtableDataClient client;
   protected final BatchExecutor batchExecutor;
   protected final AbstractBigtableConnection bigtableConnection;
+  protected final ReadCoalescer readCoalescer;
+
+  public BigtableTable(
+      AbstractBigtableConnection bigtableConnection,
+      TableName tableName,
+      BigtableOptions options,
+      BigtableDataClient client,
+      HBaseRequestAdapter hbaseAdapter,
+      BatchExecutor batchExecutor) {
+    this(bigtableConnection, tableName, options, client, hbaseAdapter, batchExecutor, null);
+  }
 
   /**
    * Constructed by BigtableConnection
+   *
+   * @param readCoalescer Groups concurrent {@link #get(Get)}s into multi-row reads. Gets are sent
+   *          individually if this is null.
    */
   public BigtableTable(
       AbstractBigtableConnection bigtableConnection,
@@ -109,13 +128,15 @@ public class BigtableTable implements Table {
       BigtableOptions options,
       BigtableDataClient client,
       HBaseRequestAdapter hbaseAdapter,
-      BatchExecutor batchExecutor) {
+      BatchExecutor batchExecutor,
+      ReadCoalescer readCoalescer) {
     this.bigtableConnection = bigtableConnection;
     this.tableName = tableName;
     this.options = options;
     this.client = client;
     this.batchExecutor = batchExecutor;
     this.hbaseAdapter = hbaseAdapter;
+    this.readCoalescer = readCoalescer;
   }
 
   @Override
@@ -200,6 +221,19 @@ public class BigtableTable implements Table {
   @Override
   public Result get(Get get) throws IOException {
     LOG.trace("get(Get)");
+    if (readCoalescer != null) {
+      try {
+        return Adapters.ROW_ADAPTER.adaptResponse(
+          readCoalescer.readRowAsync(hbaseAdapter.adapt(get)).get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw logAndCreateIOException("get", get.getRow(), e);
+      } catch (ExecutionException e) {
+        throw logAndCreateIOException("get", get.getRow(), e.getCause());
+      } catch (Throwable t) {
+        throw logAndCreateIOException("get", get.getRow(), t);
+      }
+    }
     try (com.google.cloud.bigtable.grpc.scanner.ResultScanner<com.google.bigtable.v1.Row> scanner =
         client.readRows(hbaseAdapter.adapt(get))) {
       return Adapters.ROW_ADAPTER.adaptResponse(scanner.next());
@@ -212,9 +246,10 @@ public class BigtableTable implements Table {
   public ResultScanner getScanner(Scan scan) throws IOException {
     try {
       LOG.trace("getScanner(Scan)");
+      boolean hasWhileMatchFilter = hasWhileMatchFilter(scan.getFilter());
       com.google.cloud.bigtable.grpc.scanner.ResultScanner<com.google.bigtable.v1.Row> scanner =
-          client.readRows(hbaseAdapter.adapt(scan));
-      if (hasWhileMatchFilter(scan.getFilter())) {
+          createScanner(scan, hasWhileMatchFilter);
+      if (hasWhileMatchFilter) {
         return Adapters.BIGTABLE_WHILE_MATCH_RESULT_RESULT_SCAN_ADAPTER.adapt(scanner);
       }
       return Adapters.BIGTABLE_RESULT_SCAN_ADAPTER.adapt(scanner);
@@ -229,6 +264,35 @@ public class BigtableTable implements Table {
     }
   }
 
+  /**
+   * Reads the scan in parallel sub-scans if the options or the scan's attributes ask for more than
+   * one. A WhileMatchFilter ends the scan at the first row that doesn't match, so those scans are
+   * always ordered.
+   */
+  private com.google.cloud.bigtable.grpc.scanner.ResultScanner<com.google.bigtable.v1.Row>
+      createScanner(Scan scan, boolean hasWhileMatchFilter) {
+    ReadRowsRequest request = hbaseAdapter.adapt(scan);
+    ReadOptions readOptions = options.getReadOptions();
+    int parallelism = readOptions.getParallelScanCount();
+    byte[] parallelismAttribute =
+        scan.getAttribute(BigtableOptionsFactory.BIGTABLE_READ_PARALLEL_SCAN_COUNT_KEY);
+    if (parallelismAttribute != null) {
+      parallelism = Bytes.toInt(parallelismAttribute);
+    }
+    if (parallelism <= 1) {
+      return client.readRows(request);
+    }
+    boolean ordered = readOptions.isParallelScanOrdered();
+    byte[] orderedAttribute =
+        scan.getAttribute(BigtableOptionsFactory.BIGTABLE_READ_PARALLEL_SCAN_ORDERED_KEY);
+    if (orderedAttribute != null) {
+      ordered = Bytes.toBoolean(orderedAttribute);
+    }
+    return ParallelResultScanner.create(client, request, parallelism,
+      ordered || hasWhileMatchFilter, options.getRetryOptions().getStreamingBufferSize(),
+      BigtableSessionSharedThreadPools.getInstance().getBatchThreadPool());
+  }
+
   @VisibleForTesting
   static boolean hasWhileMatchFilter(Filter filter) {
     if (filter instanceof WhileMatchFilter) {
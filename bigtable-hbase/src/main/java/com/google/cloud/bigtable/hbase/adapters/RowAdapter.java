@@ -26,6 +26,8 @@ import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -44,14 +46,69 @@ public class RowAdapter implements ResponseAdapter<Row, Result> {
       return new Result();
     }
 
-    SortedSet<org.apache.hadoop.hbase.Cell> hbaseCells = new TreeSet<>(KeyValue.COMPARATOR);
+    org.apache.hadoop.hbase.Cell[] hbaseCells = adaptSortedCells(response);
+    if (hbaseCells == null) {
+      hbaseCells = adaptUnsortedCells(response);
+    }
+    return Result.create(hbaseCells);
+  }
+
+  /**
+   * Bigtable returns the columns of a family in qualifier order, and the cells of a column newest
+   * first, which is the order of HBase's {@link KeyValue#COMPARATOR}. This builds the cells in that
+   * order by sorting the families by name and walking their columns, without sorting the cells.
+   * @return null if the cells turn out not to be in order.
+   */
+  private static org.apache.hadoop.hbase.Cell[] adaptSortedCells(Row response) {
+    List<Family> families = response.getFamiliesList();
+    int familyCount = families.size();
+    byte[][] familyNames = new byte[familyCount][];
+    int[] familyOrder = new int[familyCount];
+    int cellCount = 0;
+    for (int i = 0; i < familyCount; i++) {
+      Family family = families.get(i);
+      familyNames[i] = Bytes.toBytes(family.getName());
+      // Insertion sort, since there are usually very few families.
+      int j = i;
+      for (; j > 0 && Bytes.compareTo(familyNames[familyOrder[j - 1]], familyNames[i]) > 0; j--) {
+        familyOrder[j] = familyOrder[j - 1];
+      }
+      familyOrder[j] = i;
+      for (int c = 0; c < family.getColumnsCount(); c++) {
+        cellCount += family.getColumns(c).getCellsCount();
+      }
+    }
+
     byte[] rowKey = ByteStringer.extract(response.getKey());
+    org.apache.hadoop.hbase.Cell[] hbaseCells = new org.apache.hadoop.hbase.Cell[cellCount];
+    int size = 0;
+    byte[] previousFamilyName = null;
+    byte[] previousQualifier = null;
+    long previousTimestamp = Long.MAX_VALUE;
 
-    for (Family family : response.getFamiliesList()) {
-      byte[] familyNameBytes = Bytes.toBytes(family.getName());
+    for (int i = 0; i < familyCount; i++) {
+      Family family = families.get(familyOrder[i]);
+      byte[] familyNameBytes = familyNames[familyOrder[i]];
+      if (previousFamilyName == null || !Bytes.equals(previousFamilyName, familyNameBytes)) {
+        previousQualifier = null;
+      }
+      previousFamilyName = familyNameBytes;
 
       for (Column column : family.getColumnsList()) {
         byte[] columnQualifier = ByteStringer.extract(column.getQualifier());
+        // A column can continue in the next Column of the family, if it was split across chunks.
+        boolean continuesColumn = false;
+        if (previousQualifier != null) {
+          int compare = Bytes.compareTo(previousQualifier, columnQualifier);
+          if (compare > 0) {
+            return null;
+          }
+          continuesColumn = compare == 0;
+        }
+        previousQualifier = columnQualifier;
+        if (!continuesColumn) {
+          previousTimestamp = Long.MAX_VALUE;
+        }
 
         for (Cell cell : column.getCellsList()) {
           // Cells with labels are for internal use, do not return them.
@@ -63,6 +120,45 @@ public class RowAdapter implements ResponseAdapter<Row, Result> {
           // Bigtable timestamp has more granularity than HBase one. It is possible that Bigtable
           // cells are deduped unintentionally here. On the other hand, if we don't dedup them,
           // HBase will treat them as duplicates.
+          long hbaseTimestamp = cell.getTimestampMicros() / TIME_CONVERSION_UNIT;
+          if (hbaseTimestamp > previousTimestamp) {
+            return null;
+          } else if (hbaseTimestamp == previousTimestamp) {
+            continue;
+          }
+          hbaseCells[size++] = new RowCell(
+              rowKey,
+              familyNameBytes,
+              columnQualifier,
+              hbaseTimestamp,
+              ByteStringer.extract(cell.getValue()));
+          previousTimestamp = hbaseTimestamp;
+        }
+      }
+    }
+
+    return size == cellCount ? hbaseCells : Arrays.copyOf(hbaseCells, size);
+  }
+
+  /**
+   * Builds the cells of a row whose columns or cells are out of order by sorting them.
+   */
+  private static org.apache.hadoop.hbase.Cell[] adaptUnsortedCells(Row response) {
+    SortedSet<org.apache.hadoop.hbase.Cell> hbaseCells = new TreeSet<>(KeyValue.COMPARATOR);
+    byte[] rowKey = ByteStringer.extract(response.getKey());
+
+    for (Family family : response.getFamiliesList()) {
+      byte[] familyNameBytes = Bytes.toBytes(family.getName());
+
+      for (Column column : family.getColumnsList()) {
+        byte[] columnQualifier = ByteStringer.extract(column.getQualifier());
+
+        for (Cell cell : column.getCellsList()) {
+          // Cells with labels are for internal use, do not return them.
+          if (cell.getLabelsCount() > 0) {
+            continue;
+          }
+
           long hbaseTimestamp = cell.getTimestampMicros() / TIME_CONVERSION_UNIT;
           RowCell keyValue = new RowCell(
               rowKey,
@@ -76,6 +172,6 @@ public class RowAdapter implements ResponseAdapter<Row, Result> {
       }
     }
 
-    return Result.create(hbaseCells.toArray(new org.apache.hadoop.hbase.Cell[hbaseCells.size()]));
+    return hbaseCells.toArray(new org.apache.hadoop.hbase.Cell[hbaseCells.size()]);
   }
 }
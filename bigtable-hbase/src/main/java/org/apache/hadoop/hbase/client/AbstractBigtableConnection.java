@@ -21,6 +21,7 @@ import com.google.cloud.bigtable.config.Logger;
 import com.google.cloud.bigtable.grpc.BigtableDataClient;
 import com.google.cloud.bigtable.grpc.BigtableSession;
 import com.google.cloud.bigtable.grpc.BigtableTableAdminClient;
+import com.google.cloud.bigtable.grpc.async.AdaptiveRpcLimit;
 import com.google.cloud.bigtable.grpc.async.AsyncExecutor;
 import com.google.cloud.bigtable.grpc.async.HeapSizeManager;
 import com.google.cloud.bigtable.hbase.BatchExecutor;
@@ -57,6 +58,20 @@ public abstract class AbstractBigtableConnection implements Connection, Closeabl
   public static final String MAX_INFLIGHT_RPCS_KEY =
       "google.bigtable.buffered.mutator.max.inflight.rpcs";
 
+  /**
+   * Key to set to a boolean flag indicating whether the buffered mutator's maximum number of
+   * in-flight RPCs should adapt to the observed latency and errors. When enabled, the limit starts
+   * at the value of {@link #MAX_INFLIGHT_RPCS_KEY}, and can change between 1 and
+   * {@link #ADAPTIVE_INFLIGHT_RPCS_MAX_MULTIPLIER} times that value.
+   */
+  public static final String BIGTABLE_BUFFERED_MUTATOR_ADAPTIVE_INFLIGHT_RPCS_KEY =
+      "google.bigtable.buffered.mutator.adaptive.inflight.rpcs";
+
+  /**
+   * The highest adaptive in-flight RPC limit, as a multiple of the initial limit.
+   */
+  public static final int ADAPTIVE_INFLIGHT_RPCS_MAX_MULTIPLIER = 4;
+
   /**
    * The maximum amount of memory to be used for asynchronous buffered mutator RPCs.
    */
@@ -167,7 +182,8 @@ public abstract class AbstractBigtableConnection implements Connection, Closeabl
          options,
          MoreExecutors.listeningDecorator(pool),
          createAdapter(tableName));
-    return new BigtableTable(this, tableName, options, client, createAdapter(tableName), batchExecutor);
+    return new BigtableTable(this, tableName, options, client, createAdapter(tableName),
+        batchExecutor, session.getReadCoalescer());
   }
 
   @Override
@@ -201,7 +217,7 @@ public abstract class AbstractBigtableConnection implements Connection, Closeabl
         conf,
         options,
         params.getListener(),
-        new HeapSizeManager(maxHeapSize, maxInflightRpcs),
+        createHeapSizeManager(maxHeapSize, maxInflightRpcs),
         bufferedMutatorExecutorService) {
       @Override
       public void close() throws IOException {
@@ -216,6 +232,14 @@ public abstract class AbstractBigtableConnection implements Connection, Closeabl
     return bigtableBufferedMutator;
   }
 
+  private HeapSizeManager createHeapSizeManager(long maxHeapSize, int maxInflightRpcs) {
+    if (conf.getBoolean(BIGTABLE_BUFFERED_MUTATOR_ADAPTIVE_INFLIGHT_RPCS_KEY, false)) {
+      return new HeapSizeManager(maxHeapSize, new AdaptiveRpcLimit(maxInflightRpcs, 1,
+          maxInflightRpcs * ADAPTIVE_INFLIGHT_RPCS_MAX_MULTIPLIER));
+    }
+    return new HeapSizeManager(maxHeapSize, maxInflightRpcs);
+  }
+
   private HBaseRequestAdapter createAdapter(TableName tableName) {
     return new HBaseRequestAdapter(options.getClusterName(), tableName, conf);
   }
@@ -23,10 +23,15 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.bigtable.v1.Cell;
+import com.google.bigtable.v1.Column;
+import com.google.bigtable.v1.Family;
 import com.google.bigtable.v1.MutateRowRequest;
 import com.google.bigtable.v1.ReadModifyWriteRowRequest;
 import com.google.bigtable.v1.ReadRowsRequest;
 import com.google.bigtable.v1.Row;
+import com.google.bigtable.v1.RowFilter;
+import com.google.bigtable.v1.RowSet;
 import com.google.cloud.bigtable.config.BigtableOptions;
 import com.google.cloud.bigtable.grpc.async.AsyncExecutor;
 import com.google.cloud.bigtable.hbase.adapters.Adapters;
@@ -35,6 +40,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 
 import org.apache.hadoop.hbase.client.Append;
@@ -46,6 +52,7 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
 import org.apache.hadoop.hbase.client.RowMutations;
 import org.apache.hadoop.hbase.client.coprocessor.Batch.Callback;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -53,6 +60,7 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -180,6 +188,68 @@ public class TestBatchExecutor {
     }
   }
 
+  @Test
+  public void testMultiGet() throws Exception {
+    mockGetAdapter();
+    when(mockFuture.get()).thenReturn(ImmutableList.of(createRow("a")));
+    Result[] results = batch(Arrays.asList(
+      new Get(Bytes.toBytes("a")), new Get(Bytes.toBytes("b")), new Get(Bytes.toBytes("a"))));
+
+    ArgumentCaptor<ReadRowsRequest> captor = ArgumentCaptor.forClass(ReadRowsRequest.class);
+    verify(mockAsyncExecutor, times(1)).readRowsAsync(captor.capture());
+    RowSet expectedRowSet = RowSet.newBuilder()
+        .addRowKeys(ByteString.copyFromUtf8("a"))
+        .addRowKeys(ByteString.copyFromUtf8("b"))
+        .build();
+    Assert.assertEquals(expectedRowSet, captor.getValue().getRowSet());
+    Assert.assertArrayEquals(Bytes.toBytes("a"), results[0].getRow());
+    Assert.assertEquals("value", Bytes.toString(results[0].value()));
+    Assert.assertTrue(results[1].isEmpty());
+    Assert.assertArrayEquals(Bytes.toBytes("a"), results[2].getRow());
+    Assert.assertEquals("value", Bytes.toString(results[2].value()));
+  }
+
+  @Test
+  public void testMultiGetDifferentFilters() throws Exception {
+    mockGetAdapter();
+    when(mockFuture.get()).thenReturn(ImmutableList.of());
+    Get otherFilter = new Get(Bytes.toBytes("c")).setMaxVersions(2);
+    batch(Arrays.asList(
+      new Get(Bytes.toBytes("a")), new Get(Bytes.toBytes("b")), otherFilter));
+
+    ArgumentCaptor<ReadRowsRequest> captor = ArgumentCaptor.forClass(ReadRowsRequest.class);
+    verify(mockAsyncExecutor, times(2)).readRowsAsync(captor.capture());
+    Assert.assertEquals(2, captor.getAllValues().get(0).getRowSet().getRowKeysCount());
+    Assert.assertEquals(ByteString.copyFromUtf8("c"), captor.getAllValues().get(1).getRowKey());
+  }
+
+  /**
+   * Adapts a Get to a {@link ReadRowsRequest} with a filter that only depends on the Get's max
+   * versions.
+   */
+  private void mockGetAdapter() {
+    when(mockRequestAdapter.adapt(any(Get.class))).thenAnswer(new Answer<ReadRowsRequest>() {
+      @Override
+      public ReadRowsRequest answer(InvocationOnMock invocation) throws Throwable {
+        Get get = invocation.getArgumentAt(0, Get.class);
+        return ReadRowsRequest.newBuilder()
+            .setRowKey(ByteString.copyFrom(get.getRow()))
+            .setFilter(RowFilter.newBuilder().setCellsPerColumnLimitFilter(get.getMaxVersions()))
+            .build();
+      }
+    });
+  }
+
+  private static Row createRow(String key) {
+    Cell cell = Cell.newBuilder().setValue(ByteString.copyFromUtf8("value")).build();
+    return Row.newBuilder()
+        .setKey(ByteString.copyFromUtf8(key))
+        .addFamilies(Family.newBuilder().setName("cf")
+            .addColumns(Column.newBuilder()
+                .setQualifier(ByteString.copyFromUtf8("q")).addCells(cell)))
+        .build();
+  }
+
   private void testMutation(org.apache.hadoop.hbase.client.Row mutation)
       throws InterruptedException, ExecutionException, TimeoutException {
     when(mockFuture.get()).thenReturn(Empty.getDefaultInstance());
@@ -17,6 +17,7 @@ package com.google.cloud.bigtable.hbase;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -30,6 +31,7 @@ import java.util.concurrent.Executors;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
 import org.junit.After;
@@ -38,10 +40,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import com.google.bigtable.v1.MutateRowRequest;
+import com.google.bigtable.v1.MutateRowsRequest;
+import com.google.bigtable.v1.MutateRowsResponse;
 import com.google.cloud.bigtable.config.BigtableOptions;
 import com.google.cloud.bigtable.grpc.BigtableDataClient;
 import com.google.cloud.bigtable.grpc.async.AsyncExecutor;
@@ -49,6 +54,8 @@ import com.google.cloud.bigtable.grpc.async.HeapSizeManager;
 import com.google.cloud.bigtable.hbase.adapters.HBaseRequestAdapter;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.rpc.Status;
 
 /**
  * Tests for {@link BigtableBufferedMutator}
@@ -169,6 +176,75 @@ public class TestBigtableBufferedMutator {
     }
   }
 
+  @Test
+  public void testBulkMutation() throws Exception {
+    SettableFuture<MutateRowsResponse> response = SettableFuture.create();
+    when(client.mutateRowsAsync(any(MutateRowsRequest.class))).thenReturn(response);
+    try (BigtableBufferedMutator underTest = createMutator(createBulkConfiguration())) {
+      underTest.mutate(SIMPLE_PUT);
+      underTest.mutate(new Delete(emptyBytes));
+      ArgumentCaptor<MutateRowsRequest> captor = ArgumentCaptor.forClass(MutateRowsRequest.class);
+      verify(client, times(1)).mutateRowsAsync(captor.capture());
+      verify(client, times(0)).mutateRowAsync(any(MutateRowRequest.class));
+      Assert.assertEquals(2, captor.getValue().getEntriesCount());
+      // The batch holds its memory and its in-flight RPC until MutateRows completes.
+      Assert.assertTrue(underTest.hasInflightRequests());
+      response.set(createResponse(io.grpc.Status.Code.OK, io.grpc.Status.Code.OK));
+      Assert.assertFalse(underTest.hasInflightRequests());
+    }
+    verify(listener, never()).onException(any(RetriesExhaustedWithDetailsException.class),
+      any(BufferedMutator.class));
+  }
+
+  @Test
+  public void testBulkMutationFailedEntry() throws Exception {
+    SettableFuture<MutateRowsResponse> fullBatchResponse = SettableFuture.create();
+    SettableFuture<MutateRowsResponse> partialBatchResponse = SettableFuture.create();
+    when(client.mutateRowsAsync(any(MutateRowsRequest.class)))
+        .thenReturn(fullBatchResponse, partialBatchResponse);
+    BigtableBufferedMutator underTest = createMutator(createBulkConfiguration());
+    Put failedPut = new Put(new byte[] { 1 }).addColumn(emptyBytes, emptyBytes, emptyBytes);
+    underTest.mutate(SIMPLE_PUT);
+    underTest.mutate(failedPut);
+    fullBatchResponse.set(
+      createResponse(io.grpc.Status.Code.OK, io.grpc.Status.Code.NOT_FOUND));
+    Assert.assertFalse(underTest.hasInflightRequests());
+
+    // The third Put is sent as a batch of its own when the mutator is closed.
+    underTest.mutate(SIMPLE_PUT);
+    partialBatchResponse.set(createResponse(io.grpc.Status.Code.OK));
+    underTest.close();
+
+    ArgumentCaptor<MutateRowsRequest> requestCaptor =
+        ArgumentCaptor.forClass(MutateRowsRequest.class);
+    verify(client, times(2)).mutateRowsAsync(requestCaptor.capture());
+    Assert.assertEquals(2, requestCaptor.getAllValues().get(0).getEntriesCount());
+    Assert.assertEquals(1, requestCaptor.getAllValues().get(1).getEntriesCount());
+    Assert.assertFalse(underTest.hasInflightRequests());
+
+    ArgumentCaptor<RetriesExhaustedWithDetailsException> captor =
+        ArgumentCaptor.forClass(RetriesExhaustedWithDetailsException.class);
+    verify(listener, times(1)).onException(captor.capture(), same(underTest));
+    Assert.assertEquals(1, captor.getValue().getNumExceptions());
+    Assert.assertSame(failedPut, captor.getValue().getRow(0));
+  }
+
+  private static MutateRowsResponse createResponse(io.grpc.Status.Code... codes) {
+    MutateRowsResponse.Builder response = MutateRowsResponse.newBuilder();
+    for (io.grpc.Status.Code code : codes) {
+      response.addStatuses(Status.newBuilder().setCode(code.value()));
+    }
+    return response.build();
+  }
+
+  private static Configuration createBulkConfiguration() {
+    Configuration config = new Configuration(false);
+    config.set(BigtableOptionsFactory.BIGTABLE_USE_BULK_API, "true");
+    config.set(BigtableOptionsFactory.BIGTABLE_BULK_MAX_ROW_KEY_COUNT, "2");
+    config.set(BigtableOptionsFactory.BIGTABLE_BULK_AUTOFLUSH_MS_KEY, "0");
+    return config;
+  }
+
   private void completeCall() {
     for (FutureCallback<?> callback : callbacks) {
       callback.onSuccess(null);
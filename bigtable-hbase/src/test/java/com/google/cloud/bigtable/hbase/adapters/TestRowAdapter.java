@@ -24,6 +24,7 @@ import com.google.bigtable.v1.Row;
 import com.google.protobuf.ByteString;
 
 import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Test;
@@ -126,5 +127,52 @@ public class TestRowAdapter {
     assertEquals(1, cells4.size());
     assertEquals(Bytes.toString(value5), Bytes.toString(CellUtil.cloneValue(cells4.get(0))));
   }
-}
 
+  @Test
+  public void adaptResponse_familiesAreSorted() {
+    Row row = Row.newBuilder()
+        .setKey(ByteString.copyFromUtf8("key"))
+        .addFamilies(createFamily("family2", "qualifier1", 2000L, 1000L))
+        .addFamilies(createFamily("family1", "qualifier1", 1000L))
+        .addFamilies(createFamily("family1", "qualifier2", 3000L))
+        .build();
+
+    org.apache.hadoop.hbase.Cell[] cells = instance.adaptResponse(row).rawCells();
+    assertEquals(4, cells.length);
+    assertSorted(cells);
+    assertEquals("family1", Bytes.toString(CellUtil.cloneFamily(cells[0])));
+    assertEquals("qualifier2", Bytes.toString(CellUtil.cloneQualifier(cells[1])));
+    assertEquals(1L, cells[3].getTimestamp());
+  }
+
+  @Test
+  public void adaptResponse_unsortedColumnsAreSorted() {
+    Row row = Row.newBuilder()
+        .setKey(ByteString.copyFromUtf8("key"))
+        .addFamilies(createFamily("family1", "qualifier2", 1000L))
+        .addFamilies(createFamily("family1", "qualifier1", 1000L, 3000L, 1000L))
+        .build();
+
+    org.apache.hadoop.hbase.Cell[] cells = instance.adaptResponse(row).rawCells();
+    assertEquals(3, cells.length);
+    assertSorted(cells);
+    assertEquals("qualifier1", Bytes.toString(CellUtil.cloneQualifier(cells[0])));
+    assertEquals(3L, cells[0].getTimestamp());
+  }
+
+  private static Family createFamily(String name, String qualifier, long... timestampsMicros) {
+    Column.Builder column = Column.newBuilder().setQualifier(ByteString.copyFromUtf8(qualifier));
+    for (long timestampMicros : timestampsMicros) {
+      column.addCells(Cell.newBuilder()
+          .setTimestampMicros(timestampMicros)
+          .setValue(ByteString.copyFromUtf8("value")));
+    }
+    return Family.newBuilder().setName(name).addColumns(column).build();
+  }
+
+  private static void assertSorted(org.apache.hadoop.hbase.Cell[] cells) {
+    for (int i = 1; i < cells.length; i++) {
+      assertTrue(KeyValue.COMPARATOR.compare(cells[i - 1], cells[i]) < 0);
+    }
+  }
+}